@@ -1,16 +1,37 @@
 package net.dongliu.apk.parser;
 
 import net.dongliu.apk.parser.bean.*;
+import net.dongliu.apk.parser.exception.ParseLimitExceededException;
 import net.dongliu.apk.parser.exception.ParserException;
 import net.dongliu.apk.parser.parser.*;
 import net.dongliu.apk.parser.struct.AndroidConstants;
 import net.dongliu.apk.parser.struct.resource.ResourceTable;
+import net.dongliu.apk.parser.utils.BufferArena;
+import net.dongliu.apk.parser.utils.InflaterPool;
+import net.dongliu.apk.parser.utils.ParseUtils;
+import net.dongliu.apk.parser.utils.Utils;
+import net.dongliu.apk.parser.utils.ZipSource;
 
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
  * Common Apk Parser methods.
@@ -26,13 +47,43 @@ public abstract class AbstractApkFile implements Closeable {
     private ApkMeta apkMeta;
     private Set<Locale> locales;
     private List<CertificateMeta> certificateMetaList;
+    private List<ArchiveEntry> entries;
+    private Map<String, ArchiveEntry> entryMap;
+    private List<NativeLibrary> nativeLibraries;
 
     private static final Locale DEFAULT_LOCALE = Locale.US;
+    private static final List<String> DEFAULT_DIGEST_ALGORITHMS = Collections.unmodifiableList(
+            Arrays.asList("MD5", "SHA-1", "SHA-256"));
+    // the block size of reading apk for digests
+    protected static final int DIGEST_BLOCK_SIZE = 1024 * 1024;
+    // deflate outputs at most 258 bytes for two bits of length and distance codes
+    private static final long MAX_DEFLATE_RATIO = 1032;
 
     /**
      * default use empty locale
      */
     private Locale preferredLocale = DEFAULT_LOCALE;
+    /**
+     * the device to select resource values for, the locale is always the preferred locale
+     */
+    private DeviceProfile deviceProfile = DeviceProfile.of(DEFAULT_LOCALE);
+
+    private boolean parseComponents;
+
+    private ParseLimits parseLimits = new ParseLimits();
+    private CancellationToken cancellationToken = CancellationToken.NONE;
+    private StringInterner stringInterner = StringInterner.NONE;
+    private InflaterPool inflaterPool = InflaterPool.DEFAULT;
+    private boolean offHeapBuffers;
+    private List<String> digestAlgorithms = DEFAULT_DIGEST_ALGORITHMS;
+    private Map<String, byte[]> digests;
+    // created when the first off-heap buffer is allocated
+    private BufferArena bufferArena;
+    // uncompressed bytes read from the apk, updated by concurrent reads of prefetch
+    private AtomicLong inflatedBytes = new AtomicLong();
+    private File resourceTableSnapshot;
+    private ParserException resourceTableSnapshotError;
+    private IOException resourceTableSnapshotWriteError;
 
     /**
      * return decoded AndroidManifest.xml
@@ -71,6 +122,48 @@ public abstract class AbstractApkFile implements Closeable {
         return this.locales;
     }
 
+    /**
+     * Get the value of a resource, for all locales from {@link #getLocales()} at once.
+     * Other resource qualifiers are selected by the device profile.
+     *
+     * @return the values by locale, empty if resource not found
+     */
+    public Map<Locale, String> getResourceValues(long resourceId) throws IOException {
+        if (this.resourceTable == null) {
+            parseResourceTable();
+        }
+        return ParseUtils.getResourceById(resourceId, resourceTable, locales, deviceProfile);
+    }
+
+    /**
+     * Get the application label for all locales at once, without reparse manifest for each locale.
+     *
+     * @return the labels by locale. If the label is literal text, it is returned with {@link Locales#any}.
+     * Empty if application has no label
+     */
+    public Map<Locale, String> getLabels() throws IOException {
+        ApkMeta apkMeta = getApkMeta();
+        return getLocalizedValues(apkMeta.getLabel(), apkMeta.getLabelResourceId());
+    }
+
+    /**
+     * Get the application description for all locales at once, see {@link #getLabels()}.
+     */
+    public Map<Locale, String> getDescriptions() throws IOException {
+        ApkMeta apkMeta = getApkMeta();
+        return getLocalizedValues(apkMeta.getDescription(), apkMeta.getDescriptionResourceId());
+    }
+
+    private Map<Locale, String> getLocalizedValues(String value, Long resourceId) throws IOException {
+        if (resourceId != null) {
+            return getResourceValues(resourceId);
+        }
+        if (value == null) {
+            return Collections.emptyMap();
+        }
+        return Collections.singletonMap(Locales.any, value);
+    }
+
     /**
      * get the apk's certificates.
      */
@@ -113,14 +206,18 @@ public abstract class AbstractApkFile implements Closeable {
      */
     private void parseManifestXml() throws IOException {
         XmlTranslator xmlTranslator = new XmlTranslator();
-        ApkMetaTranslator translator = new ApkMetaTranslator();
+        ApkMetaTranslator translator = new ApkMetaTranslator(parseComponents);
         XmlStreamer xmlStreamer = new CompositeXmlStreamer(xmlTranslator, translator);
 
-        byte[] data = getFileData(AndroidConstants.MANIFEST_FILE);
-        if (data == null) {
+        ByteBuffer buffer = readFileBuffer(AndroidConstants.MANIFEST_FILE);
+        if (buffer == null) {
             throw new ParserException("Manifest file not found");
         }
-        transBinaryXml(data, xmlStreamer);
+        try {
+            transBinaryXml(buffer, xmlStreamer);
+        } finally {
+            releaseFileBuffer(buffer);
+        }
         this.manifestXml = xmlTranslator.getXml();
         this.apkMeta = translator.getApkMeta();
     }
@@ -130,6 +227,450 @@ public abstract class AbstractApkFile implements Closeable {
      */
     public abstract byte[] getFileData(String path) throws IOException;
 
+    /**
+     * List the entries of apk, with sizes, compression method, crc and offsets. Read from the zip central directory
+     * only, no entry data is read or inflated. The local header of an entry is read when the entry is read, or its
+     * data offset is first used, which needs this apk file open.
+     */
+    public List<ArchiveEntry> getEntries() throws IOException {
+        if (this.entries == null) {
+            this.entries = Collections.unmodifiableList(readEntries());
+        }
+        return this.entries;
+    }
+
+    /**
+     * Find entry by name, see {@link #getEntries()}.
+     *
+     * @return null if not found
+     */
+    @Nullable
+    public ArchiveEntry getEntry(String name) throws IOException {
+        if (this.entryMap == null) {
+            List<ArchiveEntry> entries = getEntries();
+            Map<String, ArchiveEntry> entryMap = new HashMap<>(entries.size() * 2);
+            for (ArchiveEntry entry : entries) {
+                entryMap.put(entry.getName(), entry);
+            }
+            this.entryMap = entryMap;
+        }
+        return this.entryMap.get(name);
+    }
+
+    /**
+     * The digests of the whole apk file by algorithm name, for the algorithms set by
+     * {@link #setDigestAlgorithms(String...)}. If the backend did not compute them while reading the apk, e.g.
+     * {@link InputStreamApkFile} created with digest algorithms, the apk is read once sequentially in large blocks,
+     * updating all digests with each block.
+     */
+    public Map<String, byte[]> getDigests() throws IOException {
+        if (this.digests == null) {
+            MessageDigest[] messageDigests = newDigests(digestAlgorithms);
+            byte[] block = new byte[DIGEST_BLOCK_SIZE];
+            try (ZipSource source = openSequentialSource()) {
+                long size = source.size();
+                for (long position = 0; position < size; position += block.length) {
+                    int count = (int) Math.min(block.length, size - position);
+                    source.read(position, block, 0, count);
+                    for (MessageDigest messageDigest : messageDigests) {
+                        messageDigest.update(block, 0, count);
+                    }
+                    cancellationToken.checkCancelled();
+                }
+            }
+            setDigests(messageDigests);
+        }
+        return this.digests;
+    }
+
+    /**
+     * The hex digest of the whole apk file, see {@link #getDigests()}.
+     *
+     * @return null if the algorithm is not in the digest algorithms
+     */
+    @Nullable
+    public String getDigestHex(String algorithm) throws IOException {
+        byte[] digest = getDigests().get(algorithm);
+        return digest == null ? null : Utils.toHex(digest);
+    }
+
+    /**
+     * Create digests for the algorithms, in order.
+     *
+     * @throws IllegalArgumentException if an algorithm is not supported
+     */
+    protected static MessageDigest[] newDigests(List<String> algorithms) {
+        MessageDigest[] messageDigests = new MessageDigest[algorithms.size()];
+        for (int i = 0; i < messageDigests.length; i++) {
+            try {
+                messageDigests[i] = MessageDigest.getInstance(algorithms.get(i));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException("Unsupported digest algorithm " + algorithms.get(i), e);
+            }
+        }
+        return messageDigests;
+    }
+
+    /**
+     * Set the digests of the whole apk, computed by the backend while reading the apk
+     */
+    protected void setDigests(MessageDigest[] messageDigests) {
+        Map<String, byte[]> digests = new LinkedHashMap<>();
+        for (MessageDigest messageDigest : messageDigests) {
+            digests.put(messageDigest.getAlgorithm(), messageDigest.digest());
+        }
+        this.digests = Collections.unmodifiableMap(digests);
+    }
+
+    /**
+     * Fingerprint of all entries except signature files, see {@link #getFingerprint(FingerprintScope)}.
+     */
+    public ApkFingerprint getFingerprint() throws IOException {
+        return getFingerprint(FingerprintScope.all);
+    }
+
+    /**
+     * Fingerprint of apk contents from the zip central directory, without reading entry data. Apks with the same
+     * entry names, crc32 and sizes in scope have the same fingerprint, regardless of timestamps, entry order,
+     * compression and signatures.
+     */
+    public ApkFingerprint getFingerprint(FingerprintScope scope) throws IOException {
+        return ApkFingerprinter.fingerprint(getEntries(), scope);
+    }
+
+    /**
+     * Read files in apk concurrently, e.g. the manifest, resources.arsc and dex files before parsing them. Each file
+     * is a task of executor inflated with its own inflater, and all tasks use positional reads of one shared source,
+     * which is closed after the last task finished. The entry size and inflated bytes limits apply.
+     *
+     * @return the file data futures by path, in paths order. Paths not found in apk are not included.
+     */
+    public Map<String, Future<ByteBuffer>> prefetch(Collection<String> paths, ExecutorService executor)
+            throws IOException {
+        List<ArchiveEntry> found = new ArrayList<>();
+        for (String path : paths) {
+            ArchiveEntry entry = getEntry(path);
+            if (entry != null && !entry.isDirectory()) {
+                found.add(entry);
+            }
+        }
+        Map<String, Future<ByteBuffer>> futures = new LinkedHashMap<>();
+        if (found.isEmpty()) {
+            return futures;
+        }
+        ZipSource source = openZipSource();
+        AtomicInteger remaining = new AtomicInteger(found.size());
+        for (int i = 0; i < found.size(); i++) {
+            ArchiveEntry entry = found.get(i);
+            try {
+                futures.put(entry.getName(), executor.submit(new PrefetchTask(source, entry, remaining)));
+            } catch (RejectedExecutionException e) {
+                // the tasks not submitted will not close the source
+                if (remaining.addAndGet(-(found.size() - i)) == 0) {
+                    source.close();
+                }
+                throw e;
+            }
+        }
+        return futures;
+    }
+
+    private class PrefetchTask implements Callable<ByteBuffer> {
+        private final ZipSource source;
+        private final ArchiveEntry entry;
+        private final AtomicInteger remaining;
+
+        PrefetchTask(ZipSource source, ArchiveEntry entry, AtomicInteger remaining) {
+            this.source = source;
+            this.entry = entry;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public ByteBuffer call() throws IOException {
+            try {
+                return ByteBuffer.wrap(readEntryData(source, entry));
+            } finally {
+                if (remaining.decrementAndGet() == 0) {
+                    source.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * List the native libraries lib/&lt;abi&gt;/*.so of apk, with abi, sizes, compression and alignment status, and
+     * the ELF class, machine and load segment alignment. Only the zip central directory and the first bytes of each
+     * library are read.
+     */
+    public List<NativeLibrary> getNativeLibraries() throws IOException {
+        if (this.nativeLibraries == null) {
+            List<ArchiveEntry> entries = getEntries();
+            try (ZipSource source = openZipSource()) {
+                NativeLibraryParser parser = new NativeLibraryParser(source);
+                parser.setCancellationToken(cancellationToken);
+                parser.setInflaterPool(inflaterPool);
+                this.nativeLibraries = Collections.unmodifiableList(parser.parse(entries));
+            }
+        }
+        return this.nativeLibraries;
+    }
+
+    private List<ArchiveEntry> readEntries() throws IOException {
+        try (ZipSource source = openZipSource()) {
+            return ZipCentralDirectory.read(source, new ArchiveEntry.LocalHeaderReader() {
+                @Override
+                public long readDataOffset(ArchiveEntry entry) throws IOException {
+                    try (ZipSource source = openZipSource()) {
+                        return ZipCentralDirectory.readDataOffset(source, entry);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Open random access to the apk data, for reading zip structures and entries. The source may be read by multiple
+     * threads; the caller closes the source.
+     */
+    protected abstract ZipSource openZipSource() throws IOException;
+
+    /**
+     * Open source for reading the whole apk once, e.g. for digests. Backends with a block cache return the source
+     * under the cache, so the pass does not evict the cached blocks. The caller closes the source.
+     */
+    protected ZipSource openSequentialSource() throws IOException {
+        return openZipSource();
+    }
+
+    /**
+     * Read uncompressed data of one zip entry, within the entry size and total inflated bytes limits.
+     * The input stream is not closed.
+     */
+    protected byte[] readEntryData(InputStream in) throws IOException {
+        long maxEntrySize = parseLimits.getMaxEntrySize();
+        long maxTotal = parseLimits.getMaxTotalInflatedBytes();
+        byte[] buf = inflaterPool.acquireBuffer();
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                cancellationToken.checkCancelled();
+                if (bos.size() + len > maxEntrySize) {
+                    throw new ParseLimitExceededException("Entry size exceeds limit " + maxEntrySize);
+                }
+                if (inflatedBytes.addAndGet(len) > maxTotal) {
+                    throw new ParseLimitExceededException("Total inflated bytes exceeds limit " + maxTotal);
+                }
+                bos.write(buf, 0, len);
+            }
+            return bos.toByteArray();
+        } finally {
+            inflaterPool.releaseBuffer(buf);
+        }
+    }
+
+    /**
+     * Read uncompressed data of one zip entry from source, within the entry size and total inflated bytes limits.
+     * Only the compressed data of the entry is read, and inflated into an array of the entry size, with an inflater
+     * and a buffer from the inflater pool.
+     */
+    protected byte[] readEntryData(ZipSource source, ArchiveEntry entry) throws IOException {
+        checkEntrySize(source, entry);
+        byte[] data = new byte[(int) entry.getSize()];
+        readEntryData(source, entry, ByteBuffer.wrap(data));
+        return data;
+    }
+
+    /**
+     * Check the declared sizes of entry before buffers of the entry size are allocated: the compressed data must be
+     * within the source, and the size must be reachable from the compressed size, at most the maximum deflate ratio.
+     */
+    private void checkEntrySize(ZipSource source, ArchiveEntry entry) throws IOException {
+        long size = entry.getSize();
+        long compressedSize = entry.getCompressedSize();
+        long dataOffset = ZipCentralDirectory.readDataOffset(source, entry);
+        if (size < 0 || compressedSize < 0 || dataOffset + compressedSize > source.size()) {
+            throw new ParserException("Invalid zip file: data of " + entry.getName() + " out of bounds");
+        }
+        if (entry.getMethod() == ArchiveEntry.STORED && compressedSize != size) {
+            throw new ParserException("Invalid zip file: bad size of stored entry " + entry.getName());
+        }
+        if (entry.getMethod() == ArchiveEntry.DEFLATED && size > (compressedSize + 1) * MAX_DEFLATE_RATIO) {
+            throw new ParserException("Invalid zip file: size " + size + " of " + entry.getName()
+                    + " exceeds the maximum deflate ratio of compressed size " + compressedSize);
+        }
+        long maxEntrySize = parseLimits.getMaxEntrySize();
+        long maxTotal = parseLimits.getMaxTotalInflatedBytes();
+        if (size > maxEntrySize || size > Integer.MAX_VALUE) {
+            throw new ParseLimitExceededException("Entry size exceeds limit " + maxEntrySize);
+        }
+        if (inflatedBytes.addAndGet(size) > maxTotal) {
+            throw new ParseLimitExceededException("Total inflated bytes exceeds limit " + maxTotal);
+        }
+        cancellationToken.checkCancelled();
+    }
+
+    /**
+     * Read uncompressed data of entry into dst, which has exactly the entry size remaining. Heap buffers are filled
+     * directly, direct buffers through a scratch buffer.
+     */
+    private void readEntryData(ZipSource source, ArchiveEntry entry, ByteBuffer dst) throws IOException {
+        long size = entry.getSize();
+        if (entry.getMethod() != ArchiveEntry.STORED && entry.getMethod() != ArchiveEntry.DEFLATED) {
+            throw new ParserException("Unsupported compression method " + entry.getMethod() + " of "
+                    + entry.getName());
+        }
+        if (entry.getMethod() == ArchiveEntry.STORED && entry.getCompressedSize() != size) {
+            throw new ParserException("Invalid zip file: bad size of stored entry " + entry.getName());
+        }
+        long dataOffset = ZipCentralDirectory.readDataOffset(source, entry);
+        if (entry.getMethod() == ArchiveEntry.STORED && dst.hasArray()) {
+            source.read(dataOffset, dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            dst.position(dst.limit());
+            return;
+        }
+
+        byte[] buffer = inflaterPool.acquireBuffer();
+        byte[] output = dst.hasArray() ? null : inflaterPool.acquireBuffer();
+        Inflater inflater = null;
+        try {
+            long position = dataOffset;
+            long remaining = entry.getCompressedSize();
+            if (entry.getMethod() == ArchiveEntry.STORED) {
+                while (remaining > 0) {
+                    int n = (int) Math.min(buffer.length, remaining);
+                    source.read(position, buffer, 0, n);
+                    position += n;
+                    remaining -= n;
+                    dst.put(buffer, 0, n);
+                    cancellationToken.checkCancelled();
+                }
+                return;
+            }
+
+            inflater = inflaterPool.acquireInflater();
+            // to find out if there is more data than the entry size
+            byte[] probe = new byte[1];
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (remaining <= 0) {
+                        throw new ParserException("Invalid zip file: truncated data of " + entry.getName());
+                    }
+                    int n = (int) Math.min(buffer.length, remaining);
+                    source.read(position, buffer, 0, n);
+                    position += n;
+                    remaining -= n;
+                    inflater.setInput(buffer, 0, n);
+                    cancellationToken.checkCancelled();
+                } else if (inflater.needsDictionary()) {
+                    throw new ParserException("Invalid zip file: bad deflate data of " + entry.getName());
+                }
+                if (!dst.hasRemaining()) {
+                    if (inflater.inflate(probe) > 0) {
+                        throw new ParserException("Invalid zip file: data of " + entry.getName() + " exceeds size "
+                                + size);
+                    }
+                } else if (output == null) {
+                    int n = inflater.inflate(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+                    dst.position(dst.position() + n);
+                } else {
+                    int n = inflater.inflate(output, 0, Math.min(output.length, dst.remaining()));
+                    dst.put(output, 0, n);
+                }
+            }
+            if (dst.hasRemaining()) {
+                throw new ParserException("Invalid zip file: data of " + entry.getName() + " less than size " + size);
+            }
+        } catch (DataFormatException e) {
+            throw new ParserException("Invalid zip file: bad deflate data of " + entry.getName() + ": "
+                    + e.getMessage());
+        } finally {
+            inflaterPool.releaseBuffer(buffer);
+            if (output != null) {
+                inflaterPool.releaseBuffer(output);
+            }
+            if (inflater != null) {
+                inflaterPool.releaseInflater(inflater);
+            }
+        }
+    }
+
+    /**
+     * Read file in apk for parsing, into a buffer of the arena if off-heap buffers are enabled.
+     *
+     * @return null if not found
+     */
+    private ByteBuffer readFileBuffer(String path) throws IOException {
+        if (!offHeapBuffers) {
+            byte[] data = getFileData(path);
+            return data == null ? null : ByteBuffer.wrap(data);
+        }
+        ArchiveEntry entry = getEntry(path);
+        if (entry == null || entry.isDirectory()) {
+            return null;
+        }
+        if (bufferArena == null) {
+            bufferArena = new BufferArena();
+        }
+        bufferArena.checkOpen();
+        try (ZipSource source = openZipSource()) {
+            checkEntrySize(source, entry);
+            ByteBuffer buffer = bufferArena.allocate((int) entry.getSize());
+            try {
+                readEntryData(source, entry, buffer);
+            } catch (IOException | RuntimeException e) {
+                bufferArena.release(buffer);
+                throw e;
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /**
+     * Free the buffer read by {@link #readFileBuffer(String)} if it is from the arena, when parsing is done and no
+     * parse result references it.
+     */
+    private void releaseFileBuffer(ByteBuffer buffer) {
+        if (bufferArena != null && buffer.isDirect()) {
+            bufferArena.release(buffer);
+        }
+    }
+
+    /**
+     * Read file in apk by the zip central directory and positional reads, for implementing
+     * {@link #getFileData(String)} by subclasses which have random access to apk data.
+     *
+     * @return null if not found
+     */
+    protected byte[] readFileData(String path) throws IOException {
+        ArchiveEntry entry = getEntry(path);
+        if (entry == null || entry.isDirectory()) {
+            return null;
+        }
+        try (ZipSource source = openZipSource()) {
+            return readEntryData(source, entry);
+        }
+    }
+
+    /**
+     * Read the first .RSA or .DSA file in apk, see {@link #readFileData(String)}.
+     *
+     * @return null if not found
+     */
+    protected byte[] readCertificateFileData() throws IOException {
+        for (ArchiveEntry entry : getEntries()) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            String name = entry.getName().toUpperCase();
+            if (name.endsWith(".RSA") || name.endsWith(".DSA")) {
+                return readFileData(entry.getName());
+            }
+        }
+        return null;
+    }
 
     /**
      * trans binary xml file to text xml file.
@@ -143,25 +684,45 @@ public abstract class AbstractApkFile implements Closeable {
         if (data == null) {
             return null;
         }
-        if (this.resourceTable == null) {
-            parseResourceTable();
-        }
 
         XmlTranslator xmlTranslator = new XmlTranslator();
-        transBinaryXml(data, xmlTranslator);
+        transBinaryXml(ByteBuffer.wrap(data), xmlTranslator);
         return xmlTranslator.getXml();
     }
 
-    private void transBinaryXml(byte[] data, XmlStreamer xmlStreamer) throws IOException {
+    private void transBinaryXml(ByteBuffer buffer, XmlStreamer xmlStreamer) throws IOException {
+        BinaryXmlParser binaryXmlParser = new BinaryXmlParser(buffer, resourceTable);
+        binaryXmlParser.setParseLimits(parseLimits);
+        binaryXmlParser.setCancellationToken(cancellationToken);
+        binaryXmlParser.setStringInterner(stringInterner);
         if (this.resourceTable == null) {
-            parseResourceTable();
+            // resources.arsc is only read when the xml has reference values
+            binaryXmlParser.setResourceTableLoader(new ResourceTableLoader() {
+                @Override
+                public ResourceTable load() {
+                    try {
+                        parseResourceTable();
+                    } catch (IOException e) {
+                        throw new ResourceLoadException(e);
+                    }
+                    return resourceTable;
+                }
+            });
         }
-
-        ByteBuffer buffer = ByteBuffer.wrap(data);
-        BinaryXmlParser binaryXmlParser = new BinaryXmlParser(buffer, resourceTable);
-        binaryXmlParser.setLocale(preferredLocale);
+        binaryXmlParser.setDeviceProfile(deviceProfile);
         binaryXmlParser.setXmlStreamer(xmlStreamer);
-        binaryXmlParser.parse();
+        try {
+            binaryXmlParser.parse();
+        } catch (ResourceLoadException e) {
+            throw (IOException) e.getCause();
+        }
+    }
+
+    // carry IOException of reading resource table out of the xml parser
+    private static class ResourceLoadException extends ParserException {
+        ResourceLoadException(IOException cause) {
+            super(cause);
+        }
     }
 
     /**
@@ -189,23 +750,66 @@ public abstract class AbstractApkFile implements Closeable {
         return this.dexClasses;
     }
 
+    /**
+     * Build the reference graph of resources, from the resource table, the manifest and all xml files referenced by
+     * resource values. Use {@code graph.getFileReferences(AndroidConstants.MANIFEST_FILE)} as roots to find
+     * resources reachable from the manifest.
+     *
+     * @param pool the pool to scan xml files in parallel, null to scan in current thread
+     */
+    public ResourceReferenceGraph getResourceReferenceGraph(@Nullable ForkJoinPool pool) throws IOException {
+        if (this.resourceTable == null) {
+            parseResourceTable();
+        }
+        Map<String, byte[]> xmlFiles = new HashMap<>();
+        byte[] manifest = getFileData(AndroidConstants.MANIFEST_FILE);
+        if (manifest != null) {
+            xmlFiles.put(AndroidConstants.MANIFEST_FILE, manifest);
+        }
+        for (String path : ResourceReferenceGraph.getXmlFilePaths(resourceTable)) {
+            byte[] data = getFileData(path);
+            if (data != null) {
+                xmlFiles.put(path, data);
+            }
+        }
+        return ResourceReferenceGraph.build(resourceTable, xmlFiles, pool);
+    }
+
     private void parseDexFile() throws IOException {
-        byte[] data = getFileData(AndroidConstants.DEX_FILE);
-        if (data == null) {
+        ByteBuffer buffer = readFileBuffer(AndroidConstants.DEX_FILE);
+        if (buffer == null) {
             throw new ParserException("Dex file not found");
         }
-        ByteBuffer buffer = ByteBuffer.wrap(data);
-        DexParser dexParser = new DexParser(buffer);
-        dexParser.parse();
-        this.dexClasses = dexParser.getDexClasses();
+        try {
+            DexParser dexParser = new DexParser(buffer);
+            dexParser.setParseLimits(parseLimits);
+            dexParser.setCancellationToken(cancellationToken);
+            dexParser.setStringInterner(stringInterner);
+            dexParser.parse();
+            this.dexClasses = dexParser.getDexClasses();
+        } finally {
+            releaseFileBuffer(buffer);
+        }
     }
 
     /**
      * parse resource table.
      */
     private void parseResourceTable() throws IOException {
-        byte[] data = getFileData(AndroidConstants.RESOURCE_FILE);
-        if (data == null) {
+        if (resourceTableSnapshot != null && resourceTableSnapshot.exists()) {
+            try {
+                ResourceTableSnapshot snapshot = ResourceTableSnapshot.load(resourceTableSnapshot);
+                this.resourceTable = snapshot.getResourceTable();
+                this.resourceTable.setParseLimits(parseLimits);
+                this.locales = snapshot.getLocales();
+                return;
+            } catch (ParserException e) {
+                // invalid or outdated snapshot, parse and write it again
+                this.resourceTableSnapshotError = e;
+            }
+        }
+        ByteBuffer buffer = readFileBuffer(AndroidConstants.RESOURCE_FILE);
+        if (buffer == null) {
             // if no resource entry has been found, we assume it is not needed by this APK
             this.resourceTable = new ResourceTable();
             this.locales = Collections.emptySet();
@@ -215,11 +819,25 @@ public abstract class AbstractApkFile implements Closeable {
         this.resourceTable = new ResourceTable();
         this.locales = Collections.emptySet();
 
-        ByteBuffer buffer = ByteBuffer.wrap(data);
         ResourceTableParser resourceTableParser = new ResourceTableParser(buffer);
+        resourceTableParser.setParseLimits(parseLimits);
+        resourceTableParser.setCancellationToken(cancellationToken);
+        resourceTableParser.setStringInterner(stringInterner);
+        if (buffer.isDirect()) {
+            // the types read the buffer until close
+            resourceTableParser.setBufferArena(bufferArena);
+        }
         resourceTableParser.parse();
         this.resourceTable = resourceTableParser.getResourceTable();
         this.locales = resourceTableParser.getLocales();
+        if (resourceTableSnapshot != null) {
+            try {
+                ResourceTableSnapshot.write(resourceTable, resourceTableSnapshot);
+            } catch (IOException e) {
+                // the snapshot is only a cache, keep the parsed resource table
+                this.resourceTableSnapshotWriteError = e;
+            }
+        }
     }
 
     /**
@@ -233,7 +851,9 @@ public abstract class AbstractApkFile implements Closeable {
     public void close() throws IOException {
         this.certificateMetaList = null;
         this.resourceTable = null;
-        this.certificateMetaList = null;
+        if (bufferArena != null) {
+            bufferArena.close();
+        }
     }
 
     public Locale getPreferredLocale() {
@@ -248,6 +868,185 @@ public abstract class AbstractApkFile implements Closeable {
     public void setPreferredLocale(Locale preferredLocale) {
         if (!Objects.equals(this.preferredLocale, preferredLocale)) {
             this.preferredLocale = preferredLocale;
+            this.deviceProfile = deviceProfile.withLocale(preferredLocale);
+            this.manifestXml = null;
+            this.apkMeta = null;
+        }
+    }
+
+    public DeviceProfile getDeviceProfile() {
+        return deviceProfile;
+    }
+
+    /**
+     * The device to select resource values for, like density-specific icons and sdk-specific labels.
+     * Also set the preferred locale to the profile's locale. Will cause getManifestXml / getApkMeta to return
+     * different values.
+     */
+    public void setDeviceProfile(DeviceProfile deviceProfile) {
+        if (deviceProfile == null) {
+            throw new IllegalArgumentException("Device profile is null");
+        }
+        if (!deviceProfile.equals(this.deviceProfile)) {
+            this.deviceProfile = deviceProfile;
+            this.preferredLocale = deviceProfile.getLocale();
+            this.manifestXml = null;
+            this.apkMeta = null;
+        }
+    }
+
+    public ParseLimits getParseLimits() {
+        return parseLimits;
+    }
+
+    /**
+     * Set limits for parsing untrusted apk files. Should be set before any parsing.
+     */
+    public void setParseLimits(ParseLimits parseLimits) {
+        this.parseLimits = parseLimits;
+    }
+
+    /**
+     * The uncompressed bytes read from the apk by this instance so far, counted against
+     * {@link ParseLimits#getMaxTotalInflatedBytes()}. Repeated reads of the same entry are counted each time.
+     */
+    public long getInflatedBytes() {
+        return inflatedBytes.get();
+    }
+
+    /**
+     * Count the inflated bytes with a counter shared by other apk files, e.g. the splits of a bundle, so the total
+     * limit applies to all of them. Should be set before any parsing.
+     */
+    void setInflatedBytes(AtomicLong inflatedBytes) {
+        this.inflatedBytes = inflatedBytes;
+    }
+
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    /**
+     * Set the token to cancel parsing, or give a deadline. A cancelled parse throws ParseCancelledException.
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    public StringInterner getStringInterner() {
+        return stringInterner;
+    }
+
+    /**
+     * Set the interner to canonicalize strings in parse results, e.g. one {@link WeakStringInterner} shared by all
+     * apk files of a batch job, to reduce the duplicate strings kept in memory. Should be set before any parsing.
+     */
+    public void setStringInterner(StringInterner stringInterner) {
+        this.stringInterner = stringInterner;
+    }
+
+    public List<String> getDigestAlgorithms() {
+        return digestAlgorithms;
+    }
+
+    /**
+     * Set the algorithms of {@link #getDigests()}, MD5, SHA-1 and SHA-256 by default.
+     *
+     * @throws IllegalArgumentException if an algorithm is not supported
+     */
+    public void setDigestAlgorithms(String... digestAlgorithms) {
+        List<String> algorithms = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(digestAlgorithms)));
+        newDigests(algorithms);
+        if (!algorithms.equals(this.digestAlgorithms)) {
+            this.digestAlgorithms = algorithms;
+            this.digests = null;
+        }
+    }
+
+    public boolean isOffHeapBuffers() {
+        return offHeapBuffers;
+    }
+
+    /**
+     * Read the manifest, dex and resources.arsc for parsing into direct buffers owned by this apk file, instead of
+     * heap arrays. The manifest and dex buffers are freed after parsing, the resources.arsc buffer is used by the
+     * resource table and freed when this apk file is closed. Closing waits for the resource table reads in progress
+     * on other threads; reading the resource table after that throws
+     * {@link net.dongliu.apk.parser.exception.ArenaClosedException}. Disabled by default. Should be set before any
+     * parsing.
+     */
+    public void setOffHeapBuffers(boolean offHeapBuffers) {
+        this.offHeapBuffers = offHeapBuffers;
+    }
+
+    /**
+     * The arena of off-heap buffers, for memory statistics
+     *
+     * @return null if no off-heap buffer allocated
+     */
+    @Nullable
+    public BufferArena getBufferArena() {
+        return bufferArena;
+    }
+
+    public InflaterPool getInflaterPool() {
+        return inflaterPool;
+    }
+
+    /**
+     * Set the pool of inflaters and scratch buffers used to read entries. By default {@link InflaterPool#DEFAULT}
+     * is shared by all apk files.
+     */
+    public void setInflaterPool(InflaterPool inflaterPool) {
+        this.inflaterPool = inflaterPool;
+    }
+
+    public File getResourceTableSnapshot() {
+        return resourceTableSnapshot;
+    }
+
+    /**
+     * Cache the parsed resources.arsc in a snapshot file. If the file is a valid snapshot, the resource table is
+     * memory-mapped from it instead of parsed; otherwise resources.arsc is parsed and the snapshot is written.
+     * The snapshot is not checked against the apk, so use one file per apk content, e.g. named by the apk digest.
+     * Should be set before any parsing.
+     */
+    public void setResourceTableSnapshot(File resourceTableSnapshot) {
+        this.resourceTableSnapshot = resourceTableSnapshot;
+    }
+
+    /**
+     * The error loading the snapshot file, when it is not a valid snapshot of current version and the resource table
+     * is parsed again.
+     *
+     * @return null if no snapshot file loaded, or loaded successfully
+     */
+    @Nullable
+    public ParserException getResourceTableSnapshotError() {
+        return resourceTableSnapshotError;
+    }
+
+    /**
+     * The error writing the snapshot file after the resource table is parsed. The parsed resource table is still used.
+     *
+     * @return null if no snapshot file written, or written successfully
+     */
+    @Nullable
+    public IOException getResourceTableSnapshotWriteError() {
+        return resourceTableSnapshotWriteError;
+    }
+
+    public boolean isParseComponents() {
+        return parseComponents;
+    }
+
+    /**
+     * If also collect activities, services, receivers, providers with their intent filters, and meta-data into
+     * ApkMeta, while parsing manifest. Default false.
+     */
+    public void setParseComponents(boolean parseComponents) {
+        if (this.parseComponents != parseComponents) {
+            this.parseComponents = parseComponents;
             this.manifestXml = null;
             this.apkMeta = null;
         }
@@ -0,0 +1,484 @@
+package net.dongliu.apk.parser;
+
+import net.dongliu.apk.parser.bean.*;
+import net.dongliu.apk.parser.exception.ParserException;
+import net.dongliu.apk.parser.parser.*;
+import net.dongliu.apk.parser.struct.AndroidConstants;
+import net.dongliu.apk.parser.struct.resource.ResourceTable;
+import net.dongliu.apk.parser.utils.ParseUtils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parse an app distributed as a base apk and split apks, as separate files or in a .apks / .xapk container.
+ * <p>
+ * The manifests and resource tables of all splits are parsed in parallel. The resource tables are merged into one,
+ * so resource values are looked up in one table whichever split holds them, e.g. density specific drawables in
+ * config splits. Nested apks in a container are read into memory, not extracted to disk.
+ * This class is not thread-safe.
+ *
+ * @author dongliu
+ */
+public class ApkBundle implements Closeable {
+
+    private final List<Split> splits;
+
+    private ParseLimits parseLimits = new ParseLimits();
+    private CancellationToken cancellationToken = CancellationToken.NONE;
+    private StringInterner stringInterner = StringInterner.NONE;
+    private DeviceProfile deviceProfile = DeviceProfile.of(Locale.US);
+    private boolean parseComponents;
+    private ForkJoinPool pool;
+    // uncompressed bytes read from all splits
+    private final AtomicLong inflatedBytes = new AtomicLong();
+
+    private ResourceTable resourceTable;
+    private Set<Locale> locales;
+    private List<ApkMeta> splitApkMetas;
+    private ApkMeta apkMeta;
+
+    private ApkBundle(List<Split> splits) {
+        this.splits = splits;
+    }
+
+    /**
+     * Open the base apk and split apk files of one app.
+     */
+    public ApkBundle(File... apkFiles) throws IOException {
+        this(new ArrayList<Split>());
+        try {
+            for (File apkFile : apkFiles) {
+                if (!apkFile.isFile()) {
+                    throw new FileNotFoundException(apkFile.getPath());
+                }
+                addSplit(apkFile.getName(), new ApkFile(apkFile));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        if (splits.isEmpty()) {
+            throw new ParserException("No apk in bundle");
+        }
+    }
+
+    /**
+     * Parse the base apk and split apks of one app in memory.
+     *
+     * @param apks the apk data by split file name
+     */
+    public ApkBundle(Map<String, byte[]> apks) {
+        this(new ArrayList<Split>());
+        if (apks.isEmpty()) {
+            throw new ParserException("No apk in bundle");
+        }
+        for (Map.Entry<String, byte[]> entry : apks.entrySet()) {
+            addSplit(entry.getKey(), new ByteArrayApkFile(entry.getValue()));
+        }
+    }
+
+    private void addSplit(String name, AbstractApkFile apkFile) {
+        // the total limit applies to all splits
+        apkFile.setInflatedBytes(inflatedBytes);
+        splits.add(new Split(name, apkFile));
+    }
+
+    /**
+     * Open a .apks (bundletool) or .xapk container. For .apks, only the apks under splits/ are used if there are
+     * any, the standalone and universal apks are alternatives of them.
+     */
+    public static ApkBundle openContainer(File containerFile) throws IOException {
+        return openContainer(containerFile, new ParseLimits());
+    }
+
+    /**
+     * Open a .apks or .xapk container, nested apks are read within the limits.
+     */
+    public static ApkBundle openContainer(File containerFile, ParseLimits parseLimits) throws IOException {
+        Map<String, byte[]> apks = new LinkedHashMap<>();
+        Map<String, byte[]> splitApks = new LinkedHashMap<>();
+        // the container is read as an apk, the sizes are checked before a nested apk is read
+        try (ApkFile container = new ApkFile(containerFile)) {
+            container.setParseLimits(parseLimits);
+            for (ArchiveEntry entry : container.getEntries()) {
+                if (entry.isDirectory() || !entry.getName().endsWith(".apk")) {
+                    continue;
+                }
+                byte[] data = container.getFileData(entry.getName());
+                if (entry.getName().startsWith("splits/")) {
+                    splitApks.put(entry.getName(), data);
+                } else {
+                    apks.put(entry.getName(), data);
+                }
+            }
+            ApkBundle bundle = new ApkBundle(splitApks.isEmpty() ? apks : splitApks);
+            bundle.setParseLimits(parseLimits);
+            // the nested apks count against the same total limit as the files read from them
+            bundle.inflatedBytes.set(container.getInflatedBytes());
+            return bundle;
+        }
+    }
+
+    /**
+     * The app meta merged from all splits: the base apk meta, with permissions, features and components declared
+     * by feature splits added.
+     */
+    public ApkMeta getApkMeta() throws IOException {
+        if (apkMeta == null) {
+            parse();
+        }
+        return apkMeta;
+    }
+
+    /**
+     * The meta of each split, in the order the splits are given. Use {@link ApkMeta#getSplit()} to get the split
+     * name.
+     */
+    public List<ApkMeta> getSplitApkMetas() throws IOException {
+        if (splitApkMetas == null) {
+            parse();
+        }
+        return splitApkMetas;
+    }
+
+    /**
+     * The locales of all splits.
+     */
+    public Set<Locale> getLocales() throws IOException {
+        if (locales == null) {
+            parse();
+        }
+        return locales;
+    }
+
+    /**
+     * The resource table merged from all splits.
+     */
+    public ResourceTable getResourceTable() throws IOException {
+        if (resourceTable == null) {
+            parse();
+        }
+        return resourceTable;
+    }
+
+    /**
+     * Get the value of a resource of any split, for all locales of the bundle.
+     *
+     * @return the values by locale, empty if resource not found
+     */
+    public Map<Locale, String> getResourceValues(long resourceId) throws IOException {
+        return ParseUtils.getResourceById(resourceId, getResourceTable(), getLocales(), deviceProfile);
+    }
+
+    /**
+     * Get the application label for all locales, see {@link AbstractApkFile#getLabels()}.
+     */
+    public Map<Locale, String> getLabels() throws IOException {
+        ApkMeta apkMeta = getApkMeta();
+        if (apkMeta.getLabelResourceId() != null) {
+            return getResourceValues(apkMeta.getLabelResourceId());
+        }
+        if (apkMeta.getLabel() == null) {
+            return Collections.emptyMap();
+        }
+        return Collections.singletonMap(Locales.any, apkMeta.getLabel());
+    }
+
+    private void parse() throws IOException {
+        int count = splits.size();
+        byte[][] manifests = new byte[count][];
+        ResourceTable[] tables = new ResourceTable[count];
+        List<Set<Locale>> splitLocales = new ArrayList<>(Collections.<Set<Locale>>nCopies(count, null));
+        ApkMeta[] metas = new ApkMeta[count];
+
+        ForkJoinPool pool = this.pool == null ? new ForkJoinPool(Math.min(count,
+                Runtime.getRuntime().availableProcessors())) : this.pool;
+        try {
+            pool.invoke(new SplitTask(this, 0, count, manifests, tables, splitLocales, null));
+
+            ResourceTable merged = new ResourceTable();
+            merged.setParseLimits(parseLimits);
+            Set<Locale> mergedLocales = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                merged.merge(tables[i]);
+                mergedLocales.addAll(splitLocales.get(i));
+            }
+            merged.freeze();
+            this.resourceTable = merged;
+            this.locales = mergedLocales;
+
+            // the merged table is only read from now, so can be shared by the manifest parsers
+            pool.invoke(new SplitTask(this, 0, count, manifests, tables, splitLocales, metas));
+        } catch (SplitException e) {
+            throw e.getCause();
+        } finally {
+            if (pool != this.pool) {
+                pool.shutdown();
+            }
+        }
+
+        this.splitApkMetas = Collections.unmodifiableList(Arrays.asList(metas));
+        int base = 0;
+        for (int i = 0; i < count; i++) {
+            if (metas[i].getSplit() == null) {
+                base = i;
+                break;
+            }
+        }
+        // translate the base manifest again, so the split metas are not changed by merging
+        this.apkMeta = translateManifest(manifests[base]);
+        for (int i = 0; i < count; i++) {
+            if (i != base) {
+                mergeApkMeta(apkMeta, metas[i]);
+            }
+        }
+    }
+
+    /**
+     * @return null if name is null or not found
+     */
+    private static Permission findPermission(ApkMeta apkMeta, String name) {
+        if (name != null) {
+            for (Permission permission : apkMeta.getPermissions()) {
+                if (name.equals(permission.getName())) {
+                    return permission;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return null if not found
+     */
+    private static UseFeature findUseFeature(ApkMeta apkMeta, String name) {
+        if (name != null) {
+            for (UseFeature useFeature : apkMeta.getUsesFeatures()) {
+                if (name.equals(useFeature.getName())) {
+                    return useFeature;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void mergeApkMeta(ApkMeta merged, ApkMeta meta) {
+        for (String permission : meta.getUsesPermissions()) {
+            if (!merged.getUsesPermissions().contains(permission)) {
+                merged.addUsesPermission(permission);
+            }
+        }
+        for (Permission permission : meta.getPermissions()) {
+            if (findPermission(merged, permission.getName()) == null) {
+                merged.addPermission(permission);
+            }
+        }
+        for (UseFeature useFeature : meta.getUsesFeatures()) {
+            UseFeature existing = findUseFeature(merged, useFeature.getName());
+            if (existing == null) {
+                merged.addUseFeatures(useFeature);
+            } else if (useFeature.isRequired()) {
+                // required if any split requires it
+                existing.setRequired(true);
+            }
+        }
+        List<AndroidComponent> components = new ArrayList<>();
+        components.addAll(meta.getActivities());
+        components.addAll(meta.getServices());
+        components.addAll(meta.getReceivers());
+        components.addAll(meta.getProviders());
+        for (AndroidComponent component : components) {
+            merged.addComponent(component);
+        }
+    }
+
+    private ApkMeta translateManifest(byte[] data) {
+        ApkMetaTranslator translator = new ApkMetaTranslator(parseComponents);
+        BinaryXmlParser binaryXmlParser = new BinaryXmlParser(ByteBuffer.wrap(data), resourceTable);
+        binaryXmlParser.setParseLimits(parseLimits);
+        binaryXmlParser.setCancellationToken(cancellationToken);
+        binaryXmlParser.setStringInterner(stringInterner);
+        binaryXmlParser.setDeviceProfile(deviceProfile);
+        binaryXmlParser.setXmlStreamer(translator);
+        binaryXmlParser.parse();
+        return translator.getApkMeta();
+    }
+
+    private void parseSplit(int index, byte[][] manifests, ResourceTable[] tables,
+                            List<Set<Locale>> splitLocales) throws IOException {
+        Split split = splits.get(index);
+        split.apkFile.setParseLimits(parseLimits);
+        split.apkFile.setCancellationToken(cancellationToken);
+        byte[] manifest = split.apkFile.getFileData(AndroidConstants.MANIFEST_FILE);
+        if (manifest == null) {
+            throw new ParserException("Manifest file not found in " + split.name);
+        }
+        manifests[index] = manifest;
+        byte[] resource = split.apkFile.getFileData(AndroidConstants.RESOURCE_FILE);
+        if (resource == null) {
+            tables[index] = new ResourceTable();
+            splitLocales.set(index, Collections.<Locale>emptySet());
+            return;
+        }
+        ResourceTableParser resourceTableParser = new ResourceTableParser(ByteBuffer.wrap(resource));
+        resourceTableParser.setParseLimits(parseLimits);
+        resourceTableParser.setCancellationToken(cancellationToken);
+        resourceTableParser.setStringInterner(stringInterner);
+        resourceTableParser.parse();
+        tables[index] = resourceTableParser.getResourceTable();
+        splitLocales.set(index, resourceTableParser.getLocales());
+    }
+
+    /**
+     * Parse splits, each split is a fork-join task. Read files and resource tables if metas is null, otherwise
+     * translate manifests.
+     */
+    private static class SplitTask extends RecursiveAction {
+        private final ApkBundle bundle;
+        private final int from;
+        private final int to;
+        private final byte[][] manifests;
+        private final ResourceTable[] tables;
+        private final List<Set<Locale>> splitLocales;
+        private final ApkMeta[] metas;
+
+        SplitTask(ApkBundle bundle, int from, int to, byte[][] manifests, ResourceTable[] tables,
+                  List<Set<Locale>> splitLocales, ApkMeta[] metas) {
+            this.bundle = bundle;
+            this.from = from;
+            this.to = to;
+            this.manifests = manifests;
+            this.tables = tables;
+            this.splitLocales = splitLocales;
+            this.metas = metas;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (to > from) {
+                    if (metas == null) {
+                        try {
+                            bundle.parseSplit(from, manifests, tables, splitLocales);
+                        } catch (IOException e) {
+                            throw new SplitException(e);
+                        }
+                    } else {
+                        metas[from] = bundle.translateManifest(manifests[from]);
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SplitTask(bundle, from, middle, manifests, tables, splitLocales, metas),
+                    new SplitTask(bundle, middle, to, manifests, tables, splitLocales, metas));
+        }
+    }
+
+    // carry IOException of reading splits out of fork-join tasks
+    private static class SplitException extends ParserException {
+        SplitException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * One apk of the bundle, read by the entry reader of apk files
+     */
+    private static class Split implements Closeable {
+        final String name;
+        final AbstractApkFile apkFile;
+
+        Split(String name, AbstractApkFile apkFile) {
+            this.name = name;
+            this.apkFile = apkFile;
+        }
+
+        @Override
+        public void close() throws IOException {
+            apkFile.close();
+        }
+    }
+
+    public ParseLimits getParseLimits() {
+        return parseLimits;
+    }
+
+    /**
+     * Set limits for parsing untrusted apk files, the total inflated bytes limit applies to all splits.
+     * Should be set before any parsing.
+     */
+    public void setParseLimits(ParseLimits parseLimits) {
+        this.parseLimits = parseLimits;
+    }
+
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    public StringInterner getStringInterner() {
+        return stringInterner;
+    }
+
+    public void setStringInterner(StringInterner stringInterner) {
+        this.stringInterner = stringInterner;
+    }
+
+    public DeviceProfile getDeviceProfile() {
+        return deviceProfile;
+    }
+
+    /**
+     * The device to select resource values for. Should be set before any parsing.
+     */
+    public void setDeviceProfile(DeviceProfile deviceProfile) {
+        if (deviceProfile == null) {
+            throw new IllegalArgumentException("Device profile is null");
+        }
+        this.deviceProfile = deviceProfile;
+    }
+
+    public boolean isParseComponents() {
+        return parseComponents;
+    }
+
+    public void setParseComponents(boolean parseComponents) {
+        this.parseComponents = parseComponents;
+    }
+
+    /**
+     * The pool to parse splits in parallel. If not set, a pool is created for each parse and shut down after.
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+        for (Split split : splits) {
+            try {
+                split.close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
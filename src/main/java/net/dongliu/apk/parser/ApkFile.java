@@ -1,17 +1,17 @@
 package net.dongliu.apk.parser;
 
 import net.dongliu.apk.parser.bean.ApkSignStatus;
-import net.dongliu.apk.parser.utils.Utils;
+import net.dongliu.apk.parser.utils.ZipSource;
 
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Enumeration;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 
 /**
@@ -22,13 +22,11 @@ import java.util.zip.ZipFile;
  */
 public class ApkFile extends AbstractApkFile implements Closeable {
 
-    private final ZipFile zf;
     private File apkFile;
+    private FileChannel channel;
 
     public ApkFile(File apkFile) throws IOException {
         this.apkFile = apkFile;
-        // create zip file cost time, use one zip file for apk parser life cycle
-        this.zf = new ZipFile(apkFile);
     }
 
     public ApkFile(String filePath) throws IOException {
@@ -37,61 +35,49 @@ public class ApkFile extends AbstractApkFile implements Closeable {
 
     @Override
     protected byte[] getCertificateData() throws IOException {
-        ZipEntry entry = null;
-        Enumeration<? extends ZipEntry> enu = zf.entries();
-        while (enu.hasMoreElements()) {
-            ZipEntry ne = enu.nextElement();
-            if (ne.isDirectory()) {
-                continue;
-            }
-            if (ne.getName().toUpperCase().endsWith(".RSA") || ne.getName().toUpperCase().endsWith(".DSA")) {
-                entry = ne;
-                break;
-            }
-        }
-        if (entry == null) {
-            return null;
-        }
-        return Utils.toByteArray(zf.getInputStream(entry));
+        return readCertificateFileData();
     }
 
     @Override
     public byte[] getFileData(String path) throws IOException {
-        ZipEntry entry = zf.getEntry(path);
-        if (entry == null) {
-            return null;
-        }
-
-        InputStream inputStream = zf.getInputStream(entry);
-        return Utils.toByteArray(inputStream);
+        return readFileData(path);
     }
 
+    @Override
+    protected ZipSource openZipSource() throws IOException {
+        // one channel for apk parser life cycle, positional reads can be shared by threads
+        if (channel == null) {
+            channel = FileChannel.open(apkFile.toPath(), StandardOpenOption.READ);
+        }
+        return ZipSource.of(channel, false);
+    }
 
     @Override
     public ApkSignStatus verifyApk() throws IOException {
-        ZipEntry entry = zf.getEntry("META-INF/MANIFEST.MF");
-        if (entry == null) {
+        if (getEntry("META-INF/MANIFEST.MF") == null) {
             // apk is not signed;
             return ApkSignStatus.notSigned;
         }
 
-        JarFile jarFile = new JarFile(this.apkFile);
-        Enumeration<JarEntry> entries = jarFile.entries();
-        byte[] buffer = new byte[8192];
+        // the jar file is only needed for verifying signatures
+        try (JarFile jarFile = new JarFile(this.apkFile)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            byte[] buffer = new byte[8192];
 
-        while (entries.hasMoreElements()) {
-            JarEntry e = entries.nextElement();
-            if (e.isDirectory()) {
-                continue;
-            }
-            try (InputStream in = jarFile.getInputStream(e)) {
-                // Read in each jar entry. A security exception will be thrown if a signature/digest check fails.
-                int count;
-                while ((count = in.read(buffer, 0, buffer.length)) != -1) {
-                    // Don't care
+            while (entries.hasMoreElements()) {
+                JarEntry e = entries.nextElement();
+                if (e.isDirectory()) {
+                    continue;
+                }
+                try (InputStream in = jarFile.getInputStream(e)) {
+                    // Read in each jar entry. A security exception will be thrown if a signature/digest check fails.
+                    int count;
+                    while ((count = in.read(buffer, 0, buffer.length)) != -1) {
+                        // Don't care
+                    }
+                } catch (SecurityException se) {
+                    return ApkSignStatus.incorrect;
                 }
-            } catch (SecurityException se) {
-                return ApkSignStatus.incorrect;
             }
         }
         return ApkSignStatus.signed;
@@ -100,6 +86,8 @@ public class ApkFile extends AbstractApkFile implements Closeable {
     @Override
     public void close() throws IOException {
         super.close();
-        zf.close();
+        if (channel != null) {
+            channel.close();
+        }
     }
 }
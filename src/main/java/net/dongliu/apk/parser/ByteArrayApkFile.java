@@ -1,14 +1,10 @@
 package net.dongliu.apk.parser;
 
 import net.dongliu.apk.parser.bean.ApkSignStatus;
-import net.dongliu.apk.parser.utils.Utils;
+import net.dongliu.apk.parser.utils.ZipSource;
 
-import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 /**
  * Parse apk file from byte array.
@@ -26,30 +22,17 @@ public class ByteArrayApkFile extends AbstractApkFile implements Closeable {
 
     @Override
     protected byte[] getCertificateData() throws IOException {
-        try (InputStream in = new ByteArrayInputStream(apkData);
-             ZipInputStream zis = new ZipInputStream(in)) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                if (entry.getName().toUpperCase().endsWith(".RSA") || entry.getName().toUpperCase().endsWith(".DSA")) {
-                    return Utils.toByteArray(zis);
-                }
-            }
-        }
-        return null;
+        return readCertificateFileData();
     }
 
     @Override
     public byte[] getFileData(String path) throws IOException {
-        try (InputStream in = new ByteArrayInputStream(apkData);
-             ZipInputStream zis = new ZipInputStream(in)) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                if (path.equals(entry.getName())) {
-                    return Utils.toByteArray(zis);
-                }
-            }
-        }
-        return null;
+        return readFileData(path);
+    }
+
+    @Override
+    protected ZipSource openZipSource() {
+        return ZipSource.of(apkData);
     }
 
     @Override
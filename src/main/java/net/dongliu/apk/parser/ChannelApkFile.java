@@ -0,0 +1,104 @@
+package net.dongliu.apk.parser;
+
+import net.dongliu.apk.parser.bean.ApkSignStatus;
+import net.dongliu.apk.parser.utils.CachedZipSource;
+import net.dongliu.apk.parser.utils.ZipSource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Parse apk from a seekable byte channel, or any source with positional reads, e.g. a remote object read by ranges.
+ * The zip central directory is located from the tail of apk, and only the data of entries used is read, through a
+ * LRU block cache with read-ahead.
+ * This class is not thread-safe.
+ *
+ * @author dongliu
+ */
+public class ChannelApkFile extends AbstractApkFile implements Closeable {
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAX_BLOCKS = 64;
+    public static final int DEFAULT_READ_AHEAD_BLOCKS = 3;
+
+    // the source under cache
+    private final ZipSource rawSource;
+    private final CachedZipSource source;
+
+    /**
+     * The channel is closed when this apk file is closed.
+     */
+    public ChannelApkFile(SeekableByteChannel channel) {
+        this(ZipSource.of(channel, true));
+    }
+
+    /**
+     * The source is closed when this apk file is closed.
+     */
+    public ChannelApkFile(ZipSource source) {
+        this(source, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_BLOCKS, DEFAULT_READ_AHEAD_BLOCKS);
+    }
+
+    /**
+     * The source is closed when this apk file is closed.
+     *
+     * @see CachedZipSource#CachedZipSource(ZipSource, int, int, int)
+     */
+    public ChannelApkFile(ZipSource source, int blockSize, int maxBlocks, int readAheadBlocks) {
+        this.rawSource = source;
+        this.source = new CachedZipSource(source, blockSize, maxBlocks, readAheadBlocks);
+    }
+
+    @Override
+    protected byte[] getCertificateData() throws IOException {
+        return readCertificateFileData();
+    }
+
+    @Override
+    public byte[] getFileData(String path) throws IOException {
+        return readFileData(path);
+    }
+
+    @Override
+    protected ZipSource openZipSource() {
+        // the cache is kept open until this apk file is closed
+        return unclosed(source);
+    }
+
+    @Override
+    protected ZipSource openSequentialSource() {
+        return unclosed(rawSource);
+    }
+
+    private static ZipSource unclosed(final ZipSource source) {
+        return new ZipSource() {
+            @Override
+            public long size() throws IOException {
+                return source.size();
+            }
+
+            @Override
+            public void read(long position, byte[] buffer, int offset, int length) throws IOException {
+                source.read(position, buffer, offset, length);
+            }
+        };
+    }
+
+    /**
+     * The block cache, for cache statistics
+     */
+    public CachedZipSource getCachedSource() {
+        return source;
+    }
+
+    @Override
+    public ApkSignStatus verifyApk() throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        source.close();
+    }
+}
@@ -3,61 +3,105 @@ package net.dongliu.apk.parser;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import net.dongliu.apk.parser.bean.ApkSignStatus;
 import net.dongliu.apk.parser.utils.BlockMemoryStream;
-import net.dongliu.apk.parser.utils.InputBlockMemoryStream;
 import net.dongliu.apk.parser.utils.StreamUtils;
-import net.dongliu.apk.parser.utils.Utils;
+import net.dongliu.apk.parser.utils.ZipSource;
 
 public class InputStreamApkFile extends AbstractApkFile implements Closeable {
     final BlockMemoryStream cms;
+    // sources opened and not closed yet, the stream blocks are disposed only when no source reads them
+    private int openSources;
+    private boolean closed;
 
     public InputStreamApkFile(InputStream is) throws Exception {
+        this(is, new String[0]);
+    }
+
+    /**
+     * Read the stream, and compute the digests of the given algorithms in the same pass, see {@link #getDigests()}.
+     * If no algorithm given, the digests are computed from the copy of stream when first used.
+     */
+    public InputStreamApkFile(InputStream is, String... digestAlgorithms) throws Exception {
         cms = new BlockMemoryStream();
         cms.setDisableDispose(true);
 
-        StreamUtils.writeStreamToStream(is, cms);
+        if (digestAlgorithms.length == 0) {
+            StreamUtils.writeStreamToStream(is, cms);
+            return;
+        }
+        setDigestAlgorithms(digestAlgorithms);
+        MessageDigest[] messageDigests = newDigests(getDigestAlgorithms());
+        StreamUtils.writeStreamToStream(is, cms, DIGEST_BLOCK_SIZE, messageDigests);
+        setDigests(messageDigests);
     }
 
     @Override
-    protected byte[] getCertificateData() {
-        try (final ZipInputStream zis = new ZipInputStream(new InputBlockMemoryStream(cms, true))) {
-
-            ZipEntry entry = null;
-            while ((entry = zis.getNextEntry()) != null) {
-                if (entry.getName().toUpperCase().endsWith(".RSA") || entry.getName().toUpperCase().endsWith(".DSA")) {
-                    return Utils.toByteArray(zis);
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return null;
+    protected byte[] getCertificateData() throws IOException {
+        return readCertificateFileData();
     }
 
     @Override
     public byte[] getFileData(String path) throws IOException {
-        try (final ZipInputStream zis = new ZipInputStream(new InputBlockMemoryStream(cms, true))) {
+        return readFileData(path);
+    }
 
-            ZipEntry entry = null;
-            while ((entry = zis.getNextEntry()) != null) {
-                if (path.equals(entry.getName())) {
-                    return Utils.toByteArray(zis);
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+    @Override
+    protected synchronized ZipSource openZipSource() throws IOException {
+        if (closed) {
+            throw new IOException("Apk file is closed");
         }
-        return null;
+        openSources++;
+        return new StreamSource();
     }
 
     @Override
     public void close() throws IOException {
         super.close();
-        this.cms.close();
+        synchronized (this) {
+            closed = true;
+            disposeIfUnused();
+        }
+    }
+
+    private synchronized void sourceClosed() {
+        openSources--;
+        disposeIfUnused();
+    }
+
+    private void disposeIfUnused() {
+        if (closed && openSources == 0) {
+            // return the blocks to pool, after the readers in flight are done
+            BlockMemoryStream.safeDispose(this.cms);
+        }
+    }
+
+    /**
+     * Source of the stream counted by the apk file, so the stream blocks are not reused while it is being read.
+     */
+    private class StreamSource extends ZipSource {
+        private final ZipSource source = ZipSource.of(cms);
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        @Override
+        public long size() throws IOException {
+            return source.size();
+        }
+
+        @Override
+        public void read(long position, byte[] buffer, int offset, int length) throws IOException {
+            source.read(position, buffer, offset, length);
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                sourceClosed();
+            }
+        }
     }
 
     @Override
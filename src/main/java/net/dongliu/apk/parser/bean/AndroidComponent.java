@@ -0,0 +1,149 @@
+package net.dongliu.apk.parser.bean;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Activity, activity-alias, service, receiver or provider declared in AndroidManifest.xml
+ *
+ * @author dongliu
+ */
+public class AndroidComponent {
+    private ComponentType type;
+    private String name;
+    @Nullable
+    private Boolean exported;
+    private boolean enabled = true;
+    @Nullable
+    private String permission;
+    @Nullable
+    private String process;
+    // for activity-alias
+    @Nullable
+    private String targetActivity;
+    // for provider
+    @Nullable
+    private String authorities;
+    // most components have no intent filter or meta data, allocated when the first one is added
+    private List<IntentFilter> intentFilters;
+    private List<MetaData> metaData;
+
+    public ComponentType getType() {
+        return type;
+    }
+
+    public void setType(ComponentType type) {
+        this.type = type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * The android:exported value declared in manifest, null if not declared.
+     */
+    @Nullable
+    public Boolean getExported() {
+        return exported;
+    }
+
+    public void setExported(@Nullable Boolean exported) {
+        this.exported = exported;
+    }
+
+    /**
+     * If this component can be launched by other apps.
+     * When android:exported is not declared, activities, services and receivers are exported if they have intent
+     * filters; providers are not exported, which is the default since target sdk 17.
+     */
+    public boolean isExported() {
+        if (exported != null) {
+            return exported;
+        }
+        return type != ComponentType.provider && intentFilters != null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Nullable
+    public String getPermission() {
+        return permission;
+    }
+
+    public void setPermission(@Nullable String permission) {
+        this.permission = permission;
+    }
+
+    @Nullable
+    public String getProcess() {
+        return process;
+    }
+
+    public void setProcess(@Nullable String process) {
+        this.process = process;
+    }
+
+    @Nullable
+    public String getTargetActivity() {
+        return targetActivity;
+    }
+
+    public void setTargetActivity(@Nullable String targetActivity) {
+        this.targetActivity = targetActivity;
+    }
+
+    @Nullable
+    public String getAuthorities() {
+        return authorities;
+    }
+
+    public void setAuthorities(@Nullable String authorities) {
+        this.authorities = authorities;
+    }
+
+    public List<IntentFilter> getIntentFilters() {
+        if (intentFilters == null) {
+            return Collections.emptyList();
+        }
+        return intentFilters;
+    }
+
+    public void addIntentFilter(IntentFilter intentFilter) {
+        if (intentFilters == null) {
+            intentFilters = new ArrayList<>(2);
+        }
+        intentFilters.add(intentFilter);
+    }
+
+    public List<MetaData> getMetaData() {
+        if (metaData == null) {
+            return Collections.emptyList();
+        }
+        return metaData;
+    }
+
+    public void addMetaData(MetaData metaData) {
+        if (this.metaData == null) {
+            this.metaData = new ArrayList<>(2);
+        }
+        this.metaData.add(metaData);
+    }
+
+    @Override
+    public String toString() {
+        return type + ": " + name;
+    }
+}
@@ -0,0 +1,108 @@
+package net.dongliu.apk.parser.bean;
+
+import net.dongliu.apk.parser.utils.Utils;
+
+import java.util.Arrays;
+
+/**
+ * Fingerprint of apk contents, from the name, crc32 and uncompressed size of entries in the zip central directory.
+ * Timestamps, entry order and compression do not change the fingerprint.
+ *
+ * @author dongliu
+ */
+public class ApkFingerprint {
+    private final FingerprintScope scope;
+    private final byte[] digest;
+    private final long[] entryHashes;
+
+    /**
+     * @param digest      the sha-256 digest of the sorted entries
+     * @param entryHashes the sorted 64-bit hashes of entries
+     */
+    public ApkFingerprint(FingerprintScope scope, byte[] digest, long[] entryHashes) {
+        this.scope = scope;
+        this.digest = digest;
+        this.entryHashes = entryHashes;
+    }
+
+    public FingerprintScope getScope() {
+        return scope;
+    }
+
+    /**
+     * The sha-256 digest, equal for apks with the same entries in scope
+     */
+    public byte[] getDigest() {
+        return digest.clone();
+    }
+
+    /**
+     * The digest as lower case hex string, for cache keys
+     */
+    public String getHex() {
+        return Utils.toHex(digest);
+    }
+
+    /**
+     * The count of entries in scope
+     */
+    public int getEntryCount() {
+        return entryHashes.length;
+    }
+
+    /**
+     * The sorted 64-bit hashes of entries in scope
+     */
+    public long[] getEntryHashes() {
+        return entryHashes.clone();
+    }
+
+    /**
+     * The jaccard similarity of entries with another fingerprint, from 0 to 1, for detecting near-duplicate apks.
+     * 1 if both have no entries.
+     */
+    public double similarity(ApkFingerprint other) {
+        long[] a = entryHashes;
+        long[] b = other.entryHashes;
+        if (a.length == 0 && b.length == 0) {
+            return 1;
+        }
+        int common = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) common / (a.length + b.length - common);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ApkFingerprint that = (ApkFingerprint) o;
+        return scope == that.scope && Arrays.equals(digest, that.digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * scope.hashCode() + Arrays.hashCode(digest);
+    }
+
+    @Override
+    public String toString() {
+        return scope + ":" + getHex();
+    }
+}
@@ -2,6 +2,7 @@ package net.dongliu.apk.parser.bean;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -10,7 +11,16 @@ import java.util.List;
 public class ApkMeta {
 
     private String packageName;
+    // the split name, null for base apk
+    @Nullable
+    private String split;
     private String label;
+    private String description;
+    // the resource ids label and description reference to, null if literal value or not set
+    @Nullable
+    private Long labelResourceId;
+    @Nullable
+    private Long descriptionResourceId;
     private String icon;
     private String versionName;
     private Long versionCode;
@@ -29,6 +39,13 @@ public class ApkMeta {
     private List<UseFeature> usesFeatures = new ArrayList<>();
     private List<Permission> permissions = new ArrayList<>();
 
+    // only filled when component parsing is enabled, allocated when the first element is added
+    private List<AndroidComponent> activities;
+    private List<AndroidComponent> services;
+    private List<AndroidComponent> receivers;
+    private List<AndroidComponent> providers;
+    private List<MetaData> metaData;
+
     public String getPackageName() {
         return packageName;
     }
@@ -37,6 +54,20 @@ public class ApkMeta {
         this.packageName = packageName;
     }
 
+    /**
+     * The split name of a split apk, e.g. config.xxhdpi.
+     *
+     * @return null for base apk
+     */
+    @Nullable
+    public String getSplit() {
+        return split;
+    }
+
+    public void setSplit(@Nullable String split) {
+        this.split = split;
+    }
+
     public String getVersionName() {
         return versionName;
     }
@@ -117,6 +148,32 @@ public class ApkMeta {
         this.label = label;
     }
 
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    @Nullable
+    public Long getLabelResourceId() {
+        return labelResourceId;
+    }
+
+    public void setLabelResourceId(@Nullable Long labelResourceId) {
+        this.labelResourceId = labelResourceId;
+    }
+
+    @Nullable
+    public Long getDescriptionResourceId() {
+        return descriptionResourceId;
+    }
+
+    public void setDescriptionResourceId(@Nullable Long descriptionResourceId) {
+        this.descriptionResourceId = descriptionResourceId;
+    }
+
     public boolean isAnyDensity() {
         return anyDensity;
     }
@@ -181,6 +238,78 @@ public class ApkMeta {
         return this.permissions;
     }
 
+    /**
+     * Activities and activity-aliases. Empty if component parsing is not enabled.
+     */
+    public List<AndroidComponent> getActivities() {
+        return activities == null ? Collections.<AndroidComponent>emptyList() : activities;
+    }
+
+    /**
+     * Empty if component parsing is not enabled.
+     */
+    public List<AndroidComponent> getServices() {
+        return services == null ? Collections.<AndroidComponent>emptyList() : services;
+    }
+
+    /**
+     * Empty if component parsing is not enabled.
+     */
+    public List<AndroidComponent> getReceivers() {
+        return receivers == null ? Collections.<AndroidComponent>emptyList() : receivers;
+    }
+
+    /**
+     * Empty if component parsing is not enabled.
+     */
+    public List<AndroidComponent> getProviders() {
+        return providers == null ? Collections.<AndroidComponent>emptyList() : providers;
+    }
+
+    public void addComponent(AndroidComponent component) {
+        switch (component.getType()) {
+            case activity:
+            case activityAlias:
+                if (activities == null) {
+                    activities = new ArrayList<>();
+                }
+                activities.add(component);
+                break;
+            case service:
+                if (services == null) {
+                    services = new ArrayList<>();
+                }
+                services.add(component);
+                break;
+            case receiver:
+                if (receivers == null) {
+                    receivers = new ArrayList<>();
+                }
+                receivers.add(component);
+                break;
+            case provider:
+                if (providers == null) {
+                    providers = new ArrayList<>();
+                }
+                providers.add(component);
+                break;
+        }
+    }
+
+    /**
+     * The meta-data of application. Empty if component parsing is not enabled.
+     */
+    public List<MetaData> getMetaData() {
+        return metaData == null ? Collections.<MetaData>emptyList() : metaData;
+    }
+
+    public void addMetaData(MetaData metaData) {
+        if (this.metaData == null) {
+            this.metaData = new ArrayList<>(4);
+        }
+        this.metaData.add(metaData);
+    }
+
     @Override
     public String toString() {
         return "packageName: \t" + packageName + "\n"
@@ -0,0 +1,150 @@
+package net.dongliu.apk.parser.bean;
+
+import net.dongliu.apk.parser.exception.ParserException;
+
+import java.io.IOException;
+
+/**
+ * An entry of the apk zip archive, read from the central directory, without the entry data. The local header is read
+ * for the data offset only when needed.
+ *
+ * @author dongliu
+ */
+public class ArchiveEntry {
+    public static final int STORED = 0;
+    public static final int DEFLATED = 8;
+
+    private final String name;
+    private final int method;
+    private final long crc;
+    private final long compressedSize;
+    private final long size;
+    private final long localHeaderOffset;
+    // -1 until the local header is read
+    private volatile long dataOffset;
+    private final LocalHeaderReader localHeaderReader;
+
+    /**
+     * Read the local file header of an entry for the data offset, e.g. by opening the archive again.
+     */
+    public interface LocalHeaderReader {
+        long readDataOffset(ArchiveEntry entry) throws IOException;
+    }
+
+    public ArchiveEntry(String name, int method, long crc, long compressedSize, long size, long localHeaderOffset,
+                        long dataOffset) {
+        this(name, method, crc, compressedSize, size, localHeaderOffset, dataOffset, null);
+    }
+
+    /**
+     * An entry of which the data offset is read by localHeaderReader when first used.
+     */
+    public ArchiveEntry(String name, int method, long crc, long compressedSize, long size, long localHeaderOffset,
+                        LocalHeaderReader localHeaderReader) {
+        this(name, method, crc, compressedSize, size, localHeaderOffset, -1, localHeaderReader);
+    }
+
+    private ArchiveEntry(String name, int method, long crc, long compressedSize, long size, long localHeaderOffset,
+                         long dataOffset, LocalHeaderReader localHeaderReader) {
+        this.name = name;
+        this.method = method;
+        this.crc = crc;
+        this.compressedSize = compressedSize;
+        this.size = size;
+        this.localHeaderOffset = localHeaderOffset;
+        this.dataOffset = dataOffset;
+        this.localHeaderReader = localHeaderReader;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isDirectory() {
+        return name.endsWith("/");
+    }
+
+    /**
+     * The compression method, {@link #STORED} or {@link #DEFLATED} for apk files
+     */
+    public int getMethod() {
+        return method;
+    }
+
+    public long getCrc() {
+        return crc;
+    }
+
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    /**
+     * The uncompressed size
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * The offset of local file header in archive
+     */
+    public long getLocalHeaderOffset() {
+        return localHeaderOffset;
+    }
+
+    /**
+     * The offset of entry data in archive, after the local file header. The local header is read at the first call
+     * if the data offset is not known yet.
+     *
+     * @throws ParserException if the local header is invalid, or cannot be read
+     */
+    public long getDataOffset() {
+        long dataOffset = this.dataOffset;
+        if (dataOffset < 0) {
+            if (localHeaderReader == null) {
+                throw new IllegalStateException("Data offset of " + name + " not known");
+            }
+            try {
+                dataOffset = localHeaderReader.readDataOffset(this);
+            } catch (IOException e) {
+                throw new ParserException("Failed to read local header of " + name, e);
+            }
+            this.dataOffset = dataOffset;
+        }
+        return dataOffset;
+    }
+
+    /**
+     * If the data offset is known, without reading the local header
+     */
+    public boolean hasDataOffset() {
+        return dataOffset >= 0;
+    }
+
+    /**
+     * Set the data offset read from the local header, by readers which have the archive open.
+     */
+    public void setDataOffset(long dataOffset) {
+        this.dataOffset = dataOffset;
+    }
+
+    /**
+     * The alignment of entry data in archive: the largest power of two dividing the data offset, at most 4096.
+     * zipalign aligns stored entries to 4 bytes, and stored native libraries to 4096 bytes for mapping them
+     * directly. The local header is read if the data offset is not known yet, see {@link #getDataOffset()}.
+     */
+    public int getAlignment() {
+        long dataOffset = getDataOffset();
+        if (dataOffset == 0) {
+            return 4096;
+        }
+        return (int) Math.min(Long.lowestOneBit(dataOffset), 4096);
+    }
+
+    @Override
+    public String toString() {
+        return "ArchiveEntry{name='" + name + '\'' + ", method=" + method + ", compressedSize=" + compressedSize
+                + ", size=" + size + ", localHeaderOffset=" + localHeaderOffset + '}';
+    }
+}
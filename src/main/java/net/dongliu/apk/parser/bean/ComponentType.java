@@ -0,0 +1,10 @@
+package net.dongliu.apk.parser.bean;
+
+/**
+ * The type of android component declared in AndroidManifest.xml
+ *
+ * @author dongliu
+ */
+public enum ComponentType {
+    activity, activityAlias, service, receiver, provider
+}
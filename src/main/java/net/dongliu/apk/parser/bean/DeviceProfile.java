@@ -0,0 +1,191 @@
+package net.dongliu.apk.parser.bean;
+
+import java.util.Locale;
+
+/**
+ * The device configuration used to select resource values, like android does on a real device.
+ * Zero value of a field means not specified, resources qualified on it are matched but the default ones are
+ * preferred. This class is immutable, the with methods return a new instance.
+ *
+ * @author dongliu
+ */
+public class DeviceProfile {
+    private final Locale locale;
+    private final int density;
+    private final int sdkVersion;
+    private final int smallestScreenWidthDp;
+    private final int screenWidthDp;
+    private final int screenHeightDp;
+    private final int screenLayoutSize;
+    private final int orientation;
+    private final int uiModeType;
+    private final int uiModeNight;
+
+    /**
+     * Create profile only specify the locale.
+     *
+     * @param locale the locale, use Locales.any for not specified
+     */
+    public DeviceProfile(Locale locale) {
+        this(locale, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    private DeviceProfile(Locale locale, int density, int sdkVersion, int smallestScreenWidthDp,
+                          int screenWidthDp, int screenHeightDp, int screenLayoutSize, int orientation,
+                          int uiModeType, int uiModeNight) {
+        this.locale = locale == null ? Locales.any : locale;
+        this.density = density;
+        this.sdkVersion = sdkVersion;
+        this.smallestScreenWidthDp = smallestScreenWidthDp;
+        this.screenWidthDp = screenWidthDp;
+        this.screenHeightDp = screenHeightDp;
+        this.screenLayoutSize = screenLayoutSize;
+        this.orientation = orientation;
+        this.uiModeType = uiModeType;
+        this.uiModeNight = uiModeNight;
+    }
+
+    public static DeviceProfile of(Locale locale) {
+        return new DeviceProfile(locale);
+    }
+
+    public DeviceProfile withLocale(Locale locale) {
+        return new DeviceProfile(locale, density, sdkVersion, smallestScreenWidthDp, screenWidthDp,
+                screenHeightDp, screenLayoutSize, orientation, uiModeType, uiModeNight);
+    }
+
+    /**
+     * @param density the screen dpi, see ResTableConfig.DENSITY_*
+     */
+    public DeviceProfile withDensity(int density) {
+        return new DeviceProfile(locale, density, sdkVersion, smallestScreenWidthDp, screenWidthDp,
+                screenHeightDp, screenLayoutSize, orientation, uiModeType, uiModeNight);
+    }
+
+    public DeviceProfile withSdkVersion(int sdkVersion) {
+        return new DeviceProfile(locale, density, sdkVersion, smallestScreenWidthDp, screenWidthDp,
+                screenHeightDp, screenLayoutSize, orientation, uiModeType, uiModeNight);
+    }
+
+    public DeviceProfile withScreenDp(int smallestScreenWidthDp, int screenWidthDp, int screenHeightDp) {
+        return new DeviceProfile(locale, density, sdkVersion, smallestScreenWidthDp, screenWidthDp,
+                screenHeightDp, screenLayoutSize, orientation, uiModeType, uiModeNight);
+    }
+
+    /**
+     * @param screenLayoutSize see ResTableConfig.SCREENSIZE_*
+     */
+    public DeviceProfile withScreenLayoutSize(int screenLayoutSize) {
+        return new DeviceProfile(locale, density, sdkVersion, smallestScreenWidthDp, screenWidthDp,
+                screenHeightDp, screenLayoutSize, orientation, uiModeType, uiModeNight);
+    }
+
+    /**
+     * @param orientation see ResTableConfig.ORIENTATION_*
+     */
+    public DeviceProfile withOrientation(int orientation) {
+        return new DeviceProfile(locale, density, sdkVersion, smallestScreenWidthDp, screenWidthDp,
+                screenHeightDp, screenLayoutSize, orientation, uiModeType, uiModeNight);
+    }
+
+    /**
+     * @param uiModeType  see ResTableConfig.UI_MODE_TYPE_*
+     * @param uiModeNight see ResTableConfig.UI_MODE_NIGHT_*
+     */
+    public DeviceProfile withUiMode(int uiModeType, int uiModeNight) {
+        return new DeviceProfile(locale, density, sdkVersion, smallestScreenWidthDp, screenWidthDp,
+                screenHeightDp, screenLayoutSize, orientation, uiModeType, uiModeNight);
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    public int getDensity() {
+        return density;
+    }
+
+    public int getSdkVersion() {
+        return sdkVersion;
+    }
+
+    public int getSmallestScreenWidthDp() {
+        return smallestScreenWidthDp;
+    }
+
+    public int getScreenWidthDp() {
+        return screenWidthDp;
+    }
+
+    public int getScreenHeightDp() {
+        return screenHeightDp;
+    }
+
+    public int getScreenLayoutSize() {
+        return screenLayoutSize;
+    }
+
+    public int getOrientation() {
+        return orientation;
+    }
+
+    public int getUiModeType() {
+        return uiModeType;
+    }
+
+    public int getUiModeNight() {
+        return uiModeNight;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        DeviceProfile that = (DeviceProfile) o;
+        return density == that.density
+                && sdkVersion == that.sdkVersion
+                && smallestScreenWidthDp == that.smallestScreenWidthDp
+                && screenWidthDp == that.screenWidthDp
+                && screenHeightDp == that.screenHeightDp
+                && screenLayoutSize == that.screenLayoutSize
+                && orientation == that.orientation
+                && uiModeType == that.uiModeType
+                && uiModeNight == that.uiModeNight
+                && locale.equals(that.locale);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = locale.hashCode();
+        result = 31 * result + density;
+        result = 31 * result + sdkVersion;
+        result = 31 * result + smallestScreenWidthDp;
+        result = 31 * result + screenWidthDp;
+        result = 31 * result + screenHeightDp;
+        result = 31 * result + screenLayoutSize;
+        result = 31 * result + orientation;
+        result = 31 * result + uiModeType;
+        result = 31 * result + uiModeNight;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceProfile{" +
+                "locale=" + locale +
+                ", density=" + density +
+                ", sdkVersion=" + sdkVersion +
+                ", smallestScreenWidthDp=" + smallestScreenWidthDp +
+                ", screenWidthDp=" + screenWidthDp +
+                ", screenHeightDp=" + screenHeightDp +
+                ", screenLayoutSize=" + screenLayoutSize +
+                ", orientation=" + orientation +
+                ", uiModeType=" + uiModeType +
+                ", uiModeNight=" + uiModeNight +
+                '}';
+    }
+}
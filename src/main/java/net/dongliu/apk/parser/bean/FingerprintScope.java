@@ -0,0 +1,51 @@
+package net.dongliu.apk.parser.bean;
+
+import net.dongliu.apk.parser.struct.AndroidConstants;
+
+/**
+ * The entries included in an apk fingerprint. Signature files are never included, so re-signed apks with the same
+ * contents have the same fingerprint.
+ *
+ * @author dongliu
+ */
+public enum FingerprintScope {
+    /**
+     * All entries except signature files
+     */
+    all,
+    /**
+     * Dex files and native libraries
+     */
+    code,
+    /**
+     * The manifest, resources.arsc, res/ and assets/ files
+     */
+    resources;
+
+    public boolean accept(String name) {
+        if (name.endsWith("/") || isSignatureFile(name)) {
+            return false;
+        }
+        switch (this) {
+            case code:
+                return (name.startsWith("classes") && name.endsWith(".dex") && name.indexOf('/') < 0)
+                        || name.startsWith(AndroidConstants.LIB_PREFIX);
+            case resources:
+                return name.equals(AndroidConstants.MANIFEST_FILE) || name.equals(AndroidConstants.RESOURCE_FILE)
+                        || name.startsWith(AndroidConstants.RES_PREFIX)
+                        || name.startsWith(AndroidConstants.ASSETS_PREFIX);
+            default:
+                return true;
+        }
+    }
+
+    private static boolean isSignatureFile(String name) {
+        if (!name.startsWith(AndroidConstants.META_PREFIX) || name.indexOf('/', AndroidConstants.META_PREFIX.length())
+                >= 0) {
+            return false;
+        }
+        String upper = name.toUpperCase();
+        return upper.equals("META-INF/MANIFEST.MF") || upper.endsWith(".SF") || upper.endsWith(".RSA")
+                || upper.endsWith(".DSA") || upper.endsWith(".EC");
+    }
+}
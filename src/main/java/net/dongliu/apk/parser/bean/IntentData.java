@@ -0,0 +1,116 @@
+package net.dongliu.apk.parser.bean;
+
+import javax.annotation.Nullable;
+
+/**
+ * The data tag of intent filter. All fields are nullable.
+ *
+ * @author dongliu
+ */
+public class IntentData {
+    @Nullable
+    private String scheme;
+    @Nullable
+    private String host;
+    @Nullable
+    private String port;
+    @Nullable
+    private String path;
+    @Nullable
+    private String pathPrefix;
+    @Nullable
+    private String pathPattern;
+    @Nullable
+    private String mimeType;
+
+    @Nullable
+    public String getScheme() {
+        return scheme;
+    }
+
+    public void setScheme(@Nullable String scheme) {
+        this.scheme = scheme;
+    }
+
+    @Nullable
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(@Nullable String host) {
+        this.host = host;
+    }
+
+    @Nullable
+    public String getPort() {
+        return port;
+    }
+
+    public void setPort(@Nullable String port) {
+        this.port = port;
+    }
+
+    @Nullable
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(@Nullable String path) {
+        this.path = path;
+    }
+
+    @Nullable
+    public String getPathPrefix() {
+        return pathPrefix;
+    }
+
+    public void setPathPrefix(@Nullable String pathPrefix) {
+        this.pathPrefix = pathPrefix;
+    }
+
+    @Nullable
+    public String getPathPattern() {
+        return pathPattern;
+    }
+
+    public void setPathPattern(@Nullable String pathPattern) {
+        this.pathPattern = pathPattern;
+    }
+
+    @Nullable
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public void setMimeType(@Nullable String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (scheme != null) {
+            sb.append(scheme).append("://");
+        }
+        if (host != null) {
+            sb.append(host);
+        }
+        if (port != null) {
+            sb.append(':').append(port);
+        }
+        if (path != null) {
+            sb.append(path);
+        } else if (pathPrefix != null) {
+            sb.append(pathPrefix).append('*');
+        } else if (pathPattern != null) {
+            sb.append(pathPattern);
+        }
+        if (mimeType != null) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(mimeType);
+        }
+        return sb.toString();
+    }
+}
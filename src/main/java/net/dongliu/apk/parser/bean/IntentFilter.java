@@ -0,0 +1,63 @@
+package net.dongliu.apk.parser.bean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Intent filter of android component
+ *
+ * @author dongliu
+ */
+public class IntentFilter {
+    private List<String> actions;
+    private List<String> categories;
+    private List<IntentData> data;
+
+    public List<String> getActions() {
+        if (actions == null) {
+            return Collections.emptyList();
+        }
+        return actions;
+    }
+
+    public void addAction(String action) {
+        if (actions == null) {
+            actions = new ArrayList<>(2);
+        }
+        actions.add(action);
+    }
+
+    public List<String> getCategories() {
+        if (categories == null) {
+            return Collections.emptyList();
+        }
+        return categories;
+    }
+
+    public void addCategory(String category) {
+        if (categories == null) {
+            categories = new ArrayList<>(2);
+        }
+        categories.add(category);
+    }
+
+    public List<IntentData> getData() {
+        if (data == null) {
+            return Collections.emptyList();
+        }
+        return data;
+    }
+
+    public void addData(IntentData intentData) {
+        if (data == null) {
+            data = new ArrayList<>(2);
+        }
+        data.add(intentData);
+    }
+
+    @Override
+    public String toString() {
+        return "actions: " + getActions() + ", categories: " + getCategories() + ", data: " + getData();
+    }
+}
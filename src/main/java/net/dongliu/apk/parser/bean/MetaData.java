@@ -0,0 +1,53 @@
+package net.dongliu.apk.parser.bean;
+
+import javax.annotation.Nullable;
+
+/**
+ * The meta-data tag of application or component
+ *
+ * @author dongliu
+ */
+public class MetaData {
+    private String name;
+    @Nullable
+    private String value;
+    @Nullable
+    private String resource;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * the android:value, null if not set
+     */
+    @Nullable
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(@Nullable String value) {
+        this.value = value;
+    }
+
+    /**
+     * the android:resource, null if not set
+     */
+    @Nullable
+    public String getResource() {
+        return resource;
+    }
+
+    public void setResource(@Nullable String resource) {
+        this.resource = resource;
+    }
+
+    @Override
+    public String toString() {
+        return name + "=" + (value != null ? value : resource);
+    }
+}
@@ -0,0 +1,216 @@
+package net.dongliu.apk.parser.bean;
+
+import javax.annotation.Nullable;
+
+/**
+ * A native library in apk, lib/&lt;abi&gt;/&lt;name&gt;.so, with the zip entry status and the ELF header info.
+ *
+ * @author dongliu
+ */
+public class NativeLibrary {
+    /**
+     * The page size which 64-bit libraries should support since Android 15
+     */
+    public static final int PAGE_SIZE_16K = 16 * 1024;
+
+    /**
+     * ELF machine types
+     */
+    public static final int EM_386 = 3;
+    public static final int EM_MIPS = 8;
+    public static final int EM_ARM = 40;
+    public static final int EM_X86_64 = 62;
+    public static final int EM_AARCH64 = 183;
+    public static final int EM_RISCV = 243;
+
+    private String path;
+    private String abi;
+    private String name;
+    private long size;
+    private long compressedSize;
+    private int method;
+    private long dataOffset;
+    private boolean elf;
+    private int elfClass;
+    private int machine;
+    private long loadSegmentAlignment;
+
+    /**
+     * The path in apk, e.g. lib/arm64-v8a/libfoo.so
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * The abi directory, e.g. arm64-v8a
+     */
+    public String getAbi() {
+        return abi;
+    }
+
+    public void setAbi(String abi) {
+        this.abi = abi;
+    }
+
+    /**
+     * The file name, e.g. libfoo.so
+     */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * The uncompressed size
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    public void setCompressedSize(long compressedSize) {
+        this.compressedSize = compressedSize;
+    }
+
+    /**
+     * The compression method, {@link ArchiveEntry#STORED} or {@link ArchiveEntry#DEFLATED}
+     */
+    public int getMethod() {
+        return method;
+    }
+
+    public void setMethod(int method) {
+        this.method = method;
+    }
+
+    /**
+     * If the library is stored uncompressed, so it can be mapped from apk directly
+     */
+    public boolean isStored() {
+        return method == ArchiveEntry.STORED;
+    }
+
+    /**
+     * The offset of library data in apk
+     */
+    public long getDataOffset() {
+        return dataOffset;
+    }
+
+    public void setDataOffset(long dataOffset) {
+        this.dataOffset = dataOffset;
+    }
+
+    /**
+     * If the library is stored, and its data is aligned to pageSize in apk
+     */
+    public boolean isZipAligned(int pageSize) {
+        return isStored() && dataOffset % pageSize == 0;
+    }
+
+    /**
+     * If the library has a valid ELF header. If not, the ELF fields are not set.
+     */
+    public boolean isElf() {
+        return elf;
+    }
+
+    public void setElf(boolean elf) {
+        this.elf = elf;
+    }
+
+    /**
+     * 32 or 64, 0 if unknown
+     */
+    public int getElfClass() {
+        return elfClass;
+    }
+
+    public void setElfClass(int elfClass) {
+        this.elfClass = elfClass;
+    }
+
+    /**
+     * The ELF e_machine, see EM_ constants
+     */
+    public int getMachine() {
+        return machine;
+    }
+
+    public void setMachine(int machine) {
+        this.machine = machine;
+    }
+
+    /**
+     * The abi name of ELF machine, null if unknown
+     */
+    @Nullable
+    public String getMachineName() {
+        switch (machine) {
+            case EM_386:
+                return "x86";
+            case EM_MIPS:
+                return elfClass == 64 ? "mips64" : "mips";
+            case EM_ARM:
+                return "armeabi-v7a";
+            case EM_X86_64:
+                return "x86_64";
+            case EM_AARCH64:
+                return "arm64-v8a";
+            case EM_RISCV:
+                return "riscv64";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The smallest p_align of PT_LOAD segments, 0 if no load segment found or program headers not read
+     */
+    public long getLoadSegmentAlignment() {
+        return loadSegmentAlignment;
+    }
+
+    public void setLoadSegmentAlignment(long loadSegmentAlignment) {
+        this.loadSegmentAlignment = loadSegmentAlignment;
+    }
+
+    /**
+     * If the library can be loaded on devices with pageSize pages: all load segments are aligned to pageSize, and
+     * if stored, the data is aligned to pageSize in apk too.
+     */
+    public boolean isPageAligned(int pageSize) {
+        if (loadSegmentAlignment < pageSize) {
+            return false;
+        }
+        return !isStored() || isZipAligned(pageSize);
+    }
+
+    /**
+     * If the library supports 16 KB page size, see {@link #isPageAligned(int)}
+     */
+    public boolean is16KbAligned() {
+        return isPageAligned(PAGE_SIZE_16K);
+    }
+
+    @Override
+    public String toString() {
+        return "NativeLibrary{path='" + path + '\'' + ", size=" + size + ", method=" + method + ", elfClass="
+                + elfClass + ", machine=" + machine + ", loadSegmentAlignment=" + loadSegmentAlignment + '}';
+    }
+}
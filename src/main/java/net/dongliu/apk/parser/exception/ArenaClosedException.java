@@ -0,0 +1,12 @@
+package net.dongliu.apk.parser.exception;
+
+/**
+ * Thrown when parse results backed by off-heap buffers are read after the buffers are freed.
+ *
+ * @author dongliu
+ */
+public class ArenaClosedException extends ParserException {
+    public ArenaClosedException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,12 @@
+package net.dongliu.apk.parser.exception;
+
+/**
+ * Thrown when parsing is cancelled, or the deadline has passed.
+ *
+ * @author dongliu
+ */
+public class ParseCancelledException extends ParserException {
+    public ParseCancelledException(String msg) {
+        super(msg);
+    }
+}
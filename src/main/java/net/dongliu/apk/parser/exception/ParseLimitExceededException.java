@@ -0,0 +1,12 @@
+package net.dongliu.apk.parser.exception;
+
+/**
+ * Thrown when the apk file exceeds parse limits, or has counts/sizes that do not fit in the data.
+ *
+ * @author dongliu
+ */
+public class ParseLimitExceededException extends ParserException {
+    public ParseLimitExceededException(String msg) {
+        super(msg);
+    }
+}
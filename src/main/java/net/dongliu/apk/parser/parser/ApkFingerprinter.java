@@ -0,0 +1,86 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.bean.ApkFingerprint;
+import net.dongliu.apk.parser.bean.ArchiveEntry;
+import net.dongliu.apk.parser.bean.FingerprintScope;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compute apk fingerprints from zip entries: a sha-256 digest of the (name, crc32, size) tuples sorted by name, and
+ * a 64-bit hash of each tuple for similarity. No entry data is read.
+ *
+ * @author dongliu
+ */
+public class ApkFingerprinter {
+
+    private static final Comparator<ArchiveEntry> ENTRY_ORDER = new Comparator<ArchiveEntry>() {
+        @Override
+        public int compare(ArchiveEntry e1, ArchiveEntry e2) {
+            int c = e1.getName().compareTo(e2.getName());
+            if (c != 0) {
+                return c;
+            }
+            c = Long.compare(e1.getCrc(), e2.getCrc());
+            return c != 0 ? c : Long.compare(e1.getSize(), e2.getSize());
+        }
+    };
+
+    public static ApkFingerprint fingerprint(List<ArchiveEntry> entries, FingerprintScope scope) {
+        List<ArchiveEntry> selected = new ArrayList<>();
+        for (ArchiveEntry entry : entries) {
+            if (scope.accept(entry.getName())) {
+                selected.add(entry);
+            }
+        }
+        Collections.sort(selected, ENTRY_ORDER);
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        long[] entryHashes = new long[selected.size()];
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        for (int i = 0; i < selected.size(); i++) {
+            ArchiveEntry entry = selected.get(i);
+            byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+            buffer.clear();
+            buffer.putInt(name.length);
+            digest.update(buffer.array(), 0, 4);
+            digest.update(name);
+            buffer.clear();
+            buffer.putInt((int) entry.getCrc()).putLong(entry.getSize());
+            digest.update(buffer.array(), 0, 12);
+            entryHashes[i] = hash(name, entry.getCrc(), entry.getSize());
+        }
+        Arrays.sort(entryHashes);
+        return new ApkFingerprint(scope, digest.digest(), entryHashes);
+    }
+
+    // fnv-1a of name, then crc and size mixed in with the murmur3 finalizer
+    private static long hash(byte[] name, long crc, long size) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : name) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= crc * 0x9e3779b97f4a7c15L;
+        h ^= Long.rotateLeft(size * 0xc2b2ae3d27d4eb4fL, 31);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,10 +1,11 @@
 package net.dongliu.apk.parser.parser;
 
-import net.dongliu.apk.parser.bean.ApkMeta;
-import net.dongliu.apk.parser.bean.GlEsVersion;
-import net.dongliu.apk.parser.bean.Permission;
-import net.dongliu.apk.parser.bean.UseFeature;
+import net.dongliu.apk.parser.bean.*;
+import net.dongliu.apk.parser.struct.ResourceValue;
 import net.dongliu.apk.parser.struct.xml.*;
+import net.dongliu.apk.parser.struct.xml.Attribute.AttrIds;
+
+import java.util.Arrays;
 
 /**
  * trans binary xml to text
@@ -12,54 +13,77 @@ import net.dongliu.apk.parser.struct.xml.*;
  * @author Liu Dong dongliu@live.cn
  */
 public class ApkMetaTranslator implements XmlStreamer {
-    private String[] tagStack = new String[100];
+    // tag ids of current open tags, see XmlTags
+    private int[] tagStack = new int[16];
     private int depth = 0;
     private ApkMeta apkMeta = new ApkMeta();
 
+    private boolean parseComponents;
+    // the component/intent filter current in, when parse components
+    private AndroidComponent component;
+    private IntentFilter intentFilter;
+
+    public ApkMetaTranslator() {
+    }
+
+    /**
+     * @param parseComponents if also collect components, intent filters and meta-data
+     */
+    public ApkMetaTranslator(boolean parseComponents) {
+        this.parseComponents = parseComponents;
+    }
+
     @Override
     public void onStartTag(XmlNodeStartTag xmlNodeStartTag) {
         Attributes attributes = xmlNodeStartTag.getAttributes();
-        switch (xmlNodeStartTag.getName()) {
-            case "application":
-                String label = attributes.get("label");
+        switch (xmlNodeStartTag.getTagId()) {
+            case XmlTags.APPLICATION:
+                Attribute label = attributes.getAttributeById(AttrIds.LABEL);
                 if (label != null) {
-                    apkMeta.setLabel(label);
+                    apkMeta.setLabel(label.getValue());
+                    apkMeta.setLabelResourceId(getReferenceId(label));
+                }
+                Attribute description = attributes.getAttributeById(AttrIds.DESCRIPTION);
+                if (description != null) {
+                    apkMeta.setDescription(description.getValue());
+                    apkMeta.setDescriptionResourceId(getReferenceId(description));
                 }
-                String icon = attributes.get("icon");
+                String icon = attributes.getById(AttrIds.ICON);
                 if (icon != null) {
                     apkMeta.setIcon(icon);
                 }
                 break;
-            case "manifest":
+            case XmlTags.MANIFEST:
                 apkMeta.setPackageName(attributes.get("package"));
-                apkMeta.setVersionName(attributes.get("versionName"));
-                apkMeta.setVersionCode(attributes.getLong("versionCode"));
-                String installLocation = attributes.get("installLocation");
+                apkMeta.setSplit(attributes.get("split"));
+                apkMeta.setVersionName(attributes.getById(AttrIds.VERSION_NAME));
+                apkMeta.setVersionCode(attributes.getLongById(AttrIds.VERSION_CODE));
+                String installLocation = attributes.getById(AttrIds.INSTALL_LOCATION);
                 if (installLocation != null) {
                     apkMeta.setInstallLocation(installLocation);
                 }
                 break;
-            case "uses-sdk":
-                apkMeta.setMinSdkVersion(attributes.get("minSdkVersion"));
-                apkMeta.setTargetSdkVersion(attributes.get("targetSdkVersion"));
-                apkMeta.setMaxSdkVersion(attributes.get("maxSdkVersion"));
+            case XmlTags.USES_SDK:
+                apkMeta.setMinSdkVersion(attributes.getById(AttrIds.MIN_SDK_VERSION));
+                apkMeta.setTargetSdkVersion(attributes.getById(AttrIds.TARGET_SDK_VERSION));
+                apkMeta.setMaxSdkVersion(attributes.getById(AttrIds.MAX_SDK_VERSION));
                 break;
-            case "supports-screens":
-                apkMeta.setAnyDensity(attributes.getBoolean("anyDensity", false));
-                apkMeta.setSmallScreens(attributes.getBoolean("smallScreens", false));
-                apkMeta.setNormalScreens(attributes.getBoolean("normalScreens", false));
-                apkMeta.setLargeScreens(attributes.getBoolean("largeScreens", false));
+            case XmlTags.SUPPORTS_SCREENS:
+                apkMeta.setAnyDensity(attributes.getBooleanById(AttrIds.ANY_DENSITY, false));
+                apkMeta.setSmallScreens(attributes.getBooleanById(AttrIds.SMALL_SCREENS, false));
+                apkMeta.setNormalScreens(attributes.getBooleanById(AttrIds.NORMAL_SCREENS, false));
+                apkMeta.setLargeScreens(attributes.getBooleanById(AttrIds.LARGE_SCREENS, false));
                 break;
-            case "uses-feature":
-                String name = attributes.get("name");
-                boolean required = attributes.getBoolean("required", false);
+            case XmlTags.USES_FEATURE:
+                String name = attributes.getById(AttrIds.NAME);
+                boolean required = attributes.getBooleanById(AttrIds.REQUIRED, false);
                 if (name != null) {
                     UseFeature useFeature = new UseFeature();
                     useFeature.setName(name);
                     useFeature.setRequired(required);
                     apkMeta.addUseFeatures(useFeature);
                 } else {
-                    Integer gl = attributes.getInt("glEsVersion");
+                    Integer gl = attributes.getIntById(AttrIds.GL_ES_VERSION);
                     if (gl != null) {
                         int v = gl;
                         GlEsVersion glEsVersion = new GlEsVersion();
@@ -70,29 +94,156 @@ public class ApkMetaTranslator implements XmlStreamer {
                     }
                 }
                 break;
-            case "uses-permission":
-                apkMeta.addUsesPermission(attributes.get("name"));
+            case XmlTags.USES_PERMISSION:
+                apkMeta.addUsesPermission(attributes.getById(AttrIds.NAME));
                 break;
-            case "permission":
+            case XmlTags.PERMISSION:
                 Permission permission = new Permission();
-                permission.setName(attributes.get("name"));
-                permission.setLabel(attributes.get("label"));
-                permission.setIcon(attributes.get("icon"));
-                permission.setGroup(attributes.get("group"));
-                permission.setDescription(attributes.get("description"));
-                String protectionLevel = attributes.get("android:protectionLevel");
+                permission.setName(attributes.getById(AttrIds.NAME));
+                permission.setLabel(attributes.getById(AttrIds.LABEL));
+                permission.setIcon(attributes.getById(AttrIds.ICON));
+                permission.setGroup(attributes.getById(AttrIds.PERMISSION_GROUP));
+                permission.setDescription(attributes.getById(AttrIds.DESCRIPTION));
+                String protectionLevel = attributes.getById(AttrIds.PROTECTION_LEVEL);
                 if (protectionLevel != null) {
                     permission.setProtectionLevel(protectionLevel);
                 }
                 apkMeta.addPermission(permission);
                 break;
+            default:
+                if (parseComponents) {
+                    onComponentTag(xmlNodeStartTag.getTagId(), attributes);
+                }
+        }
+        if (depth == tagStack.length) {
+            tagStack = Arrays.copyOf(tagStack, depth * 2);
+        }
+        tagStack[depth++] = xmlNodeStartTag.getTagId();
+    }
+
+    private void onComponentTag(int tagId, Attributes attributes) {
+        int parent = depth > 0 ? tagStack[depth - 1] : XmlTags.UNKNOWN;
+        switch (tagId) {
+            case XmlTags.ACTIVITY:
+                onComponentStart(ComponentType.activity, parent, attributes);
+                break;
+            case XmlTags.ACTIVITY_ALIAS:
+                onComponentStart(ComponentType.activityAlias, parent, attributes);
+                if (component != null) {
+                    component.setTargetActivity(attributes.getById(AttrIds.TARGET_ACTIVITY));
+                }
+                break;
+            case XmlTags.SERVICE:
+                onComponentStart(ComponentType.service, parent, attributes);
+                break;
+            case XmlTags.RECEIVER:
+                onComponentStart(ComponentType.receiver, parent, attributes);
+                break;
+            case XmlTags.PROVIDER:
+                onComponentStart(ComponentType.provider, parent, attributes);
+                if (component != null) {
+                    component.setAuthorities(attributes.getById(AttrIds.AUTHORITIES));
+                }
+                break;
+            case XmlTags.INTENT_FILTER:
+                if (component != null && isComponentTag(parent)) {
+                    intentFilter = new IntentFilter();
+                    component.addIntentFilter(intentFilter);
+                }
+                break;
+            case XmlTags.ACTION:
+                if (intentFilter != null && parent == XmlTags.INTENT_FILTER) {
+                    String name = attributes.getById(AttrIds.NAME);
+                    if (name != null) {
+                        intentFilter.addAction(name);
+                    }
+                }
+                break;
+            case XmlTags.CATEGORY:
+                if (intentFilter != null && parent == XmlTags.INTENT_FILTER) {
+                    String name = attributes.getById(AttrIds.NAME);
+                    if (name != null) {
+                        intentFilter.addCategory(name);
+                    }
+                }
+                break;
+            case XmlTags.DATA:
+                if (intentFilter != null && parent == XmlTags.INTENT_FILTER) {
+                    IntentData data = new IntentData();
+                    data.setScheme(attributes.getById(AttrIds.SCHEME));
+                    data.setHost(attributes.getById(AttrIds.HOST));
+                    data.setPort(attributes.getById(AttrIds.PORT));
+                    data.setPath(attributes.getById(AttrIds.PATH));
+                    data.setPathPrefix(attributes.getById(AttrIds.PATH_PREFIX));
+                    data.setPathPattern(attributes.getById(AttrIds.PATH_PATTERN));
+                    data.setMimeType(attributes.getById(AttrIds.MIME_TYPE));
+                    intentFilter.addData(data);
+                }
+                break;
+            case XmlTags.META_DATA:
+                MetaData metaData = new MetaData();
+                metaData.setName(attributes.getById(AttrIds.NAME));
+                metaData.setValue(attributes.getById(AttrIds.VALUE));
+                metaData.setResource(attributes.getById(AttrIds.RESOURCE));
+                if (parent == XmlTags.APPLICATION) {
+                    apkMeta.addMetaData(metaData);
+                } else if (component != null && isComponentTag(parent)) {
+                    component.addMetaData(metaData);
+                }
+                break;
+        }
+    }
+
+    private void onComponentStart(ComponentType type, int parent, Attributes attributes) {
+        if (parent != XmlTags.APPLICATION) {
+            return;
+        }
+        component = new AndroidComponent();
+        component.setType(type);
+        component.setName(attributes.getById(AttrIds.NAME));
+        String exported = attributes.getById(AttrIds.EXPORTED);
+        if (exported != null) {
+            component.setExported(Boolean.valueOf(exported));
+        }
+        component.setEnabled(attributes.getBooleanById(AttrIds.ENABLED, true));
+        component.setPermission(attributes.getById(AttrIds.PERMISSION));
+        component.setProcess(attributes.getById(AttrIds.PROCESS));
+        apkMeta.addComponent(component);
+    }
+
+    private static boolean isComponentTag(int tagId) {
+        switch (tagId) {
+            case XmlTags.ACTIVITY:
+            case XmlTags.ACTIVITY_ALIAS:
+            case XmlTags.SERVICE:
+            case XmlTags.RECEIVER:
+            case XmlTags.PROVIDER:
+                return true;
+            default:
+                return false;
         }
-        tagStack[depth++] = xmlNodeStartTag.getName();
+    }
+
+    /**
+     * @return the resource id the attribute references to, null if it is a literal value
+     */
+    private static Long getReferenceId(Attribute attribute) {
+        if (attribute.getTypedValue() instanceof ResourceValue.ReferenceResourceValue) {
+            return ((ResourceValue.ReferenceResourceValue) attribute.getTypedValue()).getReferenceResourceId();
+        }
+        return null;
     }
 
     @Override
     public void onEndTag(XmlNodeEndTag xmlNodeEndTag) {
         depth--;
+        if (parseComponents) {
+            if (isComponentTag(xmlNodeEndTag.getTagId())) {
+                component = null;
+            } else if (xmlNodeEndTag.getTagId() == XmlTags.INTENT_FILTER) {
+                intentFilter = null;
+            }
+        }
     }
 
     @Override
@@ -113,22 +264,4 @@ public class ApkMetaTranslator implements XmlStreamer {
     public ApkMeta getApkMeta() {
         return apkMeta;
     }
-
-    private boolean matchTagPath(String... tags) {
-        // the root should always be "manifest"
-        if (depth != tags.length + 1) {
-            return false;
-        }
-        for (int i = 1; i < depth; i++) {
-            if (!tagStack[i].equals(tags[i - 1])) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private boolean matchLastTag(String tag) {
-        // the root should always be "manifest"
-        return tagStack[depth - 1].endsWith(tag);
-    }
 }
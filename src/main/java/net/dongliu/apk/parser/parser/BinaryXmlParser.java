@@ -1,6 +1,7 @@
 package net.dongliu.apk.parser.parser;
 
 import net.dongliu.apk.parser.bean.AttributeValues;
+import net.dongliu.apk.parser.bean.DeviceProfile;
 import net.dongliu.apk.parser.bean.Locales;
 import net.dongliu.apk.parser.exception.ParserException;
 import net.dongliu.apk.parser.struct.*;
@@ -13,9 +14,7 @@ import net.dongliu.apk.parser.utils.Utils;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.Locale;
-import java.util.Set;
 
 /**
  * Android Binary XML format
@@ -31,15 +30,22 @@ public class BinaryXmlParser {
      */
     private ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
     private StringPool stringPool;
-    // some attribute name stored by resource id
-    private String[] resourceMap;
+    // the attribute resource ids, indexed by string pool index of attribute name
+    private long[] resourceIds;
+    // well-known tag ids, indexed by string pool index of tag name. -1 for not resolved yet
+    private int[] tagIds;
     private ByteBuffer buffer;
     private XmlStreamer xmlStreamer;
-    private final ResourceTable resourceTable;
+    private ResourceTable resourceTable;
+    private ResourceTableLoader resourceTableLoader;
     /**
-     * default locale.
+     * the device to select resource values for. default any locale.
      */
-    private Locale locale = Locales.any;
+    private DeviceProfile deviceProfile = DeviceProfile.of(Locales.any);
+
+    private ParseLimits parseLimits = new ParseLimits();
+    private CancellationToken cancellationToken = CancellationToken.NONE;
+    private StringInterner stringInterner = StringInterner.NONE;
 
     public BinaryXmlParser(ByteBuffer buffer, ResourceTable resourceTable) {
         this.buffer = buffer.duplicate();
@@ -67,7 +73,8 @@ public class BinaryXmlParser {
             return;
         }
         ParseUtils.checkChunkType(ChunkType.STRING_POOL, chunkHeader.getChunkType());
-        stringPool = ParseUtils.readStringPool(buffer, (StringPoolHeader) chunkHeader);
+        stringPool = ParseUtils.readStringPool(buffer, (StringPoolHeader) chunkHeader, parseLimits,
+                stringInterner);
 
         // read on chunk, check if it was an optional XMLResourceMap chunk
         chunkHeader = readChunkHeader();
@@ -75,15 +82,12 @@ public class BinaryXmlParser {
             return;
         }
         if (chunkHeader.getChunkType() == ChunkType.XML_RESOURCE_MAP) {
-            long[] resourceIds = readXmlResourceMap((XmlResourceMapHeader) chunkHeader);
-            resourceMap = new String[resourceIds.length];
-            for (int i = 0; i < resourceIds.length; i++) {
-                resourceMap[i] = Attribute.AttrIds.getString(resourceIds[i]);
-            }
+            resourceIds = readXmlResourceMap((XmlResourceMapHeader) chunkHeader);
             chunkHeader = readChunkHeader();
         }
 
         while (chunkHeader != null) {
+            cancellationToken.checkCancelled();
                 /*if (chunkHeader.chunkType == ChunkType.XML_END_NAMESPACE) {
                     break;
                 }*/
@@ -143,6 +147,8 @@ public class BinaryXmlParser {
             xmlNodeEndTag.setNamespace(stringPool.get(nsRef));
         }
         xmlNodeEndTag.setName(stringPool.get(nameRef));
+        xmlNodeEndTag.setNameIndex(nameRef);
+        xmlNodeEndTag.setTagId(getTagId(nameRef));
         if (xmlStreamer != null) {
             xmlStreamer.onEndTag(xmlNodeEndTag);
         }
@@ -157,6 +163,8 @@ public class BinaryXmlParser {
             xmlNodeStartTag.setNamespace(stringPool.get(nsRef));
         }
         xmlNodeStartTag.setName(stringPool.get(nameRef));
+        xmlNodeStartTag.setNameIndex(nameRef);
+        xmlNodeStartTag.setTagId(getTagId(nameRef));
 
         // read attributes.
         // attributeStart and attributeSize are always 20 (0x14)
@@ -172,14 +180,15 @@ public class BinaryXmlParser {
         for (int count = 0; count < attributeCount; count++) {
             Attribute attribute = readAttribute();
             if (xmlStreamer != null) {
-                String value = attribute.toStringValue(resourceTable, locale);
-                if (intAttributes.contains(attribute.getName()) && Utils.isNumeric(value)) {
+                String value = attribute.toStringValue(getResourceTable(attribute), deviceProfile);
+                int attrId = getAttrId(attribute);
+                if (isIntAttribute(attrId) && Utils.isNumeric(value)) {
                     try {
-                        value = getFinalValueAsString(attribute.getName(), value);
+                        value = getFinalValueAsString(attrId, value);
                     } catch (Exception ignore) {
                     }
                 }
-                attribute.setValue(value);
+                attribute.setValue(stringInterner.intern(value));
                 attributes.set(count, attribute);
             }
         }
@@ -192,31 +201,82 @@ public class BinaryXmlParser {
         return xmlNodeStartTag;
     }
 
-    private static final Set<String> intAttributes = new HashSet<>(
-            Arrays.asList("screenOrientation", "configChanges", "windowSoftInputMode",
-                    "launchMode", "installLocation", "protectionLevel"));
+    // only reference values need resource table, load it when first met
+    private ResourceTable getResourceTable(Attribute attribute) {
+        if (resourceTableLoader != null && attribute.getRawValue() == null
+                && attribute.getTypedValue() instanceof ResourceValue.ReferenceResourceValue) {
+            resourceTable = resourceTableLoader.load();
+            resourceTableLoader = null;
+        }
+        return resourceTable;
+    }
+
+    // the attr id, resolve by name if the attribute is not in resource map
+    private int getAttrId(Attribute attribute) {
+        if (attribute.getResourceId() != 0) {
+            return attribute.getResourceId();
+        }
+        if (attribute.getNamespace() == null) {
+            return 0;
+        }
+        return Attribute.AttrIds.getId(attribute.getName());
+    }
+
+    private boolean isIntAttribute(int attrId) {
+        switch (attrId) {
+            case Attribute.AttrIds.SCREEN_ORIENTATION:
+            case Attribute.AttrIds.CONFIG_CHANGES:
+            case Attribute.AttrIds.WINDOW_SOFT_INPUT_MODE:
+            case Attribute.AttrIds.LAUNCH_MODE:
+            case Attribute.AttrIds.INSTALL_LOCATION:
+            case Attribute.AttrIds.PROTECTION_LEVEL:
+                return true;
+            default:
+                return false;
+        }
+    }
 
     //trans int attr value to string
-    private String getFinalValueAsString(String attributeName, String str) {
+    private String getFinalValueAsString(int attrId, String str) {
         int value = Integer.parseInt(str);
-        switch (attributeName) {
-            case "screenOrientation":
+        switch (attrId) {
+            case Attribute.AttrIds.SCREEN_ORIENTATION:
                 return AttributeValues.getScreenOrientation(value);
-            case "configChanges":
+            case Attribute.AttrIds.CONFIG_CHANGES:
                 return AttributeValues.getConfigChanges(value);
-            case "windowSoftInputMode":
+            case Attribute.AttrIds.WINDOW_SOFT_INPUT_MODE:
                 return AttributeValues.getWindowSoftInputMode(value);
-            case "launchMode":
+            case Attribute.AttrIds.LAUNCH_MODE:
                 return AttributeValues.getLaunchMode(value);
-            case "installLocation":
+            case Attribute.AttrIds.INSTALL_LOCATION:
                 return AttributeValues.getInstallLocation(value);
-            case "protectionLevel":
+            case Attribute.AttrIds.PROTECTION_LEVEL:
                 return AttributeValues.getProtectionLevel(value);
             default:
                 return str;
         }
     }
 
+    // get well-known tag id, each tag name in string pool is only looked up once
+    private int getTagId(int nameRef) {
+        if (nameRef < 0) {
+            return XmlTags.UNKNOWN;
+        }
+        if (tagIds == null) {
+            tagIds = new int[stringPool.size()];
+            Arrays.fill(tagIds, -1);
+        }
+        if (nameRef >= tagIds.length) {
+            return XmlTags.UNKNOWN;
+        }
+        int tagId = tagIds[nameRef];
+        if (tagId < 0) {
+            tagId = XmlTags.getId(stringPool.get(nameRef));
+            tagIds[nameRef] = tagId;
+        }
+        return tagId;
+    }
+
     private Attribute readAttribute() {
         int nsRef = buffer.getInt();
         int nameRef = buffer.getInt();
@@ -226,10 +286,14 @@ public class BinaryXmlParser {
         }
 
         attribute.setName(stringPool.get(nameRef));
-        if (attribute.getName().isEmpty() && resourceMap != null && nameRef < resourceMap.length) {
-            // some processed apk file make the string pool value empty, if it is a xmlmap attr.
-            attribute.setName(resourceMap[nameRef]);
-            //TODO: how to get the namespace of attribute
+        attribute.setNameIndex(nameRef);
+        if (resourceIds != null && nameRef >= 0 && nameRef < resourceIds.length) {
+            attribute.setResourceId((int) resourceIds[nameRef]);
+            if (attribute.getName().isEmpty()) {
+                // some processed apk file make the string pool value empty, if it is a xmlmap attr.
+                attribute.setName(Attribute.AttrIds.getString(resourceIds[nameRef]));
+                //TODO: how to get the namespace of attribute
+            }
         }
 
         int rawValueRef = buffer.getInt();
@@ -270,6 +334,7 @@ public class BinaryXmlParser {
 
     private long[] readXmlResourceMap(XmlResourceMapHeader chunkHeader) {
         int count = chunkHeader.getBodySize() / 4;
+        Buffers.checkRemaining(buffer, count, 4);
         long[] resourceIds = new long[count];
         for (int i = 0; i < count; i++) {
             resourceIds[i] = Buffers.readUInt(buffer);
@@ -288,6 +353,9 @@ public class BinaryXmlParser {
         int chunkType = Buffers.readUShort(buffer);
         int headerSize = Buffers.readUShort(buffer);
         long chunkSize = Buffers.readUInt(buffer);
+        if (chunkSize < headerSize) {
+            throw new ParserException("Invalid chunk size " + chunkSize + ", header size " + headerSize);
+        }
 
         switch (chunkType) {
             case ChunkType.XML:
@@ -321,14 +389,47 @@ public class BinaryXmlParser {
         }
     }
 
+    /**
+     * Load resource table lazily, when the first reference value need to be resolved.
+     * The resource table passed by constructor is replaced by the loaded one.
+     */
+    public void setResourceTableLoader(ResourceTableLoader resourceTableLoader) {
+        this.resourceTableLoader = resourceTableLoader;
+    }
+
+    public void setParseLimits(ParseLimits parseLimits) {
+        this.parseLimits = parseLimits;
+    }
+
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    public void setStringInterner(StringInterner stringInterner) {
+        this.stringInterner = stringInterner;
+    }
+
     public void setLocale(Locale locale) {
         if (locale != null) {
-            this.locale = locale;
+            this.deviceProfile = deviceProfile.withLocale(locale);
         }
     }
 
     public Locale getLocale() {
-        return locale;
+        return deviceProfile.getLocale();
+    }
+
+    public DeviceProfile getDeviceProfile() {
+        return deviceProfile;
+    }
+
+    /**
+     * The device profile used to select resource values. setLocale only changes the locale of it.
+     */
+    public void setDeviceProfile(DeviceProfile deviceProfile) {
+        if (deviceProfile != null) {
+            this.deviceProfile = deviceProfile;
+        }
     }
 
     public XmlStreamer getXmlStreamer() {
@@ -0,0 +1,64 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.exception.ParseCancelledException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cooperative cancellation for parsing, checked by parsers in their loops.
+ * Can be cancelled from another thread, or have a deadline.
+ * This class is thread-safe.
+ *
+ * @author dongliu
+ */
+public class CancellationToken {
+    /**
+     * token never cancelled
+     */
+    public static final CancellationToken NONE = new CancellationToken();
+
+    private volatile boolean cancelled;
+    private final boolean hasDeadline;
+    // in System.nanoTime
+    private final long deadline;
+
+    public CancellationToken() {
+        this.hasDeadline = false;
+        this.deadline = 0;
+    }
+
+    private CancellationToken(long deadline) {
+        this.hasDeadline = true;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Create token which is cancelled after timeout from now.
+     */
+    public static CancellationToken withTimeout(long timeout, TimeUnit unit) {
+        return new CancellationToken(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    public void cancel() {
+        if (this == NONE) {
+            throw new UnsupportedOperationException("Cannot cancel the NONE token");
+        }
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled || hasDeadline && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * @throws ParseCancelledException if cancelled or deadline passed
+     */
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new ParseCancelledException("Parsing cancelled");
+        }
+        if (hasDeadline && System.nanoTime() - deadline >= 0) {
+            throw new ParseCancelledException("Parsing deadline exceeded");
+        }
+    }
+}
@@ -29,6 +29,10 @@ public class DexParser {
 
     private DexClass[] dexClasses;
 
+    private ParseLimits parseLimits = new ParseLimits();
+    private CancellationToken cancellationToken = CancellationToken.NONE;
+    private StringInterner stringInterner = StringInterner.NONE;
+
     public DexParser(ByteBuffer buffer) {
         this.buffer = buffer.duplicate();
         this.buffer.order(byteOrder);
@@ -52,6 +56,8 @@ public class DexParser {
         DexHeader header = readDexHeader();
         header.setVersion(version);
 
+        parseLimits.checkStringPoolSize(header.getStringIdsSize());
+
         // read string pool
         long[] stringOffsets = readStringPool(header.getStringIdsOff(), header.getStringIdsSize());
 
@@ -66,7 +72,8 @@ public class DexParser {
 
         String[] types = new String[typeIds.length];
         for (int i = 0; i < typeIds.length; i++) {
-            types[i] = stringpool.get(typeIds[i]);
+            // only the type names are kept in results
+            types[i] = stringInterner.intern(stringpool.get(typeIds[i]));
         }
 
         dexClasses = new DexClass[dexClassStructs.length];
@@ -89,6 +96,8 @@ public class DexParser {
      */
     private DexClassStruct[] readClass(long classDefsOff, int classDefsSize) {
         buffer.position((int) classDefsOff);
+        // class_def_item is 32 bytes
+        Buffers.checkRemaining(buffer, classDefsSize, 32);
 
         DexClassStruct[] dexClassStructs = new DexClassStruct[classDefsSize];
         for (int i = 0; i < classDefsSize; i++) {
@@ -114,6 +123,7 @@ public class DexParser {
      */
     private int[] readTypes(long typeIdsOff, int typeIdsSize) {
         buffer.position((int) typeIdsOff);
+        Buffers.checkRemaining(buffer, typeIdsSize, 4);
         int[] typeIds = new int[typeIdsSize];
         for (int i = 0; i < typeIdsSize; i++) {
             typeIds[i] = (int) Buffers.readUInt(buffer);
@@ -142,6 +152,9 @@ public class DexParser {
         long lastOffset = -1;
         StringPool stringpool = new StringPool(offsets.length);
         for (StringPoolEntry entry : entries) {
+            if ((entry.getIdx() & 0xfff) == 0) {
+                cancellationToken.checkCancelled();
+            }
             if (entry.getOffset() == lastOffset) {
                 stringpool.set(entry.getIdx(), lastStr);
                 continue;
@@ -160,6 +173,7 @@ public class DexParser {
      */
     private long[] readStringPool(long stringIdsOff, int stringIdsSize) {
         buffer.position((int) stringIdsOff);
+        Buffers.checkRemaining(buffer, stringIdsSize, 4);
         long offsets[] = new long[stringIdsSize];
         for (int i = 0; i < stringIdsSize; i++) {
             offsets[i] = Buffers.readUInt(buffer);
@@ -183,6 +197,8 @@ public class DexParser {
      * @param strLen the java-utf16-char len, not strLen nor bytes len.
      */
     private String readString(int strLen) {
+        // each char takes at least one byte
+        Buffers.checkRemaining(buffer, strLen, 1);
         char[] chars = new char[strLen];
 
         for (int i = 0; i < strLen; i++) {
@@ -283,6 +299,18 @@ public class DexParser {
         return header;
     }
 
+    public void setParseLimits(ParseLimits parseLimits) {
+        this.parseLimits = parseLimits;
+    }
+
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    public void setStringInterner(StringInterner stringInterner) {
+        this.stringInterner = stringInterner;
+    }
+
     public DexClass[] getDexClasses() {
         return dexClasses;
     }
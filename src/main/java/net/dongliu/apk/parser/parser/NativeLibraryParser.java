@@ -0,0 +1,202 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.bean.ArchiveEntry;
+import net.dongliu.apk.parser.bean.NativeLibrary;
+import net.dongliu.apk.parser.exception.ParserException;
+import net.dongliu.apk.parser.struct.AndroidConstants;
+import net.dongliu.apk.parser.utils.InflaterPool;
+import net.dongliu.apk.parser.utils.ZipSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read native libraries lib/&lt;abi&gt;/*.so of apk, from the zip entries and the ELF header and program headers
+ * of each library. Only the first bytes of library data are read: positional reads for stored libraries, and a
+ * partial inflate for deflated ones, so the cost does not depend on library sizes.
+ *
+ * @author dongliu
+ */
+public class NativeLibraryParser {
+    // enough for the ELF header and the program headers of most libraries
+    private static final int HEADER_READ_SIZE = 1024;
+    // do not read more than this for program headers
+    private static final int MAX_HEADER_READ_SIZE = 16 * 1024;
+
+    private static final int ELF_MAGIC = 0x464c457f;
+    private static final int ELF_CLASS_32 = 1;
+    private static final int ELF_CLASS_64 = 2;
+    private static final int ELF_DATA_MSB = 2;
+    private static final int PT_LOAD = 1;
+
+    private final ZipSource source;
+    private CancellationToken cancellationToken = CancellationToken.NONE;
+    private InflaterPool inflaterPool = InflaterPool.DEFAULT;
+
+    public NativeLibraryParser(ZipSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Read the native libraries in entries, in entry order.
+     */
+    public List<NativeLibrary> parse(List<ArchiveEntry> entries) throws IOException {
+        List<NativeLibrary> libraries = new ArrayList<>();
+        for (ArchiveEntry entry : entries) {
+            String path = entry.getName();
+            if (!path.startsWith(AndroidConstants.LIB_PREFIX) || !path.endsWith(".so")) {
+                continue;
+            }
+            // lib/<abi>/<name>.so
+            int slash = path.indexOf('/', AndroidConstants.LIB_PREFIX.length());
+            if (slash < 0 || path.indexOf('/', slash + 1) >= 0) {
+                continue;
+            }
+            cancellationToken.checkCancelled();
+            NativeLibrary library = new NativeLibrary();
+            library.setPath(path);
+            library.setAbi(path.substring(AndroidConstants.LIB_PREFIX.length(), slash));
+            library.setName(path.substring(slash + 1));
+            library.setSize(entry.getSize());
+            library.setCompressedSize(entry.getCompressedSize());
+            library.setMethod(entry.getMethod());
+            library.setDataOffset(ZipCentralDirectory.readDataOffset(source, entry));
+            readElf(entry, library);
+            libraries.add(library);
+        }
+        return libraries;
+    }
+
+    private void readElf(ArchiveEntry entry, NativeLibrary library) throws IOException {
+        byte[] data = readData(entry, HEADER_READ_SIZE);
+        if (data == null) {
+            return;
+        }
+        long end = parseElf(ByteBuffer.wrap(data), library);
+        if (end > data.length && data.length < entry.getSize() && end <= MAX_HEADER_READ_SIZE) {
+            data = readData(entry, (int) end);
+            parseElf(ByteBuffer.wrap(data), library);
+        }
+    }
+
+    /**
+     * Read the first bytes of entry data, at most length bytes.
+     *
+     * @return null if the compression method is not supported
+     */
+    private byte[] readData(ArchiveEntry entry, int length) throws IOException {
+        length = (int) Math.min(length, entry.getSize());
+        long position = ZipCentralDirectory.readDataOffset(source, entry);
+        if (entry.getMethod() == ArchiveEntry.STORED) {
+            if (position + length > source.size()) {
+                throw new ParserException("Invalid zip file: data of " + entry.getName() + " out of archive");
+            }
+            byte[] data = new byte[length];
+            source.read(position, data, 0, length);
+            return data;
+        }
+        if (entry.getMethod() != ArchiveEntry.DEFLATED) {
+            return null;
+        }
+
+        long remaining = Math.min(entry.getCompressedSize(), source.size() - position);
+        byte[] data = new byte[length];
+        byte[] input = inflaterPool.acquireBuffer();
+        int count = 0;
+        Inflater inflater = inflaterPool.acquireInflater();
+        try {
+            while (count < length && !inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    int chunk = (int) Math.min(input.length, remaining);
+                    source.read(position, input, 0, chunk);
+                    position += chunk;
+                    remaining -= chunk;
+                    inflater.setInput(input, 0, chunk);
+                }
+                int read = inflater.inflate(data, count, length - count);
+                if (read == 0 && !inflater.needsInput()) {
+                    break;
+                }
+                count += read;
+            }
+        } catch (DataFormatException e) {
+            throw new ParserException("Invalid deflate data of " + entry.getName() + ": " + e.getMessage());
+        } finally {
+            inflaterPool.releaseBuffer(input);
+            inflaterPool.releaseInflater(inflater);
+        }
+        if (count < length) {
+            byte[] truncated = new byte[count];
+            System.arraycopy(data, 0, truncated, 0, count);
+            return truncated;
+        }
+        return data;
+    }
+
+    /**
+     * Parse ELF header, and the program headers if all of them are in buffer.
+     *
+     * @return the end offset of program headers, 0 if not an ELF file
+     */
+    static long parseElf(ByteBuffer buffer, NativeLibrary library) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < 52 || buffer.getInt(0) != ELF_MAGIC) {
+            return 0;
+        }
+        int elfClass = buffer.get(4);
+        if (elfClass != ELF_CLASS_32 && elfClass != ELF_CLASS_64) {
+            return 0;
+        }
+        boolean is64 = elfClass == ELF_CLASS_64;
+        if (is64 && buffer.limit() < 64) {
+            return 0;
+        }
+        if (buffer.get(5) == ELF_DATA_MSB) {
+            buffer.order(ByteOrder.BIG_ENDIAN);
+        }
+        library.setElf(true);
+        library.setElfClass(is64 ? 64 : 32);
+        library.setMachine(buffer.getShort(18) & 0xffff);
+
+        long phoff = is64 ? buffer.getLong(32) : buffer.getInt(28) & 0xffffffffL;
+        int phentsize = buffer.getShort(is64 ? 54 : 42) & 0xffff;
+        int phnum = buffer.getShort(is64 ? 56 : 44) & 0xffff;
+        if (phoff < 0 || phentsize < (is64 ? 56 : 32)) {
+            return 0;
+        }
+        long end = phoff + (long) phentsize * phnum;
+        if (end > buffer.limit()) {
+            return end;
+        }
+
+        long alignment = 0;
+        for (int i = 0; i < phnum; i++) {
+            int offset = (int) phoff + i * phentsize;
+            if (buffer.getInt(offset) != PT_LOAD) {
+                continue;
+            }
+            long align = is64 ? buffer.getLong(offset + 48) : buffer.getInt(offset + 28) & 0xffffffffL;
+            if (alignment == 0 || align < alignment) {
+                alignment = align;
+            }
+        }
+        library.setLoadSegmentAlignment(alignment);
+        return end;
+    }
+
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    public void setInflaterPool(InflaterPool inflaterPool) {
+        this.inflaterPool = inflaterPool;
+    }
+}
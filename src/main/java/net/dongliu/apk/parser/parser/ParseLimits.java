@@ -0,0 +1,74 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.exception.ParseLimitExceededException;
+
+/**
+ * Limits for parsing untrusted apk files, to bound the memory and time one apk can take.
+ * Counts read from the file are always checked against the data actually present; these limits are applied
+ * in addition. The defaults only limit reference depth.
+ *
+ * @author dongliu
+ */
+public class ParseLimits {
+    private long maxEntrySize = Integer.MAX_VALUE;
+    private long maxTotalInflatedBytes = Long.MAX_VALUE;
+    private int maxStringPoolSize = Integer.MAX_VALUE;
+    private int maxReferenceDepth = 64;
+
+    /**
+     * The max uncompressed size of one zip entry read into memory.
+     */
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    public void setMaxEntrySize(long maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * The max uncompressed bytes of all zip entries read from one apk file. This is a budget for the lifetime of
+     * the apk file instance: every read counts, including repeated reads of the same entry, so long-lived instances
+     * reading many files should set it accordingly.
+     */
+    public long getMaxTotalInflatedBytes() {
+        return maxTotalInflatedBytes;
+    }
+
+    public void setMaxTotalInflatedBytes(long maxTotalInflatedBytes) {
+        this.maxTotalInflatedBytes = maxTotalInflatedBytes;
+    }
+
+    /**
+     * The max string count of one string pool, in binary xml, resource table or dex file.
+     */
+    public int getMaxStringPoolSize() {
+        return maxStringPoolSize;
+    }
+
+    public void setMaxStringPoolSize(int maxStringPoolSize) {
+        this.maxStringPoolSize = maxStringPoolSize;
+    }
+
+    /**
+     * The max depth of resource references followed when resolve a resource value.
+     * A deeper reference is left unresolved.
+     */
+    public int getMaxReferenceDepth() {
+        return maxReferenceDepth;
+    }
+
+    public void setMaxReferenceDepth(int maxReferenceDepth) {
+        this.maxReferenceDepth = maxReferenceDepth;
+    }
+
+    /**
+     * check the string count of string pool.
+     */
+    public void checkStringPoolSize(long count) {
+        if (count > maxStringPoolSize) {
+            throw new ParseLimitExceededException("String pool size " + count + " exceeds limit "
+                    + maxStringPoolSize);
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.exception.ParserException;
+import net.dongliu.apk.parser.struct.ChunkType;
+import net.dongliu.apk.parser.struct.ResValue;
+import net.dongliu.apk.parser.struct.resource.ResourceTable;
+import net.dongliu.apk.parser.struct.resource.ResourceVisitor;
+import net.dongliu.apk.parser.struct.resource.Type;
+import net.dongliu.apk.parser.utils.IntList;
+import net.dongliu.apk.parser.utils.ParseUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Graph of references between resources, for reachability analysis like finding unused resources.
+ * <p>
+ * The nodes are the resources defined in the resource table. A resource has an edge to each resource its values
+ * reference in any config: references and attributes, parents and attribute names of styles. A resource whose value
+ * is a binary xml file, like layouts and drawables, also references all resources referenced by the xml file.
+ * References to resources not in the table, like android framework resources, are dropped.
+ * <p>
+ * Edges are stored in compressed sparse row arrays, no object is created per node or edge.
+ * This class is immutable and thread-safe.
+ *
+ * @author dongliu
+ */
+public class ResourceReferenceGraph {
+    // the resource ids of nodes, sorted. the node index is the index in this array
+    private final int[] resourceIds;
+    // the edges of node i are edges[edgeStarts[i]] until edges[edgeStarts[i + 1]], as node indices
+    private final int[] edgeStarts;
+    private final int[] edges;
+    // sorted resource ids referenced by each xml file
+    private final Map<String, int[]> fileReferences;
+
+    private ResourceReferenceGraph(int[] resourceIds, int[] edgeStarts, int[] edges,
+                                  Map<String, int[]> fileReferences) {
+        this.resourceIds = resourceIds;
+        this.edgeStarts = edgeStarts;
+        this.edges = edges;
+        this.fileReferences = fileReferences;
+    }
+
+    /**
+     * Build graph of resource table, with xml files scanned one by one.
+     *
+     * @param xmlFiles the binary xml files by path in apk, e.g. res/layout/main.xml and AndroidManifest.xml
+     */
+    public static ResourceReferenceGraph build(ResourceTable resourceTable, Map<String, byte[]> xmlFiles) {
+        return build(resourceTable, xmlFiles, null);
+    }
+
+    /**
+     * Build graph of resource table, with xml files scanned in parallel, each file is a fork-join task.
+     *
+     * @param xmlFiles the binary xml files by path in apk, e.g. res/layout/main.xml and AndroidManifest.xml
+     * @param pool     the pool to scan xml files, null to scan in current thread
+     */
+    public static ResourceReferenceGraph build(ResourceTable resourceTable, final Map<String, byte[]> xmlFiles,
+                                               ForkJoinPool pool) {
+        final IntList ids = new IntList(1024);
+        final IntList sources = new IntList(1024);
+        final IntList targets = new IntList(1024);
+        final List<String> ownedPaths = new ArrayList<>();
+        final IntList pathOwners = new IntList();
+        resourceTable.accept(new ResourceVisitor() {
+            private final IntList references = new IntList();
+
+            @Override
+            public void visitValue(long resourceId, Type type, String key, short dataType, int data) {
+                ids.add((int) resourceId);
+                if (dataType == ResValue.ResType.STRING) {
+                    String path = type.getStringPool().get(data);
+                    if (path != null && xmlFiles.containsKey(path)) {
+                        ownedPaths.add(path);
+                        pathOwners.add((int) resourceId);
+                    }
+                } else {
+                    addEdges(resourceId, type);
+                }
+            }
+
+            @Override
+            public void visitComplex(long resourceId, Type type, String key, long parent, int count) {
+                ids.add((int) resourceId);
+                addEdges(resourceId, type);
+            }
+
+            private void addEdges(long resourceId, Type type) {
+                references.clear();
+                type.getReferences((int) (resourceId & 0xffff), references);
+                for (int i = 0; i < references.size(); i++) {
+                    sources.add((int) resourceId);
+                    targets.add(references.get(i));
+                }
+            }
+        });
+
+        List<String> paths = new ArrayList<>(xmlFiles.keySet());
+        int[][] scanned = new int[paths.size()][];
+        if (pool == null) {
+            for (int i = 0; i < paths.size(); i++) {
+                scanned[i] = scanXml(xmlFiles.get(paths.get(i)));
+            }
+        } else {
+            pool.invoke(new ScanTask(paths, xmlFiles, scanned, 0, paths.size()));
+        }
+        Map<String, int[]> fileReferences = new HashMap<>();
+        for (int i = 0; i < paths.size(); i++) {
+            fileReferences.put(paths.get(i), scanned[i]);
+        }
+        for (int i = 0; i < ownedPaths.size(); i++) {
+            for (int reference : fileReferences.get(ownedPaths.get(i))) {
+                sources.add(pathOwners.get(i));
+                targets.add(reference);
+            }
+        }
+
+        int[] resourceIds = sortedUnique(ids.toArray());
+
+        // pack edges as source index and target index, sort and remove duplicates
+        long[] packed = new long[sources.size()];
+        int edgeCount = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            int source = Arrays.binarySearch(resourceIds, sources.get(i));
+            int target = Arrays.binarySearch(resourceIds, targets.get(i));
+            if (target >= 0) {
+                packed[edgeCount++] = (long) source << 32 | target;
+            }
+        }
+        Arrays.sort(packed, 0, edgeCount);
+        int[] edgeStarts = new int[resourceIds.length + 1];
+        int[] edges = new int[edgeCount];
+        int size = 0;
+        for (int i = 0; i < edgeCount; i++) {
+            if (i > 0 && packed[i] == packed[i - 1]) {
+                continue;
+            }
+            edgeStarts[(int) (packed[i] >>> 32) + 1]++;
+            edges[size++] = (int) packed[i];
+        }
+        for (int i = 0; i < resourceIds.length; i++) {
+            edgeStarts[i + 1] += edgeStarts[i];
+        }
+        return new ResourceReferenceGraph(resourceIds, edgeStarts, Arrays.copyOf(edges, size),
+                Collections.unmodifiableMap(fileReferences));
+    }
+
+    /**
+     * The paths of binary xml files referenced by resource values, which should be passed to build the graph,
+     * along with AndroidManifest.xml.
+     */
+    public static Set<String> getXmlFilePaths(ResourceTable resourceTable) {
+        final Set<String> paths = new TreeSet<>();
+        resourceTable.accept(new ResourceVisitor() {
+            @Override
+            public void visitValue(long resourceId, Type type, String key, short dataType, int data) {
+                if (dataType == ResValue.ResType.STRING) {
+                    String path = type.getStringPool().get(data);
+                    if (path != null && path.startsWith("res/") && path.endsWith(".xml")) {
+                        paths.add(path);
+                    }
+                }
+            }
+
+            @Override
+            public void visitComplex(long resourceId, Type type, String key, long parent, int count) {
+            }
+        });
+        return paths;
+    }
+
+    /**
+     * split files by half, until one file
+     */
+    private static class ScanTask extends RecursiveAction {
+        private final List<String> paths;
+        private final Map<String, byte[]> xmlFiles;
+        private final int[][] results;
+        private final int from;
+        private final int to;
+
+        ScanTask(List<String> paths, Map<String, byte[]> xmlFiles, int[][] results, int from, int to) {
+            this.paths = paths;
+            this.xmlFiles = xmlFiles;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (to > from) {
+                    results[from] = scanXml(xmlFiles.get(paths.get(from)));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ScanTask(paths, xmlFiles, results, from, middle),
+                    new ScanTask(paths, xmlFiles, results, middle, to));
+        }
+    }
+
+    /**
+     * Read the resource ids referenced by attribute values and cdata of a binary xml file, without parsing the
+     * string pool or creating node objects.
+     *
+     * @return the sorted resource ids
+     */
+    static int[] scanXml(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < 8) {
+            return new int[0];
+        }
+        int fileType = buffer.getShort(0) & 0xffff;
+        if (fileType != ChunkType.XML && fileType != ChunkType.NULL) {
+            return new int[0];
+        }
+        IntList references = new IntList();
+        long pos = buffer.getShort(2) & 0xffff;
+        while (pos + 8 <= buffer.limit()) {
+            int begin = (int) pos;
+            int chunkType = buffer.getShort(begin) & 0xffff;
+            int headerSize = buffer.getShort(begin + 2) & 0xffff;
+            long chunkSize = buffer.getInt(begin + 4) & 0xffffffffL;
+            long end = pos + chunkSize;
+            if (chunkSize < 8 || chunkSize < headerSize || end > buffer.limit()) {
+                throw new ParserException("Invalid chunk size " + chunkSize + ", header size " + headerSize);
+            }
+            int body = begin + headerSize;
+            if (chunkType == ChunkType.XML_START_ELEMENT && body + 14 <= end) {
+                // ns, name, uint16 attributeStart, attributeSize, attributeCount
+                int attributeStart = buffer.getShort(body + 8) & 0xffff;
+                int attributeSize = buffer.getShort(body + 10) & 0xffff;
+                int attributeCount = buffer.getShort(body + 12) & 0xffff;
+                for (int i = 0; i < attributeCount; i++) {
+                    // ns, name, rawValue, then Res_value
+                    long attribute = body + attributeStart + (long) i * attributeSize;
+                    if (attributeSize < 20 || attribute + 20 > end) {
+                        break;
+                    }
+                    addReference(buffer, (int) attribute + 12, references);
+                }
+            } else if (chunkType == ChunkType.XML_CDATA && body + 12 <= end) {
+                // data ref, then Res_value
+                addReference(buffer, body + 4, references);
+            }
+            pos = end;
+        }
+        return sortedUnique(references.toArray());
+    }
+
+    private static void addReference(ByteBuffer buffer, int offset, IntList references) {
+        short dataType = (short) (buffer.get(offset + 3) & 0xff);
+        int data = buffer.getInt(offset + 4);
+        if (ParseUtils.isReferenceType(dataType) && data != 0) {
+            references.add(data);
+        }
+    }
+
+    private static int[] sortedUnique(int[] values) {
+        Arrays.sort(values);
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[i - 1]) {
+                values[size++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * The count of resources in graph.
+     */
+    public int getNodeCount() {
+        return resourceIds.length;
+    }
+
+    /**
+     * The count of distinct references between resources.
+     */
+    public int getEdgeCount() {
+        return edges.length;
+    }
+
+    /**
+     * @return the sorted ids of all resources in graph
+     */
+    public int[] getResourceIds() {
+        return resourceIds.clone();
+    }
+
+    /**
+     * @return the sorted ids of resources directly referenced by the resource, empty if the resource is not in graph
+     */
+    public int[] getReferences(int resourceId) {
+        int node = Arrays.binarySearch(resourceIds, resourceId);
+        if (node < 0) {
+            return new int[0];
+        }
+        int[] references = new int[edgeStarts[node + 1] - edgeStarts[node]];
+        for (int i = 0; i < references.length; i++) {
+            references[i] = resourceIds[edges[edgeStarts[node] + i]];
+        }
+        return references;
+    }
+
+    /**
+     * The resources referenced by a xml file passed when build the graph. Can be used as roots of reachability
+     * queries, e.g. the references of AndroidManifest.xml.
+     *
+     * @return the sorted resource ids, including ids not in graph. null if the file is not passed
+     */
+    public int[] getFileReferences(String path) {
+        int[] references = fileReferences.get(path);
+        return references == null ? null : references.clone();
+    }
+
+    /**
+     * Find all resources reachable from roots, by breadth-first search.
+     *
+     * @param roots the resource ids to start from, ids not in graph are ignored
+     * @return the sorted ids of reachable resources, including the roots in graph
+     */
+    public int[] getReachable(int... roots) {
+        return collect(reach(roots), true);
+    }
+
+    /**
+     * Find all resources not reachable from roots, which are the candidates of unused resources.
+     *
+     * @return the sorted ids of resources not reachable
+     */
+    public int[] getUnreachable(int... roots) {
+        return collect(reach(roots), false);
+    }
+
+    private boolean[] reach(int[] roots) {
+        boolean[] visited = new boolean[resourceIds.length];
+        // each node is queued at most once
+        int[] queue = new int[resourceIds.length];
+        int head = 0;
+        int tail = 0;
+        for (int root : roots) {
+            int node = Arrays.binarySearch(resourceIds, root);
+            if (node >= 0 && !visited[node]) {
+                visited[node] = true;
+                queue[tail++] = node;
+            }
+        }
+        while (head < tail) {
+            int node = queue[head++];
+            for (int i = edgeStarts[node]; i < edgeStarts[node + 1]; i++) {
+                int target = edges[i];
+                if (!visited[target]) {
+                    visited[target] = true;
+                    queue[tail++] = target;
+                }
+            }
+        }
+        return visited;
+    }
+
+    private int[] collect(boolean[] visited, boolean value) {
+        IntList result = new IntList();
+        for (int i = 0; i < visited.length; i++) {
+            if (visited[i] == value) {
+                result.add(resourceIds[i]);
+            }
+        }
+        return result.toArray();
+    }
+}
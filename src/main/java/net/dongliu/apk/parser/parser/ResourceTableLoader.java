@@ -0,0 +1,19 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.struct.resource.ResourceTable;
+
+/**
+ * Load resource table on demand, so binary xml without resource references do not need to read resources.arsc.
+ *
+ * @author dongliu
+ */
+public interface ResourceTableLoader {
+
+    /**
+     * Load the resource table. Called at most once per BinaryXmlParser, when the first reference value need to
+     * be resolved.
+     *
+     * @return the resource table, null if not available
+     */
+    ResourceTable load();
+}
@@ -6,12 +6,14 @@ import net.dongliu.apk.parser.struct.ChunkType;
 import net.dongliu.apk.parser.struct.StringPool;
 import net.dongliu.apk.parser.struct.StringPoolHeader;
 import net.dongliu.apk.parser.struct.resource.*;
+import net.dongliu.apk.parser.utils.BufferArena;
 import net.dongliu.apk.parser.utils.Buffers;
 import net.dongliu.apk.parser.utils.Pair;
 import net.dongliu.apk.parser.utils.ParseUtils;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
 import java.util.Locale;
 import java.util.Set;
@@ -36,6 +38,12 @@ public class ResourceTableParser {
 
     private Set<Locale> locales;
 
+    private ParseLimits parseLimits = new ParseLimits();
+    private CancellationToken cancellationToken = CancellationToken.NONE;
+    private StringInterner stringInterner = StringInterner.NONE;
+    // the owner of buffer if it is off-heap
+    private BufferArena bufferArena;
+
     public ResourceTableParser(ByteBuffer buffer) {
         this.buffer = buffer.duplicate();
         this.buffer.order(byteOrder);
@@ -50,10 +58,12 @@ public class ResourceTableParser {
         ResourceTableHeader resourceTableHeader = (ResourceTableHeader) readChunkHeader();
 
         // read string pool chunk
-        stringPool = ParseUtils.readStringPool(buffer, (StringPoolHeader) readChunkHeader());
+        stringPool = ParseUtils.readStringPool(buffer, (StringPoolHeader) readChunkHeader(), parseLimits,
+                stringInterner);
 
         resourceTable = new ResourceTable();
         resourceTable.setStringPool(stringPool);
+        resourceTable.setParseLimits(parseLimits);
 
         PackageHeader packageHeader = (PackageHeader) readChunkHeader();
         for (int i = 0; i < resourceTableHeader.getPackageCount(); i++) {
@@ -61,6 +71,7 @@ public class ResourceTableParser {
             resourceTable.addPackage(pair.getLeft());
             packageHeader = pair.getRight();
         }
+        resourceTable.freeze();
     }
 
     // read one package
@@ -76,7 +87,7 @@ public class ResourceTableParser {
             buffer.position((int) (beginPos + packageHeader.getTypeStrings()
                     - packageHeader.getHeaderSize()));
             resourcePackage.setTypeStringPool(ParseUtils.readStringPool(buffer,
-                    (StringPoolHeader) readChunkHeader()));
+                    (StringPoolHeader) readChunkHeader(), parseLimits, stringInterner));
         }
 
         //read key string pool
@@ -84,17 +95,19 @@ public class ResourceTableParser {
             buffer.position((int) (beginPos + packageHeader.getKeyStrings()
                     - packageHeader.getHeaderSize()));
             resourcePackage.setKeyStringPool(ParseUtils.readStringPool(buffer,
-                    (StringPoolHeader) readChunkHeader()));
+                    (StringPoolHeader) readChunkHeader(), parseLimits, stringInterner));
         }
 
 
         outer:
         while (buffer.hasRemaining()) {
+            cancellationToken.checkCancelled();
             ChunkHeader chunkHeader = readChunkHeader();
             long chunkBegin = buffer.position();
             switch (chunkHeader.getChunkType()) {
                 case ChunkType.TABLE_TYPE_SPEC:
                     TypeSpecHeader typeSpecHeader = (TypeSpecHeader) chunkHeader;
+                    Buffers.checkRemaining(buffer, typeSpecHeader.getEntryCount(), 4);
                     long[] entryFlags = new long[(int) typeSpecHeader.getEntryCount()];
                     for (int i = 0; i < typeSpecHeader.getEntryCount(); i++) {
                         entryFlags[i] = Buffers.readUInt(buffer);
@@ -113,21 +126,23 @@ public class ResourceTableParser {
                     break;
                 case ChunkType.TABLE_TYPE:
                     TypeHeader typeHeader = (TypeHeader) chunkHeader;
-                    // read offsets table
-                    long[] offsets = new long[(int) typeHeader.getEntryCount()];
-                    for (int i = 0; i < typeHeader.getEntryCount(); i++) {
-                        offsets[i] = Buffers.readUInt(buffer);
-                    }
-
                     Type type = new Type(typeHeader);
+                    readTypeOffsets(typeHeader, type);
                     type.setName(resourcePackage.getTypeStringPool().get(typeHeader.getId() - 1));
                     long entryPos = chunkBegin + typeHeader.getEntriesStart() - typeHeader.getHeaderSize();
+                    long entriesSize = chunkBegin + typeHeader.getBodySize() - entryPos;
+                    if (entryPos < buffer.position() || entriesSize < 0) {
+                        throw new ParserException("Invalid type chunk entries start " + typeHeader.getEntriesStart());
+                    }
+                    checkEntryOffsets(type.getEntryOffsets(), entriesSize);
                     buffer.position((int) entryPos);
                     ByteBuffer b = buffer.slice();
                     b.order(byteOrder);
+                    // the entries data of this type chunk only
+                    b.limit((int) entriesSize);
                     type.setBuffer(b);
+                    type.setBufferArena(bufferArena);
                     type.setKeyStringPool(resourcePackage.getKeyStringPool());
-                    type.setOffsets(offsets);
                     type.setStringPool(stringPool);
                     resourcePackage.addType(type);
                     locales.add(type.getLocale());
@@ -157,12 +172,66 @@ public class ResourceTableParser {
 
     }
 
+    /**
+     * read the entry offsets table of type chunk, which may be dense uint32 offsets, dense uint16 offsets,
+     * or sparse entry index / offset pairs.
+     */
+    private void readTypeOffsets(TypeHeader typeHeader, Type type) {
+        int count = (int) typeHeader.getEntryCount();
+        int flags = typeHeader.getFlags();
+        if ((flags & TypeHeader.FLAG_SPARSE) != 0) {
+            Buffers.checkRemaining(buffer, count, 4);
+            char[] entryIndices = new char[count];
+            int[] offsets = new int[count];
+            for (int i = 0; i < count; i++) {
+                entryIndices[i] = (char) Buffers.readUShort(buffer);
+                offsets[i] = Buffers.readUShort(buffer) * 4;
+                if (i > 0 && entryIndices[i] <= entryIndices[i - 1]) {
+                    throw new ParserException("Sparse type entries not sorted by index");
+                }
+            }
+            type.setSparseOffsets(entryIndices, offsets);
+        } else if ((flags & TypeHeader.FLAG_OFFSET16) != 0) {
+            Buffers.checkRemaining(buffer, count, 2);
+            int[] offsets = new int[count];
+            for (int i = 0; i < count; i++) {
+                int offset = Buffers.readUShort(buffer);
+                offsets[i] = offset == TypeHeader.NO_ENTRY16 ? Type.NO_ENTRY : offset * 4;
+            }
+            type.setEntryOffsets(offsets);
+        } else {
+            Buffers.checkRemaining(buffer, count, 4);
+            int[] offsets = new int[count];
+            for (int i = 0; i < count; i++) {
+                // NO_ENTRY 0xffffffff reads as -1
+                offsets[i] = buffer.getInt();
+            }
+            type.setEntryOffsets(offsets);
+        }
+    }
+
+    /**
+     * Check the entry offsets are in the entries data of type, so malformed chunks fail here, not when the entries
+     * are read.
+     */
+    static void checkEntryOffsets(int[] offsets, long entriesSize) {
+        for (int offset : offsets) {
+            // the entry header: uint16 size, uint16 flags, uint32 key
+            if (offset != Type.NO_ENTRY && (offset < 0 || offset + 8L > entriesSize)) {
+                throw new ParserException("Invalid entry offset " + offset + ", entries size " + entriesSize);
+            }
+        }
+    }
+
     private ChunkHeader readChunkHeader() {
         long begin = buffer.position();
 
         int chunkType = Buffers.readUShort(buffer);
         int headerSize = Buffers.readUShort(buffer);
         long chunkSize = Buffers.readUInt(buffer);
+        if (chunkSize < headerSize) {
+            throw new ParserException("Invalid chunk size " + chunkSize + ", header size " + headerSize);
+        }
 
         switch (chunkType) {
             case ChunkType.TABLE:
@@ -227,16 +296,102 @@ public class ResourceTableParser {
         long beginPos = buffer.position();
         ResTableConfig config = new ResTableConfig();
         long size = Buffers.readUInt(buffer);
-        Buffers.skip(buffer, 4);
-        //read locale
-        config.setLanguage(new String(Buffers.readBytes(buffer, 2)).replace("\0", ""));
-        config.setCountry(new String(Buffers.readBytes(buffer, 2)).replace("\0", ""));
+        config.setSize(size);
+        // fields are appended to the struct in newer android versions, older files may be shorter
+        if (size >= 28) {
+            config.setMcc((short) Buffers.readUShort(buffer));
+            config.setMnc((short) Buffers.readUShort(buffer));
+            //read locale
+            config.setLanguage(unpackLanguageOrRegion(Buffers.readBytes(buffer, 2), 'a'));
+            config.setCountry(unpackLanguageOrRegion(Buffers.readBytes(buffer, 2), '0'));
+
+            config.setOrientation(Buffers.readUByte(buffer));
+            config.setTouchscreen(Buffers.readUByte(buffer));
+            config.setDensity(Buffers.readUShort(buffer));
+
+            config.setKeyboard(Buffers.readUByte(buffer));
+            config.setNavigation(Buffers.readUByte(buffer));
+            config.setInputFlags(Buffers.readUByte(buffer));
+            config.setInputPad0(Buffers.readUByte(buffer));
+
+            config.setScreenWidth(Buffers.readUShort(buffer));
+            config.setScreenHeight(Buffers.readUShort(buffer));
+
+            config.setSdkVersion(Buffers.readUShort(buffer));
+            config.setMinorVersion(Buffers.readUShort(buffer));
+        }
+        if (size >= 32) {
+            config.setScreenLayout(Buffers.readUByte(buffer));
+            config.setUiMode(Buffers.readUByte(buffer));
+            config.setSmallestScreenWidthDp(Buffers.readUShort(buffer));
+        }
+        if (size >= 36) {
+            config.setScreenWidthDp(Buffers.readUShort(buffer));
+            config.setScreenHeightDp(Buffers.readUShort(buffer));
+        }
+        if (size >= 48) {
+            config.setLocaleScript(readAsciiString(4));
+            config.setLocaleVariant(readAsciiString(8));
+        }
+        if (size >= 52) {
+            config.setScreenLayout2(Buffers.readUByte(buffer));
+            config.setColorMode(Buffers.readUByte(buffer));
+            Buffers.skip(buffer, 2);
+        }
 
         long endPos = buffer.position();
         Buffers.skip(buffer, (int) (size - (endPos - beginPos)));
         return config;
     }
 
+    /**
+     * Language and region are two ascii chars, or three chars packed in 15 bits.
+     * see unpackLanguageOrRegion in ResourceTypes.cpp
+     */
+    private static String unpackLanguageOrRegion(byte[] in, char base) {
+        if ((in[0] & 0x80) != 0) {
+            int first = in[1] & 0x1f;
+            int second = ((in[1] & 0xe0) >> 5) + ((in[0] & 0x03) << 3);
+            int third = (in[0] & 0x7c) >> 2;
+            return new String(new char[]{(char) (first + base), (char) (second + base), (char) (third + base)});
+        }
+        if (in[0] == 0) {
+            return "";
+        }
+        if (in[1] == 0) {
+            return String.valueOf((char) in[0]);
+        }
+        return new String(new char[]{(char) in[0], (char) in[1]});
+    }
+
+    private String readAsciiString(int len) {
+        byte[] bytes = Buffers.readBytes(buffer, len);
+        int end = 0;
+        while (end < len && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, 0, end, StandardCharsets.US_ASCII);
+    }
+
+    public void setParseLimits(ParseLimits parseLimits) {
+        this.parseLimits = parseLimits;
+    }
+
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    public void setStringInterner(StringInterner stringInterner) {
+        this.stringInterner = stringInterner;
+    }
+
+    /**
+     * Set the arena owning the buffer if it is off-heap, so the parsed types detect reads after the arena is closed
+     */
+    public void setBufferArena(BufferArena bufferArena) {
+        this.bufferArena = bufferArena;
+    }
+
     public ResourceTable getResourceTable() {
         return resourceTable;
     }
@@ -0,0 +1,539 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.exception.ParserException;
+import net.dongliu.apk.parser.struct.ChunkType;
+import net.dongliu.apk.parser.struct.StringPool;
+import net.dongliu.apk.parser.struct.resource.*;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of a parsed resource table. The snapshot is written once, and loaded by memory-mapping the file,
+ * so reopen the same apk does not parse resources.arsc again, and the pages are shared by processes on one host.
+ * String pools and entry data are read from the mapped file only when used.
+ * <p>
+ * The file is little-endian, a 24 bytes header: magic "ARTS", version, flags, crc32 of body, body length(int64).
+ * The body contains the global string pool, the packages with their type specs and types, and the slots of the
+ * {@link ResourceNameIndex} hash table, so names are looked up in the mapped file without reading all types. A string
+ * pool is the string count, data length, count + 1 offsets, and the utf-8 data.
+ * <p>
+ * The snapshot file should be keyed by the apk it is from, the content of the apk is not checked when load.
+ *
+ * @author dongliu
+ */
+public class ResourceTableSnapshot {
+
+    // "ARTS"
+    private static final int MAGIC = 0x53545241;
+    public static final int VERSION = 3;
+    private static final int HEADER_SIZE = 24;
+
+    private static final int TYPE_FLAG_SPARSE = 0x01;
+
+    private final ResourceTable resourceTable;
+    private final Set<Locale> locales;
+
+    private ResourceTableSnapshot(ResourceTable resourceTable, Set<Locale> locales) {
+        this.resourceTable = resourceTable;
+        this.locales = locales;
+    }
+
+    /**
+     * Write snapshot of the resource table to file. The file is replaced atomically, so concurrent loaders see either
+     * the old or the new snapshot.
+     */
+    public static void write(ResourceTable resourceTable, File file) throws IOException {
+        Path path = file.toPath();
+        Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), file.getName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                // the body is streamed after a placeholder header, the header is written when the crc is known
+                channel.position(HEADER_SIZE);
+                Writer body = new Writer(new BufferedOutputStream(Channels.newOutputStream(channel)));
+                writeBody(resourceTable, body);
+                body.flush();
+                ByteBuffer header = ByteBuffer.wrap(header(body.getCrc(), body.getSize()));
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Write snapshot of the resource table to output stream. The body is written twice, first only for the crc in
+     * the header, so it is not buffered in memory. The stream is not closed.
+     */
+    public static void write(ResourceTable resourceTable, OutputStream out) throws IOException {
+        Writer crcWriter = new Writer(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        writeBody(resourceTable, crcWriter);
+
+        out.write(header(crcWriter.getCrc(), crcWriter.getSize()));
+        Writer body = new Writer(new BufferedOutputStream(out));
+        writeBody(resourceTable, body);
+        body.flush();
+    }
+
+    private static byte[] header(int crc, long bodyLength) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(0);
+        header.putInt(crc);
+        header.putLong(bodyLength);
+        return header.array();
+    }
+
+    private static void writeBody(ResourceTable resourceTable, Writer body) throws IOException {
+        body.writePool(resourceTable.getStringPool());
+
+        List<ResourcePackage> packages = new ArrayList<>(resourceTable.getPackageMap().values());
+        body.writeInt(packages.size());
+        for (ResourcePackage resourcePackage : packages) {
+            body.writeInt(resourcePackage.getId());
+            body.writeString(resourcePackage.getName());
+            body.writePool(resourcePackage.getTypeStringPool());
+            body.writePool(resourcePackage.getKeyStringPool());
+
+            Collection<TypeSpec> typeSpecs = resourcePackage.getTypeSpecMap().values();
+            body.writeInt(typeSpecs.size());
+            for (TypeSpec typeSpec : typeSpecs) {
+                body.writeInt(typeSpec.getId());
+                long[] entryFlags = typeSpec.getEntryFlags();
+                body.writeInt(entryFlags.length);
+                for (long flag : entryFlags) {
+                    body.writeInt((int) flag);
+                }
+            }
+
+            List<Type> types = new ArrayList<>();
+            for (List<Type> list : resourcePackage.getTypesMap().values()) {
+                types.addAll(list);
+            }
+            body.writeInt(types.size());
+            for (Type type : types) {
+                if (type.getKeyStringPool() != resourcePackage.getKeyStringPool()
+                        || type.getStringPool() != resourceTable.getStringPool()) {
+                    throw new ParserException("Merged resource table with more than one string pool not supported");
+                }
+                writeType(body, type);
+            }
+        }
+
+        ResourceNameIndex nameIndex = resourceTable.getNameIndex();
+        body.writeInt(nameIndex.getSlotCount());
+        for (int slot = 0; slot < nameIndex.getSlotCount(); slot++) {
+            body.writeLong(nameIndex.getSlotKey(slot));
+            body.writeInt(nameIndex.getSlotResourceId(slot));
+        }
+    }
+
+    private static void writeType(Writer body, Type type) throws IOException {
+        body.writeInt(type.getId());
+        writeConfig(body, type.getConfig());
+        char[] entryIndices = type.getEntryIndices();
+        int[] offsets = type.getEntryOffsets();
+        body.writeInt(entryIndices == null ? 0 : TYPE_FLAG_SPARSE);
+        body.writeInt(offsets.length);
+        if (entryIndices != null) {
+            for (char entryIndex : entryIndices) {
+                body.writeShort(entryIndex);
+            }
+        }
+        for (int offset : offsets) {
+            body.writeInt(offset);
+        }
+        ByteBuffer data = type.getBuffer().duplicate();
+        data.position(0);
+        body.writeInt(data.remaining());
+        body.write(data);
+    }
+
+    private static void writeConfig(Writer body, ResTableConfig config) throws IOException {
+        body.writeInt(config.getMcc());
+        body.writeInt(config.getMnc());
+        body.writeString(config.getLanguage());
+        body.writeString(config.getCountry());
+        body.writeInt(config.getOrientation());
+        body.writeInt(config.getTouchscreen());
+        body.writeInt(config.getDensity());
+        body.writeInt(config.getKeyboard());
+        body.writeInt(config.getNavigation());
+        body.writeInt(config.getInputFlags());
+        body.writeInt(config.getScreenWidth());
+        body.writeInt(config.getScreenHeight());
+        body.writeInt(config.getSdkVersion());
+        body.writeInt(config.getMinorVersion());
+        body.writeInt(config.getScreenLayout());
+        body.writeInt(config.getUiMode());
+        body.writeInt(config.getSmallestScreenWidthDp());
+        body.writeInt(config.getScreenWidthDp());
+        body.writeInt(config.getScreenHeightDp());
+        body.writeString(config.getLocaleScript());
+        body.writeString(config.getLocaleVariant());
+        body.writeInt(config.getScreenLayout2());
+        body.writeInt(config.getColorMode());
+    }
+
+    /**
+     * Load snapshot by memory-mapping the file, and verify the checksum.
+     *
+     * @throws ParserException if the file is not a valid snapshot of current version
+     */
+    public static ResourceTableSnapshot load(File file) throws IOException {
+        return load(file, true);
+    }
+
+    /**
+     * Load snapshot by memory-mapping the file.
+     *
+     * @param verifyChecksum if verify the crc32 of the snapshot, which reads the whole file
+     * @throws ParserException if the file is not a valid snapshot of current version
+     */
+    public static ResourceTableSnapshot load(File file, boolean verifyChecksum) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return load(buffer, verifyChecksum);
+    }
+
+    /**
+     * Load snapshot from buffer. The buffer is used by the loaded resource table, and should not be modified.
+     *
+     * @throws ParserException if the data is not a valid snapshot of current version
+     */
+    public static ResourceTableSnapshot load(ByteBuffer buffer, boolean verifyChecksum) {
+        buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new ParserException("Not a resource table snapshot");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new ParserException("Unsupported resource table snapshot version: " + version);
+        }
+        buffer.getInt();
+        int crc = buffer.getInt();
+        long bodyLength = buffer.getLong();
+        if (bodyLength != buffer.remaining()) {
+            throw new ParserException("Resource table snapshot truncated");
+        }
+        ByteBuffer body = slice(buffer, (int) bodyLength);
+        if (verifyChecksum) {
+            if (crc32(body.duplicate()) != crc) {
+                throw new ParserException("Resource table snapshot checksum mismatch");
+            }
+        }
+        try {
+            return new Reader(body).read();
+        } catch (RuntimeException e) {
+            if (e instanceof ParserException) {
+                throw e;
+            }
+            // BufferUnderflowException, IndexOutOfBoundsException when the snapshot is corrupted
+            throw new ParserException("Malformed resource table snapshot", e);
+        }
+    }
+
+    /**
+     * the resource table, its string pools and entries data are read from the snapshot when used.
+     */
+    public ResourceTable getResourceTable() {
+        return resourceTable;
+    }
+
+    /**
+     * The locales of the resource table types
+     */
+    public Set<Locale> getLocales() {
+        return locales;
+    }
+
+    /**
+     * Find resource id by type name and entry name, e.g. ("string", "app_name"), same as
+     * {@link ResourceTable#getResourceId(String, String)}.
+     *
+     * @return the resource id, -1 if not found
+     */
+    public long getResourceId(String type, String name) {
+        return resourceTable.getResourceId(type, name);
+    }
+
+    private static int crc32(ByteBuffer buffer) {
+        CRC32 crc32 = new CRC32();
+        byte[] bytes = new byte[8192];
+        while (buffer.hasRemaining()) {
+            int len = Math.min(bytes.length, buffer.remaining());
+            buffer.get(bytes, 0, len);
+            crc32.update(bytes, 0, len);
+        }
+        return (int) crc32.getValue();
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int length) {
+        ByteBuffer slice = buffer.slice();
+        slice.limit(length);
+        slice.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    private static class Reader {
+        private final ByteBuffer buffer;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        ResourceTableSnapshot read() {
+            ResourceTable resourceTable = new ResourceTable();
+            StringPool stringPool = readPool();
+            resourceTable.setStringPool(stringPool);
+
+            Set<Locale> locales = new HashSet<>();
+            int packageCount = buffer.getInt();
+            for (int i = 0; i < packageCount; i++) {
+                PackageHeader packageHeader = new PackageHeader(ChunkType.TABLE_PACKAGE, 0, 0);
+                packageHeader.setId(buffer.getInt());
+                packageHeader.setName(readString());
+                ResourcePackage resourcePackage = new ResourcePackage(packageHeader);
+                resourcePackage.setTypeStringPool(readPool());
+                resourcePackage.setKeyStringPool(readPool());
+
+                int typeSpecCount = buffer.getInt();
+                for (int j = 0; j < typeSpecCount; j++) {
+                    TypeSpecHeader typeSpecHeader = new TypeSpecHeader(ChunkType.TABLE_TYPE_SPEC, 0, 0);
+                    typeSpecHeader.setId((short) buffer.getInt());
+                    TypeSpec typeSpec = new TypeSpec(typeSpecHeader);
+                    long[] entryFlags = new long[checkCount(buffer.getInt(), 4)];
+                    for (int k = 0; k < entryFlags.length; k++) {
+                        entryFlags[k] = buffer.getInt() & 0xffffffffL;
+                    }
+                    typeSpec.setEntryFlags(entryFlags);
+                    typeSpec.setName(resourcePackage.getTypeStringPool().get(typeSpec.getId() - 1));
+                    resourcePackage.addTypeSpec(typeSpec);
+                }
+
+                int typeCount = buffer.getInt();
+                for (int j = 0; j < typeCount; j++) {
+                    Type type = readType(resourcePackage, stringPool);
+                    resourcePackage.addType(type);
+                    locales.add(type.getLocale());
+                }
+                resourceTable.addPackage(resourcePackage);
+            }
+            int slotCount = checkCount(buffer.getInt(), ResourceNameIndex.SLOT_SIZE);
+            ByteBuffer slots = slice(buffer, slotCount * ResourceNameIndex.SLOT_SIZE);
+            resourceTable.setNameIndex(new ResourceNameIndex(resourceTable.getPackageMap().values(), slots));
+            resourceTable.freeze();
+            return new ResourceTableSnapshot(resourceTable, locales);
+        }
+
+        private Type readType(ResourcePackage resourcePackage, StringPool stringPool) {
+            TypeHeader typeHeader = new TypeHeader(ChunkType.TABLE_TYPE, 0, 0);
+            typeHeader.setId((short) buffer.getInt());
+            typeHeader.setConfig(readConfig());
+            Type type = new Type(typeHeader);
+            type.setName(resourcePackage.getTypeStringPool().get(type.getId() - 1));
+
+            int flags = buffer.getInt();
+            int count = buffer.getInt();
+            if ((flags & TYPE_FLAG_SPARSE) != 0) {
+                char[] entryIndices = new char[checkCount(count, 6)];
+                for (int i = 0; i < count; i++) {
+                    entryIndices[i] = buffer.getChar();
+                }
+                type.setSparseOffsets(entryIndices, readInts(count));
+            } else {
+                type.setEntryOffsets(readInts(checkCount(count, 4)));
+            }
+            int length = checkCount(buffer.getInt(), 1);
+            ResourceTableParser.checkEntryOffsets(type.getEntryOffsets(), length);
+            type.setBuffer(slice(buffer, length));
+            type.setKeyStringPool(resourcePackage.getKeyStringPool());
+            type.setStringPool(stringPool);
+            return type;
+        }
+
+        private ResTableConfig readConfig() {
+            ResTableConfig config = new ResTableConfig();
+            config.setMcc((short) buffer.getInt());
+            config.setMnc((short) buffer.getInt());
+            config.setLanguage(readString());
+            config.setCountry(readString());
+            config.setOrientation((short) buffer.getInt());
+            config.setTouchscreen((short) buffer.getInt());
+            config.setDensity(buffer.getInt());
+            config.setKeyboard((short) buffer.getInt());
+            config.setNavigation((short) buffer.getInt());
+            config.setInputFlags((short) buffer.getInt());
+            config.setScreenWidth(buffer.getInt());
+            config.setScreenHeight(buffer.getInt());
+            config.setSdkVersion(buffer.getInt());
+            config.setMinorVersion(buffer.getInt());
+            config.setScreenLayout((short) buffer.getInt());
+            config.setUiMode((short) buffer.getInt());
+            config.setSmallestScreenWidthDp(buffer.getInt());
+            config.setScreenWidthDp(buffer.getInt());
+            config.setScreenHeightDp(buffer.getInt());
+            config.setLocaleScript(readString());
+            config.setLocaleVariant(readString());
+            config.setScreenLayout2((short) buffer.getInt());
+            config.setColorMode((short) buffer.getInt());
+            return config;
+        }
+
+        private StringPool readPool() {
+            int count = checkCount(buffer.getInt(), 4);
+            int dataLength = buffer.getInt();
+            ByteBuffer offsets = slice(buffer, (count + 1) * 4);
+            ByteBuffer data = slice(buffer, dataLength);
+            return new SnapshotStringPool(count, offsets, data);
+        }
+
+        private int[] readInts(int count) {
+            int[] values = new int[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = buffer.getInt();
+            }
+            return values;
+        }
+
+        private String readString() {
+            int length = checkCount(buffer.getInt(), 1);
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * check the count of items is not negative, and the data is large enough, before allocate arrays
+         */
+        private int checkCount(int count, int itemSize) {
+            if (count < 0 || (long) count * itemSize > buffer.remaining()) {
+                throw new ParserException("Malformed resource table snapshot");
+            }
+            return count;
+        }
+    }
+
+    /**
+     * little-endian writer, counts the bytes written and the crc32 of them
+     */
+    private static class Writer {
+        private final CheckedOutputStream out;
+        private final byte[] scratch = new byte[8192];
+        private long size;
+
+        Writer(OutputStream out) {
+            this.out = new CheckedOutputStream(out, new CRC32());
+        }
+
+        void writeInt(int value) throws IOException {
+            scratch[0] = (byte) value;
+            scratch[1] = (byte) (value >>> 8);
+            scratch[2] = (byte) (value >>> 16);
+            scratch[3] = (byte) (value >>> 24);
+            write(scratch, 0, 4);
+        }
+
+        void writeLong(long value) throws IOException {
+            writeInt((int) value);
+            writeInt((int) (value >>> 32));
+        }
+
+        void writeShort(int value) throws IOException {
+            scratch[0] = (byte) value;
+            scratch[1] = (byte) (value >>> 8);
+            write(scratch, 0, 2);
+        }
+
+        void writeString(String str) throws IOException {
+            byte[] bytes = str == null ? new byte[0] : str.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                int len = Math.min(scratch.length, buffer.remaining());
+                buffer.get(scratch, 0, len);
+                write(scratch, 0, len);
+            }
+        }
+
+        /**
+         * The strings are encoded twice, first for the offsets, so the pool data is not buffered
+         */
+        void writePool(StringPool pool) throws IOException {
+            int count = pool == null ? 0 : pool.size();
+            int[] offsets = new int[count + 1];
+            for (int i = 0; i < count; i++) {
+                String str = pool.get(i);
+                offsets[i + 1] = offsets[i] + (str == null ? 0 : str.getBytes(StandardCharsets.UTF_8).length);
+            }
+            writeInt(count);
+            writeInt(offsets[count]);
+            for (int offset : offsets) {
+                writeInt(offset);
+            }
+            for (int i = 0; i < count; i++) {
+                String str = pool.get(i);
+                if (str != null) {
+                    byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+                    write(bytes, 0, bytes.length);
+                }
+            }
+        }
+
+        private void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            size += length;
+        }
+
+        void flush() throws IOException {
+            out.flush();
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        int getCrc() {
+            return (int) out.getChecksum().getValue();
+        }
+    }
+}
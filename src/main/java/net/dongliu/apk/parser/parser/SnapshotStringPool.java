@@ -0,0 +1,103 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.struct.StringPool;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * String pool backed by a resource table snapshot blob, decode strings when first used.
+ *
+ * @author dongliu
+ */
+class SnapshotStringPool extends StringPool {
+    // utf-8 data of all strings
+    private final ByteBuffer data;
+    // count + 1 offsets into data, string i is [offsets[i], offsets[i + 1])
+    private final ByteBuffer offsets;
+    // hash table of string index + 1 by the hash of utf-8 bytes, so searching does not decode the strings
+    private volatile int[] slots;
+
+    SnapshotStringPool(int count, ByteBuffer offsets, ByteBuffer data) {
+        super(count);
+        this.offsets = offsets;
+        this.data = data;
+    }
+
+    @Override
+    public String get(int idx) {
+        String str = super.get(idx);
+        if (str == null) {
+            // concurrent decode of same string is harmless
+            int begin = offsets.getInt(idx * 4);
+            int end = offsets.getInt(idx * 4 + 4);
+            byte[] bytes = new byte[end - begin];
+            ByteBuffer buffer = data.duplicate();
+            buffer.position(begin);
+            buffer.get(bytes);
+            str = new String(bytes, StandardCharsets.UTF_8);
+            super.set(idx, str);
+        }
+        return str;
+    }
+
+    /**
+     * If the string has been decoded, for tests
+     */
+    boolean isDecoded(int idx) {
+        return super.get(idx) != null;
+    }
+
+    @Override
+    public int indexOf(String str) {
+        int[] slots = this.slots;
+        if (slots == null) {
+            // races only build the table more than once
+            slots = new int[tableSize(size())];
+            for (int i = 0; i < size(); i++) {
+                insert(slots, hash(offsets.getInt(i * 4), offsets.getInt(i * 4 + 4)), i);
+            }
+            this.slots = slots;
+        }
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        int mask = slots.length - 1;
+        for (int slot = slot(hash(bytes), mask); slots[slot] != 0; slot = (slot + 1) & mask) {
+            int idx = slots[slot] - 1;
+            if (equals(idx, bytes)) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+
+    // FNV-1a of the utf-8 data in [begin, end)
+    private int hash(int begin, int end) {
+        int hash = 0x811c9dc5;
+        for (int i = begin; i < end; i++) {
+            hash = (hash ^ (data.get(i) & 0xff)) * 0x01000193;
+        }
+        return hash;
+    }
+
+    private static int hash(byte[] bytes) {
+        int hash = 0x811c9dc5;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xff)) * 0x01000193;
+        }
+        return hash;
+    }
+
+    private boolean equals(int idx, byte[] bytes) {
+        int begin = offsets.getInt(idx * 4);
+        int end = offsets.getInt(idx * 4 + 4);
+        if (end - begin != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (data.get(begin + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,26 @@
+package net.dongliu.apk.parser.parser;
+
+/**
+ * Canonicalize strings materialized by parsers, so that equal strings from many apk files can share one instance.
+ * Implementations must be thread-safe if shared by parsers running concurrently.
+ *
+ * @author dongliu
+ */
+public interface StringInterner {
+
+    /**
+     * interner which returns the string as is, the default
+     */
+    StringInterner NONE = new StringInterner() {
+        @Override
+        public String intern(String str) {
+            return str;
+        }
+    };
+
+    /**
+     * @param str the string, may be null
+     * @return a string equal to str, null if str is null
+     */
+    String intern(String str);
+}
@@ -0,0 +1,115 @@
+package net.dongliu.apk.parser.parser;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lossy string interner for batch parsing of many apk files.
+ * Strings are cached in a fixed size hash table of weak references, so the interner never holds more than capacity
+ * strings, and does not keep strings alive which are no longer used by parse results. When both candidate slots of
+ * a string are taken, one is replaced, so a string may be interned to different instances over time; this only
+ * costs some duplication, never correctness.
+ * This class is thread-safe.
+ *
+ * @author dongliu
+ */
+public class WeakStringInterner implements StringInterner {
+    private final AtomicReferenceArray<WeakReference<String>> slots;
+    private final int mask;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+
+    public WeakStringInterner() {
+        this(1 << 16);
+    }
+
+    /**
+     * @param capacity the max count of strings cached, rounded up to power of two
+     */
+    public WeakStringInterner(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    @Override
+    public String intern(String str) {
+        if (str == null) {
+            return null;
+        }
+        requests.incrementAndGet();
+        int h = str.hashCode();
+        h ^= h >>> 16;
+        int first = h & mask;
+        // the second slot is in the same cache line in most cases
+        int second = first ^ 1;
+
+        WeakReference<String> firstRef = slots.get(first);
+        String cached = firstRef == null ? null : firstRef.get();
+        if (str.equals(cached)) {
+            return found(str, cached);
+        }
+        WeakReference<String> secondRef = slots.get(second);
+        String cached2 = secondRef == null ? null : secondRef.get();
+        if (str.equals(cached2)) {
+            return found(str, cached2);
+        }
+
+        // prefer the empty or cleared slot, else replace the first
+        int slot = cached == null || cached2 != null ? first : second;
+        slots.set(slot, new WeakReference<>(str));
+        return str;
+    }
+
+    private String found(String str, String cached) {
+        if (cached != str) {
+            deduplicated.incrementAndGet();
+        }
+        return cached;
+    }
+
+    /**
+     * The count of non-null strings passed to intern.
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * The count of strings replaced by a cached equal instance.
+     */
+    public long getDeduplicatedCount() {
+        return deduplicated.get();
+    }
+
+    /**
+     * The ratio of strings replaced by a cached equal instance, 0 if no string interned.
+     */
+    public double getDeduplicationRatio() {
+        long requests = this.requests.get();
+        return requests == 0 ? 0 : (double) deduplicated.get() / requests;
+    }
+
+    /**
+     * The max count of strings cached.
+     */
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    /**
+     * Reset the statistics, the cached strings are kept.
+     */
+    public void resetStatistics() {
+        requests.set(0);
+        deduplicated.set(0);
+    }
+}
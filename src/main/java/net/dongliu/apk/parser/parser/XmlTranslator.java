@@ -63,9 +63,9 @@ public class XmlTranslator implements XmlStreamer {
         if (namespace != null && !namespace.isEmpty()) {
             sb.append(namespace).append(':');
         }
-        String escapedFinalValue = XmlEscaper.escapeXml10(attribute.getValue());
-        sb.append(attribute.getName()).append('=').append('"')
-                .append(escapedFinalValue).append('"');
+        sb.append(attribute.getName()).append('=').append('"');
+        XmlEscaper.escapeXml10(attribute.getValue(), sb);
+        sb.append('"');
     }
 
     @Override
@@ -0,0 +1,179 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.bean.ArchiveEntry;
+import net.dongliu.apk.parser.exception.ParserException;
+import net.dongliu.apk.parser.utils.ZipSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read the entries of a zip archive from the central directory, and the local file headers for data offsets.
+ * No entry data is read or inflated. Zip64 archives are supported.
+ * <p>
+ * Local headers are spread over the archive, so readers of large archives should read the central directory only,
+ * with {@link #read(ZipSource, ArchiveEntry.LocalHeaderReader)}, and the local header of an entry when it is used,
+ * with {@link #readDataOffset(ZipSource, ArchiveEntry)}.
+ * see https://pkware.cachefly.net/webdocs/casestudies/APPNOTE.TXT
+ *
+ * @author dongliu
+ */
+public class ZipCentralDirectory {
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_EOCD_SIZE = 56;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    /**
+     * Read all entries with their local headers, in central directory order.
+     */
+    public static List<ArchiveEntry> read(ZipSource source) throws IOException {
+        List<ArchiveEntry> entries = read(source, null);
+        for (ArchiveEntry entry : entries) {
+            readDataOffset(source, entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Read all entries from the central directory only, in central directory order. The local header of an entry is
+     * read by localHeaderReader when the data offset is first used.
+     */
+    public static List<ArchiveEntry> read(ZipSource source, ArchiveEntry.LocalHeaderReader localHeaderReader)
+            throws IOException {
+        long size = source.size();
+        // the end of central directory record, followed by a comment of at most 65535 bytes
+        int tailSize = (int) Math.min(size, EOCD_SIZE + 0xffff);
+        ByteBuffer tail = read(source, size - tailSize, tailSize);
+        int eocd = -1;
+        for (int pos = tailSize - EOCD_SIZE; pos >= 0; pos--) {
+            if (tail.getInt(pos) == EOCD_SIGNATURE && pos + EOCD_SIZE + (tail.getShort(pos + 20) & 0xffff)
+                    == tailSize) {
+                eocd = pos;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            throw new ParserException("Invalid zip file: end of central directory not found");
+        }
+        long eocdOffset = size - tailSize + eocd;
+        long count = tail.getShort(eocd + 10) & 0xffff;
+        long centralSize = tail.getInt(eocd + 12) & 0xffffffffL;
+        long centralOffset = tail.getInt(eocd + 16) & 0xffffffffL;
+
+        if ((count == 0xffff || centralSize == 0xffffffffL || centralOffset == 0xffffffffL)
+                && eocdOffset >= ZIP64_LOCATOR_SIZE) {
+            ByteBuffer locator = read(source, eocdOffset - ZIP64_LOCATOR_SIZE, ZIP64_LOCATOR_SIZE);
+            if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+                ByteBuffer zip64Eocd = read(source, locator.getLong(8), ZIP64_EOCD_SIZE);
+                if (zip64Eocd.getInt(0) != ZIP64_EOCD_SIGNATURE) {
+                    throw new ParserException("Invalid zip file: zip64 end of central directory not found");
+                }
+                count = zip64Eocd.getLong(32);
+                centralSize = zip64Eocd.getLong(40);
+                centralOffset = zip64Eocd.getLong(48);
+            }
+        }
+
+        if (centralOffset < 0 || centralSize < 0 || centralOffset + centralSize > eocdOffset
+                || centralSize > Integer.MAX_VALUE || count < 0 || count > centralSize / CENTRAL_HEADER_SIZE) {
+            throw new ParserException("Invalid zip file: central directory offset " + centralOffset + ", size "
+                    + centralSize + ", entries " + count);
+        }
+
+        ByteBuffer central = read(source, centralOffset, (int) centralSize);
+        List<ArchiveEntry> entries = new ArrayList<>((int) count);
+        int pos = 0;
+        for (long i = 0; i < count; i++) {
+            if (pos + CENTRAL_HEADER_SIZE > centralSize || central.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ParserException("Invalid zip file: bad central directory entry " + i);
+            }
+            int method = central.getShort(pos + 10) & 0xffff;
+            long crc = central.getInt(pos + 16) & 0xffffffffL;
+            long compressedSize = central.getInt(pos + 20) & 0xffffffffL;
+            long uncompressedSize = central.getInt(pos + 24) & 0xffffffffL;
+            int nameLength = central.getShort(pos + 28) & 0xffff;
+            int extraLength = central.getShort(pos + 30) & 0xffff;
+            int commentLength = central.getShort(pos + 32) & 0xffff;
+            long localHeaderOffset = central.getInt(pos + 42) & 0xffffffffL;
+            int next = pos + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+            if (next > centralSize) {
+                throw new ParserException("Invalid zip file: bad central directory entry " + i);
+            }
+            byte[] nameBytes = new byte[nameLength];
+            central.position(pos + CENTRAL_HEADER_SIZE);
+            central.get(nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            // zip64 extended information has the fields which are 0xffffffff in the header, in this order
+            int extra = pos + CENTRAL_HEADER_SIZE + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = central.getShort(extra) & 0xffff;
+                int length = central.getShort(extra + 2) & 0xffff;
+                int field = extra + 4;
+                if (id == ZIP64_EXTRA_ID) {
+                    if (uncompressedSize == 0xffffffffL && field + 8 <= extraEnd) {
+                        uncompressedSize = central.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == 0xffffffffL && field + 8 <= extraEnd) {
+                        compressedSize = central.getLong(field);
+                        field += 8;
+                    }
+                    if (localHeaderOffset == 0xffffffffL && field + 8 <= extraEnd) {
+                        localHeaderOffset = central.getLong(field);
+                    }
+                    break;
+                }
+                extra += 4 + length;
+            }
+
+            if (localHeaderOffset < 0 || localHeaderOffset + LOCAL_HEADER_SIZE > centralOffset) {
+                throw new ParserException("Invalid zip file: bad local header offset of " + name);
+            }
+            entries.add(new ArchiveEntry(name, method, crc, compressedSize, uncompressedSize, localHeaderOffset,
+                    localHeaderReader));
+            pos = next;
+        }
+        return entries;
+    }
+
+    /**
+     * Get the data offset of entry, read from its local header in source if not known yet.
+     */
+    public static long readDataOffset(ZipSource source, ArchiveEntry entry) throws IOException {
+        if (entry.hasDataOffset()) {
+            return entry.getDataOffset();
+        }
+        ByteBuffer local = read(source, entry.getLocalHeaderOffset(), LOCAL_HEADER_SIZE);
+        if (local.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ParserException("Invalid zip file: bad local header of " + entry.getName());
+        }
+        // the local header name and extra lengths may differ from the central directory ones
+        long dataOffset = entry.getLocalHeaderOffset() + LOCAL_HEADER_SIZE + (local.getShort(26) & 0xffff)
+                + (local.getShort(28) & 0xffff);
+        entry.setDataOffset(dataOffset);
+        return dataOffset;
+    }
+
+    private static ByteBuffer read(ZipSource source, long position, int length) throws IOException {
+        if (position < 0) {
+            throw new ParserException("Invalid zip file: offset " + position);
+        }
+        byte[] bytes = new byte[length];
+        source.read(position, bytes, 0, length);
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -62,6 +62,12 @@ public class ResValue {
         // The 'data' holds a complex number encoding a fraction of a
         // container.
         public static final short FRACTION = 0x06;
+        // The 'data' holds a dynamic ResTable_ref, which needs to be resolved before it can be used like a
+        // REFERENCE.
+        public static final short DYNAMIC_REFERENCE = 0x07;
+        // The 'data' holds an attribute resource identifier, which needs to be resolved before it can be used
+        // like an ATTRIBUTE.
+        public static final short DYNAMIC_ATTRIBUTE = 0x08;
 
         // Beginning of integer flavors...
         public static final short FIRST_INT = 0x10;
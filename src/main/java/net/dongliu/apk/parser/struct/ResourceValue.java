@@ -1,5 +1,6 @@
 package net.dongliu.apk.parser.struct;
 
+import net.dongliu.apk.parser.bean.DeviceProfile;
 import net.dongliu.apk.parser.struct.resource.ResourceTable;
 import net.dongliu.apk.parser.utils.ParseUtils;
 
@@ -23,6 +24,13 @@ public abstract class ResourceValue {
      */
     public abstract String toStringValue(ResourceTable resourceTable, Locale locale);
 
+    /**
+     * get value as string, references are resolved to the value best matches the device profile.
+     */
+    public String toStringValue(ResourceTable resourceTable, DeviceProfile profile) {
+        return toStringValue(resourceTable, profile.getLocale());
+    }
+
     public static ResourceValue decimal(int value) {
         return new DecimalResourceValue(value);
     }
@@ -96,7 +104,8 @@ public abstract class ResourceValue {
 
         @Override
         public String toStringValue(ResourceTable resourceTable, Locale locale) {
-            return String.valueOf(value == 1);
+            // aapt writes true as 0xffffffff, treat any non-zero value as true like android does
+            return String.valueOf(value != 0);
         }
     }
 
@@ -131,6 +140,12 @@ public abstract class ResourceValue {
             return ParseUtils.getResourceById(resourceId, resourceTable, locale);
         }
 
+        @Override
+        public String toStringValue(ResourceTable resourceTable, DeviceProfile profile) {
+            long resourceId = getReferenceResourceId();
+            return ParseUtils.getResourceById(resourceId, resourceTable, profile);
+        }
+
         public long getReferenceResourceId() {
             return value & 0xFFFFFFFFL;
         }
@@ -7,6 +7,8 @@ package net.dongliu.apk.parser.struct;
  */
 public class StringPool {
     private String[] pool;
+    // open addressing hash table of string index + 1, built when first searched. 0 for empty slot
+    private volatile int[] slots;
 
     public StringPool(int poolSize) {
         pool = new String[poolSize];
@@ -18,5 +20,60 @@ public class StringPool {
 
     public void set(int idx, String value) {
         pool[idx] = value;
+        slots = null;
+    }
+
+    public int size() {
+        return pool.length;
+    }
+
+    /**
+     * Find string in the pool, by a hash table of the strings built when first called.
+     *
+     * @return the index of the first string equals to str, -1 if not found
+     */
+    public int indexOf(String str) {
+        int[] slots = this.slots;
+        if (slots == null) {
+            // races only build the table more than once
+            slots = new int[tableSize(pool.length)];
+            for (int i = 0; i < pool.length; i++) {
+                if (pool[i] != null) {
+                    insert(slots, pool[i].hashCode(), i);
+                }
+            }
+            this.slots = slots;
+        }
+        int mask = slots.length - 1;
+        for (int slot = slot(str.hashCode(), mask); slots[slot] != 0; slot = (slot + 1) & mask) {
+            int idx = slots[slot] - 1;
+            if (str.equals(pool[idx])) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The size of hash table for count strings, a power of two with at least one empty slot
+     */
+    protected static int tableSize(int count) {
+        return Integer.highestOneBit(Math.max(count, 1) * 2 + 1) << 1;
+    }
+
+    protected static int slot(int hash, int mask) {
+        return ((hash ^ (hash >>> 16)) * 0x9E3779B9 >>> 8) & mask;
+    }
+
+    /**
+     * Add string index to the hash table. Indices are added in order, so the first one of equal strings is found first
+     */
+    protected static void insert(int[] slots, int hash, int idx) {
+        int mask = slots.length - 1;
+        int slot = slot(hash, mask);
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = idx + 1;
     }
 }
@@ -0,0 +1,215 @@
+package net.dongliu.apk.parser.struct.resource;
+
+import net.dongliu.apk.parser.bean.DeviceProfile;
+
+import java.util.Locale;
+
+/**
+ * Select resource configs for device profile, follow ResTable_config::match and ResTable_config::isBetterThan in
+ * ResourceTypes.cpp.
+ * For the dimensions not specified by the profile, configs qualified on it are matched, but the default ones are
+ * preferred.
+ *
+ * @author dongliu
+ */
+class ConfigMatcher {
+
+    /**
+     * If the resource type config can be used by the device.
+     */
+    static boolean match(Type type, DeviceProfile profile) {
+        ResTableConfig config = type.getConfig();
+        // the profile have no mcc/mnc
+        if (config.getMcc() != 0 || config.getMnc() != 0) {
+            return false;
+        }
+        Locale locale = profile.getLocale();
+        if (!locale.getLanguage().isEmpty()) {
+            Locale configLocale = type.getLocale();
+            if (!configLocale.getLanguage().isEmpty()
+                    && !configLocale.getLanguage().equals(locale.getLanguage())) {
+                return false;
+            }
+            if (!configLocale.getCountry().isEmpty()
+                    && !configLocale.getCountry().equals(locale.getCountry())) {
+                return false;
+            }
+        }
+        if (!notGreater(config.getSmallestScreenWidthDp(), profile.getSmallestScreenWidthDp())) {
+            return false;
+        }
+        if (!notGreater(config.getScreenWidthDp(), profile.getScreenWidthDp())) {
+            return false;
+        }
+        if (!notGreater(config.getScreenHeightDp(), profile.getScreenHeightDp())) {
+            return false;
+        }
+        if (!notGreater(config.getScreenLayout() & ResTableConfig.MASK_SCREENSIZE, profile.getScreenLayoutSize())) {
+            return false;
+        }
+        if (!sameOrAny(config.getOrientation(), profile.getOrientation())) {
+            return false;
+        }
+        if (!sameOrAny(config.getUiMode() & ResTableConfig.MASK_UI_MODE_TYPE, profile.getUiModeType())) {
+            return false;
+        }
+        if (!sameOrAny(config.getUiMode() & ResTableConfig.MASK_UI_MODE_NIGHT, profile.getUiModeNight())) {
+            return false;
+        }
+        return notGreater(config.getSdkVersion(), profile.getSdkVersion());
+    }
+
+    // the config value should not be greater than the device value
+    private static boolean notGreater(int value, int requested) {
+        return requested == 0 || value <= requested;
+    }
+
+    private static boolean sameOrAny(int value, int requested) {
+        return value == 0 || requested == 0 || value == requested;
+    }
+
+    /**
+     * If type a is a better match than type b for the device. Both should have matched the profile.
+     */
+    static boolean isBetterThan(Type a, Type b, DeviceProfile profile) {
+        ResTableConfig ca = a.getConfig();
+        ResTableConfig cb = b.getConfig();
+
+        Locale la = a.getLocale();
+        Locale lb = b.getLocale();
+        boolean localeRequested = !profile.getLocale().getLanguage().isEmpty();
+        if (la.getLanguage().isEmpty() != lb.getLanguage().isEmpty()) {
+            return localeRequested != la.getLanguage().isEmpty();
+        }
+        if (la.getCountry().isEmpty() != lb.getCountry().isEmpty()) {
+            return localeRequested != la.getCountry().isEmpty();
+        }
+
+        int r = compareLarger(ca.getSmallestScreenWidthDp(), cb.getSmallestScreenWidthDp(),
+                profile.getSmallestScreenWidthDp());
+        if (r == 0) {
+            r = compareLarger(ca.getScreenWidthDp(), cb.getScreenWidthDp(), profile.getScreenWidthDp());
+        }
+        if (r == 0) {
+            r = compareLarger(ca.getScreenHeightDp(), cb.getScreenHeightDp(), profile.getScreenHeightDp());
+        }
+        if (r == 0) {
+            r = compareLarger(ca.getScreenLayout() & ResTableConfig.MASK_SCREENSIZE,
+                    cb.getScreenLayout() & ResTableConfig.MASK_SCREENSIZE, profile.getScreenLayoutSize());
+        }
+        if (r == 0) {
+            r = compareSpecified(ca.getOrientation(), cb.getOrientation(), profile.getOrientation());
+        }
+        if (r == 0) {
+            r = compareSpecified(ca.getUiMode() & ResTableConfig.MASK_UI_MODE_TYPE,
+                    cb.getUiMode() & ResTableConfig.MASK_UI_MODE_TYPE, profile.getUiModeType());
+        }
+        if (r == 0) {
+            r = compareSpecified(ca.getUiMode() & ResTableConfig.MASK_UI_MODE_NIGHT,
+                    cb.getUiMode() & ResTableConfig.MASK_UI_MODE_NIGHT, profile.getUiModeNight());
+        }
+        if (r == 0) {
+            r = compareDensity(ca.getDensity(), cb.getDensity(), profile.getDensity());
+        }
+        if (r == 0) {
+            // qualifiers the profile can not specify, the less the better
+            r = Integer.compare(otherQualifiers(cb), otherQualifiers(ca));
+        }
+        if (r == 0) {
+            r = compareLarger(ca.getSdkVersion(), cb.getSdkVersion(), profile.getSdkVersion());
+        }
+        return r > 0;
+    }
+
+    // for dimensions the config value should not exceed the device value: the larger the better.
+    private static int compareLarger(int a, int b, int requested) {
+        if (a == b) {
+            return 0;
+        }
+        if (requested == 0) {
+            return a == 0 ? 1 : b == 0 ? -1 : 0;
+        }
+        return a > b ? 1 : -1;
+    }
+
+    // for dimensions the config value should be equal to the device value: the specified one is better.
+    private static int compareSpecified(int a, int b, int requested) {
+        if (a == b) {
+            return 0;
+        }
+        if (requested == 0) {
+            return a == 0 ? 1 : b == 0 ? -1 : 0;
+        }
+        return a != 0 ? 1 : -1;
+    }
+
+    private static int compareDensity(int a, int b, int requested) {
+        if (a == b) {
+            return 0;
+        }
+        if (requested == 0) {
+            return a == 0 ? 1 : b == 0 ? -1 : 0;
+        }
+        int thisDensity = a == 0 ? ResTableConfig.DENSITY_MEDIUM : a;
+        int otherDensity = b == 0 ? ResTableConfig.DENSITY_MEDIUM : b;
+        if (thisDensity == otherDensity) {
+            return 0;
+        }
+        // density any is the best match
+        if (thisDensity == ResTableConfig.DENSITY_ANY) {
+            return 1;
+        }
+        if (otherDensity == ResTableConfig.DENSITY_ANY) {
+            return -1;
+        }
+        int h = thisDensity;
+        int l = otherDensity;
+        boolean imBigger = true;
+        if (l > h) {
+            h = otherDensity;
+            l = thisDensity;
+            imBigger = false;
+        }
+        boolean biggerBetter;
+        if (requested >= h) {
+            // requested value higher than both, the higher is better
+            biggerBetter = true;
+        } else if (l >= requested) {
+            // requested value lower than both, the lower is better
+            biggerBetter = false;
+        } else {
+            // saddle point, scaling down is better than scaling up by the same factor
+            biggerBetter = ((2L * l) - requested) * h <= (long) requested * requested;
+        }
+        return biggerBetter == imBigger ? 1 : -1;
+    }
+
+    private static int otherQualifiers(ResTableConfig config) {
+        int count = 0;
+        if (config.getTouchscreen() != 0) {
+            count++;
+        }
+        if (config.getKeyboard() != 0) {
+            count++;
+        }
+        if (config.getNavigation() != 0) {
+            count++;
+        }
+        if (config.getInputFlags() != 0) {
+            count++;
+        }
+        if (config.getScreenWidth() != 0 || config.getScreenHeight() != 0) {
+            count++;
+        }
+        if ((config.getScreenLayout() & ~ResTableConfig.MASK_SCREENSIZE) != 0) {
+            count++;
+        }
+        if (config.getScreenLayout2() != 0 || config.getColorMode() != 0) {
+            count++;
+        }
+        if (!config.getLocaleScript().isEmpty() || !config.getLocaleVariant().isEmpty()) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,104 @@
+package net.dongliu.apk.parser.struct.resource;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only map view of an array indexed by 8-bit package/type id. Null elements are absent keys.
+ *
+ * @author dongliu
+ */
+class IdArrayMap<V> extends AbstractMap<Short, V> {
+    private final Object[] values;
+
+    IdArrayMap(Object[] values) {
+        this.values = values;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (!(key instanceof Short)) {
+            return null;
+        }
+        int id = (Short) key;
+        if (id < 0 || id >= values.length) {
+            return null;
+        }
+        return (V) values[id];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Set<Entry<Short, V>> entrySet() {
+        return new AbstractSet<Entry<Short, V>>() {
+            @Override
+            public Iterator<Entry<Short, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (Object value : values) {
+                    if (value != null) {
+                        size++;
+                    }
+                }
+                return size;
+            }
+        };
+    }
+
+    private class EntryIterator implements Iterator<Entry<Short, V>> {
+        private int next = advance(0);
+
+        private int advance(int from) {
+            while (from < values.length && values[from] == null) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < values.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Entry<Short, V> next() {
+            if (next >= values.length) {
+                throw new NoSuchElementException();
+            }
+            Entry<Short, V> entry = new SimpleImmutableEntry<>((short) next, (V) values[next]);
+            next = advance(next + 1);
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * copy map entries into the array
+     */
+    static void fill(Object[] values, Map<Short, ?> map) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = null;
+        }
+        for (Entry<Short, ?> entry : map.entrySet()) {
+            values[entry.getKey() & 0xff] = entry.getValue();
+        }
+    }
+}
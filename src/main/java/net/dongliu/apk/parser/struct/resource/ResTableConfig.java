@@ -2,10 +2,43 @@ package net.dongliu.apk.parser.struct.resource;
 
 /**
  * used by resource Type.
+ * see ResTable_config in ResourceTypes.h
  *
  * @author dongliu
  */
 public class ResTableConfig {
+    public static final int DENSITY_DEFAULT = 0;
+    public static final int DENSITY_LOW = 120;
+    public static final int DENSITY_MEDIUM = 160;
+    public static final int DENSITY_TV = 213;
+    public static final int DENSITY_HIGH = 240;
+    public static final int DENSITY_XHIGH = 320;
+    public static final int DENSITY_XXHIGH = 480;
+    public static final int DENSITY_XXXHIGH = 640;
+    public static final int DENSITY_ANY = 0xfffe;
+    public static final int DENSITY_NONE = 0xffff;
+
+    public static final int ORIENTATION_PORT = 1;
+    public static final int ORIENTATION_LAND = 2;
+
+    public static final int MASK_SCREENSIZE = 0x0f;
+    public static final int SCREENSIZE_SMALL = 0x01;
+    public static final int SCREENSIZE_NORMAL = 0x02;
+    public static final int SCREENSIZE_LARGE = 0x03;
+    public static final int SCREENSIZE_XLARGE = 0x04;
+
+    public static final int MASK_UI_MODE_TYPE = 0x0f;
+    public static final int UI_MODE_TYPE_NORMAL = 0x01;
+    public static final int UI_MODE_TYPE_DESK = 0x02;
+    public static final int UI_MODE_TYPE_CAR = 0x03;
+    public static final int UI_MODE_TYPE_TELEVISION = 0x04;
+    public static final int UI_MODE_TYPE_APPLIANCE = 0x05;
+    public static final int UI_MODE_TYPE_WATCH = 0x06;
+    public static final int UI_MODE_TYPE_VR_HEADSET = 0x07;
+    public static final int MASK_UI_MODE_NIGHT = 0x30;
+    public static final int UI_MODE_NIGHT_NO = 0x10;
+    public static final int UI_MODE_NIGHT_YES = 0x20;
+
     // Number of bytes in this structure. uint32_t
     private long size;
 
@@ -16,9 +49,9 @@ public class ResTableConfig {
     //uint32_t imsi;
 
     // 0 means "any".  Otherwise, en, fr, etc. char[2]
-    private String language;
+    private String language = "";
     // 0 means "any".  Otherwise, US, CA, etc.  char[2]
-    private String country;
+    private String country = "";
     // uint32_t locale;
 
     // uint8_t
@@ -62,6 +95,23 @@ public class ResTableConfig {
     private short screenConfigPad2;
     //uint32_t screenConfig;
 
+    // uint16_t, the high 16 bits of screenConfig. 0 means "any"
+    private int smallestScreenWidthDp;
+    // uint16_t
+    private int screenWidthDp;
+    // uint16_t
+    private int screenHeightDp;
+    //uint32_t screenSizeDp;
+
+    // char[4], 0 means "any". Otherwise Latn, Cyrl, etc.
+    private String localeScript = "";
+    // char[8], 0 means "any"
+    private String localeVariant = "";
+    // uint8_t, round screen
+    private short screenLayout2;
+    // uint8_t, wide color gamut and hdr
+    private short colorMode;
+
 
     public long getSize() {
         return size;
@@ -222,4 +272,92 @@ public class ResTableConfig {
     public void setScreenConfigPad2(short screenConfigPad2) {
         this.screenConfigPad2 = screenConfigPad2;
     }
+
+    public int getSmallestScreenWidthDp() {
+        return smallestScreenWidthDp;
+    }
+
+    public void setSmallestScreenWidthDp(int smallestScreenWidthDp) {
+        this.smallestScreenWidthDp = smallestScreenWidthDp;
+    }
+
+    public int getScreenWidthDp() {
+        return screenWidthDp;
+    }
+
+    public void setScreenWidthDp(int screenWidthDp) {
+        this.screenWidthDp = screenWidthDp;
+    }
+
+    public int getScreenHeightDp() {
+        return screenHeightDp;
+    }
+
+    public void setScreenHeightDp(int screenHeightDp) {
+        this.screenHeightDp = screenHeightDp;
+    }
+
+    public String getLocaleScript() {
+        return localeScript;
+    }
+
+    public void setLocaleScript(String localeScript) {
+        this.localeScript = localeScript;
+    }
+
+    public String getLocaleVariant() {
+        return localeVariant;
+    }
+
+    public void setLocaleVariant(String localeVariant) {
+        this.localeVariant = localeVariant;
+    }
+
+    public short getScreenLayout2() {
+        return screenLayout2;
+    }
+
+    public void setScreenLayout2(short screenLayout2) {
+        this.screenLayout2 = screenLayout2;
+    }
+
+    public short getColorMode() {
+        return colorMode;
+    }
+
+    public void setColorMode(short colorMode) {
+        this.colorMode = colorMode;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        append(sb, mcc != 0, "mcc" + mcc);
+        append(sb, mnc != 0, "mnc" + mnc);
+        append(sb, !language.isEmpty(), language);
+        append(sb, !country.isEmpty(), "r" + country);
+        append(sb, !localeScript.isEmpty(), "s" + localeScript);
+        append(sb, smallestScreenWidthDp != 0, "sw" + smallestScreenWidthDp + "dp");
+        append(sb, screenWidthDp != 0, "w" + screenWidthDp + "dp");
+        append(sb, screenHeightDp != 0, "h" + screenHeightDp + "dp");
+        append(sb, (screenLayout & MASK_SCREENSIZE) != 0, "size" + (screenLayout & MASK_SCREENSIZE));
+        append(sb, orientation != 0, orientation == ORIENTATION_PORT ? "port"
+                : orientation == ORIENTATION_LAND ? "land" : "orientation" + orientation);
+        append(sb, (uiMode & MASK_UI_MODE_TYPE) != 0, "uimode" + (uiMode & MASK_UI_MODE_TYPE));
+        append(sb, (uiMode & MASK_UI_MODE_NIGHT) != 0,
+                (uiMode & MASK_UI_MODE_NIGHT) == UI_MODE_NIGHT_YES ? "night" : "notnight");
+        append(sb, density != 0, density == DENSITY_ANY ? "anydpi"
+                : density == DENSITY_NONE ? "nodpi" : density + "dpi");
+        append(sb, sdkVersion != 0, "v" + sdkVersion);
+        return sb.length() == 0 ? "default" : sb.toString();
+    }
+
+    private static void append(StringBuilder sb, boolean present, String qualifier) {
+        if (present) {
+            if (sb.length() > 0) {
+                sb.append('-');
+            }
+            sb.append(qualifier);
+        }
+    }
 }
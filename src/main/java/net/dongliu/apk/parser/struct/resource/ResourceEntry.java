@@ -1,5 +1,6 @@
 package net.dongliu.apk.parser.struct.resource;
 
+import net.dongliu.apk.parser.bean.DeviceProfile;
 import net.dongliu.apk.parser.struct.ResourceValue;
 
 import javax.annotation.Nullable;
@@ -45,6 +46,16 @@ public class ResourceEntry {
         }
     }
 
+    /**
+     * get value as string, references are resolved to the value best matches the device profile.
+     */
+    public String toStringValue(ResourceTable resourceTable, DeviceProfile profile) {
+        if (value != null) {
+            return value.toStringValue(resourceTable, profile);
+        }
+        return toStringValue(resourceTable, profile.getLocale());
+    }
+
     public int getSize() {
         return size;
     }
@@ -0,0 +1,227 @@
+package net.dongliu.apk.parser.struct.resource;
+
+import net.dongliu.apk.parser.exception.ParserException;
+import net.dongliu.apk.parser.struct.StringPool;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of resource type name and entry name to resource id.
+ * Entries are keyed by package id, type id and the index of entry name in the package key string pool, read from
+ * the type entries without decoding them. Names are looked up by {@link StringPool#indexOf(String)}, so the key
+ * strings are not decoded either.
+ * <p>
+ * The hash table of entries can be saved and loaded with the slot accessors, e.g. by a resource table snapshot, so
+ * a loaded table does not read all type entries to build it again.
+ *
+ * @author dongliu
+ */
+public class ResourceNameIndex {
+
+    private static class PackageIndex {
+        private final short id;
+        private final String name;
+        private final StringPool keyStringPool;
+        private final Map<String, Short> typeIds = new HashMap<>();
+        // index for keys only in key pools of merged types, after the package key pool indices
+        private final Map<String, Integer> mergedKeyIndices = new HashMap<>();
+        private int nextKeyIndex;
+
+        private PackageIndex(ResourcePackage resourcePackage) {
+            this.id = resourcePackage.getId();
+            this.name = resourcePackage.getName();
+            this.keyStringPool = resourcePackage.getKeyStringPool();
+            this.nextKeyIndex = keyStringPool == null ? 0 : keyStringPool.size();
+            for (TypeSpec typeSpec : resourcePackage.getTypeSpecMap().values()) {
+                typeIds.put(typeSpec.getName(), typeSpec.getId());
+            }
+        }
+
+        /**
+         * @return the key index, -1 if not found
+         */
+        private int keyIndex(String key) {
+            int keyIndex = keyStringPool == null ? -1 : keyStringPool.indexOf(key);
+            if (keyIndex < 0) {
+                Integer mergedKeyIndex = mergedKeyIndices.get(key);
+                if (mergedKeyIndex != null) {
+                    keyIndex = mergedKeyIndex;
+                }
+            }
+            return keyIndex;
+        }
+    }
+
+    // bytes of a saved slot, key(int64) and resource id(int32), little-endian
+    public static final int SLOT_SIZE = 12;
+
+    private final List<PackageIndex> packages = new ArrayList<>();
+    // open addressing hash table of package id, type id, key index to resource id. 0 for empty slot
+    private long[] keys;
+    private int[] resourceIds;
+    private int size;
+    // the saved hash table, used instead of the arrays if not null
+    private final ByteBuffer slots;
+
+    /**
+     * Build the index by reading the key index of all type entries.
+     */
+    public ResourceNameIndex(Iterable<ResourcePackage> resourcePackages) {
+        this.slots = null;
+        keys = new long[64];
+        resourceIds = new int[64];
+        for (ResourcePackage resourcePackage : resourcePackages) {
+            PackageIndex packageIndex = new PackageIndex(resourcePackage);
+            StringPool keyStringPool = resourcePackage.getKeyStringPool();
+            for (TypeSpec typeSpec : resourcePackage.getTypeSpecMap().values()) {
+                List<Type> types = resourcePackage.getTypes(typeSpec.getId());
+                if (types == null) {
+                    continue;
+                }
+                for (int entry = 0; entry < typeSpec.getEntryFlags().length; entry++) {
+                    for (Type type : types) {
+                        int keyIndex = type.getKeyIndex(entry);
+                        if (keyIndex >= 0 && type.getKeyStringPool() != keyStringPool) {
+                            // type merged from another table has its own key pool
+                            keyIndex = mergedKeyIndex(packageIndex, type.getKeyStringPool().get(keyIndex));
+                        }
+                        if (keyIndex >= 0) {
+                            put(key(resourcePackage.getId(), typeSpec.getId(), keyIndex),
+                                    resourcePackage.getId() << 24 | typeSpec.getId() << 16 | entry);
+                            break;
+                        }
+                    }
+                }
+            }
+            packages.add(packageIndex);
+        }
+    }
+
+    /**
+     * Use a saved hash table of the packages, the slots are read from the buffer when looked up.
+     *
+     * @param slots the slots written by {@link #getSlotKey(int)} and {@link #getSlotResourceId(int)}, little-endian,
+     *              the slot count is a power of two
+     * @throws ParserException if the slots size is invalid
+     */
+    public ResourceNameIndex(Iterable<ResourcePackage> resourcePackages, ByteBuffer slots) {
+        int slotCount = slots.remaining() / SLOT_SIZE;
+        if (slots.remaining() % SLOT_SIZE != 0 || Integer.bitCount(slotCount) != 1) {
+            throw new ParserException("Invalid resource name index size: " + slots.remaining());
+        }
+        this.slots = slots.slice().order(ByteOrder.LITTLE_ENDIAN);
+        for (ResourcePackage resourcePackage : resourcePackages) {
+            packages.add(new PackageIndex(resourcePackage));
+        }
+    }
+
+    private static int mergedKeyIndex(PackageIndex packageIndex, String key) {
+        int keyIndex = packageIndex.keyIndex(key);
+        if (keyIndex < 0) {
+            keyIndex = packageIndex.nextKeyIndex++;
+            packageIndex.mergedKeyIndices.put(key, keyIndex);
+        }
+        return keyIndex;
+    }
+
+    private static long key(short packageId, short typeId, int keyIndex) {
+        return (long) (packageId & 0xff) << 40 | (long) (typeId & 0xff) << 32 | (keyIndex & 0xffffffffL);
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+
+    private void put(long key, int resourceId) {
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (resourceIds[slot] != 0) {
+            if (keys[slot] == key) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        resourceIds[slot] = resourceId;
+        size++;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldResourceIds = resourceIds;
+        keys = new long[oldKeys.length * 2];
+        resourceIds = new int[oldKeys.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldResourceIds[i] != 0) {
+                put(oldKeys[i], oldResourceIds[i]);
+            }
+        }
+    }
+
+    /**
+     * The slot count of the hash table, a power of two
+     */
+    public int getSlotCount() {
+        return slots == null ? keys.length : slots.capacity() / SLOT_SIZE;
+    }
+
+    /**
+     * The key of package id, type id and key index in the slot
+     */
+    public long getSlotKey(int slot) {
+        return slots == null ? keys[slot] : slots.getLong(slot * SLOT_SIZE);
+    }
+
+    /**
+     * The resource id in the slot, 0 for empty slot
+     */
+    public int getSlotResourceId(int slot) {
+        return slots == null ? resourceIds[slot] : slots.getInt(slot * SLOT_SIZE + 8);
+    }
+
+    /**
+     * @param packageName the package name, null for any package
+     * @return the resource id, -1 if not found
+     */
+    long get(String packageName, String type, String name) {
+        int slotCount = getSlotCount();
+        int mask = slotCount - 1;
+        for (PackageIndex packageIndex : packages) {
+            if (packageName != null && !packageName.equals(packageIndex.name)) {
+                continue;
+            }
+            Short typeId = packageIndex.typeIds.get(type);
+            if (typeId == null) {
+                continue;
+            }
+            int keyIndex = packageIndex.keyIndex(name);
+            if (keyIndex < 0) {
+                continue;
+            }
+            long key = key(packageIndex.id, typeId, keyIndex);
+            int slot = slot(key, mask);
+            // bounded, a saved table may have no empty slot
+            for (int i = 0; i < slotCount; i++) {
+                int resourceId = getSlotResourceId(slot);
+                if (resourceId == 0) {
+                    break;
+                }
+                if (getSlotKey(slot) == key) {
+                    return resourceId & 0xffffffffL;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        return -1;
+    }
+}
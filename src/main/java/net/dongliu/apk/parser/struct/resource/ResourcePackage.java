@@ -1,14 +1,16 @@
 package net.dongliu.apk.parser.struct.resource;
 
+import net.dongliu.apk.parser.bean.DeviceProfile;
 import net.dongliu.apk.parser.struct.StringPool;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Resource packge.
+ * Safe for concurrent reads after parsing, see {@link ResourceTable}.
  *
  * @author dongliu
  */
@@ -26,29 +28,250 @@ public class ResourcePackage {
         this.id = (short) header.getId();
     }
 
-    private Map<Short, TypeSpec> typeSpecMap = new HashMap<>();
+    /**
+     * Copy the name, id and string pools of the package, without type specs and types
+     */
+    ResourcePackage(ResourcePackage other) {
+        this.name = other.name;
+        this.id = other.id;
+        this.typeStringPool = other.typeStringPool;
+        this.keyStringPool = other.keyStringPool;
+    }
+
+    // indexed by type id, type ids are 8-bit
+    private final TypeSpec[] typeSpecs = new TypeSpec[256];
+    @SuppressWarnings("unchecked")
+    private final List<Type>[] types = new List[256];
+
+    // the best type for each entry, indexed by [type id][entry index], for each device profile
+    private final ConcurrentMap<DeviceProfile, AtomicReferenceArray<Type[]>> bestTypesIndex = new ConcurrentHashMap<>();
+    // the index last used, most callers use one profile, so this saves hashing the profile for every lookup
+    private volatile ProfileIndex lastIndex;
+    private boolean frozen;
+
+    private static class ProfileIndex {
+        private final DeviceProfile profile;
+        private final AtomicReferenceArray<Type[]> index;
+
+        private ProfileIndex(DeviceProfile profile, AtomicReferenceArray<Type[]> index) {
+            this.profile = profile;
+            this.index = index;
+        }
+    }
+
+    void freeze() {
+        for (int i = 0; i < types.length; i++) {
+            List<Type> list = types[i];
+            if (list != null) {
+                for (Type type : list) {
+                    type.freeze();
+                }
+                // shared with readers, which must not change it
+                types[i] = Collections.unmodifiableList(list);
+            }
+        }
+        this.frozen = true;
+    }
 
-    private Map<Short, List<Type>> typesMap = new HashMap<>();
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Resource package is frozen");
+        }
+    }
 
     public void addTypeSpec(TypeSpec typeSpec) {
-        this.typeSpecMap.put(typeSpec.getId(), typeSpec);
+        checkNotFrozen();
+        this.typeSpecs[typeSpec.getId() & 0xff] = typeSpec;
     }
 
-    public TypeSpec getTypeSpec(Short id) {
-        return this.typeSpecMap.get(id);
+    /**
+     * @return null if not found
+     */
+    public TypeSpec getTypeSpec(short id) {
+        return this.typeSpecs[id & 0xff];
     }
 
     public void addType(Type type) {
-        List<Type> types = this.typesMap.get(type.getId());
+        checkNotFrozen();
+        int id = type.getId() & 0xff;
+        List<Type> types = this.types[id];
         if (types == null) {
             types = new ArrayList<>();
-            this.typesMap.put(type.getId(), types);
+            this.types[id] = types;
         }
         types.add(type);
     }
 
-    public List<Type> getTypes(Short id) {
-        return this.typesMap.get(id);
+    /**
+     * Add the type specs and types of the same package from another resource table, e.g. of a config split apk.
+     * Types keep their own string pools. For parsers only, before the package is published.
+     */
+    public void merge(ResourcePackage other) {
+        checkNotFrozen();
+        for (int i = 0; i < typeSpecs.length; i++) {
+            if (typeSpecs[i] == null) {
+                typeSpecs[i] = other.typeSpecs[i];
+            }
+            if (other.types[i] != null) {
+                for (Type type : other.types[i]) {
+                    addType(type);
+                }
+            }
+        }
+        bestTypesIndex.clear();
+        lastIndex = null;
+    }
+
+    /**
+     * @return the types with different configs of the type id, null if not found. Unmodifiable after the resource
+     * table is frozen
+     */
+    public List<Type> getTypes(short id) {
+        return this.types[id & 0xff];
+    }
+
+    /**
+     * Get the type which best matches the device profile, for each entry of the type id.
+     * The result is computed once per type id and profile, and cached.
+     *
+     * @return the types indexed by entry index, the element is null if no type has the entry. null if type not
+     * found
+     */
+    public Type[] getBestTypes(short typeId, DeviceProfile profile) {
+        AtomicReferenceArray<Type[]> index;
+        ProfileIndex last = lastIndex;
+        // profiles are often created per call, e.g. from locales, so compare by value
+        if (last != null && last.profile.equals(profile)) {
+            index = last.index;
+        } else {
+            index = bestTypesIndex.get(profile);
+            if (index == null) {
+                index = new AtomicReferenceArray<>(256);
+                AtomicReferenceArray<Type[]> old = bestTypesIndex.putIfAbsent(profile, index);
+                if (old != null) {
+                    index = old;
+                }
+            }
+            lastIndex = new ProfileIndex(profile, index);
+        }
+        int i = typeId & 0xff;
+        Type[] bestTypes = index.get(i);
+        if (bestTypes == null) {
+            // races only cause the same index being computed more than once
+            bestTypes = buildBestTypes(typeId, profile);
+            if (bestTypes == null) {
+                return null;
+            }
+            index.set(i, bestTypes);
+        }
+        return bestTypes;
+    }
+
+    /**
+     * Get the type which best matches the device profile with each locale, for one entry.
+     * The types of the type id are walked once, and only those have the entry are compared for each locale.
+     *
+     * @return the best type for each locale, empty if no type has the entry
+     */
+    public Map<Locale, Type> getBestTypes(short typeId, int entryIndex, Collection<Locale> locales,
+                                          DeviceProfile profile) {
+        List<Type> types = this.types[typeId & 0xff];
+        if (types == null) {
+            return Collections.emptyMap();
+        }
+        List<Type> candidates = new ArrayList<>();
+        for (Type type : types) {
+            if (type.hasEntry(entryIndex)) {
+                candidates.add(type);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<Locale, Type> bestTypes = new LinkedHashMap<>();
+        for (Locale locale : locales) {
+            DeviceProfile localeProfile = profile.withLocale(locale);
+            Type best = null;
+            for (Type type : candidates) {
+                if (ConfigMatcher.match(type, localeProfile)
+                        && (best == null || ConfigMatcher.isBetterThan(type, best, localeProfile))) {
+                    best = type;
+                }
+            }
+            bestTypes.put(locale, best == null ? candidates.get(0) : best);
+        }
+        return bestTypes;
+    }
+
+    /**
+     * Get the types have the entry, those match the device profile first from the best one, then the others in file
+     * order. For falling back to other configs when the value of the best type can not be used.
+     */
+    public List<Type> getCandidateTypes(short typeId, int entryIndex, DeviceProfile profile) {
+        List<Type> types = this.types[typeId & 0xff];
+        if (types == null) {
+            return Collections.emptyList();
+        }
+        List<Type> matched = new ArrayList<>();
+        List<Type> others = new ArrayList<>();
+        for (Type type : types) {
+            if (!type.hasEntry(entryIndex)) {
+                continue;
+            }
+            if (!ConfigMatcher.match(type, profile)) {
+                others.add(type);
+                continue;
+            }
+            int pos = matched.size();
+            while (pos > 0 && ConfigMatcher.isBetterThan(type, matched.get(pos - 1), profile)) {
+                pos--;
+            }
+            matched.add(pos, type);
+        }
+        matched.addAll(others);
+        return matched;
+    }
+
+    private Type[] buildBestTypes(short typeId, DeviceProfile profile) {
+        TypeSpec typeSpec = typeSpecs[typeId & 0xff];
+        List<Type> types = this.types[typeId & 0xff];
+        if (typeSpec == null || types == null) {
+            return null;
+        }
+
+        // sort matched types, the best first. insertion sort keeps the file order for equal ones
+        List<Type> matched = new ArrayList<>(types.size());
+        for (Type type : types) {
+            if (!ConfigMatcher.match(type, profile)) {
+                continue;
+            }
+            int pos = matched.size();
+            while (pos > 0 && ConfigMatcher.isBetterThan(type, matched.get(pos - 1), profile)) {
+                pos--;
+            }
+            matched.add(pos, type);
+        }
+
+        Type[] bestTypes = new Type[typeSpec.getEntryFlags().length];
+        for (int entry = 0; entry < bestTypes.length; entry++) {
+            for (Type type : matched) {
+                if (type.hasEntry(entry)) {
+                    bestTypes[entry] = type;
+                    break;
+                }
+            }
+            if (bestTypes[entry] == null) {
+                // no config matches the device, use the first one, like before device profile is supported
+                for (Type type : types) {
+                    if (type.hasEntry(entry)) {
+                        bestTypes[entry] = type;
+                        break;
+                    }
+                }
+            }
+        }
+        return bestTypes;
     }
 
     public String getName() {
@@ -56,6 +279,7 @@ public class ResourcePackage {
     }
 
     public void setName(String name) {
+        checkNotFrozen();
         this.name = name;
     }
 
@@ -64,6 +288,7 @@ public class ResourcePackage {
     }
 
     public void setId(short id) {
+        checkNotFrozen();
         this.id = id;
     }
 
@@ -72,6 +297,7 @@ public class ResourcePackage {
     }
 
     public void setTypeStringPool(StringPool typeStringPool) {
+        checkNotFrozen();
         this.typeStringPool = typeStringPool;
     }
 
@@ -80,22 +306,35 @@ public class ResourcePackage {
     }
 
     public void setKeyStringPool(StringPool keyStringPool) {
+        checkNotFrozen();
         this.keyStringPool = keyStringPool;
     }
 
+    /**
+     * Read-only map view of the type specs by type id. Use {@link #getTypeSpec(short)} for lookups.
+     */
     public Map<Short, TypeSpec> getTypeSpecMap() {
-        return typeSpecMap;
+        return new IdArrayMap<>(typeSpecs);
     }
 
     public void setTypeSpecMap(Map<Short, TypeSpec> typeSpecMap) {
-        this.typeSpecMap = typeSpecMap;
+        checkNotFrozen();
+        IdArrayMap.fill(typeSpecs, typeSpecMap);
+        bestTypesIndex.clear();
+        lastIndex = null;
     }
 
+    /**
+     * Read-only map view of the types by type id. Use {@link #getTypes(short)} for lookups.
+     */
     public Map<Short, List<Type>> getTypesMap() {
-        return typesMap;
+        return new IdArrayMap<>(types);
     }
 
     public void setTypesMap(Map<Short, List<Type>> typesMap) {
-        this.typesMap = typesMap;
+        checkNotFrozen();
+        IdArrayMap.fill(types, typesMap);
+        bestTypesIndex.clear();
+        lastIndex = null;
     }
 }
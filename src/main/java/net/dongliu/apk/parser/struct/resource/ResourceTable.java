@@ -1,26 +1,232 @@
 package net.dongliu.apk.parser.struct.resource;
 
+import net.dongliu.apk.parser.parser.ParseLimits;
 import net.dongliu.apk.parser.struct.StringPool;
 import net.dongliu.apk.parser.utils.ResourceLoader;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
+ * The parsed resources.arsc.
+ * <p>
+ * A resource table is not modified after parsing, and all lookups use absolute reads of the underlying buffers, so
+ * one table can be shared and read by multiple threads concurrently. The lazy indexes are built thread-safely. The
+ * add and set methods are for parsers only, the parsed table is frozen and they throw IllegalStateException, except
+ * {@link #setParseLimits(ParseLimits)}.
+ *
  * @author dongliu
  */
 public class ResourceTable {
-    private Map<Short, ResourcePackage> packageMap = new HashMap<>();
+    // indexed by package id, package ids are 8-bit
+    private final ResourcePackage[] packages = new ResourcePackage[256];
     private StringPool stringPool;
+    private ParseLimits parseLimits = new ParseLimits();
+    // built when first used, or loaded with the table
+    private volatile ResourceNameIndex nameIndex;
+    private boolean frozen;
 
     public static Map<Integer, String> sysStyle = ResourceLoader.loadSystemStyles();
 
+    /**
+     * Make the table and its packages and types read-only, the mutators throw IllegalStateException after this.
+     * Parsers freeze the table before it is published, so it can be shared by threads.
+     */
+    public void freeze() {
+        for (ResourcePackage resourcePackage : packages) {
+            if (resourcePackage != null) {
+                resourcePackage.freeze();
+            }
+        }
+        this.frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Resource table is frozen");
+        }
+    }
+
     public void addPackage(ResourcePackage resourcePackage) {
-        this.packageMap.put(resourcePackage.getId(), resourcePackage);
+        checkNotFrozen();
+        this.packages[resourcePackage.getId() & 0xff] = resourcePackage;
+        this.nameIndex = null;
+    }
+
+    /**
+     * Add the packages of another resource table, e.g. of a split apk. Packages with the same id are merged, see
+     * {@link ResourcePackage#merge(ResourcePackage)}. For parsers only, before the table is published.
+     */
+    public void merge(ResourceTable other) {
+        checkNotFrozen();
+        for (ResourcePackage resourcePackage : other.packages) {
+            if (resourcePackage == null) {
+                continue;
+            }
+            ResourcePackage existing = getPackage(resourcePackage.getId());
+            if (existing == null) {
+                // a copy, the package of other table may be frozen, and is not changed by later merges
+                existing = new ResourcePackage(resourcePackage);
+                addPackage(existing);
+            }
+            existing.merge(resourcePackage);
+        }
+        if (stringPool == null) {
+            stringPool = other.stringPool;
+        }
+        this.nameIndex = null;
     }
 
+    /**
+     * @return null if not found
+     */
     public ResourcePackage getPackage(short id) {
-        return this.packageMap.get(id);
+        return this.packages[id & 0xff];
+    }
+
+    /**
+     * Read-only map view of the packages by package id.
+     */
+    public Map<Short, ResourcePackage> getPackageMap() {
+        return new IdArrayMap<>(packages);
+    }
+
+    /**
+     * Find resource id by type name and entry name, e.g. ("string", "app_name").
+     * An index of all packages is built at the first call, so lookups after that cost a few hash lookups.
+     * If more than one package have the resource, the one with the smallest package id is returned.
+     *
+     * @return the resource id, -1 if not found
+     */
+    public long getResourceId(String type, String name) {
+        return getNameIndex().get(null, type, name);
+    }
+
+    /**
+     * Find resource id by resource reference, e.g. "@string/app_name", "drawable/ic_launcher", or with package name
+     * "@com.example:string/app_name".
+     *
+     * @return the resource id, -1 if not found or the reference is malformed
+     */
+    public long getResourceId(String reference) {
+        int begin = 0;
+        if (reference.startsWith("@+")) {
+            begin = 2;
+        } else if (reference.startsWith("@")) {
+            begin = 1;
+        }
+        int slash = reference.indexOf('/', begin);
+        if (slash < 0) {
+            return -1;
+        }
+        String packageName = null;
+        int colon = reference.indexOf(':', begin);
+        if (colon >= 0 && colon < slash) {
+            packageName = reference.substring(begin, colon);
+            begin = colon + 1;
+        }
+        return getNameIndex().get(packageName, reference.substring(begin, slash), reference.substring(slash + 1));
+    }
+
+    /**
+     * Visit all entries of all packages and types, in current thread.
+     */
+    public void accept(ResourceVisitor visitor) {
+        for (ResourcePackage resourcePackage : packages) {
+            if (resourcePackage == null) {
+                continue;
+            }
+            for (List<Type> types : resourcePackage.getTypesMap().values()) {
+                for (Type type : types) {
+                    type.accept(visitor, resourcePackage.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Visit all entries of all packages and types in parallel, each type is a fork-join task.
+     * Return after all entries are visited.
+     */
+    public void accept(ResourceVisitor visitor, ForkJoinPool pool) {
+        List<Type> types = new ArrayList<>();
+        List<Short> packageIds = new ArrayList<>();
+        for (ResourcePackage resourcePackage : packages) {
+            if (resourcePackage == null) {
+                continue;
+            }
+            for (List<Type> list : resourcePackage.getTypesMap().values()) {
+                for (Type type : list) {
+                    types.add(type);
+                    packageIds.add(resourcePackage.getId());
+                }
+            }
+        }
+        pool.invoke(new VisitTask(visitor, types, packageIds, 0, types.size()));
+    }
+
+    /**
+     * split types by half, until one type
+     */
+    private static class VisitTask extends RecursiveAction {
+        private final ResourceVisitor visitor;
+        private final List<Type> types;
+        private final List<Short> packageIds;
+        private final int from;
+        private final int to;
+
+        VisitTask(ResourceVisitor visitor, List<Type> types, List<Short> packageIds, int from, int to) {
+            this.visitor = visitor;
+            this.types = types;
+            this.packageIds = packageIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (to > from) {
+                    types.get(from).accept(visitor, packageIds.get(from));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new VisitTask(visitor, types, packageIds, from, middle),
+                    new VisitTask(visitor, types, packageIds, middle, to));
+        }
+    }
+
+    /**
+     * The index of resource names to ids, built when first used if not set.
+     */
+    public ResourceNameIndex getNameIndex() {
+        ResourceNameIndex index = nameIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = nameIndex;
+                if (index == null) {
+                    index = new ResourceNameIndex(getPackageMap().values());
+                    nameIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Set a name index built before, e.g. loaded from a snapshot. For parsers only, after the packages are added.
+     */
+    public void setNameIndex(ResourceNameIndex nameIndex) {
+        checkNotFrozen();
+        this.nameIndex = nameIndex;
     }
 
     public StringPool getStringPool() {
@@ -28,6 +234,18 @@ public class ResourceTable {
     }
 
     public void setStringPool(StringPool stringPool) {
+        checkNotFrozen();
         this.stringPool = stringPool;
     }
+
+    /**
+     * The limits used when resolve resource values
+     */
+    public ParseLimits getParseLimits() {
+        return parseLimits;
+    }
+
+    public void setParseLimits(ParseLimits parseLimits) {
+        this.parseLimits = parseLimits;
+    }
 }
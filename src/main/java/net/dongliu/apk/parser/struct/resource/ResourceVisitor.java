@@ -0,0 +1,31 @@
+package net.dongliu.apk.parser.struct.resource;
+
+/**
+ * Visit all entries of a resource table, see {@link ResourceTable#accept(ResourceVisitor)}.
+ * Values are passed as raw data read from the table, no ResourceEntry is created.
+ * When traverse in parallel, the methods are called from multiple threads.
+ *
+ * @author dongliu
+ */
+public interface ResourceVisitor {
+
+    /**
+     * Visit a simple entry.
+     *
+     * @param resourceId the resource id
+     * @param type       the type holds the entry, with the config and the string pool of the value
+     * @param key        the entry name
+     * @param dataType   the value type, see {@link net.dongliu.apk.parser.struct.ResValue.ResType}
+     * @param data       the value data. For string type, it is the index in {@link Type#getStringPool()}
+     */
+    void visitValue(long resourceId, Type type, String key, short dataType, int data);
+
+    /**
+     * Visit a complex entry, like style, array and plurals. The map entries can be read by
+     * {@link Type#getResourceEntry(int)} if needed.
+     *
+     * @param parent the resource id of parent map, 0 if none
+     * @param count  the count of map entries
+     */
+    void visitComplex(long resourceId, Type type, String key, long parent, int count);
+}
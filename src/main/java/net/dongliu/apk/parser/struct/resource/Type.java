@@ -1,13 +1,25 @@
 package net.dongliu.apk.parser.struct.resource;
 
 import net.dongliu.apk.parser.struct.StringPool;
+import net.dongliu.apk.parser.utils.BufferArena;
 import net.dongliu.apk.parser.utils.Buffers;
+import net.dongliu.apk.parser.utils.IntList;
 import net.dongliu.apk.parser.utils.ParseUtils;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Locale;
 
 /**
+ * Resources of one type id with one config.
+ * <p>
+ * Entries are read from the buffer with absolute indexes, the buffer position is never changed after parsing, so
+ * one parsed Type can be read from multiple threads concurrently. The setters are for parsers only, and throw
+ * IllegalStateException after the resource table is frozen.
+ * <p>
+ * If the buffer is from a {@link BufferArena}, reads hold the arena open, so closing it waits for them; reading
+ * entries after the arena is closed throws {@link net.dongliu.apk.parser.exception.ArenaClosedException}.
+ *
  * @author dongliu
  */
 public class Type {
@@ -16,77 +28,224 @@ public class Type {
     private short id;
 
     private Locale locale;
+    private ResTableConfig config;
 
     private StringPool keyStringPool;
     private ByteBuffer buffer;
-    private long[] offsets;
+    // the owner of buffer if it is off-heap, null otherwise
+    private BufferArena bufferArena;
+    // entry data offsets, indexed by entry index for dense types, or parallel to entryIndices for sparse types.
+    // NO_ENTRY if the entry is not in this type
+    private int[] offsets;
+    // sorted entry indices for sparse types, null for dense types
+    private char[] entryIndices;
     private StringPool stringPool;
+    private boolean frozen;
 
     public Type(TypeHeader header) {
         this.id = header.getId();
-        this.locale = new Locale(header.getConfig().getLanguage(), header.getConfig().getCountry());
+        this.config = header.getConfig();
+        this.locale = new Locale(config.getLanguage(), config.getCountry());
+    }
+
+    public static final int NO_ENTRY = -1;
+
+    /**
+     * If this type config has value for the entry
+     */
+    public boolean hasEntry(int id) {
+        return getOffset(id) != NO_ENTRY;
+    }
+
+    /**
+     * The offset of entry data, binary search the entry indices for sparse types
+     */
+    private int getOffset(int id) {
+        if (entryIndices != null) {
+            if (id < 0 || id > 0xffff) {
+                return NO_ENTRY;
+            }
+            int i = Arrays.binarySearch(entryIndices, (char) id);
+            return i < 0 ? NO_ENTRY : offsets[i];
+        }
+        if (id < 0 || id >= offsets.length) {
+            return NO_ENTRY;
+        }
+        return offsets[id];
+    }
+
+    // the buffer is not freed by closing the arena between enterBuffer and exitBuffer
+    private void enterBuffer() {
+        if (bufferArena != null) {
+            bufferArena.enter();
+        }
+    }
+
+    private void exitBuffer() {
+        if (bufferArena != null) {
+            bufferArena.exit();
+        }
+    }
+
+    /**
+     * The index of entry key in the key string pool, without reading the entry
+     *
+     * @return -1 if this type has no the entry
+     */
+    public int getKeyIndex(int id) {
+        int offset = getOffset(id);
+        if (offset == NO_ENTRY) {
+            return -1;
+        }
+        enterBuffer();
+        try {
+            // the key ref follows uint16 size and uint16 flags
+            return buffer.getInt(offset + 4);
+        } finally {
+            exitBuffer();
+        }
     }
 
     public ResourceEntry getResourceEntry(int id) {
-        if (id >= offsets.length) {
+        int offset = getOffset(id);
+        if (offset == NO_ENTRY) {
             return null;
         }
+        enterBuffer();
+        try {
+            return readResourceEntry(offset);
+        } finally {
+            exitBuffer();
+        }
+    }
 
-        if (offsets[id] == TypeHeader.NO_ENTRY) {
-            return null;
+    /**
+     * Collect resource ids referenced by the entry, from raw data without creating entry objects. For complex
+     * entries these are the parent, the attribute names and the values of the map entries.
+     * Values of reference and attribute types, dynamic or not, are collected. Ids may repeat.
+     *
+     * @param references the list the ids are added to
+     */
+    public void getReferences(int id, IntList references) {
+        int offset = getOffset(id);
+        if (offset == NO_ENTRY) {
+            return;
         }
+        enterBuffer();
+        try {
+            int size = buffer.getShort(offset) & 0xffff;
+            int flags = buffer.getShort(offset + 2) & 0xffff;
+            if ((flags & ResourceEntry.FLAG_COMPLEX) == 0) {
+                addReference(offset + size, references);
+                return;
+            }
+            int parent = buffer.getInt(offset + 8);
+            if (parent != 0) {
+                references.add(parent);
+            }
+            long count = buffer.getInt(offset + 12) & 0xffffffffL;
+            Buffers.checkRemaining(buffer, offset + size, count, 12);
+            for (int pos = offset + size; pos < offset + size + count * 12; pos += 12) {
+                references.add(buffer.getInt(pos));
+                addReference(pos + 4, references);
+            }
+        } finally {
+            exitBuffer();
+        }
+    }
 
-        // read Resource Entries
-        buffer.position((int) offsets[id]);
-        return readResourceEntry();
+    // add the data of Res_value at the offset, if it is a reference
+    private void addReference(int offset, IntList references) {
+        short dataType = (short) (buffer.get(offset + 3) & 0xff);
+        int data = buffer.getInt(offset + 4);
+        if (ParseUtils.isReferenceType(dataType) && data != 0) {
+            references.add(data);
+        }
+    }
+
+    /**
+     * Visit all entries of this type, with absolute reads of the buffer so can be called concurrently.
+     */
+    void accept(ResourceVisitor visitor, short packageId) {
+        long idPrefix = (packageId & 0xffL) << 24 | (id & 0xffL) << 16;
+        for (int i = 0; i < offsets.length; i++) {
+            int offset = offsets[i];
+            if (offset == NO_ENTRY) {
+                continue;
+            }
+            long resourceId = idPrefix | (entryIndices == null ? i : entryIndices[i]);
+            int flags;
+            String key;
+            long parent;
+            short dataType;
+            int data;
+            // the visitor is called outside, it may read other types or close the arena
+            enterBuffer();
+            try {
+                int size = buffer.getShort(offset) & 0xffff;
+                flags = buffer.getShort(offset + 2) & 0xffff;
+                key = keyStringPool.get(buffer.getInt(offset + 4));
+                if ((flags & ResourceEntry.FLAG_COMPLEX) != 0) {
+                    parent = buffer.getInt(offset + 8) & 0xffffffffL;
+                    dataType = 0;
+                    data = buffer.getInt(offset + 12);
+                } else {
+                    parent = 0;
+                    // Res_value: uint16 size, uint8 res0, uint8 dataType, uint32 data
+                    dataType = (short) (buffer.get(offset + size + 3) & 0xff);
+                    data = buffer.getInt(offset + size + 4);
+                }
+            } finally {
+                exitBuffer();
+            }
+            if ((flags & ResourceEntry.FLAG_COMPLEX) != 0) {
+                visitor.visitComplex(resourceId, this, key, parent, data);
+            } else {
+                visitor.visitValue(resourceId, this, key, dataType, data);
+            }
+        }
     }
 
-    private ResourceEntry readResourceEntry() {
-        long beginPos = buffer.position();
+    /**
+     * Read the entry at offset. Only absolute reads are used, the buffer position is never changed.
+     */
+    private ResourceEntry readResourceEntry(int offset) {
         ResourceEntry resourceEntry = new ResourceEntry();
         // size is always 8(simple), or 16(complex)
-        resourceEntry.setSize(Buffers.readUShort(buffer));
-        resourceEntry.setFlags(Buffers.readUShort(buffer));
-        long keyRef = buffer.getInt();
-        String key = keyStringPool.get((int) keyRef);
-        resourceEntry.setKey(key);
+        resourceEntry.setSize(buffer.getShort(offset) & 0xffff);
+        resourceEntry.setFlags(buffer.getShort(offset + 2) & 0xffff);
+        int keyRef = buffer.getInt(offset + 4);
+        resourceEntry.setKey(keyStringPool.get(keyRef));
 
+        int dataOffset = offset + resourceEntry.getSize();
         if ((resourceEntry.getFlags() & ResourceEntry.FLAG_COMPLEX) != 0) {
             ResourceMapEntry resourceMapEntry = new ResourceMapEntry(resourceEntry);
 
             // Resource identifier of the parent mapping, or 0 if there is none.
-            resourceMapEntry.setParent(Buffers.readUInt(buffer));
-            resourceMapEntry.setCount(Buffers.readUInt(buffer));
+            resourceMapEntry.setParent(buffer.getInt(offset + 8) & 0xffffffffL);
+            resourceMapEntry.setCount(buffer.getInt(offset + 12) & 0xffffffffL);
 
-            buffer.position((int) (beginPos + resourceEntry.getSize()));
+            // each table map is 12 bytes
+            Buffers.checkRemaining(buffer, dataOffset, resourceMapEntry.getCount(), 12);
 
             //An individual complex Resource entry comprises an entry immediately followed by one or more fields.
             ResourceTableMap[] resourceTableMaps = new ResourceTableMap[(int) resourceMapEntry.getCount()];
-            for (int i = 0; i < resourceMapEntry.getCount(); i++) {
-                resourceTableMaps[i] = readResourceTableMap();
+            for (int i = 0; i < resourceTableMaps.length; i++) {
+                resourceTableMaps[i] = readResourceTableMap(dataOffset + i * 12);
             }
 
             resourceMapEntry.setResourceTableMaps(resourceTableMaps);
             return resourceMapEntry;
         } else {
-            buffer.position((int) (beginPos + resourceEntry.getSize()));
-            resourceEntry.setValue(ParseUtils.readResValue(buffer, stringPool));
+            resourceEntry.setValue(ParseUtils.readResValue(buffer, dataOffset, stringPool));
             return resourceEntry;
         }
     }
 
-    private ResourceTableMap readResourceTableMap() {
+    private ResourceTableMap readResourceTableMap(int offset) {
         ResourceTableMap resourceTableMap = new ResourceTableMap();
-        resourceTableMap.setNameRef(Buffers.readUInt(buffer));
-        resourceTableMap.setResValue(ParseUtils.readResValue(buffer, stringPool));
-
-        if ((resourceTableMap.getNameRef() & 0x02000000) != 0) {
-            //read arrays
-        } else if ((resourceTableMap.getNameRef() & 0x01000000) != 0) {
-            // read attrs
-        } else {
-        }
-
+        resourceTableMap.setNameRef(buffer.getInt(offset) & 0xffffffffL);
+        resourceTableMap.setResValue(ParseUtils.readResValue(buffer, offset + 4, stringPool));
         return resourceTableMap;
     }
 
@@ -94,7 +253,18 @@ public class Type {
         return name;
     }
 
+    void freeze() {
+        this.frozen = true;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Resource type is frozen");
+        }
+    }
+
     public void setName(String name) {
+        checkNotFrozen();
         this.name = name;
     }
 
@@ -103,6 +273,7 @@ public class Type {
     }
 
     public void setId(short id) {
+        checkNotFrozen();
         this.id = id;
     }
 
@@ -111,30 +282,117 @@ public class Type {
     }
 
     public void setLocale(Locale locale) {
+        checkNotFrozen();
         this.locale = locale;
     }
 
+    public ResTableConfig getConfig() {
+        return config;
+    }
+
+    public void setConfig(ResTableConfig config) {
+        checkNotFrozen();
+        this.config = config;
+    }
+
     public StringPool getKeyStringPool() {
         return keyStringPool;
     }
 
     public void setKeyStringPool(StringPool keyStringPool) {
+        checkNotFrozen();
         this.keyStringPool = keyStringPool;
     }
 
+    /**
+     * The entries data. If the buffer is from a {@link BufferArena}, reads of it should be guarded by
+     * {@link BufferArena#enter()} and {@link BufferArena#exit()}.
+     */
     public ByteBuffer getBuffer() {
+        if (bufferArena != null) {
+            bufferArena.checkOpen();
+        }
         return buffer;
     }
 
     public void setBuffer(ByteBuffer buffer) {
+        checkNotFrozen();
         this.buffer = buffer;
     }
 
-    public long[] getOffsets() {
+    /**
+     * Set the arena owning the buffer, if the buffer is off-heap
+     */
+    public void setBufferArena(BufferArena bufferArena) {
+        checkNotFrozen();
+        this.bufferArena = bufferArena;
+    }
+
+    /**
+     * @return the entry data offsets, indexed by entry index for dense type, or in the same order as
+     * {@link #getEntryIndices()} for sparse type. {@link #NO_ENTRY} if the entry is not in this type.
+     * The internal array is returned without copying, it must not be modified
+     */
+    public int[] getEntryOffsets() {
         return offsets;
     }
 
+    /**
+     * Set entry data offsets for dense type, indexed by entry index
+     */
+    public void setEntryOffsets(int[] offsets) {
+        checkNotFrozen();
+        this.offsets = offsets;
+        this.entryIndices = null;
+    }
+
+    /**
+     * The entry data offsets indexed by entry index, {@link TypeHeader#NO_ENTRY} if the entry is not in this type.
+     * A copy is returned, sparse types are expanded.
+     *
+     * @deprecated use {@link #getEntryOffsets()}
+     */
+    @Deprecated
+    public long[] getOffsets() {
+        int length = entryIndices == null ? offsets.length
+                : entryIndices.length == 0 ? 0 : entryIndices[entryIndices.length - 1] + 1;
+        long[] result = new long[length];
+        for (int i = 0; i < length; i++) {
+            int offset = getOffset(i);
+            result[i] = offset == NO_ENTRY ? TypeHeader.NO_ENTRY : offset;
+        }
+        return result;
+    }
+
+    /**
+     * @deprecated use {@link #setEntryOffsets(int[])}
+     */
+    @Deprecated
     public void setOffsets(long[] offsets) {
+        int[] values = new int[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            values[i] = offsets[i] == TypeHeader.NO_ENTRY ? NO_ENTRY : (int) offsets[i];
+        }
+        setEntryOffsets(values);
+    }
+
+    /**
+     * @return the sorted entry indices if this type is sparse, otherwise null. The internal array is returned
+     * without copying, it must not be modified
+     */
+    public char[] getEntryIndices() {
+        return entryIndices;
+    }
+
+    /**
+     * Set entries for sparse type.
+     *
+     * @param entryIndices the entry indices, sorted
+     * @param offsets      the entry data offsets, in the same order as entry indices
+     */
+    public void setSparseOffsets(char[] entryIndices, int[] offsets) {
+        checkNotFrozen();
+        this.entryIndices = entryIndices;
         this.offsets = offsets;
     }
 
@@ -143,6 +401,7 @@ public class Type {
     }
 
     public void setStringPool(StringPool stringPool) {
+        checkNotFrozen();
         this.stringPool = stringPool;
     }
 
@@ -151,7 +410,7 @@ public class Type {
         return "Type{" +
                 "name='" + name + '\'' +
                 ", id=" + id +
-                ", locale=" + locale +
+                ", config=" + config +
                 '}';
     }
 }
@@ -9,12 +9,18 @@ public class TypeHeader extends ChunkHeader {
 
     public static final long NO_ENTRY = 0xFFFFFFFFL;
 
+    // If set, the entry indices are pairs of uint16 entry index and uint16 offset / 4, sorted by entry index
+    public static final int FLAG_SPARSE = 0x01;
+    // If set, the entry indices are uint16 offset / 4, 0xffff for no entry
+    public static final int FLAG_OFFSET16 = 0x02;
+    public static final int NO_ENTRY16 = 0xFFFF;
+
     // The type identifier this chunk is holding.  Type IDs start at 1 (corresponding to the value
     // of the type bits in a resource identifier).  0 is invalid.
     // uint8_t
     private short id;
 
-    // Must be 0. uint8_t
+    // Flags, see FLAG_SPARSE and FLAG_OFFSET16. Was reserved and must be 0 before sparse types. uint8_t
     private short res0;
     // Must be 0. uint16_t
     private int res1;
@@ -48,6 +54,13 @@ public class TypeHeader extends ChunkHeader {
         this.res0 = res0;
     }
 
+    /**
+     * The type flags, stored in res0
+     */
+    public short getFlags() {
+        return res0;
+    }
+
     public int getRes1() {
         return res1;
     }
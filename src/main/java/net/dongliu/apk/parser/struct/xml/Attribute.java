@@ -1,9 +1,11 @@
 package net.dongliu.apk.parser.struct.xml;
 
+import net.dongliu.apk.parser.bean.DeviceProfile;
 import net.dongliu.apk.parser.struct.ResourceValue;
 import net.dongliu.apk.parser.struct.resource.ResourceTable;
 import net.dongliu.apk.parser.utils.ResourceLoader;
 
+import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 
@@ -15,6 +17,10 @@ import java.util.Map;
 public class Attribute {
     private String namespace;
     private String name;
+    // the android attribute resource id from XML_RESOURCE_MAP chunk, 0 if not mapped
+    private int resourceId;
+    // the index of attribute name in string pool
+    private int nameIndex;
     // The original raw string value of this 
     private String rawValue;
     // Processed typed value of this
@@ -33,6 +39,17 @@ public class Attribute {
         }
     }
 
+    public String toStringValue(ResourceTable resourceTable, DeviceProfile profile) {
+        if (rawValue != null) {
+            return rawValue;
+        } else if (typedValue != null) {
+            return typedValue.toStringValue(resourceTable, profile);
+        } else {
+            // something happen;
+            return "";
+        }
+    }
+
     /**
      * These are attribute resource constants for the platform; as found in android.R.attr
      *
@@ -40,8 +57,55 @@ public class Attribute {
      */
     public static class AttrIds {
 
+        public static final int THEME = 0x01010000;
+        public static final int LABEL = 0x01010001;
+        public static final int ICON = 0x01010002;
+        public static final int NAME = 0x01010003;
+        public static final int PERMISSION = 0x01010006;
+        public static final int PROTECTION_LEVEL = 0x01010009;
+        public static final int PERMISSION_GROUP = 0x0101000a;
+        public static final int ENABLED = 0x0101000e;
+        public static final int EXPORTED = 0x01010010;
+        public static final int PROCESS = 0x01010011;
+        public static final int AUTHORITIES = 0x01010018;
+        public static final int LAUNCH_MODE = 0x0101001d;
+        public static final int SCREEN_ORIENTATION = 0x0101001e;
+        public static final int CONFIG_CHANGES = 0x0101001f;
+        public static final int DESCRIPTION = 0x01010020;
+        public static final int VALUE = 0x01010024;
+        public static final int RESOURCE = 0x01010025;
+        public static final int MIME_TYPE = 0x01010026;
+        public static final int SCHEME = 0x01010027;
+        public static final int HOST = 0x01010028;
+        public static final int PORT = 0x01010029;
+        public static final int PATH = 0x0101002a;
+        public static final int PATH_PREFIX = 0x0101002b;
+        public static final int PATH_PATTERN = 0x0101002c;
+        public static final int TARGET_ACTIVITY = 0x01010202;
+        public static final int MIN_SDK_VERSION = 0x0101020c;
+        public static final int VERSION_CODE = 0x0101021b;
+        public static final int VERSION_NAME = 0x0101021c;
+        public static final int WINDOW_SOFT_INPUT_MODE = 0x0101022b;
+        public static final int ANY_DENSITY = 0x0101026c;
+        public static final int TARGET_SDK_VERSION = 0x01010270;
+        public static final int MAX_SDK_VERSION = 0x01010271;
+        public static final int GL_ES_VERSION = 0x01010281;
+        public static final int SMALL_SCREENS = 0x01010284;
+        public static final int NORMAL_SCREENS = 0x01010285;
+        public static final int LARGE_SCREENS = 0x01010286;
+        public static final int REQUIRED = 0x0101028e;
+        public static final int INSTALL_LOCATION = 0x010102b7;
+
         private static final Map<Integer, String> ids = ResourceLoader.loadSystemAttrIds();
 
+        private static final Map<String, Integer> names = new HashMap<>();
+
+        static {
+            for (Map.Entry<Integer, String> entry : ids.entrySet()) {
+                names.put(entry.getValue(), entry.getKey());
+            }
+        }
+
         public static String getString(long id) {
             String value = ids.get((int) id);
             if (value == null) {
@@ -50,6 +114,16 @@ public class Attribute {
             return value;
         }
 
+        /**
+         * get the attr id by attr name.
+         *
+         * @return the id, 0 if not a android system attr
+         */
+        public static int getId(String name) {
+            Integer id = names.get(name);
+            return id == null ? 0 : id;
+        }
+
     }
 
     public String getNamespace() {
@@ -68,6 +142,30 @@ public class Attribute {
         this.name = name;
     }
 
+    /**
+     * The android attribute resource id, as found in android.R.attr
+     *
+     * @return the id, 0 if this attribute is not mapped in the XML_RESOURCE_MAP chunk
+     */
+    public int getResourceId() {
+        return resourceId;
+    }
+
+    public void setResourceId(int resourceId) {
+        this.resourceId = resourceId;
+    }
+
+    /**
+     * the index of the attribute name in xml string pool
+     */
+    public int getNameIndex() {
+        return nameIndex;
+    }
+
+    public void setNameIndex(int nameIndex) {
+        this.nameIndex = nameIndex;
+    }
+
     public String getRawValue() {
         return rawValue;
     }
@@ -26,17 +26,81 @@ public class Attributes {
         return null;
     }
 
+    /**
+     * Get attribute by android attribute resource id, see {@link Attribute.AttrIds}.
+     * If the binary xml do not have resource map for this attribute, fall back to match by name.
+     *
+     * @return null if not found
+     */
+    public Attribute getAttributeById(int resourceId) {
+        boolean hasUnmapped = false;
+        for (Attribute attribute : attributes) {
+            if (attribute.getResourceId() == resourceId) {
+                return attribute;
+            }
+            if (attribute.getResourceId() == 0 && attribute.getNamespace() != null) {
+                hasUnmapped = true;
+            }
+        }
+        if (!hasUnmapped) {
+            return null;
+        }
+        String name = Attribute.AttrIds.getString(resourceId);
+        for (Attribute attribute : attributes) {
+            if (attribute.getResourceId() == 0 && name.equals(attribute.getName())) {
+                return attribute;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get attribute value by android attribute resource id, see {@link Attribute.AttrIds}.
+     *
+     * @return null if not found
+     */
+    public String getById(int resourceId) {
+        Attribute attribute = getAttributeById(resourceId);
+        return attribute == null ? null : attribute.getValue();
+    }
+
     public int size() {
         return attributes.length;
     }
 
     public boolean getBoolean(String name, boolean b) {
-        String value = get(name);
-        return value == null ? b : Boolean.parseBoolean(value);
+        return toBoolean(get(name), b);
+    }
+
+    public boolean getBooleanById(int resourceId, boolean b) {
+        return toBoolean(getById(resourceId), b);
     }
 
     public Integer getInt(String name) {
-        String value = get(name);
+        return toInt(get(name));
+    }
+
+    public Integer getIntById(int resourceId) {
+        return toInt(getById(resourceId));
+    }
+
+    public Long getLong(String name) {
+        return toLong(get(name));
+    }
+
+    public Long getLongById(int resourceId) {
+        return toLong(getById(resourceId));
+    }
+
+    public Attribute[] value() {
+        return this.attributes;
+    }
+
+    private static boolean toBoolean(String value, boolean b) {
+        return value == null ? b : Boolean.parseBoolean(value);
+    }
+
+    private static Integer toInt(String value) {
         if (value == null) {
             return null;
         }
@@ -46,8 +110,7 @@ public class Attributes {
         return Integer.valueOf(value);
     }
 
-    public Long getLong(String name) {
-        String value = get(name);
+    private static Long toLong(String value) {
         if (value == null) {
             return null;
         }
@@ -56,9 +119,4 @@ public class Attributes {
         }
         return Long.valueOf(value);
     }
-
-    public Attribute[] value() {
-        return this.attributes;
-    }
 }
-
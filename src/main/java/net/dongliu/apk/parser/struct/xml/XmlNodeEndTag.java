@@ -6,6 +6,10 @@ package net.dongliu.apk.parser.struct.xml;
 public class XmlNodeEndTag {
     private String namespace;
     private String name;
+    // the index of tag name in string pool
+    private int nameIndex;
+    // the well-known tag id, see XmlTags
+    private int tagId;
 
     public String getNamespace() {
         return namespace;
@@ -23,6 +27,30 @@ public class XmlNodeEndTag {
         this.name = name;
     }
 
+    /**
+     * the index of the tag name in xml string pool
+     */
+    public int getNameIndex() {
+        return nameIndex;
+    }
+
+    public void setNameIndex(int nameIndex) {
+        this.nameIndex = nameIndex;
+    }
+
+    /**
+     * the well-known tag id
+     *
+     * @return one of the {@link XmlTags} constants, XmlTags.UNKNOWN if not a well-known tag
+     */
+    public int getTagId() {
+        return tagId;
+    }
+
+    public void setTagId(int tagId) {
+        this.tagId = tagId;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
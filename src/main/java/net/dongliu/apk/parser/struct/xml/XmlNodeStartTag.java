@@ -6,6 +6,10 @@ package net.dongliu.apk.parser.struct.xml;
 public class XmlNodeStartTag {
     private String namespace;
     private String name;
+    // the index of tag name in string pool
+    private int nameIndex;
+    // the well-known tag id, see XmlTags
+    private int tagId;
 
     // Byte offset from the start of this structure where the attributes start. uint16
     //public int attributeStart;
@@ -37,6 +41,30 @@ public class XmlNodeStartTag {
         this.name = name;
     }
 
+    /**
+     * the index of the tag name in xml string pool
+     */
+    public int getNameIndex() {
+        return nameIndex;
+    }
+
+    public void setNameIndex(int nameIndex) {
+        this.nameIndex = nameIndex;
+    }
+
+    /**
+     * the well-known tag id
+     *
+     * @return one of the {@link XmlTags} constants, XmlTags.UNKNOWN if not a well-known tag
+     */
+    public int getTagId() {
+        return tagId;
+    }
+
+    public void setTagId(int tagId) {
+        this.tagId = tagId;
+    }
+
     public Attributes getAttributes() {
         return attributes;
     }
@@ -0,0 +1,69 @@
+package net.dongliu.apk.parser.struct.xml;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Int ids for well-known AndroidManifest.xml tag names, so streamers can switch on ints instead of strings.
+ * The ids are resolved once per string pool entry by BinaryXmlParser.
+ *
+ * @author dongliu
+ */
+public class XmlTags {
+    /**
+     * tag names not in this table
+     */
+    public static final int UNKNOWN = 0;
+    public static final int MANIFEST = 1;
+    public static final int APPLICATION = 2;
+    public static final int USES_SDK = 3;
+    public static final int SUPPORTS_SCREENS = 4;
+    public static final int USES_FEATURE = 5;
+    public static final int USES_PERMISSION = 6;
+    public static final int PERMISSION = 7;
+    public static final int ACTIVITY = 8;
+    public static final int ACTIVITY_ALIAS = 9;
+    public static final int SERVICE = 10;
+    public static final int RECEIVER = 11;
+    public static final int PROVIDER = 12;
+    public static final int INTENT_FILTER = 13;
+    public static final int ACTION = 14;
+    public static final int CATEGORY = 15;
+    public static final int DATA = 16;
+    public static final int META_DATA = 17;
+
+    private static final Map<String, Integer> ids = new HashMap<>();
+
+    static {
+        ids.put("manifest", MANIFEST);
+        ids.put("application", APPLICATION);
+        ids.put("uses-sdk", USES_SDK);
+        ids.put("supports-screens", SUPPORTS_SCREENS);
+        ids.put("uses-feature", USES_FEATURE);
+        ids.put("uses-permission", USES_PERMISSION);
+        ids.put("permission", PERMISSION);
+        ids.put("activity", ACTIVITY);
+        ids.put("activity-alias", ACTIVITY_ALIAS);
+        ids.put("service", SERVICE);
+        ids.put("receiver", RECEIVER);
+        ids.put("provider", PROVIDER);
+        ids.put("intent-filter", INTENT_FILTER);
+        ids.put("action", ACTION);
+        ids.put("category", CATEGORY);
+        ids.put("data", DATA);
+        ids.put("meta-data", META_DATA);
+    }
+
+    /**
+     * get the tag id by tag name.
+     *
+     * @return the id, UNKNOWN if not a well-known tag
+     */
+    public static int getId(String name) {
+        if (name == null) {
+            return UNKNOWN;
+        }
+        Integer id = ids.get(name);
+        return id == null ? UNKNOWN : id;
+    }
+}
@@ -53,9 +53,9 @@ public class BlockMemoryStream implements Closeable {
     private boolean isWritable;
 
     /*
-     * is the stream readable (only false after it is disposed)
+     * is the stream readable (only false after it is disposed), volatile for threads reading at positions
      */
-    private boolean isOpen;
+    private volatile boolean isOpen;
 
     /*
      * Size of the allocation block.
@@ -67,6 +67,11 @@ public class BlockMemoryStream implements Closeable {
      */
     private boolean disableDispose;
 
+    /*
+     * The pool full size blocks are drawn from and returned to on close, null if not pooled.
+     */
+    private final BlockPool blockPool;
+
     public final static int DefaultBlockAllocationSize = 81920;
 
     private final static int MaxStreamLength = Integer.MAX_VALUE;
@@ -75,11 +80,29 @@ public class BlockMemoryStream implements Closeable {
         this(0);
     }
 
+    /**
+     * Stream with blocks from {@link BlockPool#DEFAULT}
+     */
     public BlockMemoryStream(int capacity) throws Exception {
-        this(capacity, DefaultBlockAllocationSize);
+        this(capacity, BlockPool.DEFAULT);
     }
 
+    /**
+     * Stream with blocks of maxBlockSize, not pooled
+     */
     public BlockMemoryStream(int capacity, int maxBlockSize) throws Exception {
+        this(capacity, maxBlockSize, null);
+    }
+
+    /**
+     * Stream with blocks from the pool, the block size is the pool block size. Blocks are returned to pool when the
+     * stream is closed.
+     */
+    public BlockMemoryStream(int capacity, BlockPool blockPool) throws Exception {
+        this(capacity, blockPool.getBlockSize(), blockPool);
+    }
+
+    private BlockMemoryStream(int capacity, int maxBlockSize, BlockPool blockPool) throws Exception {
         if (capacity < 0) {
             throw new ArgumentOutOfRangeException("capacity");
         } else if (maxBlockSize <= 0) {
@@ -87,6 +110,7 @@ public class BlockMemoryStream implements Closeable {
         }
 
         maximumBlockSize = maxBlockSize;
+        this.blockPool = blockPool;
 
         internalCapacity = capacity;
         allocateBlockList(capacity);
@@ -140,7 +164,7 @@ public class BlockMemoryStream implements Closeable {
 
         // initialize the new capacity
         for (int i = 0; i < count; ++i) {
-            internalBufferList.add(new byte[maximumBlockSize]);
+            internalBufferList.add(blockPool != null ? blockPool.acquire() : new byte[maximumBlockSize]);
         }
 
         if (rem > 0) {
@@ -151,6 +175,12 @@ public class BlockMemoryStream implements Closeable {
 
     private void resetBlockList() {
         if (internalBufferList != null) {
+            if (blockPool != null) {
+                // smaller blocks are not pooled
+                for (byte[] block : internalBufferList) {
+                    blockPool.release(block);
+                }
+            }
             internalBufferList.clear();
             internalBufferList = null;
         }
@@ -473,6 +503,20 @@ public class BlockMemoryStream implements Closeable {
         return n;
     }
 
+    /**
+     * Read count bytes at position, the current position is not changed.
+     */
+    public void readAt(int position, byte[] buffer, int offset, int count) throws InvalidOperationException {
+        if (!isOpen) {
+            throw new InvalidOperationException("!mIsOpen");
+        } else if (position < 0 || count < 0 || position > internalLength - count) {
+            throw new ArgumentOutOfRangeException("position");
+        }
+        if (count > 0) {
+            copyFromBlockList(position, buffer, offset, count);
+        }
+    }
+
     public byte readByte() throws InvalidOperationException {
         if (!isOpen) {
             throw new InvalidOperationException("!mIsOpen");
@@ -657,18 +701,15 @@ public class BlockMemoryStream implements Closeable {
         if (!isOpen) {
             throw new InvalidOperationException("!mIsOpen");
         }
-        if (offset < 0 || offset < 0) {
-            throw new InvalidOperationException("offset < 0 || offset < 0");
+        if (offset < 0 || count < 0 || offset > internalLength - count) {
+            throw new ArgumentOutOfRangeException("offset");
         }
 
         if (offset == 0 && count == internalLength) {
             return toArray();
         } else {
             byte[] copy = new byte[count];
-            // seek to the offset
-            seek(offset, SeekOrigin.Begin);
-            // populate the copy array at index zero with the count
-            write(copy, 0, count);
+            copyFromBlockList(offset, copy, 0, count);
 
             return copy;
         }
@@ -678,7 +719,8 @@ public class BlockMemoryStream implements Closeable {
         BlockMemoryStream bms = null;
         if (bytes != null) {
             try {
-                bms = new BlockMemoryStream(bytes.length);
+                // not pooled, the stream is owned by the caller
+                bms = new BlockMemoryStream(bytes.length, DefaultBlockAllocationSize);
                 StreamUtils.writeStreamToStream(new ByteArrayInputStream(bytes), bms);
             } catch (Exception e) {
             }
@@ -0,0 +1,110 @@
+package net.dongliu.apk.parser.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of fixed size byte blocks for {@link BlockMemoryStream}, so streams created per apk reuse the
+ * blocks of closed streams instead of allocating new ones. Acquire never blocks: when the pool is empty a new block
+ * is allocated, and blocks released to a full pool are dropped. Released blocks are zeroed.
+ * This class is thread-safe.
+ *
+ * @author dongliu
+ */
+public class BlockPool {
+    /**
+     * The pool of default size blocks, at most 256 idle blocks (20 MB)
+     */
+    public static final BlockPool DEFAULT = new BlockPool(BlockMemoryStream.DefaultBlockAllocationSize, 256);
+
+    private final int blockSize;
+    private final ArrayBlockingQueue<byte[]> blocks;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    /**
+     * @param blockSize the size of blocks
+     * @param capacity  max idle blocks kept
+     */
+    public BlockPool(int blockSize, int capacity) {
+        if (blockSize <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Invalid pool: blockSize " + blockSize + ", capacity " + capacity);
+        }
+        this.blockSize = blockSize;
+        this.blocks = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Get a zeroed block of {@link #getBlockSize()} bytes
+     */
+    public byte[] acquire() {
+        byte[] block = blocks.poll();
+        if (block == null) {
+            misses.incrementAndGet();
+            return new byte[blockSize];
+        }
+        hits.incrementAndGet();
+        return block;
+    }
+
+    /**
+     * Return block to pool, the block should not be used after this. Blocks of other size are ignored.
+     */
+    public void release(byte[] block) {
+        if (block.length != blockSize) {
+            return;
+        }
+        Arrays.fill(block, (byte) 0);
+        if (!blocks.offer(block)) {
+            discarded.incrementAndGet();
+        }
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Max idle blocks kept
+     */
+    public int getCapacity() {
+        return blocks.size() + blocks.remainingCapacity();
+    }
+
+    /**
+     * Count of blocks idle in pool
+     */
+    public int getIdleCount() {
+        return blocks.size();
+    }
+
+    /**
+     * Count of acquires served from pool
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Count of acquires which allocated a new block
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Count of released blocks dropped because the pool was full
+     */
+    public long getDiscardedCount() {
+        return discarded.get();
+    }
+
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        discarded.set(0);
+    }
+}
@@ -0,0 +1,175 @@
+package net.dongliu.apk.parser.utils;
+
+import net.dongliu.apk.parser.exception.ArenaClosedException;
+
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Direct buffers owned by one apk file, freed when the arena is closed instead of waiting for GC.
+ * Structures reading arena buffers should read between {@link #enter()} and {@link #exit()}, reading freed memory
+ * would crash the jvm. {@link #close()} waits for the reads in progress, so the arena can be closed while other
+ * threads still use the structures; their later reads throw {@link ArenaClosedException}.
+ * This class is thread-safe.
+ *
+ * @author dongliu
+ */
+public class BufferArena implements Closeable {
+    private static final Freer FREER = Freer.create();
+
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+    private volatile boolean closed;
+    // readers hold the read lock, close holds the write lock while freeing buffers
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long allocatedBytes;
+    private long totalAllocatedBytes;
+
+    /**
+     * Allocate a direct buffer of capacity bytes, with big endian order as all new buffers.
+     */
+    public synchronized ByteBuffer allocate(int capacity) {
+        checkOpen();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(capacity);
+        buffers.add(buffer);
+        allocatedBytes += capacity;
+        totalAllocatedBytes += capacity;
+        return buffer;
+    }
+
+    /**
+     * Free a buffer allocated by this arena before the arena is closed, e.g. a transient buffer after parsing.
+     * Slices and duplicates of the buffer should not be used after this.
+     */
+    public synchronized void release(ByteBuffer buffer) {
+        for (Iterator<ByteBuffer> iterator = buffers.iterator(); iterator.hasNext(); ) {
+            if (iterator.next() == buffer) {
+                iterator.remove();
+                allocatedBytes -= buffer.capacity();
+                FREER.free(buffer);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @throws ArenaClosedException if the arena is closed
+     */
+    public void checkOpen() {
+        if (closed) {
+            throw new ArenaClosedException("Buffer arena is closed");
+        }
+    }
+
+    /**
+     * Start reading arena buffers, which are not freed until {@link #exit()} is called. Must be paired with
+     * {@link #exit()} in a finally block.
+     *
+     * @throws ArenaClosedException if the arena is closed
+     */
+    public void enter() {
+        lock.readLock().lock();
+        if (closed) {
+            lock.readLock().unlock();
+            throw new ArenaClosedException("Buffer arena is closed");
+        }
+    }
+
+    /**
+     * End reading arena buffers started by {@link #enter()}.
+     */
+    public void exit() {
+        lock.readLock().unlock();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Bytes of the buffers not freed yet
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Bytes of all buffers allocated
+     */
+    public synchronized long getTotalAllocatedBytes() {
+        return totalAllocatedBytes;
+    }
+
+    /**
+     * Free all buffers, after the reads in progress exit. If direct buffers cannot be freed explicitly on this jvm,
+     * the references are dropped so they are freed by GC.
+     * Must not be called by a thread between {@link #enter()} and {@link #exit()}, which would wait for itself.
+     */
+    @Override
+    public void close() {
+        // wait for readers without holding the monitor, so statistics can still be read meanwhile
+        lock.writeLock().lock();
+        try {
+            synchronized (this) {
+                closed = true;
+                for (ByteBuffer buffer : buffers) {
+                    FREER.free(buffer);
+                }
+                buffers.clear();
+                allocatedBytes = 0;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Free direct buffers by the jdk internal cleaner, found by reflection for java 9+ and java 8-.
+     */
+    private static abstract class Freer {
+        abstract void free(ByteBuffer buffer);
+
+        static Freer create() {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                final Object unsafe = field.get(null);
+                return new Freer() {
+                    @Override
+                    void free(ByteBuffer buffer) {
+                        try {
+                            invokeCleaner.invoke(unsafe, buffer);
+                        } catch (Exception e) {
+                            // left to GC
+                        }
+                    }
+                };
+            } catch (Exception e) {
+                // java 8-
+            }
+            return new Freer() {
+                @Override
+                void free(ByteBuffer buffer) {
+                    try {
+                        Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                        cleanerMethod.setAccessible(true);
+                        Object cleaner = cleanerMethod.invoke(buffer);
+                        if (cleaner != null) {
+                            cleaner.getClass().getMethod("clean").invoke(cleaner);
+                        }
+                    } catch (Exception e) {
+                        // left to GC
+                    }
+                }
+            };
+        }
+    }
+}
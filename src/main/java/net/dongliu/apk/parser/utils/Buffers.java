@@ -1,5 +1,7 @@
 package net.dongliu.apk.parser.utils;
 
+import net.dongliu.apk.parser.exception.ParseLimitExceededException;
+
 import java.nio.ByteBuffer;
 
 /**
@@ -37,6 +39,7 @@ public class Buffers {
      * get bytes
      */
     public static byte[] readBytes(ByteBuffer buffer, int size) {
+        checkRemaining(buffer, size, 1);
         byte[] bytes = new byte[size];
         buffer.get(bytes);
         return bytes;
@@ -47,6 +50,7 @@ public class Buffers {
      * read utf16 strings, use strLen, not ending 0 char.
      */
     public static String readString(ByteBuffer buffer, int strLen) {
+        checkRemaining(buffer, strLen, 2);
         StringBuilder sb = new StringBuilder(strLen);
         for (int i = 0; i < strLen; i++) {
             sb.append(buffer.getChar());
@@ -70,6 +74,24 @@ public class Buffers {
         return sb.toString();
     }
 
+    /**
+     * Check that count items of itemSize bytes are available in the buffer,
+     * before allocating arrays with counts read from file.
+     */
+    public static void checkRemaining(ByteBuffer buffer, long count, int itemSize) {
+        checkRemaining(buffer, buffer.position(), count, itemSize);
+    }
+
+    /**
+     * Check that count items of itemSize bytes are available in the buffer from the position, for absolute reads.
+     */
+    public static void checkRemaining(ByteBuffer buffer, int position, long count, int itemSize) {
+        long remaining = buffer.limit() - (long) position;
+        if (count < 0 || count * itemSize > remaining) {
+            throw new ParseLimitExceededException("Count " + count + " exceeds remaining data size " + remaining);
+        }
+    }
+
     /**
      * skip count bytes
      */
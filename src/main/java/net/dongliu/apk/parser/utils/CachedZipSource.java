@@ -0,0 +1,236 @@
+package net.dongliu.apk.parser.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Zip source with a LRU cache of fixed size blocks in front of another source, for sources with costly reads, e.g.
+ * remote objects read by ranges. When a block is missed, the following uncached blocks are read ahead in the same
+ * read of the underlying source.
+ * This class is thread-safe, the underlying source is read without holding the cache lock, and must support concurrent
+ * reads.
+ *
+ * @author dongliu
+ */
+public class CachedZipSource extends ZipSource {
+    private final ZipSource source;
+    private final int blockSize;
+    private final int readAheadBlocks;
+    private final LinkedHashMap<Long, byte[]> blocks;
+    // blocks being read from the underlying source
+    private final Map<Long, BlockFetch> pending = new HashMap<>();
+    private long size = -1;
+
+    private long hitCount;
+    private long missCount;
+    private long sourceReadCount;
+    private long sourceReadBytes;
+
+    /**
+     * @param blockSize       the size of cached blocks
+     * @param maxBlocks       max blocks in cache, the least recently used blocks are evicted
+     * @param readAheadBlocks blocks read after a missed block, less than maxBlocks
+     */
+    public CachedZipSource(ZipSource source, int blockSize, final int maxBlocks, int readAheadBlocks) {
+        if (blockSize <= 0 || maxBlocks <= 0 || readAheadBlocks < 0 || readAheadBlocks >= maxBlocks) {
+            throw new IllegalArgumentException("Invalid block cache: blockSize " + blockSize + ", maxBlocks "
+                    + maxBlocks + ", readAheadBlocks " + readAheadBlocks);
+        }
+        this.source = source;
+        this.blockSize = blockSize;
+        this.readAheadBlocks = readAheadBlocks;
+        this.blocks = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > maxBlocks;
+            }
+        };
+    }
+
+    @Override
+    public synchronized long size() throws IOException {
+        if (size < 0) {
+            size = source.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void read(long position, byte[] buffer, int offset, int length) throws IOException {
+        long size = size();
+        if (position < 0 || position + length > size) {
+            throw new EOFException("Read " + length + " bytes at " + position + ", size " + size);
+        }
+        while (length > 0) {
+            long index = position / blockSize;
+            byte[] block = getBlock(index);
+            int blockOffset = (int) (position - index * blockSize);
+            int n = Math.min(length, block.length - blockOffset);
+            System.arraycopy(block, blockOffset, buffer, offset, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Get block from cache, or read it from the underlying source without holding the lock. Threads missing a block
+     * being read wait for that read, instead of reading the block again.
+     */
+    private byte[] getBlock(long index) throws IOException {
+        BlockFetch fetch;
+        boolean fetching = false;
+        synchronized (this) {
+            byte[] block = blocks.get(index);
+            if (block != null) {
+                hitCount++;
+                return block;
+            }
+            missCount++;
+            fetch = pending.get(index);
+            if (fetch == null) {
+                long lastIndex = (size - 1) / blockSize;
+                long last = index;
+                while (last - index < readAheadBlocks && last < lastIndex && !blocks.containsKey(last + 1)
+                        && !pending.containsKey(last + 1)) {
+                    last++;
+                }
+                fetch = new BlockFetch(index, last);
+                for (long i = index; i <= last; i++) {
+                    pending.put(i, fetch);
+                }
+                fetching = true;
+            }
+        }
+        if (fetching) {
+            fetch.run();
+        }
+        return fetch.getBlock(index);
+    }
+
+    /**
+     * One read of the underlying source, for blocks first to last.
+     */
+    private class BlockFetch extends FutureTask<byte[][]> {
+        private final long first;
+        private final long last;
+
+        BlockFetch(final long first, final long last) {
+            super(new Callable<byte[][]>() {
+                @Override
+                public byte[][] call() throws IOException {
+                    return readBlocks(first, last);
+                }
+            });
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void done() {
+            synchronized (CachedZipSource.this) {
+                for (long i = first; i <= last; i++) {
+                    pending.remove(i);
+                }
+            }
+        }
+
+        byte[] getBlock(long index) throws IOException {
+            try {
+                return get()[(int) (index - first)];
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for block " + index);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    private byte[][] readBlocks(long first, long last) throws IOException {
+        long start = first * blockSize;
+        int length = (int) (Math.min(size, (last + 1) * blockSize) - start);
+        byte[] data = new byte[length];
+        source.read(start, data, 0, length);
+
+        byte[][] result = new byte[(int) (last - first + 1)][];
+        for (long i = first; i <= last; i++) {
+            int from = (int) ((i - first) * blockSize);
+            int to = Math.min(length, from + blockSize);
+            if (from == 0 && to == length) {
+                result[0] = data;
+            } else {
+                result[(int) (i - first)] = Arrays.copyOfRange(data, from, to);
+            }
+        }
+        synchronized (this) {
+            sourceReadCount++;
+            sourceReadBytes += length;
+            // the read-ahead blocks are put first, so the requested block is the most recently used
+            for (long i = last; i >= first; i--) {
+                blocks.put(i, result[(int) (i - first)]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Count of block reads served by cache
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Count of block reads missed the cache
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Count of reads of the underlying source
+     */
+    public synchronized long getSourceReadCount() {
+        return sourceReadCount;
+    }
+
+    /**
+     * Bytes read from the underlying source
+     */
+    public synchronized long getSourceReadBytes() {
+        return sourceReadBytes;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Clear cached blocks, and close the underlying source.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        blocks.clear();
+        pending.clear();
+        source.close();
+    }
+}
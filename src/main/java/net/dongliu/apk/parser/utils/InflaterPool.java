@@ -0,0 +1,152 @@
+package net.dongliu.apk.parser.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Inflater;
+
+/**
+ * A bounded pool of raw (nowrap) inflaters and scratch buffers, shared by apk files to avoid allocating a native
+ * inflater and a buffer for each entry read. Acquire never blocks: when the pool is empty a new object is created,
+ * and objects released to a full pool are dropped, inflaters are ended then.
+ * This class is thread-safe.
+ *
+ * @author dongliu
+ */
+public class InflaterPool {
+    /**
+     * The pool shared by apk files by default
+     */
+    public static final InflaterPool DEFAULT = new InflaterPool(Runtime.getRuntime().availableProcessors() * 2,
+            8 * 1024);
+
+    private final ArrayBlockingQueue<Inflater> inflaters;
+    private final ArrayBlockingQueue<byte[]> buffers;
+    private final int bufferSize;
+
+    private final AtomicLong inflaterRequests = new AtomicLong();
+    private final AtomicLong inflatersCreated = new AtomicLong();
+    private final AtomicLong bufferRequests = new AtomicLong();
+    private final AtomicLong buffersCreated = new AtomicLong();
+
+    /**
+     * @param capacity   max idle inflaters, and max idle buffers kept
+     * @param bufferSize the size of scratch buffers
+     */
+    public InflaterPool(int capacity, int bufferSize) {
+        if (capacity <= 0 || bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid pool: capacity " + capacity + ", bufferSize " + bufferSize);
+        }
+        this.inflaters = new ArrayBlockingQueue<>(capacity);
+        this.buffers = new ArrayBlockingQueue<>(capacity);
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Get an inflater for raw deflate data, as in zip entries. Release it after use.
+     */
+    public Inflater acquireInflater() {
+        inflaterRequests.incrementAndGet();
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            inflatersCreated.incrementAndGet();
+            inflater = new Inflater(true);
+        }
+        return inflater;
+    }
+
+    /**
+     * Reset the inflater and return it to pool. The inflater should not be used after this.
+     */
+    public void releaseInflater(Inflater inflater) {
+        inflater.reset();
+        if (!inflaters.offer(inflater)) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Get a scratch buffer of {@link #getBufferSize()} bytes, the content is undefined. Release it after use.
+     */
+    public byte[] acquireBuffer() {
+        bufferRequests.incrementAndGet();
+        byte[] buffer = buffers.poll();
+        if (buffer == null) {
+            buffersCreated.incrementAndGet();
+            buffer = new byte[bufferSize];
+        }
+        return buffer;
+    }
+
+    /**
+     * Return the buffer to pool. The buffer should not be used after this.
+     */
+    public void releaseBuffer(byte[] buffer) {
+        if (buffer.length == bufferSize) {
+            buffers.offer(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Count of inflaters acquired
+     */
+    public long getInflaterRequestCount() {
+        return inflaterRequests.get();
+    }
+
+    /**
+     * Count of inflaters created because the pool was empty
+     */
+    public long getInflaterCreatedCount() {
+        return inflatersCreated.get();
+    }
+
+    /**
+     * Count of buffers acquired
+     */
+    public long getBufferRequestCount() {
+        return bufferRequests.get();
+    }
+
+    /**
+     * Count of buffers created because the pool was empty
+     */
+    public long getBufferCreatedCount() {
+        return buffersCreated.get();
+    }
+
+    /**
+     * Count of inflaters idle in pool
+     */
+    public int getIdleInflaterCount() {
+        return inflaters.size();
+    }
+
+    /**
+     * Count of buffers idle in pool
+     */
+    public int getIdleBufferCount() {
+        return buffers.size();
+    }
+
+    /**
+     * The ratio of acquires served from pool, 0 if nothing acquired
+     */
+    public double getReuseRatio() {
+        long requests = inflaterRequests.get() + bufferRequests.get();
+        if (requests == 0) {
+            return 0;
+        }
+        return (double) (requests - inflatersCreated.get() - buffersCreated.get()) / requests;
+    }
+
+    public void resetStatistics() {
+        inflaterRequests.set(0);
+        inflatersCreated.set(0);
+        bufferRequests.set(0);
+        buffersCreated.set(0);
+    }
+}
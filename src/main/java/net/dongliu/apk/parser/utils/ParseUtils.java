@@ -1,7 +1,10 @@
 package net.dongliu.apk.parser.utils;
 
+import net.dongliu.apk.parser.bean.DeviceProfile;
 import net.dongliu.apk.parser.bean.Locales;
 import net.dongliu.apk.parser.exception.ParserException;
+import net.dongliu.apk.parser.parser.ParseLimits;
+import net.dongliu.apk.parser.parser.StringInterner;
 import net.dongliu.apk.parser.parser.StringPoolEntry;
 import net.dongliu.apk.parser.struct.*;
 import net.dongliu.apk.parser.struct.resource.*;
@@ -9,8 +12,7 @@ import net.dongliu.apk.parser.struct.resource.*;
 import javax.annotation.Nullable;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.util.List;
-import java.util.Locale;
+import java.util.*;
 
 /**
  * @author dongliu
@@ -95,6 +97,31 @@ public class ParseUtils {
      * read String pool, for apk binary xml file and resource table.
      */
     public static StringPool readStringPool(ByteBuffer buffer, StringPoolHeader stringPoolHeader) {
+        return readStringPool(buffer, stringPoolHeader, null);
+    }
+
+    /**
+     * read String pool, for apk binary xml file and resource table.
+     *
+     * @param parseLimits the limits, null for no limit except the data size
+     */
+    public static StringPool readStringPool(ByteBuffer buffer, StringPoolHeader stringPoolHeader,
+                                            @Nullable ParseLimits parseLimits) {
+        return readStringPool(buffer, stringPoolHeader, parseLimits, StringInterner.NONE);
+    }
+
+    /**
+     * read String pool, for apk binary xml file and resource table.
+     *
+     * @param parseLimits the limits, null for no limit except the data size
+     * @param interner    to canonicalize the strings read
+     */
+    public static StringPool readStringPool(ByteBuffer buffer, StringPoolHeader stringPoolHeader,
+                                            @Nullable ParseLimits parseLimits, StringInterner interner) {
+        if (parseLimits != null) {
+            parseLimits.checkStringPoolSize(stringPoolHeader.getStringCount());
+        }
+        Buffers.checkRemaining(buffer, stringPoolHeader.getStringCount(), 4);
 
         long beginPos = buffer.position();
         long[] offsets = new long[(int) stringPoolHeader.getStringCount()];
@@ -130,7 +157,7 @@ public class ParseUtils {
 
             buffer.position((int) entry.getOffset());
             lastOffset = entry.getOffset();
-            String str = ParseUtils.readString(buffer, utf8);
+            String str = interner.intern(ParseUtils.readString(buffer, utf8));
             lastStr = str;
             stringPool.set(entry.getIdx(), str);
         }
@@ -150,41 +177,65 @@ public class ParseUtils {
      */
     @Nullable
     public static ResourceValue readResValue(ByteBuffer buffer, StringPool stringPool) {
-//        ResValue resValue = new ResValue();
-        int size = Buffers.readUShort(buffer);
-        short res0 = Buffers.readUByte(buffer);
-        short dataType = Buffers.readUByte(buffer);
+        int position = buffer.position();
+        ResourceValue value = readResValue(buffer, position, stringPool);
+        // Res_value is uint16 size, uint8 res0, uint8 dataType, uint32 data
+        buffer.position(position + 8);
+        return value;
+    }
+
+    /**
+     * read res value at the position, without changing the buffer position.
+     */
+    @Nullable
+    public static ResourceValue readResValue(ByteBuffer buffer, int position, StringPool stringPool) {
+        short dataType = (short) (buffer.get(position + 3) & 0xff);
+        int data = buffer.getInt(position + 4);
 
         switch (dataType) {
             case ResValue.ResType.INT_DEC:
-                return ResourceValue.decimal(buffer.getInt());
+                return ResourceValue.decimal(data);
             case ResValue.ResType.INT_HEX:
-                return ResourceValue.hexadecimal(buffer.getInt());
+                return ResourceValue.hexadecimal(data);
             case ResValue.ResType.STRING:
-                int strRef = buffer.getInt();
-                if (strRef >= 0) {
-                    return ResourceValue.string(strRef, stringPool);
+                if (data >= 0) {
+                    return ResourceValue.string(data, stringPool);
                 } else {
                     return null;
                 }
             case ResValue.ResType.REFERENCE:
-                return ResourceValue.reference(buffer.getInt());
+                return ResourceValue.reference(data);
             case ResValue.ResType.INT_BOOLEAN:
-                return ResourceValue.bool(buffer.getInt());
+                return ResourceValue.bool(data);
             case ResValue.ResType.NULL:
                 return ResourceValue.nullValue();
             case ResValue.ResType.INT_COLOR_RGB8:
             case ResValue.ResType.INT_COLOR_RGB4:
-                return ResourceValue.rgb(buffer.getInt(), 6);
+                return ResourceValue.rgb(data, 6);
             case ResValue.ResType.INT_COLOR_ARGB8:
             case ResValue.ResType.INT_COLOR_ARGB4:
-                return ResourceValue.rgb(buffer.getInt(), 8);
+                return ResourceValue.rgb(data, 8);
             case ResValue.ResType.DIMENSION:
-                return ResourceValue.dimension(buffer.getInt());
+                return ResourceValue.dimension(data);
             case ResValue.ResType.FRACTION:
-                return ResourceValue.fraction(buffer.getInt());
+                return ResourceValue.fraction(data);
+            default:
+                return ResourceValue.raw(data, dataType);
+        }
+    }
+
+    /**
+     * If the value data type holds a resource id, i.e. reference or attribute, dynamic or not.
+     */
+    public static boolean isReferenceType(short dataType) {
+        switch (dataType) {
+            case ResValue.ResType.REFERENCE:
+            case ResValue.ResType.ATTRIBUTE:
+            case ResValue.ResType.DYNAMIC_REFERENCE:
+            case ResValue.ResType.DYNAMIC_ATTRIBUTE:
+                return true;
             default:
-                return ResourceValue.raw(buffer.getInt(), dataType);
+                return false;
         }
     }
 
@@ -199,6 +250,16 @@ public class ParseUtils {
      * get resource value by string-format via resourceId.
      */
     public static String getResourceById(long resourceId, ResourceTable resourceTable, Locale locale) {
+        return getResourceById(resourceId, resourceTable, locale == null ? null : DeviceProfile.of(locale));
+    }
+
+    /**
+     * get resource value by string-format via resourceId, select the value best matches the device profile.
+     *
+     * @param profile the device profile, if null return the reference name instead of the value
+     */
+    public static String getResourceById(long resourceId, ResourceTable resourceTable,
+                                         @Nullable DeviceProfile profile) {
 //        An Android Resource id is a 32-bit integer. It comprises
 //        an 8-bit Package id [bits 24-31]
 //        an 8-bit Type id [bits 16-23]
@@ -214,6 +275,29 @@ public class ParseUtils {
             return str;
         }
 
+        // references may be nested or cyclic in malformed apks, stop following them at max depth
+        int[] depth = referenceDepth.get();
+        if (depth[0] >= resourceTable.getParseLimits().getMaxReferenceDepth()) {
+            return str;
+        }
+        depth[0]++;
+        try {
+            return getResourceById(resourceId, str, resourceTable, profile);
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    private static final ThreadLocal<int[]> referenceDepth = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    private static String getResourceById(long resourceId, String str, ResourceTable resourceTable,
+                                          @Nullable DeviceProfile profile) {
+
         short packageId = (short) (resourceId >> 24 & 0xff);
         short typeId = (short) ((resourceId >> 16) & 0xff);
         int entryIndex = (int) (resourceId & 0xffff);
@@ -222,54 +306,104 @@ public class ParseUtils {
             return str;
         }
         TypeSpec typeSpec = resourcePackage.getTypeSpec(typeId);
-        List<Type> types = resourcePackage.getTypes(typeId);
-        if (typeSpec == null || types == null) {
+        if (typeSpec == null || !typeSpec.exists(entryIndex)) {
             return str;
         }
-        if (!typeSpec.exists(entryIndex)) {
+
+        // the type config best matches the device, from the precomputed index
+        Type[] bestTypes = resourcePackage.getBestTypes(typeId, profile == null ? anyProfile : profile);
+        if (bestTypes == null || entryIndex >= bestTypes.length || bestTypes[entryIndex] == null) {
+            return str;
+        }
+        ResourceEntry resource = bestTypes[entryIndex].getResourceEntry(entryIndex);
+        if (resource == null) {
             return str;
         }
+        if (profile == null) {
+            return "@" + typeSpec.getName() + "/" + resource.getKey();
+        }
+        if (!hasValue(resource, resourceId)) {
+            ResourceEntry fallback = getFallbackEntry(resourcePackage, typeId, entryIndex, resourceId, profile);
+            if (fallback == null) {
+                return "@" + typeSpec.getName() + "/" + resource.getKey();
+            }
+            resource = fallback;
+        }
+        return resource.toStringValue(resourceTable, profile);
+    }
 
-        // read from type resource
-        ResourceEntry resource = null;
-        String ref = null;
-        int currentLevel = -1;
-        for (Type type : types) {
-            ResourceEntry curResourceEntry = type.getResourceEntry(entryIndex);
-            if (curResourceEntry == null) {
-                continue;
+    /**
+     * If the entry has a value, which is not a reference to the resource itself
+     */
+    private static boolean hasValue(ResourceEntry resource, long resourceId) {
+        ResourceValue value = resource.getValue();
+        // cyclic reference detect
+        return value != null && !(value instanceof ResourceValue.ReferenceResourceValue
+                && resourceId == ((ResourceValue.ReferenceResourceValue) value).getReferenceResourceId());
+    }
+
+    /**
+     * The entry of the best config has no value, use the best of other configs which has.
+     *
+     * @return null if no config has value
+     */
+    @Nullable
+    private static ResourceEntry getFallbackEntry(ResourcePackage resourcePackage, short typeId, int entryIndex,
+                                                  long resourceId, DeviceProfile profile) {
+        for (Type type : resourcePackage.getCandidateTypes(typeId, entryIndex, profile)) {
+            ResourceEntry resource = type.getResourceEntry(entryIndex);
+            if (resource != null && hasValue(resource, resourceId)) {
+                return resource;
             }
-            ref = curResourceEntry.getKey();
+        }
+        return null;
+    }
+
+    /**
+     * get resource value by string-format via resourceId, for each of the locales.
+     *
+     * @param profile the device profile other than locale
+     * @return the values by locale, empty if resource not found
+     */
+    public static Map<Locale, String> getResourceById(long resourceId, ResourceTable resourceTable,
+                                                      Collection<Locale> locales, DeviceProfile profile) {
+        if (resourceTable == null) {
+            return Collections.emptyMap();
+        }
+        short packageId = (short) (resourceId >> 24 & 0xff);
+        short typeId = (short) ((resourceId >> 16) & 0xff);
+        int entryIndex = (int) (resourceId & 0xffff);
+        ResourcePackage resourcePackage = resourceTable.getPackage(packageId);
+        if (resourcePackage == null) {
+            return Collections.emptyMap();
+        }
+        TypeSpec typeSpec = resourcePackage.getTypeSpec(typeId);
+        if (typeSpec == null || !typeSpec.exists(entryIndex)) {
+            return Collections.emptyMap();
+        }
 
-            ResourceValue currentResourceValue = curResourceEntry.getValue();
-            if (currentResourceValue == null) {
+        Map<Locale, Type> bestTypes = resourcePackage.getBestTypes(typeId, entryIndex, locales, profile);
+        Map<Locale, String> values = new LinkedHashMap<>();
+        for (Map.Entry<Locale, Type> entry : bestTypes.entrySet()) {
+            ResourceEntry resource = entry.getValue().getResourceEntry(entryIndex);
+            if (resource == null) {
                 continue;
             }
-
-            // cyclic reference detect
-            if (currentResourceValue instanceof ResourceValue.ReferenceResourceValue) {
-                if (resourceId == ((ResourceValue.ReferenceResourceValue) currentResourceValue)
-                        .getReferenceResourceId()) {
+            DeviceProfile localeProfile = profile.withLocale(entry.getKey());
+            if (!hasValue(resource, resourceId)) {
+                ResourceEntry fallback = getFallbackEntry(resourcePackage, typeId, entryIndex, resourceId,
+                        localeProfile);
+                if (fallback == null) {
+                    values.put(entry.getKey(), "@" + typeSpec.getName() + "/" + resource.getKey());
                     continue;
                 }
+                resource = fallback;
             }
-
-            int level = Locales.match(locale, type.getLocale());
-            if (level == 2) {
-                resource = curResourceEntry;
-                break;
-            } else if (level > currentLevel) {
-                resource = curResourceEntry;
-                currentLevel = level;
-            }
-        }
-        String result;
-        if (locale == null || resource == null) {
-            result = "@" + typeSpec.getName() + "/" + ref;
-        } else {
-            result = resource.toStringValue(resourceTable, locale);
+            values.put(entry.getKey(), resource.toStringValue(resourceTable, localeProfile));
         }
-        return result;
+        return values;
     }
 
+    private static final DeviceProfile anyProfile = DeviceProfile.of(Locales.any);
+
 }
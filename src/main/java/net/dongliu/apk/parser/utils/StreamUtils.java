@@ -6,6 +6,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.MessageDigest;
 
 import net.dongliu.apk.parser.utils.BlockMemoryStream.SeekOrigin;
 
@@ -16,8 +17,11 @@ public class StreamUtils {
         StreamUtils.writeStreamToStream(new InputBlockMemoryStream(bms), fop);
     }
 
+    /**
+     * Read file to a new stream. The stream blocks are not pooled, for the stream is owned by the caller.
+     */
     public static BlockMemoryStream readFileToStream(File f) throws Exception {
-        BlockMemoryStream bms = new BlockMemoryStream();
+        BlockMemoryStream bms = new BlockMemoryStream(0, BlockMemoryStream.DefaultBlockAllocationSize);
         FileInputStream fis = null;
 
         try {
@@ -69,11 +73,22 @@ public class StreamUtils {
     }
 
     public static void writeStreamToStream(InputStream srcStream, BlockMemoryStream destStream, int blockSize) throws Exception {
+        writeStreamToStream(srcStream, destStream, blockSize, new MessageDigest[0]);
+    }
+
+    /**
+     * Copy the stream, and update the digests with each block copied, so the digests of the data need no other pass.
+     */
+    public static void writeStreamToStream(InputStream srcStream, BlockMemoryStream destStream, int blockSize,
+                                           MessageDigest... digests) throws Exception {
         byte[] byteBuff = new byte[blockSize];
         int count = 0;
 
         while ((count = srcStream.read(byteBuff, 0, byteBuff.length)) > 0) {
             destStream.write(byteBuff, 0, count);
+            for (MessageDigest digest : digests) {
+                digest.update(byteBuff, 0, count);
+            }
         }
 
         destStream.flush();
@@ -87,17 +102,21 @@ public class StreamUtils {
             bms = ((InputBlockMemoryStream) is).getChunkedMemoryStream();
         } else {
             bms = new BlockMemoryStream();
-            writeStreamToStream(is, bms);
+            dispose = true;
         }
 
-        bms.seek(0, SeekOrigin.Begin);
-        byte[] bytes = bms.toArray();
-
-        if (dispose) {
-            bms.close();
+        try {
+            if (dispose) {
+                writeStreamToStream(is, bms);
+            }
+            bms.seek(0, SeekOrigin.Begin);
+            return bms.toArray();
+        } finally {
+            if (dispose) {
+                // return the blocks to pool
+                bms.close();
+            }
         }
-
-        return bytes;
     }
 
     public static void safeClose(InputStream in) {
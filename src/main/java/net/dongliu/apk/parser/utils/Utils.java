@@ -25,6 +25,17 @@ public class Utils {
         }
     }
 
+    /**
+     * Lower case hex string of bytes
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
     /**
      * Copied fom commons StringUtils
      * <p>Joins the elements of the provided {@code Iterable} into
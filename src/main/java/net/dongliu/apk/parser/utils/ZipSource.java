@@ -0,0 +1,183 @@
+package net.dongliu.apk.parser.utils;
+
+import net.dongliu.apk.parser.exception.InvalidOperationException;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Random access to the bytes of a zip archive, for reading zip structures without streaming entries.
+ *
+ * @author dongliu
+ */
+public abstract class ZipSource implements Closeable {
+
+    /**
+     * The size of archive in bytes
+     */
+    public abstract long size() throws IOException;
+
+    /**
+     * Read length bytes at position fully.
+     *
+     * @throws EOFException if reach the end of archive before length bytes read
+     */
+    public abstract void read(long position, byte[] buffer, int offset, int length) throws IOException;
+
+    /**
+     * Release the resources of source, the underlying data is not closed unless the source owns it.
+     */
+    @Override
+    public void close() throws IOException {
+    }
+
+    /**
+     * Input stream of length bytes from position, read in chunks. The stream does not own the source.
+     */
+    public InputStream openStream(final long position, final long length) {
+        return new InputStream() {
+            private final byte[] single = new byte[1];
+            private long offset;
+
+            @Override
+            public int read() throws IOException {
+                return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (offset >= length) {
+                    return -1;
+                }
+                int n = (int) Math.min(len, length - offset);
+                ZipSource.this.read(position + offset, b, off, n);
+                offset += n;
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, length - offset);
+            }
+        };
+    }
+
+    public static ZipSource of(final byte[] data) {
+        return new ZipSource() {
+            @Override
+            public long size() {
+                return data.length;
+            }
+
+            @Override
+            public void read(long position, byte[] buffer, int offset, int length) throws IOException {
+                if (position < 0 || position + length > data.length) {
+                    throw new EOFException("Read " + length + " bytes at " + position + ", size " + data.length);
+                }
+                System.arraycopy(data, (int) position, buffer, offset, length);
+            }
+        };
+    }
+
+    /**
+     * Source read by positional reads of the channel, the channel position is not changed.
+     *
+     * @param closeChannel if close the channel when the source is closed
+     */
+    public static ZipSource of(final FileChannel channel, final boolean closeChannel) {
+        return new ZipSource() {
+            @Override
+            public void close() throws IOException {
+                if (closeChannel) {
+                    channel.close();
+                }
+            }
+
+            @Override
+            public long size() throws IOException {
+                return channel.size();
+            }
+
+            @Override
+            public void read(long position, byte[] buffer, int offset, int length) throws IOException {
+                ByteBuffer dst = ByteBuffer.wrap(buffer, offset, length);
+                while (dst.hasRemaining()) {
+                    int n = channel.read(dst, position + dst.position() - offset);
+                    if (n < 0) {
+                        throw new EOFException("Read " + length + " bytes at " + position + ", size "
+                                + channel.size());
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Source read from the channel, positioned before each read. Reads are synchronized on the channel.
+     *
+     * @param closeChannel if close the channel when the source is closed
+     */
+    public static ZipSource of(final SeekableByteChannel channel, final boolean closeChannel) {
+        return new ZipSource() {
+            @Override
+            public void close() throws IOException {
+                if (closeChannel) {
+                    channel.close();
+                }
+            }
+
+            @Override
+            public long size() throws IOException {
+                return channel.size();
+            }
+
+            @Override
+            public void read(long position, byte[] buffer, int offset, int length) throws IOException {
+                ByteBuffer dst = ByteBuffer.wrap(buffer, offset, length);
+                synchronized (channel) {
+                    channel.position(position);
+                    while (dst.hasRemaining()) {
+                        if (channel.read(dst) < 0) {
+                            throw new EOFException("Read " + length + " bytes at " + position + ", size "
+                                    + channel.size());
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Source read by absolute reads of the stream, the stream position is not changed.
+     */
+    public static ZipSource of(final BlockMemoryStream stream) {
+        return new ZipSource() {
+            @Override
+            public long size() throws IOException {
+                try {
+                    return stream.getLength();
+                } catch (InvalidOperationException e) {
+                    throw new IOException(e);
+                }
+            }
+
+            @Override
+            public void read(long position, byte[] buffer, int offset, int length) throws IOException {
+                long size = size();
+                if (position < 0 || position + length > size) {
+                    throw new EOFException("Read " + length + " bytes at " + position + ", size " + size);
+                }
+                try {
+                    stream.readAt((int) position, buffer, offset, length);
+                } catch (InvalidOperationException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+    }
+}
@@ -1,6 +1,6 @@
 package net.dongliu.apk.parser.utils.xml;
 
-import net.dongliu.apk.parser.utils.*;
+import java.io.IOException;
 
 /**
  * Utils method to escape xml string, copied from apache commons lang3
@@ -11,9 +11,136 @@ public class XmlEscaper {
 
     /**
      * <p>Escapes the characters in a {@code String} using XML entities.</p>
+     * If nothing need to be escaped, the input string itself is returned.
      */
     public static String escapeXml10(final String input) {
-        return ESCAPE_XML10.translate(input);
+        if (input == null) {
+            return null;
+        }
+        if (indexOfEscape(input) < 0) {
+            return input;
+        }
+        StringBuilder sb = new StringBuilder(input.length() + 16);
+        escapeXml10(input, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Escapes the characters in a {@code CharSequence} using XML entities, and append the result to sb.
+     * Produce the same output as {@link #ESCAPE_XML10}, without allocating intermediate strings.
+     * Nothing is appended if input is null.
+     */
+    public static void escapeXml10(final CharSequence input, final StringBuilder sb) {
+        try {
+            escapeXml10(input, (Appendable) sb);
+        } catch (IOException e) {
+            // this should never happen while appending to a StringBuilder
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Escapes the characters in a {@code CharSequence} using XML entities, and append the result to out.
+     * Nothing is appended if input is null.
+     */
+    public static void escapeXml10(final CharSequence input, final Appendable out) throws IOException {
+        if (input == null) {
+            return;
+        }
+        int first = indexOfEscape(input);
+        if (first < 0) {
+            // the common case, nothing to escape
+            out.append(input);
+            return;
+        }
+        out.append(input, 0, first);
+        escapeFrom(input, first, out);
+    }
+
+    /**
+     * @return the index of the first char need to be escaped or removed, -1 if none.
+     */
+    private static int indexOfEscape(final CharSequence input) {
+        final int len = input.length();
+        for (int i = 0; i < len; i++) {
+            char c = input.charAt(i);
+            if (c < ESCAPES.length) {
+                if (ESCAPES[c] != null) {
+                    return i;
+                }
+            } else if (c >= 0xfffe) {
+                return i;
+            } else if (Character.isHighSurrogate(c)) {
+                if (i + 1 < len && Character.isLowSurrogate(input.charAt(i + 1))) {
+                    i++;
+                } else {
+                    return i;
+                }
+            } else if (Character.isLowSurrogate(c)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void escapeFrom(final CharSequence input, int start, final Appendable out) throws IOException {
+        final int len = input.length();
+        // the begin of chars not yet appended
+        int pending = start;
+        for (int i = start; i < len; i++) {
+            char c = input.charAt(i);
+            String replacement;
+            if (c < ESCAPES.length) {
+                replacement = ESCAPES[c];
+            } else if (c >= 0xfffe) {
+                replacement = "";
+            } else if (Character.isHighSurrogate(c)) {
+                if (i + 1 < len && Character.isLowSurrogate(input.charAt(i + 1))) {
+                    i++;
+                    continue;
+                }
+                replacement = "";
+            } else if (Character.isLowSurrogate(c)) {
+                replacement = "";
+            } else {
+                continue;
+            }
+            if (replacement == null) {
+                continue;
+            }
+            if (pending < i) {
+                out.append(input, pending, i);
+            }
+            out.append(replacement);
+            pending = i + 1;
+        }
+        if (pending < len) {
+            out.append(input, pending, len);
+        }
+    }
+
+    /**
+     * Escape table for chars below 0xA0, null if the char is kept as is, empty string if it should be removed.
+     * Keep in sync with ESCAPE_XML10.
+     */
+    private static final String[] ESCAPES = new String[0xA0];
+
+    static {
+        for (char c = 0; c < 0x20; c++) {
+            if (c != '\t' && c != '\n' && c != '\r') {
+                ESCAPES[c] = "";
+            }
+        }
+        ESCAPES['"'] = "&quot;";
+        ESCAPES['&'] = "&amp;";
+        ESCAPES['<'] = "&lt;";
+        ESCAPES['>'] = "&gt;";
+        ESCAPES['\''] = "&apos;";
+        for (char c = 0x7f; c < 0xA0; c++) {
+            if (c != 0x85) {
+                ESCAPES[c] = "&#" + (int) c + ";";
+            }
+        }
     }
 
     public static final CharSequenceTranslator ESCAPE_XML10 =
@@ -0,0 +1,185 @@
+package net.dongliu.apk.parser;
+
+import net.dongliu.apk.parser.bean.ApkMeta;
+import net.dongliu.apk.parser.bean.Locales;
+import net.dongliu.apk.parser.exception.ParseLimitExceededException;
+import net.dongliu.apk.parser.parser.BinaryXmlBuilder;
+import net.dongliu.apk.parser.parser.ParseLimits;
+import net.dongliu.apk.parser.parser.ResourceTableBuilder;
+import net.dongliu.apk.parser.parser.ResourceTableBuilder.Config;
+import net.dongliu.apk.parser.struct.AndroidConstants;
+import net.dongliu.apk.parser.struct.ResValue;
+import net.dongliu.apk.parser.struct.xml.Attribute.AttrIds;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ApkBundleTest {
+
+    private static byte[] apk(byte[] manifest, ResourceTableBuilder tableBuilder) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put(AndroidConstants.MANIFEST_FILE, manifest);
+        if (tableBuilder != null) {
+            entries.put(AndroidConstants.RESOURCE_FILE, tableBuilder.build());
+        }
+        return ByteArrayApkFileTest.zip(entries);
+    }
+
+    private static BinaryXmlBuilder manifest(String split) {
+        BinaryXmlBuilder builder = new BinaryXmlBuilder().startTag("manifest").attr("package", "com.example");
+        if (split != null) {
+            builder.attr("split", split);
+        }
+        return builder;
+    }
+
+    private static Map<String, byte[]> splits() throws IOException {
+        ResourceTableBuilder base = new ResourceTableBuilder(0x7f, "com.example");
+        int labelId = base.addString("string", "app_name", new Config(), "Hello");
+        int iconId = base.addString("drawable", "icon", new Config(), "res/drawable-mdpi/icon.png");
+        byte[] baseManifest = manifest(null)
+                .startTag("uses-permission").androidAttr("name", AttrIds.NAME, "android.permission.INTERNET")
+                .endTag()
+                .startTag("permission").androidAttr("name", AttrIds.NAME, "com.example.permission.SYNC")
+                .endTag()
+                .startTag("uses-feature").androidAttr("name", AttrIds.NAME, "android.hardware.camera")
+                .androidAttr("required", AttrIds.REQUIRED, ResValue.ResType.INT_BOOLEAN, 0)
+                .endTag()
+                .startTag("application")
+                .androidAttr("label", AttrIds.LABEL, ResValue.ResType.REFERENCE, labelId)
+                .androidAttr("icon", AttrIds.ICON, ResValue.ResType.REFERENCE, iconId)
+                .build();
+
+        // config splits declare the same entries, with values of other configs only
+        ResourceTableBuilder fr = new ResourceTableBuilder(0x7f, "com.example");
+        fr.addString("string", "app_name", new Config().language("fr"), "Bonjour");
+        ResourceTableBuilder xxhdpi = new ResourceTableBuilder(0x7f, "com.example");
+        xxhdpi.declare("string", "app_name");
+        xxhdpi.addString("drawable", "icon", new Config().density(480), "res/drawable-xxhdpi/icon.png");
+
+        byte[] featureManifest = manifest("feature")
+                .startTag("uses-permission").androidAttr("name", AttrIds.NAME, "android.permission.CAMERA")
+                .endTag()
+                .startTag("uses-permission").androidAttr("name", AttrIds.NAME, "android.permission.INTERNET")
+                .endTag()
+                .startTag("permission").androidAttr("name", AttrIds.NAME, "com.example.permission.SYNC")
+                .endTag()
+                .startTag("uses-feature").androidAttr("name", AttrIds.NAME, "android.hardware.camera")
+                .androidAttr("required", AttrIds.REQUIRED, ResValue.ResType.INT_BOOLEAN, -1)
+                .build();
+
+        Map<String, byte[]> apks = new LinkedHashMap<>();
+        apks.put("split_config.fr.apk", apk(manifest("config.fr").build(), fr));
+        apks.put("base.apk", apk(baseManifest, base));
+        apks.put("split_config.xxhdpi.apk", apk(manifest("config.xxhdpi").build(), xxhdpi));
+        apks.put("split_feature.apk", apk(featureManifest, null));
+        return apks;
+    }
+
+    @Test
+    public void testMerge() throws IOException {
+        try (ApkBundle bundle = new ApkBundle(splits())) {
+            ApkMeta apkMeta = bundle.getApkMeta();
+            assertNull(apkMeta.getSplit());
+            assertEquals("com.example", apkMeta.getPackageName());
+            assertEquals(Arrays.asList("android.permission.INTERNET", "android.permission.CAMERA"),
+                    apkMeta.getUsesPermissions());
+            assertEquals("res/drawable-mdpi/icon.png", apkMeta.getIcon());
+            // declared by base and feature split
+            assertEquals(1, apkMeta.getPermissions().size());
+            assertEquals(1, apkMeta.getUsesFeatures().size());
+            assertTrue(apkMeta.getUsesFeatures().get(0).isRequired());
+
+            assertEquals(4, bundle.getSplitApkMetas().size());
+            assertEquals("config.fr", bundle.getSplitApkMetas().get(0).getSplit());
+            assertEquals(1, bundle.getSplitApkMetas().get(1).getUsesPermissions().size());
+
+            assertEquals(2, bundle.getLocales().size());
+            Map<Locale, String> labels = bundle.getLabels();
+            assertEquals("Hello", labels.get(Locales.any));
+            assertEquals("Bonjour", labels.get(Locale.FRENCH));
+            assertEquals(0x7f020000, bundle.getResourceTable().getResourceId("drawable", "icon"));
+        }
+    }
+
+    @Test
+    public void testDeviceProfile() throws IOException {
+        try (ApkBundle bundle = new ApkBundle(splits())) {
+            bundle.setDeviceProfile(bundle.getDeviceProfile().withDensity(480));
+            // the icon of density split is selected
+            assertEquals("res/drawable-xxhdpi/icon.png", bundle.getApkMeta().getIcon());
+        }
+    }
+
+    @Test
+    public void testContainer() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> entry : splits().entrySet()) {
+            entries.put("splits/" + entry.getKey(), entry.getValue());
+        }
+        entries.put("standalones/standalone-xxhdpi.apk", new byte[10]);
+        entries.put("toc.pb", new byte[10]);
+        File file = File.createTempFile("bundle", ".apks");
+        try {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(ByteArrayApkFileTest.zip(entries));
+            }
+            try (ApkBundle bundle = ApkBundle.openContainer(file)) {
+                assertEquals(4, bundle.getSplitApkMetas().size());
+                assertEquals("Bonjour", bundle.getLabels().get(Locale.FRENCH));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = ParseLimitExceededException.class)
+    public void testContainerLimitCountsSplitFiles() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        long size = 0;
+        for (Map.Entry<String, byte[]> entry : splits().entrySet()) {
+            entries.put("splits/" + entry.getKey(), entry.getValue());
+            size += entry.getValue().length;
+        }
+        File file = File.createTempFile("bundle", ".apks");
+        try {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(ByteArrayApkFileTest.zip(entries));
+            }
+            // the nested apks are within the limit, the files read from them are not
+            ParseLimits parseLimits = new ParseLimits();
+            parseLimits.setMaxTotalInflatedBytes(size + 1);
+            try (ApkBundle bundle = ApkBundle.openContainer(file, parseLimits)) {
+                bundle.getApkMeta();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = ParseLimitExceededException.class)
+    public void testContainerTotalLimit() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("base.apk", new byte[100000]);
+        entries.put("split_config.fr.apk", new byte[100000]);
+        File file = File.createTempFile("bundle", ".apks");
+        try {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(ByteArrayApkFileTest.zip(entries));
+            }
+            ParseLimits parseLimits = new ParseLimits();
+            parseLimits.setMaxTotalInflatedBytes(150000);
+            ApkBundle.openContainer(file, parseLimits);
+        } finally {
+            file.delete();
+        }
+    }
+}
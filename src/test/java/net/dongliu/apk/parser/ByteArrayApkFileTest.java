@@ -0,0 +1,350 @@
+package net.dongliu.apk.parser;
+
+import net.dongliu.apk.parser.exception.ArenaClosedException;
+import net.dongliu.apk.parser.exception.ParseLimitExceededException;
+import net.dongliu.apk.parser.exception.ParserException;
+import net.dongliu.apk.parser.bean.Locales;
+import net.dongliu.apk.parser.parser.BinaryXmlBuilder;
+import net.dongliu.apk.parser.parser.ParseLimits;
+import net.dongliu.apk.parser.parser.ResourceTableBuilder;
+import net.dongliu.apk.parser.parser.ResourceTableBuilder.Config;
+import net.dongliu.apk.parser.struct.AndroidConstants;
+import net.dongliu.apk.parser.struct.ResValue;
+import net.dongliu.apk.parser.struct.xml.Attribute.AttrIds;
+import net.dongliu.apk.parser.utils.InflaterPool;
+import net.dongliu.apk.parser.utils.Utils;
+import net.dongliu.apk.parser.utils.ZipSource;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ByteArrayApkFileTest {
+
+    static byte[] zip(String name, byte[] data) throws IOException {
+        return zip(Collections.singletonMap(name, data));
+    }
+
+    static byte[] zip(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bos)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zos.putNextEntry(new ZipEntry(entry.getKey()));
+                zos.write(entry.getValue());
+                zos.closeEntry();
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    @Test
+    public void testGetFileData() throws IOException {
+        try (ByteArrayApkFile apkFile = new ByteArrayApkFile(zip("a.bin", new byte[1000]))) {
+            assertEquals(1000, apkFile.getFileData("a.bin").length);
+        }
+    }
+
+    @Test
+    public void testTotalInflatedBytesIsLifetimeBudget() throws IOException {
+        ParseLimits parseLimits = new ParseLimits();
+        parseLimits.setMaxTotalInflatedBytes(2500);
+        try (ByteArrayApkFile apkFile = new ByteArrayApkFile(zip("a.bin", new byte[1000]))) {
+            apkFile.setParseLimits(parseLimits);
+            apkFile.getFileData("a.bin");
+            apkFile.getFileData("a.bin");
+            assertEquals(2000, apkFile.getInflatedBytes());
+            try {
+                // repeated reads count too
+                apkFile.getFileData("a.bin");
+                fail();
+            } catch (ParseLimitExceededException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testDeclaredSizeExceedsDeflateRatio() throws IOException {
+        byte[] data = zip("a.bin", new byte[1000]);
+        setCentralDirectorySize(data, 0x7ffffff0);
+        try (ByteArrayApkFile apkFile = new ByteArrayApkFile(data)) {
+            apkFile.getFileData("a.bin");
+            fail();
+        } catch (ParserException e) {
+            assertTrue(e.getMessage().contains("deflate ratio"));
+        }
+    }
+
+    @Test
+    public void testDeclaredSizeDiffersFromData() throws IOException {
+        byte[] data = zip("a.bin", new byte[1000]);
+        setCentralDirectorySize(data, 2000);
+        try (ByteArrayApkFile apkFile = new ByteArrayApkFile(data)) {
+            apkFile.getFileData("a.bin");
+            fail();
+        } catch (ParserException e) {
+            assertTrue(e.getMessage().contains("less than size"));
+        }
+    }
+
+    /**
+     * Overwrite the uncompressed size of the first central directory header
+     */
+    private static void setCentralDirectorySize(byte[] data, int size) {
+        for (int i = data.length - 4; i >= 0; i--) {
+            if (data[i] == 0x50 && data[i + 1] == 0x4b && data[i + 2] == 0x01 && data[i + 3] == 0x02) {
+                ByteBuffer.wrap(data, i + 24, 4).order(ByteOrder.LITTLE_ENDIAN).putInt(size);
+                return;
+            }
+        }
+        throw new AssertionError("no central directory header");
+    }
+
+    @Test
+    public void testGetLabels() throws IOException {
+        ResourceTableBuilder tableBuilder = new ResourceTableBuilder(0x7f, "com.example");
+        int labelId = tableBuilder.addString("string", "app_name", new Config(), "Hello");
+        tableBuilder.addString("string", "app_name", new Config().language("fr"), "Bonjour");
+        tableBuilder.addString("string", "app_name", new Config().language("de"), "Hallo");
+        byte[] manifest = new BinaryXmlBuilder()
+                .startTag("manifest").attr("package", "com.example")
+                .startTag("application")
+                .androidAttr("label", AttrIds.LABEL, ResValue.ResType.REFERENCE, labelId)
+                .androidAttr("description", AttrIds.DESCRIPTION, "literal")
+                .endTag()
+                .endTag()
+                .build();
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put(AndroidConstants.MANIFEST_FILE, manifest);
+        entries.put(AndroidConstants.RESOURCE_FILE, tableBuilder.build());
+
+        try (ByteArrayApkFile apkFile = new ByteArrayApkFile(zip(entries))) {
+            Map<Locale, String> labels = apkFile.getLabels();
+            assertEquals(3, labels.size());
+            assertEquals("Hello", labels.get(Locales.any));
+            assertEquals("Bonjour", labels.get(Locale.FRENCH));
+            assertEquals("Hallo", labels.get(Locale.GERMAN));
+            assertEquals(Collections.singletonMap(Locales.any, "literal"), apkFile.getDescriptions());
+        }
+    }
+
+    @Test(expected = ParseLimitExceededException.class)
+    public void testMaxEntrySize() throws IOException {
+        // highly compressible entry
+        try (ByteArrayApkFile apkFile = new ByteArrayApkFile(zip("a.bin", new byte[1 << 20]))) {
+            ParseLimits parseLimits = new ParseLimits();
+            parseLimits.setMaxEntrySize(1 << 16);
+            apkFile.setParseLimits(parseLimits);
+            apkFile.getFileData("a.bin");
+        }
+    }
+
+    @Test(expected = ParseLimitExceededException.class)
+    public void testMaxTotalInflatedBytes() throws IOException {
+        try (ByteArrayApkFile apkFile = new ByteArrayApkFile(zip("a.bin", new byte[1000]))) {
+            ParseLimits parseLimits = new ParseLimits();
+            parseLimits.setMaxTotalInflatedBytes(2500);
+            apkFile.setParseLimits(parseLimits);
+            apkFile.getFileData("a.bin");
+            apkFile.getFileData("a.bin");
+            apkFile.getFileData("a.bin");
+        }
+    }
+
+    @Test
+    public void testOffHeapBuffers() throws IOException {
+        ResourceTableBuilder tableBuilder = new ResourceTableBuilder(0x7f, "com.example");
+        int labelId = tableBuilder.addString("string", "app_name", new Config(), "Hello");
+        byte[] manifest = new BinaryXmlBuilder()
+                .startTag("manifest").attr("package", "com.example")
+                .startTag("application")
+                .androidAttr("label", AttrIds.LABEL, ResValue.ResType.REFERENCE, labelId)
+                .endTag()
+                .endTag()
+                .build();
+        byte[] table = tableBuilder.build();
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put(AndroidConstants.MANIFEST_FILE, manifest);
+        entries.put(AndroidConstants.RESOURCE_FILE, table);
+
+        ByteArrayApkFile apkFile = new ByteArrayApkFile(zip(entries));
+        apkFile.setOffHeapBuffers(true);
+        assertEquals("Hello", apkFile.getLabels().get(Locales.any));
+        // the manifest buffer is freed after parsing
+        assertEquals(table.length, apkFile.getBufferArena().getAllocatedBytes());
+        assertEquals(table.length + manifest.length, apkFile.getBufferArena().getTotalAllocatedBytes());
+        apkFile.close();
+        assertEquals(0, apkFile.getBufferArena().getAllocatedBytes());
+        try {
+            apkFile.getResourceValues(labelId);
+            fail();
+        } catch (ArenaClosedException e) {
+            // closed
+        }
+    }
+
+    @Test
+    public void testDigests() throws Exception {
+        byte[] large = new byte[3 * 1024 * 1024];
+        new Random(2).nextBytes(large);
+        byte[] data = zip("a.bin", large);
+        String sha256 = Utils.toHex(MessageDigest.getInstance("SHA-256").digest(data));
+        String md5 = Utils.toHex(MessageDigest.getInstance("MD5").digest(data));
+
+        try (ByteArrayApkFile apkFile = new ByteArrayApkFile(data)) {
+            assertEquals(Arrays.asList("MD5", "SHA-1", "SHA-256"), new ArrayList<>(apkFile.getDigests().keySet()));
+            assertEquals(sha256, apkFile.getDigestHex("SHA-256"));
+            assertEquals(md5, apkFile.getDigestHex("MD5"));
+            assertNull(apkFile.getDigestHex("SHA-512"));
+        }
+        try (InputStreamApkFile apkFile = new InputStreamApkFile(new ByteArrayInputStream(data), "SHA-256")) {
+            assertEquals(Collections.singletonList("SHA-256"), new ArrayList<>(apkFile.getDigests().keySet()));
+            assertEquals(sha256, apkFile.getDigestHex("SHA-256"));
+            assertEquals(large.length, apkFile.getFileData("a.bin").length);
+        }
+    }
+
+    @Test
+    public void testInputStreamCloseWaitsForSources() throws Exception {
+        byte[] data = zip("a.bin", new byte[1000]);
+        InputStreamApkFile apkFile = new InputStreamApkFile(new ByteArrayInputStream(data));
+        ZipSource source = apkFile.openZipSource();
+        apkFile.close();
+        // blocks are kept while the source is open
+        assertTrue(apkFile.cms.canRead());
+        byte[] header = new byte[4];
+        source.read(0, header, 0, header.length);
+        assertEquals(0x50, header[0]);
+        source.close();
+        assertFalse(apkFile.cms.canRead());
+        try {
+            apkFile.openZipSource();
+            fail();
+        } catch (IOException e) {
+            // closed
+        }
+    }
+
+    @Test
+    public void testResourceTableSnapshotError() throws IOException {
+        ResourceTableBuilder tableBuilder = new ResourceTableBuilder(0x7f, "com.example");
+        int id = tableBuilder.addString("string", "app_name", new Config(), "Hello");
+        File snapshot = write(File.createTempFile("apk-parser", ".snapshot"), new byte[]{1, 2, 3});
+        try {
+            try (ByteArrayApkFile apkFile = new ByteArrayApkFile(zip(AndroidConstants.RESOURCE_FILE,
+                    tableBuilder.build()))) {
+                apkFile.setResourceTableSnapshot(snapshot);
+                assertEquals("Hello", apkFile.getResourceValues(id).get(Locales.any));
+                assertNotNull(apkFile.getResourceTableSnapshotError());
+            }
+            // the snapshot is written again
+            try (ByteArrayApkFile apkFile = new ByteArrayApkFile(zip(AndroidConstants.RESOURCE_FILE,
+                    tableBuilder.build()))) {
+                apkFile.setResourceTableSnapshot(snapshot);
+                assertEquals("Hello", apkFile.getResourceValues(id).get(Locales.any));
+                assertNull(apkFile.getResourceTableSnapshotError());
+            }
+        } finally {
+            snapshot.delete();
+        }
+    }
+
+    @Test
+    public void testResourceTableSnapshotWriteError() throws IOException {
+        ResourceTableBuilder tableBuilder = new ResourceTableBuilder(0x7f, "com.example");
+        int id = tableBuilder.addString("string", "app_name", new Config(), "Hello");
+        File dir = File.createTempFile("apk-parser", ".dir");
+        dir.delete();
+        // the parent directory does not exist
+        File snapshot = new File(dir, "resources.snapshot");
+        try (ByteArrayApkFile apkFile = new ByteArrayApkFile(zip(AndroidConstants.RESOURCE_FILE,
+                tableBuilder.build()))) {
+            apkFile.setResourceTableSnapshot(snapshot);
+            assertEquals("Hello", apkFile.getResourceValues(id).get(Locales.any));
+            assertNotNull(apkFile.getResourceTableSnapshotWriteError());
+            assertNull(apkFile.getResourceTableSnapshotError());
+        }
+        assertFalse(snapshot.exists());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedDigest() throws IOException {
+        try (ByteArrayApkFile apkFile = new ByteArrayApkFile(zip("a.bin", new byte[10]))) {
+            apkFile.setDigestAlgorithms("NO-SUCH-DIGEST");
+        }
+    }
+
+    @Test
+    public void testInflaterPool() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("a.bin", new byte[1000]);
+        entries.put("b.bin", new byte[100000]);
+        InflaterPool pool = new InflaterPool(2, 1024);
+        try (ByteArrayApkFile apkFile = new ByteArrayApkFile(zip(entries))) {
+            apkFile.setInflaterPool(pool);
+            assertEquals(1000, apkFile.getFileData("a.bin").length);
+            assertEquals(100000, apkFile.getFileData("b.bin").length);
+            assertEquals(1000, apkFile.getFileData("a.bin").length);
+        }
+        assertEquals(3, pool.getInflaterRequestCount());
+        assertEquals(1, pool.getInflaterCreatedCount());
+        assertEquals(1, pool.getBufferCreatedCount());
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 8; i++) {
+            byte[] data = new byte[100000 * (i + 1)];
+            random.nextBytes(data);
+            entries.put("classes" + i + ".dex", data);
+        }
+        File file = File.createTempFile("apk-parser", ".apk");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (ApkFile apkFile = new ApkFile(write(file, zip(entries)))) {
+            List<String> paths = new ArrayList<>(entries.keySet());
+            paths.add("missing.dex");
+            Map<String, Future<ByteBuffer>> futures = apkFile.prefetch(paths, executor);
+            assertEquals(entries.keySet(), futures.keySet());
+            for (Map.Entry<String, Future<ByteBuffer>> entry : futures.entrySet()) {
+                ByteBuffer buffer = entry.getValue().get();
+                assertEquals(ByteBuffer.wrap(entries.get(entry.getKey())), buffer);
+            }
+        } finally {
+            executor.shutdown();
+            file.delete();
+        }
+    }
+
+    private static File write(File file, byte[] data) throws IOException {
+        Files.write(file.toPath(), data);
+        return file;
+    }
+}
@@ -0,0 +1,161 @@
+package net.dongliu.apk.parser;
+
+import net.dongliu.apk.parser.bean.ApkMeta;
+import net.dongliu.apk.parser.bean.ArchiveEntry;
+import net.dongliu.apk.parser.parser.BinaryXmlBuilder;
+import net.dongliu.apk.parser.parser.ZipCentralDirectory;
+import net.dongliu.apk.parser.struct.AndroidConstants;
+import net.dongliu.apk.parser.utils.Utils;
+import net.dongliu.apk.parser.utils.ZipSource;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ChannelApkFileTest {
+
+    /**
+     * File channel counting bytes read
+     */
+    private static class CountingChannel implements SeekableByteChannel {
+        private final FileChannel channel;
+        private long readBytes;
+
+        CountingChannel(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int n = channel.read(dst);
+            if (n > 0) {
+                readBytes += n;
+            }
+            return n;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    @Test
+    public void testReadEntriesUsed() throws Exception {
+        byte[] manifest = new BinaryXmlBuilder()
+                .startTag("manifest").attr("package", "com.example")
+                .endTag()
+                .build();
+        byte[] large = new byte[8 * 1024 * 1024];
+        new Random(1).nextBytes(large);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put(AndroidConstants.MANIFEST_FILE, manifest);
+        entries.put("assets/large.bin", large);
+        entries.put("assets/small.txt", "small".getBytes("UTF-8"));
+        File file = File.createTempFile("apk-parser", ".apk");
+        try {
+            Files.write(file.toPath(), ByteArrayApkFileTest.zip(entries));
+            CountingChannel channel = new CountingChannel(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+            try (ChannelApkFile apkFile = new ChannelApkFile(channel)) {
+                ApkMeta apkMeta = apkFile.getApkMeta();
+                assertEquals("com.example", apkMeta.getPackageName());
+                assertEquals("small", new String(apkFile.getFileData("assets/small.txt"), "UTF-8"));
+                assertNull(apkFile.getFileData("assets/missing"));
+                assertEquals(3, apkFile.getEntries().size());
+                // the large entry is not read
+                assertTrue(channel.readBytes < 1024 * 1024);
+                assertTrue(apkFile.getCachedSource().getHitCount() > 0);
+
+                // the digests read the channel under the cache
+                long sourceReadBytes = apkFile.getCachedSource().getSourceReadBytes();
+                long missCount = apkFile.getCachedSource().getMissCount();
+                byte[] sha256 = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file.toPath()));
+                assertEquals(Utils.toHex(sha256), apkFile.getDigestHex("SHA-256"));
+                assertEquals(sourceReadBytes, apkFile.getCachedSource().getSourceReadBytes());
+                assertEquals("small", new String(apkFile.getFileData("assets/small.txt"), "UTF-8"));
+                assertEquals(missCount, apkFile.getCachedSource().getMissCount());
+
+                assertEquals(large.length, apkFile.getFileData("assets/large.bin").length);
+            }
+            assertFalse(channel.isOpen());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testLocalHeadersReadWhenUsed() throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            byte[] data = new byte[1000];
+            random.nextBytes(data);
+            entries.put("assets/" + i + ".bin", data);
+        }
+        File file = File.createTempFile("apk-parser", ".apk");
+        try {
+            Files.write(file.toPath(), ByteArrayApkFileTest.zip(entries));
+            CountingChannel channel = new CountingChannel(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+            try (ChannelApkFile apkFile = new ChannelApkFile(ZipSource.of(channel, true), 4096, 16, 0)) {
+                assertEquals(2000, apkFile.getEntries().size());
+                assertArrayEquals(entries.get("assets/1000.bin"), apkFile.getFileData("assets/1000.bin"));
+                // the central directory and a few blocks, not the local header of every entry
+                assertTrue(channel.readBytes < file.length() / 4);
+                assertTrue(apkFile.getEntry("assets/1000.bin").hasDataOffset());
+
+                // read when the alignment is requested
+                ArchiveEntry entry = apkFile.getEntry("assets/999.bin");
+                assertFalse(entry.hasDataOffset());
+                assertTrue(entry.getAlignment() > 0);
+                assertTrue(entry.hasDataOffset());
+                try (ZipSource source = ZipSource.of(Files.readAllBytes(file.toPath()))) {
+                    assertEquals(ZipCentralDirectory.read(source).get(999).getDataOffset(), entry.getDataOffset());
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
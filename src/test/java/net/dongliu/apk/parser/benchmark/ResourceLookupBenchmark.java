@@ -0,0 +1,84 @@
+package net.dongliu.apk.parser.benchmark;
+
+import net.dongliu.apk.parser.bean.DeviceProfile;
+import net.dongliu.apk.parser.parser.ResourceTableBuilder;
+import net.dongliu.apk.parser.parser.ResourceTableBuilder.Config;
+import net.dongliu.apk.parser.parser.ResourceTableParser;
+import net.dongliu.apk.parser.struct.resource.ResourcePackage;
+import net.dongliu.apk.parser.struct.resource.ResourceTable;
+import net.dongliu.apk.parser.struct.resource.Type;
+import net.dongliu.apk.parser.utils.ParseUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of resolving resource ids, with a table of 8 types * 256 entries * 3 configs.
+ * Run with the main method, after mvn test-compile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceLookupBenchmark {
+
+    private ResourceTable resourceTable;
+    private DeviceProfile profile;
+    private int[] resourceIds;
+    private int next;
+
+    @Setup
+    public void setup() {
+        ResourceTableBuilder builder = new ResourceTableBuilder(0x7f, "com.example");
+        resourceIds = new int[8 * 256];
+        for (int t = 0; t < 8; t++) {
+            for (int e = 0; e < 256; e++) {
+                String key = "key_" + t + "_" + e;
+                resourceIds[t * 256 + e] = builder.addString("type" + t, key, new Config(), key);
+                builder.addString("type" + t, key, new Config().language("fr"), key + "_fr");
+                builder.addString("type" + t, key, new Config().sdkVersion(21), key + "_21");
+            }
+        }
+        ResourceTableParser parser = new ResourceTableParser(ByteBuffer.wrap(builder.build()));
+        parser.parse();
+        resourceTable = parser.getResourceTable();
+        profile = DeviceProfile.of(Locale.FRANCE).withSdkVersion(23);
+    }
+
+    private int nextId() {
+        int id = resourceIds[next];
+        next = (next + 1) & (resourceIds.length - 1);
+        return id;
+    }
+
+    /**
+     * find the type holds the entry
+     */
+    @Benchmark
+    public Type lookupType() {
+        int id = nextId();
+        short typeId = (short) ((id >> 16) & 0xff);
+        ResourcePackage resourcePackage = resourceTable.getPackage((short) (id >>> 24));
+        resourcePackage.getTypeSpec(typeId);
+        return resourcePackage.getBestTypes(typeId, profile)[id & 0xffff];
+    }
+
+    /**
+     * resolve the string value
+     */
+    @Benchmark
+    public String resolveValue() {
+        return ParseUtils.getResourceById(nextId(), resourceTable, profile);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ResourceLookupBenchmark.class.getSimpleName()).build()).run();
+    }
+}
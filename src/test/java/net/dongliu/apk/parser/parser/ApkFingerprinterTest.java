@@ -0,0 +1,78 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.ByteArrayApkFile;
+import net.dongliu.apk.parser.bean.ApkFingerprint;
+import net.dongliu.apk.parser.bean.FingerprintScope;
+import net.dongliu.apk.parser.utils.ZipSource;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ApkFingerprinterTest {
+
+    private static byte[] zip(long time, int level, String... namesAndContents) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bos)) {
+            zos.setLevel(level);
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                ZipEntry entry = new ZipEntry(namesAndContents[i]);
+                entry.setTime(time);
+                zos.putNextEntry(entry);
+                zos.write(namesAndContents[i + 1].getBytes("UTF-8"));
+                zos.closeEntry();
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    private static ApkFingerprint fingerprint(byte[] zip, FingerprintScope scope) throws IOException {
+        return ApkFingerprinter.fingerprint(ZipCentralDirectory.read(ZipSource.of(zip)), scope);
+    }
+
+    @Test
+    public void testIgnoreZipNoise() throws IOException {
+        byte[] first = zip(1000000000000L, 9, "classes.dex", "dex", "res/layout/main.xml", "layout",
+                "AndroidManifest.xml", "manifest");
+        // other order, timestamps, compression level, and signed
+        byte[] second = zip(1500000000000L, 1, "AndroidManifest.xml", "manifest", "META-INF/CERT.RSA", "sign",
+                "META-INF/MANIFEST.MF", "digests", "res/layout/main.xml", "layout", "classes.dex", "dex");
+        ApkFingerprint fingerprint = fingerprint(first, FingerprintScope.all);
+        assertEquals(fingerprint, fingerprint(second, FingerprintScope.all));
+        assertEquals(fingerprint.getHex(), fingerprint(second, FingerprintScope.all).getHex());
+        assertEquals(64, fingerprint.getHex().length());
+        assertEquals(3, fingerprint.getEntryCount());
+        assertEquals(1, fingerprint.similarity(fingerprint(second, FingerprintScope.all)), 0);
+    }
+
+    @Test
+    public void testScopes() throws IOException {
+        byte[] first = zip(0, 9, "classes.dex", "dex", "lib/x86/libfoo.so", "so", "res/raw/a.txt", "a",
+                "AndroidManifest.xml", "manifest");
+        byte[] second = zip(0, 9, "classes.dex", "dex", "lib/x86/libfoo.so", "so", "res/raw/a.txt", "changed",
+                "AndroidManifest.xml", "manifest");
+        assertEquals(2, fingerprint(first, FingerprintScope.code).getEntryCount());
+        assertEquals(2, fingerprint(first, FingerprintScope.resources).getEntryCount());
+        assertEquals(fingerprint(first, FingerprintScope.code), fingerprint(second, FingerprintScope.code));
+        assertNotEquals(fingerprint(first, FingerprintScope.resources),
+                fingerprint(second, FingerprintScope.resources));
+
+        ApkFingerprint a = fingerprint(first, FingerprintScope.all);
+        ApkFingerprint b = fingerprint(second, FingerprintScope.all);
+        assertNotEquals(a, b);
+        // 3 common entries of 5
+        assertEquals(0.6, a.similarity(b), 0.001);
+    }
+
+    @Test
+    public void testApkFile() throws IOException {
+        byte[] data = zip(0, 9, "classes.dex", "dex");
+        try (ByteArrayApkFile apkFile = new ByteArrayApkFile(data)) {
+            assertEquals(fingerprint(data, FingerprintScope.all), apkFile.getFingerprint());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.bean.AndroidComponent;
+import net.dongliu.apk.parser.bean.ApkMeta;
+import net.dongliu.apk.parser.bean.ComponentType;
+import net.dongliu.apk.parser.bean.IntentFilter;
+import net.dongliu.apk.parser.struct.ResValue;
+import net.dongliu.apk.parser.struct.xml.Attribute.AttrIds;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class ApkMetaTranslatorTest {
+
+    static ApkMeta parse(byte[] data) {
+        return parse(data, false);
+    }
+
+    static ApkMeta parse(byte[] data, boolean parseComponents) {
+        BinaryXmlParser parser = new BinaryXmlParser(ByteBuffer.wrap(data), null);
+        parser.setLocale(Locale.US);
+        ApkMetaTranslator translator = new ApkMetaTranslator(parseComponents);
+        parser.setXmlStreamer(translator);
+        parser.parse();
+        return translator.getApkMeta();
+    }
+
+    @Test
+    public void testManifest() {
+        byte[] data = new BinaryXmlBuilder()
+                .startTag("manifest")
+                .androidAttr("versionCode", AttrIds.VERSION_CODE, ResValue.ResType.INT_DEC, 42)
+                .androidAttr("versionName", AttrIds.VERSION_NAME, "1.2")
+                .attr("package", "com.example")
+                .startTag("uses-sdk")
+                .androidAttr("minSdkVersion", AttrIds.MIN_SDK_VERSION, ResValue.ResType.INT_DEC, 14)
+                .endTag()
+                .startTag("uses-permission")
+                .androidAttr("name", AttrIds.NAME, "android.permission.INTERNET")
+                .endTag()
+                .startTag("permission")
+                .androidAttr("name", AttrIds.NAME, "com.example.P")
+                .androidAttr("protectionLevel", AttrIds.PROTECTION_LEVEL, ResValue.ResType.INT_DEC, 2)
+                .endTag()
+                .startTag("application")
+                .androidAttr("label", AttrIds.LABEL, "Example")
+                .build();
+        ApkMeta apkMeta = parse(data);
+        assertEquals("com.example", apkMeta.getPackageName());
+        assertEquals(Long.valueOf(42), apkMeta.getVersionCode());
+        assertEquals("1.2", apkMeta.getVersionName());
+        assertEquals("14", apkMeta.getMinSdkVersion());
+        assertEquals("Example", apkMeta.getLabel());
+        assertEquals(Arrays.asList("android.permission.INTERNET"), apkMeta.getUsesPermissions());
+        assertEquals(1, apkMeta.getPermissions().size());
+        assertEquals("signature", apkMeta.getPermissions().get(0).getProtectionLevel());
+    }
+
+    @Test
+    public void testPermissionGroup() {
+        byte[] data = new BinaryXmlBuilder()
+                .startTag("manifest")
+                .attr("package", "com.example")
+                .startTag("permission")
+                .androidAttr("name", AttrIds.NAME, "com.example.P")
+                .androidAttr("permissionGroup", AttrIds.PERMISSION_GROUP, "android.permission-group.CAMERA")
+                // not an android attribute, was read as the group before
+                .attr("group", "other")
+                .build();
+        ApkMeta apkMeta = parse(data);
+        assertEquals("android.permission-group.CAMERA", apkMeta.getPermissions().get(0).getGroup());
+    }
+
+    @Test
+    public void testUsesFeature() {
+        byte[] data = new BinaryXmlBuilder()
+                .startTag("manifest")
+                .attr("package", "com.example")
+                .startTag("uses-feature")
+                .androidAttr("name", AttrIds.NAME, "android.hardware.camera")
+                .endTag()
+                .startTag("uses-feature")
+                .androidAttr("glEsVersion", AttrIds.GL_ES_VERSION, ResValue.ResType.INT_HEX, 0x20000)
+                .build();
+        ApkMeta apkMeta = parse(data);
+        assertEquals(1, apkMeta.getUsesFeatures().size());
+        assertEquals("android.hardware.camera", apkMeta.getUsesFeatures().get(0).getName());
+        assertEquals(2, apkMeta.getGlEsVersion().getMajor());
+    }
+
+    private static byte[] componentsManifest() {
+        return new BinaryXmlBuilder()
+                .startTag("manifest")
+                .attr("package", "com.example")
+                .startTag("application")
+                .startTag("meta-data")
+                .androidAttr("name", AttrIds.NAME, "app.key")
+                .androidAttr("value", AttrIds.VALUE, "v")
+                .endTag()
+                .startTag("activity")
+                .androidAttr("name", AttrIds.NAME, ".Main")
+                .startTag("intent-filter")
+                .startTag("action")
+                .androidAttr("name", AttrIds.NAME, "android.intent.action.VIEW")
+                .endTag()
+                .startTag("category")
+                .androidAttr("name", AttrIds.NAME, "android.intent.category.BROWSABLE")
+                .endTag()
+                .startTag("data")
+                .androidAttr("scheme", AttrIds.SCHEME, "https")
+                .androidAttr("host", AttrIds.HOST, "example.com")
+                .endTag()
+                .endTag()
+                .startTag("meta-data")
+                .androidAttr("name", AttrIds.NAME, "activity.key")
+                .androidAttr("resource", AttrIds.RESOURCE, ResValue.ResType.INT_DEC, 7)
+                .endTag()
+                .endTag()
+                .startTag("service")
+                .androidAttr("name", AttrIds.NAME, ".Sync")
+                .androidAttr("exported", AttrIds.EXPORTED, ResValue.ResType.INT_BOOLEAN, -1)
+                .endTag()
+                .startTag("receiver")
+                .androidAttr("name", AttrIds.NAME, ".Boot")
+                .endTag()
+                .startTag("provider")
+                .androidAttr("name", AttrIds.NAME, ".Files")
+                .androidAttr("authorities", AttrIds.AUTHORITIES, "com.example.files")
+                .androidAttr("exported", AttrIds.EXPORTED, ResValue.ResType.INT_BOOLEAN, 0)
+                .build();
+    }
+
+    @Test
+    public void testComponents() {
+        ApkMeta apkMeta = parse(componentsManifest(), true);
+
+        assertEquals(1, apkMeta.getMetaData().size());
+        assertEquals("app.key", apkMeta.getMetaData().get(0).getName());
+        assertEquals("v", apkMeta.getMetaData().get(0).getValue());
+
+        assertEquals(1, apkMeta.getActivities().size());
+        AndroidComponent activity = apkMeta.getActivities().get(0);
+        assertEquals(ComponentType.activity, activity.getType());
+        assertEquals(".Main", activity.getName());
+        assertNull(activity.getExported());
+        assertTrue(activity.isExported());
+        IntentFilter filter = activity.getIntentFilters().get(0);
+        assertEquals(Arrays.asList("android.intent.action.VIEW"), filter.getActions());
+        assertEquals(Arrays.asList("android.intent.category.BROWSABLE"), filter.getCategories());
+        assertEquals("https", filter.getData().get(0).getScheme());
+        assertEquals("example.com", filter.getData().get(0).getHost());
+        assertEquals("activity.key", activity.getMetaData().get(0).getName());
+        assertEquals("7", activity.getMetaData().get(0).getResource());
+
+        AndroidComponent service = apkMeta.getServices().get(0);
+        assertEquals(Boolean.TRUE, service.getExported());
+        assertTrue(service.getIntentFilters().isEmpty());
+
+        AndroidComponent receiver = apkMeta.getReceivers().get(0);
+        assertFalse(receiver.isExported());
+
+        AndroidComponent provider = apkMeta.getProviders().get(0);
+        assertEquals("com.example.files", provider.getAuthorities());
+        assertEquals(Boolean.FALSE, provider.getExported());
+    }
+
+    @Test
+    public void testComponentsNotParsedByDefault() {
+        ApkMeta apkMeta = parse(componentsManifest());
+        assertEquals("com.example", apkMeta.getPackageName());
+        assertTrue(apkMeta.getActivities().isEmpty());
+        assertTrue(apkMeta.getMetaData().isEmpty());
+    }
+}
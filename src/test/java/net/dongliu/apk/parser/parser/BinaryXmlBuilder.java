@@ -0,0 +1,179 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.struct.ChunkType;
+import net.dongliu.apk.parser.struct.ResValue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build android binary xml files for tests.
+ */
+public class BinaryXmlBuilder {
+    public static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+
+    // attribute names with resource id, must be the first strings in pool
+    private final Map<String, Integer> attrIds = new LinkedHashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final List<Object[]> events = new ArrayList<>();
+    private final List<String> openTags = new ArrayList<>();
+
+    public BinaryXmlBuilder() {
+        events.add(new Object[]{"ns", "android", ANDROID_NS});
+    }
+
+    public BinaryXmlBuilder startTag(String name) {
+        events.add(new Object[]{"start", name, new ArrayList<Object[]>()});
+        openTags.add(name);
+        return this;
+    }
+
+    /**
+     * attribute without namespace, string value
+     */
+    public BinaryXmlBuilder attr(String name, String value) {
+        currentAttrs().add(new Object[]{null, name, 0, ResValue.ResType.STRING, value});
+        return this;
+    }
+
+    public BinaryXmlBuilder androidAttr(String name, int attrId, String value) {
+        attrIds.put(name, attrId);
+        currentAttrs().add(new Object[]{ANDROID_NS, name, attrId, ResValue.ResType.STRING, value});
+        return this;
+    }
+
+    public BinaryXmlBuilder androidAttr(String name, int attrId, short type, int data) {
+        attrIds.put(name, attrId);
+        currentAttrs().add(new Object[]{ANDROID_NS, name, attrId, type, data});
+        return this;
+    }
+
+    public BinaryXmlBuilder endTag() {
+        String name = openTags.remove(openTags.size() - 1);
+        events.add(new Object[]{"end", name});
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> currentAttrs() {
+        return (List<Object[]>) events.get(events.size() - 1)[2];
+    }
+
+    private int str(String s) {
+        int idx = strings.indexOf(s);
+        if (idx < 0) {
+            strings.add(s);
+            idx = strings.size() - 1;
+        }
+        return idx;
+    }
+
+    public byte[] build() {
+        while (!openTags.isEmpty()) {
+            endTag();
+        }
+        strings.clear();
+        strings.addAll(attrIds.keySet());
+        // keep index 0 used, the parser treats namespace index 0 as no namespace
+        str("");
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int line = 1;
+        for (Object[] event : events) {
+            switch ((String) event[0]) {
+                case "ns": {
+                    ByteBuffer b = chunk(ChunkType.XML_START_NAMESPACE, 16, 24);
+                    b.putInt(line++).putInt(-1).putInt(str((String) event[1])).putInt(str((String) event[2]));
+                    body.write(b.array(), 0, b.capacity());
+                    break;
+                }
+                case "start": {
+                    @SuppressWarnings("unchecked")
+                    List<Object[]> attrs = (List<Object[]>) event[2];
+                    ByteBuffer b = chunk(ChunkType.XML_START_ELEMENT, 16, 36 + 20 * attrs.size());
+                    b.putInt(line++).putInt(-1).putInt(-1).putInt(str((String) event[1]));
+                    b.putShort((short) 20).putShort((short) 20).putShort((short) attrs.size());
+                    b.putShort((short) 0).putShort((short) 0).putShort((short) 0);
+                    for (Object[] attr : attrs) {
+                        b.putInt(attr[0] == null ? -1 : str((String) attr[0]));
+                        b.putInt(str((String) attr[1]));
+                        short type = (Short) attr[3];
+                        if (type == ResValue.ResType.STRING) {
+                            int idx = str((String) attr[4]);
+                            b.putInt(idx);
+                            b.putShort((short) 8).put((byte) 0).put((byte) type).putInt(idx);
+                        } else {
+                            b.putInt(-1);
+                            b.putShort((short) 8).put((byte) 0).put((byte) type).putInt((Integer) attr[4]);
+                        }
+                    }
+                    body.write(b.array(), 0, b.capacity());
+                    break;
+                }
+                case "end": {
+                    ByteBuffer b = chunk(ChunkType.XML_END_ELEMENT, 16, 24);
+                    b.putInt(line++).putInt(-1).putInt(-1).putInt(str((String) event[1]));
+                    body.write(b.array(), 0, b.capacity());
+                    break;
+                }
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+        ByteBuffer b = chunk(ChunkType.XML_END_NAMESPACE, 16, 24);
+        b.putInt(line).putInt(-1).putInt(str("android")).putInt(str(ANDROID_NS));
+        body.write(b.array(), 0, b.capacity());
+
+        byte[] pool = stringPool(strings);
+        ByteBuffer resourceMap = chunk(ChunkType.XML_RESOURCE_MAP, 8, 8 + 4 * attrIds.size());
+        for (int id : attrIds.values()) {
+            resourceMap.putInt(id);
+        }
+
+        int size = 8 + pool.length + resourceMap.capacity() + body.size();
+        ByteBuffer xml = chunk(ChunkType.XML, 8, size);
+        xml.put(pool).put(resourceMap.array()).put(body.toByteArray());
+        return xml.array();
+    }
+
+    /**
+     * utf-16 string pool chunk
+     */
+    public static byte[] stringPool(List<String> strings) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        int[] offsets = new int[strings.size()];
+        for (int i = 0; i < strings.size(); i++) {
+            offsets[i] = data.size();
+            String s = strings.get(i);
+            ByteBuffer b = ByteBuffer.allocate(4 + s.length() * 2).order(ByteOrder.LITTLE_ENDIAN);
+            b.putShort((short) s.length());
+            for (char c : s.toCharArray()) {
+                b.putChar(c);
+            }
+            b.putShort((short) 0);
+            data.write(b.array(), 0, b.capacity());
+        }
+        while (data.size() % 4 != 0) {
+            data.write(0);
+        }
+        int stringsStart = 28 + 4 * strings.size();
+        ByteBuffer b = chunk(ChunkType.STRING_POOL, 28, stringsStart + data.size());
+        b.putInt(strings.size()).putInt(0).putInt(0).putInt(stringsStart).putInt(0);
+        for (int offset : offsets) {
+            b.putInt(offset);
+        }
+        b.put(data.toByteArray());
+        return b.array();
+    }
+
+    public static ByteBuffer chunk(int type, int headerSize, int size) {
+        ByteBuffer b = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        b.putShort((short) type).putShort((short) headerSize).putInt(size);
+        return b;
+    }
+}
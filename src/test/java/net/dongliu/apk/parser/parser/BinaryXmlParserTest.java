@@ -0,0 +1,103 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.exception.ParseCancelledException;
+import net.dongliu.apk.parser.exception.ParseLimitExceededException;
+import net.dongliu.apk.parser.struct.ResValue;
+import net.dongliu.apk.parser.struct.resource.ResourceTable;
+import net.dongliu.apk.parser.struct.xml.Attribute.AttrIds;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryXmlParserTest {
+
+    private static class CountingLoader implements ResourceTableLoader {
+        int count;
+
+        @Override
+        public ResourceTable load() {
+            count++;
+            return new ResourceTable();
+        }
+    }
+
+    private static String parse(byte[] data, ResourceTableLoader loader) {
+        BinaryXmlParser parser = new BinaryXmlParser(ByteBuffer.wrap(data), null);
+        parser.setResourceTableLoader(loader);
+        parser.setLocale(Locale.US);
+        XmlTranslator translator = new XmlTranslator();
+        parser.setXmlStreamer(translator);
+        parser.parse();
+        return translator.getXml();
+    }
+
+    @Test
+    public void testLiteralValuesDoNotLoadResourceTable() {
+        byte[] data = new BinaryXmlBuilder()
+                .startTag("manifest")
+                .attr("package", "com.example")
+                .androidAttr("versionCode", AttrIds.VERSION_CODE, ResValue.ResType.INT_DEC, 1)
+                .startTag("application")
+                .androidAttr("label", AttrIds.LABEL, "Example")
+                .build();
+        CountingLoader loader = new CountingLoader();
+        String xml = parse(data, loader);
+        assertEquals(0, loader.count);
+        assertTrue(xml.contains("android:label=\"Example\""));
+    }
+
+    @Test
+    public void testReferenceLoadsResourceTableOnce() {
+        byte[] data = new BinaryXmlBuilder()
+                .startTag("manifest")
+                .attr("package", "com.example")
+                .startTag("application")
+                .androidAttr("label", AttrIds.LABEL, ResValue.ResType.REFERENCE, 0x7f010000)
+                .androidAttr("icon", AttrIds.ICON, ResValue.ResType.REFERENCE, 0x7f020000)
+                .build();
+        CountingLoader loader = new CountingLoader();
+        String xml = parse(data, loader);
+        assertEquals(1, loader.count);
+        assertTrue(xml.contains("android:label=\"resourceId:0x7f010000\""));
+    }
+
+    private static byte[] simpleXml() {
+        return new BinaryXmlBuilder()
+                .startTag("manifest")
+                .attr("package", "com.example")
+                .build();
+    }
+
+    @Test(expected = ParseLimitExceededException.class)
+    public void testStringCountLargerThanData() {
+        byte[] data = simpleXml();
+        // string count of the string pool, after xml header(8) and pool chunk header(8)
+        ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(16, 0x10000000);
+        parse(data, null);
+    }
+
+    @Test(expected = ParseLimitExceededException.class)
+    public void testStringPoolSizeLimit() {
+        BinaryXmlParser parser = new BinaryXmlParser(ByteBuffer.wrap(simpleXml()), null);
+        ParseLimits parseLimits = new ParseLimits();
+        parseLimits.setMaxStringPoolSize(2);
+        parser.setParseLimits(parseLimits);
+        parser.setXmlStreamer(new XmlTranslator());
+        parser.parse();
+    }
+
+    @Test(expected = ParseCancelledException.class)
+    public void testCancelled() {
+        BinaryXmlParser parser = new BinaryXmlParser(ByteBuffer.wrap(simpleXml()), null);
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        parser.setCancellationToken(token);
+        parser.setXmlStreamer(new XmlTranslator());
+        parser.parse();
+    }
+}
@@ -0,0 +1,150 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.ByteArrayApkFile;
+import net.dongliu.apk.parser.bean.ArchiveEntry;
+import net.dongliu.apk.parser.bean.NativeLibrary;
+import net.dongliu.apk.parser.utils.ZipSource;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class NativeLibraryParserTest {
+
+    /**
+     * ELF file with PT_LOAD segments aligned to align, followed by random data to size.
+     */
+    private static byte[] elf(boolean is64, int machine, int phnum, long align, int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, 0x464c457f);
+        buffer.put(4, (byte) (is64 ? 2 : 1));
+        buffer.put(5, (byte) 1);
+        buffer.putShort(18, (short) machine);
+        int phoff = is64 ? 64 : 52;
+        int phentsize = is64 ? 56 : 32;
+        if (is64) {
+            buffer.putLong(32, phoff);
+            buffer.putShort(54, (short) phentsize);
+            buffer.putShort(56, (short) phnum);
+        } else {
+            buffer.putInt(28, phoff);
+            buffer.putShort(42, (short) phentsize);
+            buffer.putShort(44, (short) phnum);
+        }
+        for (int i = 0; i < phnum; i++) {
+            int offset = phoff + i * phentsize;
+            // the first is PT_PHDR, others PT_LOAD
+            buffer.putInt(offset, i == 0 ? 6 : 1);
+            if (is64) {
+                buffer.putLong(offset + 48, i == 0 ? 8 : align);
+            } else {
+                buffer.putInt(offset + 28, i == 0 ? 4 : (int) align);
+            }
+        }
+        return data;
+    }
+
+    private static byte[] apk() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bos)) {
+            zos.putNextEntry(new ZipEntry("AndroidManifest.xml"));
+            zos.closeEntry();
+
+            // stored, program headers beyond the first read
+            byte[] stored = elf(true, NativeLibrary.EM_AARCH64, 30, 0x4000, 1024 * 1024);
+            CRC32 crc32 = new CRC32();
+            crc32.update(stored);
+            ZipEntry entry = new ZipEntry("lib/arm64-v8a/libstored.so");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(stored.length);
+            entry.setCrc(crc32.getValue());
+            zos.putNextEntry(entry);
+            zos.write(stored);
+            zos.closeEntry();
+
+            zos.putNextEntry(new ZipEntry("lib/armeabi-v7a/libdeflated.so"));
+            zos.write(elf(false, NativeLibrary.EM_ARM, 4, 0x1000, 1024 * 1024));
+            zos.closeEntry();
+
+            zos.putNextEntry(new ZipEntry("lib/x86/libnotelf.so"));
+            zos.write(new byte[100]);
+            zos.closeEntry();
+
+            zos.putNextEntry(new ZipEntry("lib/x86/sub/libnested.so"));
+            zos.closeEntry();
+        }
+        return bos.toByteArray();
+    }
+
+    @Test
+    public void testParse() throws IOException {
+        byte[] data = apk();
+        final ZipSource source = ZipSource.of(data);
+        final long[] readBytes = new long[1];
+        ZipSource counting = new ZipSource() {
+            @Override
+            public long size() throws IOException {
+                return source.size();
+            }
+
+            @Override
+            public void read(long position, byte[] buffer, int offset, int length) throws IOException {
+                readBytes[0] += length;
+                source.read(position, buffer, offset, length);
+            }
+        };
+        List<ArchiveEntry> entries = ZipCentralDirectory.read(source);
+        List<NativeLibrary> libraries = new NativeLibraryParser(counting).parse(entries);
+        assertEquals(3, libraries.size());
+        // only the headers are read
+        assertTrue(readBytes[0] < 32 * 1024);
+
+        NativeLibrary stored = libraries.get(0);
+        assertEquals("lib/arm64-v8a/libstored.so", stored.getPath());
+        assertEquals("arm64-v8a", stored.getAbi());
+        assertEquals("libstored.so", stored.getName());
+        assertEquals(1024 * 1024, stored.getSize());
+        assertTrue(stored.isStored());
+        assertTrue(stored.isElf());
+        assertEquals(64, stored.getElfClass());
+        assertEquals("arm64-v8a", stored.getMachineName());
+        assertEquals(0x4000, stored.getLoadSegmentAlignment());
+        assertEquals(stored.getDataOffset() % NativeLibrary.PAGE_SIZE_16K == 0, stored.is16KbAligned());
+
+        NativeLibrary deflated = libraries.get(1);
+        assertEquals("armeabi-v7a", deflated.getAbi());
+        assertFalse(deflated.isStored());
+        assertFalse(deflated.isZipAligned(4096));
+        assertEquals(32, deflated.getElfClass());
+        assertEquals(NativeLibrary.EM_ARM, deflated.getMachine());
+        assertEquals(0x1000, deflated.getLoadSegmentAlignment());
+        assertTrue(deflated.isPageAligned(4096));
+        assertFalse(deflated.is16KbAligned());
+
+        NativeLibrary notElf = libraries.get(2);
+        assertEquals("libnotelf.so", notElf.getName());
+        assertFalse(notElf.isElf());
+        assertFalse(notElf.is16KbAligned());
+    }
+
+    @Test
+    public void testApkFile() throws IOException {
+        try (ByteArrayApkFile apkFile = new ByteArrayApkFile(apk())) {
+            List<NativeLibrary> libraries = apkFile.getNativeLibraries();
+            assertEquals(3, libraries.size());
+            assertEquals("libdeflated.so", libraries.get(1).getName());
+            assertEquals(NativeLibrary.EM_ARM, libraries.get(1).getMachine());
+        }
+    }
+}
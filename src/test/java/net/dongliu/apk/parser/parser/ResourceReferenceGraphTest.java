@@ -0,0 +1,83 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.parser.ResourceTableBuilder.Config;
+import net.dongliu.apk.parser.struct.ResValue;
+import net.dongliu.apk.parser.struct.resource.ResourceTable;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ResourceReferenceGraphTest {
+
+    @Test
+    public void testReachable() {
+        ResourceTableBuilder builder = new ResourceTableBuilder(0x7f, "com.example");
+        int appName = builder.addString("string", "app_name", new Config(), "Example");
+        int title = builder.addString("string", "title", new Config(), "Title");
+        int unused = builder.addString("string", "unused", new Config(), "Unused");
+        int icon = builder.addString("drawable", "icon", new Config(), "res/drawable/icon.png");
+        // alias only in one config
+        int alias = builder.addReference("drawable", "alias", new Config().density(480), icon);
+        int main = builder.addString("layout", "main", new Config(), "res/layout/main.xml");
+        int other = builder.addString("layout", "other", new Config(), "res/layout/other.xml");
+        int otherTitle = builder.addString("string", "other_title", new Config(), "Other");
+        ResourceTableParser parser = new ResourceTableParser(ByteBuffer.wrap(builder.build()));
+        parser.parse();
+        ResourceTable table = parser.getResourceTable();
+
+        Map<String, byte[]> xmlFiles = new HashMap<>();
+        xmlFiles.put("AndroidManifest.xml", new BinaryXmlBuilder()
+                .startTag("manifest")
+                .startTag("application")
+                .androidAttr("label", 0x01010001, ResValue.ResType.REFERENCE, appName)
+                .androidAttr("icon", 0x01010002, ResValue.ResType.REFERENCE, alias)
+                .androidAttr("theme", 0x01010000, ResValue.ResType.REFERENCE, main)
+                .build());
+        xmlFiles.put("res/layout/main.xml", new BinaryXmlBuilder()
+                .startTag("TextView")
+                .androidAttr("text", 0x0101014f, ResValue.ResType.REFERENCE, title)
+                // framework resources are not in graph
+                .androidAttr("textColor", 0x01010098, ResValue.ResType.ATTRIBUTE, 0x01010036)
+                .build());
+        xmlFiles.put("res/layout/other.xml", new BinaryXmlBuilder()
+                .startTag("TextView")
+                .androidAttr("text", 0x0101014f, ResValue.ResType.REFERENCE, otherTitle)
+                .build());
+
+        assertEquals(2, ResourceReferenceGraph.getXmlFilePaths(table).size());
+
+        ResourceReferenceGraph graph = ResourceReferenceGraph.build(table, xmlFiles);
+        assertEquals(8, graph.getNodeCount());
+        assertEquals(3, graph.getEdgeCount());
+        assertArrayEquals(new int[]{icon}, graph.getReferences(alias));
+        assertArrayEquals(new int[]{title}, graph.getReferences(main));
+        assertArrayEquals(new int[0], graph.getReferences(appName));
+        assertArrayEquals(new int[]{0x01010036, title}, graph.getFileReferences("res/layout/main.xml"));
+        assertNull(graph.getFileReferences("res/layout/none.xml"));
+
+        int[] roots = graph.getFileReferences("AndroidManifest.xml");
+        int[] reachable = {appName, title, icon, alias, main};
+        Arrays.sort(reachable);
+        assertArrayEquals(reachable, graph.getReachable(roots));
+        int[] unreachable = {unused, other, otherTitle};
+        Arrays.sort(unreachable);
+        assertArrayEquals(unreachable, graph.getUnreachable(roots));
+        assertArrayEquals(new int[]{otherTitle}, graph.getReachable(otherTitle, 0x01010036));
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            ResourceReferenceGraph parallel = ResourceReferenceGraph.build(table, xmlFiles, pool);
+            assertArrayEquals(graph.getResourceIds(), parallel.getResourceIds());
+            assertArrayEquals(graph.getReachable(roots), parallel.getReachable(roots));
+            assertEquals(graph.getEdgeCount(), parallel.getEdgeCount());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
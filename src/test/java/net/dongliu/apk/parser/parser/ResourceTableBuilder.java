@@ -0,0 +1,281 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.struct.ChunkType;
+import net.dongliu.apk.parser.struct.ResValue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build resources.arsc files with one package, for tests.
+ */
+public class ResourceTableBuilder {
+
+    /**
+     * Resource type config, the zero values mean any.
+     */
+    public static class Config {
+        String language = "";
+        String country = "";
+        int density;
+        int sdkVersion;
+        int orientation;
+        int uiMode;
+        int smallestScreenWidthDp;
+        int mcc;
+
+        public Config language(String language) {
+            this.language = language;
+            return this;
+        }
+
+        public Config country(String country) {
+            this.country = country;
+            return this;
+        }
+
+        public Config density(int density) {
+            this.density = density;
+            return this;
+        }
+
+        public Config sdkVersion(int sdkVersion) {
+            this.sdkVersion = sdkVersion;
+            return this;
+        }
+
+        public Config orientation(int orientation) {
+            this.orientation = orientation;
+            return this;
+        }
+
+        public Config uiMode(int uiMode) {
+            this.uiMode = uiMode;
+            return this;
+        }
+
+        public Config smallestScreenWidthDp(int smallestScreenWidthDp) {
+            this.smallestScreenWidthDp = smallestScreenWidthDp;
+            return this;
+        }
+
+        public Config mcc(int mcc) {
+            this.mcc = mcc;
+            return this;
+        }
+
+        String key() {
+            return language + "-" + country + "-" + density + "-" + sdkVersion + "-" + orientation + "-" + uiMode
+                    + "-" + smallestScreenWidthDp + "-" + mcc;
+        }
+
+        byte[] toBytes() {
+            ByteBuffer b = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+            b.putInt(64);
+            b.putShort((short) mcc).putShort((short) 0);
+            b.put(pad(language, 2)).put(pad(country, 2));
+            b.put((byte) orientation).put((byte) 0).putShort((short) density);
+            b.putInt(0);
+            b.putInt(0);
+            b.putShort((short) sdkVersion).putShort((short) 0);
+            b.put((byte) 0).put((byte) uiMode).putShort((short) smallestScreenWidthDp);
+            return b.array();
+        }
+
+        private static byte[] pad(String s, int len) {
+            byte[] bytes = new byte[len];
+            byte[] src = s.getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(src, 0, bytes, 0, src.length);
+            return bytes;
+        }
+    }
+
+    private static class Value {
+        final int entry;
+        final short type;
+        final Object data;
+
+        Value(int entry, short type, Object data) {
+            this.entry = entry;
+            this.type = type;
+            this.data = data;
+        }
+    }
+
+    private final int packageId;
+    private final String packageName;
+    // type name -> entry keys
+    private final Map<String, List<String>> types = new LinkedHashMap<>();
+    // type name -> config key -> values
+    private final Map<String, Map<String, List<Value>>> values = new LinkedHashMap<>();
+    private final Map<String, Config> configs = new LinkedHashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private boolean sparse;
+    private boolean offset16;
+
+    public ResourceTableBuilder(int packageId, String packageName) {
+        this.packageId = packageId;
+        this.packageName = packageName;
+    }
+
+    /**
+     * write type chunks with sparse entries
+     */
+    public ResourceTableBuilder sparse(boolean sparse) {
+        this.sparse = sparse;
+        return this;
+    }
+
+    /**
+     * write type chunks with 16-bit entry offsets
+     */
+    public ResourceTableBuilder offset16(boolean offset16) {
+        this.offset16 = offset16;
+        return this;
+    }
+
+    /**
+     * Declare the entry, so entry index is in the order of declaration.
+     *
+     * @return the resource id
+     */
+    public int declare(String type, String key) {
+        List<String> keys = types.get(type);
+        if (keys == null) {
+            keys = new ArrayList<>();
+            types.put(type, keys);
+            values.put(type, new LinkedHashMap<String, List<Value>>());
+        }
+        int entry = keys.indexOf(key);
+        if (entry < 0) {
+            keys.add(key);
+            entry = keys.size() - 1;
+        }
+        int typeId = new ArrayList<>(types.keySet()).indexOf(type) + 1;
+        return packageId << 24 | typeId << 16 | entry;
+    }
+
+    public int addString(String type, String key, Config config, String value) {
+        return add(type, key, config, ResValue.ResType.STRING, value);
+    }
+
+    public int addReference(String type, String key, Config config, int resourceId) {
+        return add(type, key, config, ResValue.ResType.REFERENCE, resourceId);
+    }
+
+    public int add(String type, String key, Config config, short valueType, Object data) {
+        int id = declare(type, key);
+        configs.put(config.key(), config);
+        Map<String, List<Value>> typeValues = values.get(type);
+        List<Value> list = typeValues.get(config.key());
+        if (list == null) {
+            list = new ArrayList<>();
+            typeValues.put(config.key(), list);
+        }
+        list.add(new Value(id & 0xffff, valueType, data));
+        return id;
+    }
+
+    private int str(String s) {
+        int idx = strings.indexOf(s);
+        if (idx < 0) {
+            strings.add(s);
+            idx = strings.size() - 1;
+        }
+        return idx;
+    }
+
+    public byte[] build() {
+        List<String> typeNames = new ArrayList<>(types.keySet());
+        List<String> keyNames = new ArrayList<>();
+        for (List<String> keys : types.values()) {
+            for (String key : keys) {
+                if (!keyNames.contains(key)) {
+                    keyNames.add(key);
+                }
+            }
+        }
+
+        ByteArrayOutputStream typeChunks = new ByteArrayOutputStream();
+        for (int t = 0; t < typeNames.size(); t++) {
+            String typeName = typeNames.get(t);
+            List<String> keys = types.get(typeName);
+            int entryCount = keys.size();
+
+            ByteBuffer spec = BinaryXmlBuilder.chunk(ChunkType.TABLE_TYPE_SPEC, 16, 16 + 4 * entryCount);
+            spec.put((byte) (t + 1)).put((byte) 0).putShort((short) 0).putInt(entryCount);
+            typeChunks.write(spec.array(), 0, spec.capacity());
+
+            for (Map.Entry<String, List<Value>> e : values.get(typeName).entrySet()) {
+                Config config = configs.get(e.getKey());
+                List<Value> typeValues = e.getValue();
+                ByteArrayOutputStream entries = new ByteArrayOutputStream();
+                int[] offsets = new int[entryCount];
+                java.util.Arrays.fill(offsets, -1);
+                for (Value value : typeValues) {
+                    offsets[value.entry] = entries.size();
+                    ByteBuffer b = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+                    b.putShort((short) 8).putShort((short) 0).putInt(keyNames.indexOf(keys.get(value.entry)));
+                    int data = value.type == ResValue.ResType.STRING ? str((String) value.data) : (Integer) value.data;
+                    b.putShort((short) 8).put((byte) 0).put((byte) value.type).putInt(data);
+                    entries.write(b.array(), 0, 16);
+                }
+                ByteBuffer index;
+                if (sparse) {
+                    index = ByteBuffer.allocate(4 * typeValues.size()).order(ByteOrder.LITTLE_ENDIAN);
+                    for (int i = 0; i < entryCount; i++) {
+                        if (offsets[i] >= 0) {
+                            index.putShort((short) i).putShort((short) (offsets[i] / 4));
+                        }
+                    }
+                } else if (offset16) {
+                    index = ByteBuffer.allocate(2 * entryCount).order(ByteOrder.LITTLE_ENDIAN);
+                    for (int offset : offsets) {
+                        index.putShort((short) (offset < 0 ? 0xffff : offset / 4));
+                    }
+                } else {
+                    index = ByteBuffer.allocate(4 * entryCount).order(ByteOrder.LITTLE_ENDIAN);
+                    for (int offset : offsets) {
+                        index.putInt(offset);
+                    }
+                }
+                int headerSize = 20 + 64;
+                int entriesStart = headerSize + index.capacity();
+                ByteBuffer type = BinaryXmlBuilder.chunk(ChunkType.TABLE_TYPE, headerSize,
+                        entriesStart + entries.size());
+                type.put((byte) (t + 1)).put((byte) (sparse ? 1 : offset16 ? 2 : 0)).putShort((short) 0);
+                type.putInt(sparse ? typeValues.size() : entryCount).putInt(entriesStart);
+                type.put(config.toBytes());
+                type.put(index.array());
+                type.put(entries.toByteArray());
+                typeChunks.write(type.array(), 0, type.capacity());
+            }
+        }
+
+        byte[] typePool = BinaryXmlBuilder.stringPool(typeNames);
+        byte[] keyPool = BinaryXmlBuilder.stringPool(keyNames);
+        int packageHeaderSize = 288;
+        ByteBuffer pkg = BinaryXmlBuilder.chunk(ChunkType.TABLE_PACKAGE, packageHeaderSize,
+                packageHeaderSize + typePool.length + keyPool.length + typeChunks.size());
+        pkg.putInt(packageId);
+        for (int i = 0; i < 128; i++) {
+            pkg.putChar(i < packageName.length() ? packageName.charAt(i) : 0);
+        }
+        pkg.putInt(packageHeaderSize).putInt(typeNames.size());
+        pkg.putInt(packageHeaderSize + typePool.length).putInt(keyNames.size());
+        pkg.putInt(0);
+        pkg.put(typePool).put(keyPool).put(typeChunks.toByteArray());
+
+        byte[] valuePool = BinaryXmlBuilder.stringPool(strings);
+        ByteBuffer table = BinaryXmlBuilder.chunk(ChunkType.TABLE, 12, 12 + valuePool.length + pkg.capacity());
+        table.putInt(1);
+        table.put(valuePool).put(pkg.array());
+        return table.array();
+    }
+}
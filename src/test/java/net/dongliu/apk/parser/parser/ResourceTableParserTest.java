@@ -0,0 +1,118 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.exception.ParserException;
+import net.dongliu.apk.parser.parser.ResourceTableBuilder.Config;
+import net.dongliu.apk.parser.struct.ChunkType;
+import net.dongliu.apk.parser.struct.resource.ResourcePackage;
+import net.dongliu.apk.parser.struct.resource.ResourceTable;
+import net.dongliu.apk.parser.struct.resource.Type;
+import net.dongliu.apk.parser.struct.resource.TypeHeader;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class ResourceTableParserTest {
+
+    private static ResourceTableBuilder builder() {
+        ResourceTableBuilder builder = new ResourceTableBuilder(0x7f, "com.example");
+        for (int i = 0; i < 100; i++) {
+            builder.addString("string", "s" + i, new Config(), "v" + i);
+        }
+        // only a few entries have french translation
+        builder.addString("string", "s3", new Config().language("fr"), "fr3");
+        builder.addString("string", "s50", new Config().language("fr"), "fr50");
+        builder.addString("string", "s99", new Config().language("fr"), "fr99");
+        return builder;
+    }
+
+    private static List<Type> parseTypes(ResourceTableBuilder builder) {
+        ResourceTableParser parser = new ResourceTableParser(ByteBuffer.wrap(builder.build()));
+        parser.parse();
+        ResourceTable table = parser.getResourceTable();
+        ResourcePackage resourcePackage = table.getPackage((short) 0x7f);
+        return resourcePackage.getTypes((short) 1);
+    }
+
+    private static void checkTypes(List<Type> types) {
+        assertEquals(2, types.size());
+        Type defaultType = types.get(0);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("v" + i, defaultType.getResourceEntry(i).toStringValue(null, (Locale) null));
+        }
+        Type fr = types.get(1);
+        assertEquals("fr3", fr.getResourceEntry(3).toStringValue(null, (Locale) null));
+        assertEquals("s50", fr.getResourceEntry(50).getKey());
+        assertEquals("fr99", fr.getResourceEntry(99).toStringValue(null, (Locale) null));
+        assertFalse(fr.hasEntry(0));
+        assertFalse(fr.hasEntry(4));
+        assertFalse(fr.hasEntry(100));
+        assertNull(fr.getResourceEntry(98));
+        assertTrue(fr.hasEntry(50));
+    }
+
+    @Test
+    public void testDenseType() {
+        List<Type> types = parseTypes(builder());
+        checkTypes(types);
+        assertNull(types.get(1).getEntryIndices());
+    }
+
+    @Test
+    public void testSparseType() {
+        List<Type> types = parseTypes(builder().sparse(true));
+        checkTypes(types);
+        assertArrayEquals(new char[]{3, 50, 99}, types.get(1).getEntryIndices());
+    }
+
+    @Test
+    public void testOffset16Type() {
+        checkTypes(parseTypes(builder().offset16(true)));
+    }
+
+    @Test
+    public void testInvalidEntryOffset() {
+        for (int offset : new int[]{-8, 0x7ffffff0}) {
+            byte[] data = builder().build();
+            ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            int typeChunk = findChunk(data, ChunkType.TABLE_TYPE);
+            // the first dense offset follows the type chunk header
+            buffer.putInt(typeChunk + (buffer.getShort(typeChunk + 2) & 0xffff), offset);
+            try {
+                new ResourceTableParser(ByteBuffer.wrap(data)).parse();
+                fail();
+            } catch (ParserException e) {
+                assertTrue(e.getMessage().startsWith("Invalid entry offset"));
+            }
+        }
+    }
+
+    @Test
+    public void testDeprecatedOffsets() {
+        Type fr = parseTypes(builder().sparse(true)).get(1);
+        long[] offsets = fr.getOffsets();
+        assertEquals(100, offsets.length);
+        assertEquals(TypeHeader.NO_ENTRY, offsets[0]);
+        assertEquals(fr.getEntryOffsets()[1], offsets[50]);
+    }
+
+    private static int findChunk(byte[] data, int chunkType) {
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        // the table header, then chunks of the string pool and the package
+        int position = buffer.getShort(2) & 0xffff;
+        while (position < data.length) {
+            int type = buffer.getShort(position) & 0xffff;
+            if (type == chunkType) {
+                return position;
+            }
+            // step into the package, over other chunks
+            position += type == ChunkType.TABLE_PACKAGE ? buffer.getShort(position + 2) & 0xffff
+                    : buffer.getInt(position + 4);
+        }
+        throw new AssertionError("chunk not found");
+    }
+}
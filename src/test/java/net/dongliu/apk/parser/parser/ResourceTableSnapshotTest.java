@@ -0,0 +1,147 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.bean.DeviceProfile;
+import net.dongliu.apk.parser.exception.ParserException;
+import net.dongliu.apk.parser.parser.ResourceTableBuilder.Config;
+import net.dongliu.apk.parser.struct.resource.ResTableConfig;
+import net.dongliu.apk.parser.struct.resource.ResourceNameIndex;
+import net.dongliu.apk.parser.struct.resource.ResourceTable;
+import net.dongliu.apk.parser.utils.ParseUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceTableSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private int appName;
+    private int icon;
+    private int sparse;
+
+    private ResourceTable parse(boolean sparseTypes) {
+        ResourceTableBuilder builder = new ResourceTableBuilder(0x7f, "com.example").sparse(sparseTypes);
+        appName = builder.addString("string", "app_name", new Config(), "Hello");
+        builder.addString("string", "app_name", new Config().language("fr").country("CA"), "Allo");
+        sparse = builder.addString("string", "title", new Config(), "Title");
+        builder.addString("string", "title", new Config().language("zh"), "\u6807\u9898");
+        icon = builder.addString("drawable", "icon", new Config().density(ResTableConfig.DENSITY_HIGH),
+                "res/drawable-hdpi/icon.png");
+        builder.addReference("string", "alias", new Config(), appName);
+        ResourceTableParser parser = new ResourceTableParser(ByteBuffer.wrap(builder.build()));
+        parser.parse();
+        return parser.getResourceTable();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        File file = folder.newFile("resources.snapshot");
+        ResourceTableSnapshot.write(parse(false), file);
+        ResourceTableSnapshot snapshot = ResourceTableSnapshot.load(file);
+        check(snapshot);
+    }
+
+    @Test
+    public void testSparseRoundTrip() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ResourceTableSnapshot.write(parse(true), bos);
+        ResourceTableSnapshot snapshot = ResourceTableSnapshot.load(ByteBuffer.wrap(bos.toByteArray()), true);
+        check(snapshot);
+    }
+
+    @Test
+    public void testNameLookupDoesNotDecodeKeys() throws IOException {
+        ResourceTable table = parse(false);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ResourceTableSnapshot.write(table, bos);
+        ResourceTableSnapshot snapshot = ResourceTableSnapshot.load(ByteBuffer.wrap(bos.toByteArray()), true);
+        // the saved name index is used, not built again from the types
+        ResourceNameIndex nameIndex = snapshot.getResourceTable().getNameIndex();
+        ResourceNameIndex parsedIndex = table.getNameIndex();
+        assertNotSame(parsedIndex, nameIndex);
+        assertEquals(parsedIndex.getSlotCount(), nameIndex.getSlotCount());
+        for (int slot = 0; slot < nameIndex.getSlotCount(); slot++) {
+            assertEquals(parsedIndex.getSlotKey(slot), nameIndex.getSlotKey(slot));
+            assertEquals(parsedIndex.getSlotResourceId(slot), nameIndex.getSlotResourceId(slot));
+        }
+        assertEquals(appName, snapshot.getResourceId("string", "app_name"));
+        assertEquals(-1, snapshot.getResourceId("string", "missing"));
+        SnapshotStringPool keys = (SnapshotStringPool) snapshot.getResourceTable().getPackage((short) 0x7f)
+                .getKeyStringPool();
+        assertTrue(keys.size() > 0);
+        for (int i = 0; i < keys.size(); i++) {
+            assertFalse(keys.isDecoded(i));
+        }
+        assertEquals("app_name", keys.get(keys.indexOf("app_name")));
+        assertEquals("alias", keys.get(keys.indexOf("alias")));
+    }
+
+    private void check(ResourceTableSnapshot snapshot) {
+        ResourceTable table = snapshot.getResourceTable();
+        DeviceProfile profile = DeviceProfile.of(Locale.US);
+        assertEquals("Hello", ParseUtils.getResourceById(appName, table, profile));
+        assertEquals("Allo", ParseUtils.getResourceById(appName, table, DeviceProfile.of(Locale.CANADA_FRENCH)));
+        assertEquals("\u6807\u9898", ParseUtils.getResourceById(sparse, table, DeviceProfile.of(Locale.CHINESE)));
+        assertEquals("res/drawable-hdpi/icon.png", ParseUtils.getResourceById(icon, table, profile));
+        long alias = snapshot.getResourceId("string", "alias");
+        assertEquals("Hello", ParseUtils.getResourceById(alias, table, profile));
+
+        assertEquals(appName, snapshot.getResourceId("string", "app_name"));
+        assertEquals(icon, snapshot.getResourceId("drawable", "icon"));
+        assertEquals(-1, snapshot.getResourceId("drawable", "app_name"));
+        assertEquals(-1, snapshot.getResourceId("string", "missing"));
+        // any, fr-CA, zh
+        assertEquals(3, snapshot.getLocales().size());
+    }
+
+    @Test
+    public void testFileSameAsStream() throws IOException {
+        ResourceTable table = parse(false);
+        File file = folder.newFile("resources.snapshot");
+        ResourceTableSnapshot.write(table, file);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ResourceTableSnapshot.write(table, bos);
+        assertArrayEquals(bos.toByteArray(), Files.readAllBytes(file.toPath()));
+    }
+
+    @Test(expected = ParserException.class)
+    public void testChecksumMismatch() throws IOException {
+        File file = folder.newFile("resources.snapshot");
+        ResourceTableSnapshot.write(parse(false), file);
+        byte[] data = Files.readAllBytes(file.toPath());
+        data[data.length - 20] ^= 1;
+        Files.write(file.toPath(), data);
+        ResourceTableSnapshot.load(file);
+    }
+
+    @Test(expected = ParserException.class)
+    public void testUnsupportedVersion() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ResourceTableSnapshot.write(parse(false), bos);
+        byte[] data = bos.toByteArray();
+        data[4] = (byte) (ResourceTableSnapshot.VERSION + 1);
+        ResourceTableSnapshot.load(ByteBuffer.wrap(data), true);
+    }
+
+    @Test(expected = ParserException.class)
+    public void testTruncated() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ResourceTableSnapshot.write(parse(false), bos);
+        byte[] data = bos.toByteArray();
+        ResourceTableSnapshot.load(ByteBuffer.wrap(data, 0, data.length - 1), false);
+    }
+}
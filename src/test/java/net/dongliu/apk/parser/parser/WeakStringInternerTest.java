@@ -0,0 +1,92 @@
+package net.dongliu.apk.parser.parser;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class WeakStringInternerTest {
+
+    @Test
+    public void testIntern() {
+        WeakStringInterner interner = new WeakStringInterner(100);
+        assertEquals(128, interner.getCapacity());
+        assertNull(interner.intern(null));
+
+        String first = new String("android.permission.INTERNET");
+        String second = new String("android.permission.INTERNET");
+        assertSame(first, interner.intern(first));
+        assertSame(first, interner.intern(second));
+        // interning the canonical instance again does not count as deduplicated
+        assertSame(first, interner.intern(first));
+        assertEquals(3, interner.getRequestCount());
+        assertEquals(1, interner.getDeduplicatedCount());
+        assertEquals(1.0 / 3, interner.getDeduplicationRatio(), 1e-9);
+
+        interner.resetStatistics();
+        assertEquals(0, interner.getRequestCount());
+        assertEquals(0, interner.getDeduplicationRatio(), 0);
+        assertSame(first, interner.intern(new String(second)));
+    }
+
+    @Test
+    public void testBounded() {
+        WeakStringInterner interner = new WeakStringInterner(16);
+        List<String> strings = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String str = "Landroidx/core/Class" + i + ";";
+            strings.add(str);
+            assertEquals(str, interner.intern(str));
+        }
+        // strings evicted are still interned to an equal string
+        for (String str : strings) {
+            assertEquals(str, interner.intern(new String(str)));
+        }
+        assertEquals(16, interner.getCapacity());
+        assertTrue(interner.getDeduplicatedCount() <= 16);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new WeakStringInterner(0);
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        final WeakStringInterner interner = new WeakStringInterner();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    start.await();
+                    for (int round = 0; round < 100; round++) {
+                        for (int i = 0; i < 200; i++) {
+                            String str = "attr" + i;
+                            if (!str.equals(interner.intern(str))) {
+                                return false;
+                            }
+                        }
+                    }
+                    return true;
+                }
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(threads * 100 * 200, interner.getRequestCount());
+        assertTrue(interner.getDeduplicationRatio() > 0.9);
+    }
+}
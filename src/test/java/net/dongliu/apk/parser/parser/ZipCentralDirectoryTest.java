@@ -0,0 +1,106 @@
+package net.dongliu.apk.parser.parser;
+
+import net.dongliu.apk.parser.ByteArrayApkFile;
+import net.dongliu.apk.parser.InputStreamApkFile;
+import net.dongliu.apk.parser.bean.ArchiveEntry;
+import net.dongliu.apk.parser.exception.ParserException;
+import net.dongliu.apk.parser.utils.ZipSource;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ZipCentralDirectoryTest {
+
+    private static byte[] zip(int extraEntries) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bos)) {
+            byte[] stored = "stored data".getBytes("UTF-8");
+            CRC32 crc32 = new CRC32();
+            crc32.update(stored);
+            ZipEntry entry = new ZipEntry("lib/arm64-v8a/libfoo.so");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(stored.length);
+            entry.setCrc(crc32.getValue());
+            zos.putNextEntry(entry);
+            zos.write(stored);
+            zos.closeEntry();
+
+            zos.putNextEntry(new ZipEntry("res/raw/\u6587\u4ef6.txt"));
+            zos.write(new byte[10000]);
+            zos.closeEntry();
+
+            zos.putNextEntry(new ZipEntry("assets/"));
+            zos.closeEntry();
+            for (int i = 0; i < extraEntries; i++) {
+                zos.putNextEntry(new ZipEntry("e" + i));
+                zos.closeEntry();
+            }
+            zos.setComment("zip comment");
+        }
+        return bos.toByteArray();
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        byte[] data = zip(0);
+        List<ArchiveEntry> entries = ZipCentralDirectory.read(ZipSource.of(data));
+        assertEquals(3, entries.size());
+
+        ArchiveEntry stored = entries.get(0);
+        assertEquals("lib/arm64-v8a/libfoo.so", stored.getName());
+        assertEquals(ArchiveEntry.STORED, stored.getMethod());
+        assertEquals(11, stored.getSize());
+        assertEquals(11, stored.getCompressedSize());
+        assertEquals(0, stored.getLocalHeaderOffset());
+        assertEquals("stored data", new String(data, (int) stored.getDataOffset(), 11, "UTF-8"));
+        CRC32 crc32 = new CRC32();
+        crc32.update("stored data".getBytes("UTF-8"));
+        assertEquals(crc32.getValue(), stored.getCrc());
+
+        ArchiveEntry deflated = entries.get(1);
+        assertEquals("res/raw/\u6587\u4ef6.txt", deflated.getName());
+        assertEquals(ArchiveEntry.DEFLATED, deflated.getMethod());
+        assertEquals(10000, deflated.getSize());
+        assertTrue(deflated.getCompressedSize() < 10000);
+        assertTrue(entries.get(2).isDirectory());
+    }
+
+    @Test
+    public void testApkFiles() throws Exception {
+        byte[] data = zip(0);
+        // local headers are read when used, while the apk files are open
+        try (ByteArrayApkFile apkFile = new ByteArrayApkFile(data);
+             InputStreamApkFile streamApkFile = new InputStreamApkFile(new ByteArrayInputStream(data))) {
+            List<ArchiveEntry> entries = apkFile.getEntries();
+            List<ArchiveEntry> streamEntries = streamApkFile.getEntries();
+            assertEquals(entries.size(), streamEntries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                assertEquals(entries.get(i).getName(), streamEntries.get(i).getName());
+                assertEquals(entries.get(i).getDataOffset(), streamEntries.get(i).getDataOffset());
+            }
+        }
+    }
+
+    @Test
+    public void testZip64() throws IOException {
+        // more than 65535 entries needs zip64 end of central directory
+        List<ArchiveEntry> entries = ZipCentralDirectory.read(ZipSource.of(zip(70000)));
+        assertEquals(70003, entries.size());
+        assertEquals("e69999", entries.get(70002).getName());
+    }
+
+    @Test(expected = ParserException.class)
+    public void testInvalid() throws IOException {
+        byte[] data = zip(0);
+        ZipCentralDirectory.read(ZipSource.of(Arrays.copyOf(data, data.length - 5)));
+    }
+}
@@ -0,0 +1,118 @@
+package net.dongliu.apk.parser.struct.resource;
+
+import net.dongliu.apk.parser.bean.DeviceProfile;
+import net.dongliu.apk.parser.bean.Locales;
+import net.dongliu.apk.parser.parser.ResourceTableBuilder;
+import net.dongliu.apk.parser.parser.ResourceTableBuilder.Config;
+import net.dongliu.apk.parser.parser.ResourceTableParser;
+import net.dongliu.apk.parser.utils.ParseUtils;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ResourcePackageTest {
+
+    private static ResourceTable parse(ResourceTableBuilder builder) {
+        ResourceTableParser parser = new ResourceTableParser(ByteBuffer.wrap(builder.build()));
+        parser.parse();
+        return parser.getResourceTable();
+    }
+
+    @Test
+    public void testSelectByLocale() {
+        ResourceTableBuilder builder = new ResourceTableBuilder(0x7f, "com.example");
+        int id = builder.addString("string", "app_name", new Config(), "Hello");
+        builder.addString("string", "app_name", new Config().language("fr"), "Bonjour");
+        builder.addString("string", "app_name", new Config().language("fr").country("CA"), "Allo");
+        ResourceTable table = parse(builder);
+
+        assertEquals("Hello", ParseUtils.getResourceById(id, table, DeviceProfile.of(Locale.US)));
+        assertEquals("Bonjour", ParseUtils.getResourceById(id, table, DeviceProfile.of(Locale.FRANCE)));
+        assertEquals("Allo", ParseUtils.getResourceById(id, table, DeviceProfile.of(Locale.CANADA_FRENCH)));
+        assertEquals("Hello", ParseUtils.getResourceById(id, table, DeviceProfile.of(Locales.any)));
+    }
+
+    @Test
+    public void testFallbackWhenBestValueIsCyclic() {
+        ResourceTableBuilder builder = new ResourceTableBuilder(0x7f, "com.example");
+        int id = builder.addString("string", "app_name", new Config(), "Hello");
+        builder.addReference("string", "app_name", new Config().language("fr"), id);
+        ResourceTable table = parse(builder);
+
+        assertEquals("Hello", ParseUtils.getResourceById(id, table, DeviceProfile.of(Locale.FRANCE)));
+        assertEquals("Hello", ParseUtils.getResourceById(id, table, Locale.FRANCE));
+        assertEquals("Hello", ParseUtils.getResourceById(id, table, Collections.singletonList(Locale.FRANCE),
+                DeviceProfile.of(Locales.any)).get(Locale.FRANCE));
+    }
+
+    @Test
+    public void testSelectByDensity() {
+        ResourceTableBuilder builder = new ResourceTableBuilder(0x7f, "com.example");
+        int id = builder.addString("drawable", "icon", new Config().density(ResTableConfig.DENSITY_MEDIUM),
+                "res/drawable-mdpi/icon.png");
+        builder.addString("drawable", "icon", new Config().density(ResTableConfig.DENSITY_HIGH),
+                "res/drawable-hdpi/icon.png");
+        builder.addString("drawable", "icon", new Config().density(ResTableConfig.DENSITY_XXHIGH),
+                "res/drawable-xxhdpi/icon.png");
+        ResourceTable table = parse(builder);
+
+        DeviceProfile profile = DeviceProfile.of(Locale.US);
+        assertEquals("res/drawable-hdpi/icon.png", ParseUtils.getResourceById(id, table,
+                profile.withDensity(ResTableConfig.DENSITY_HIGH)));
+        // prefer scaling down from a larger density
+        assertEquals("res/drawable-xxhdpi/icon.png", ParseUtils.getResourceById(id, table,
+                profile.withDensity(ResTableConfig.DENSITY_XHIGH)));
+        assertEquals("res/drawable-mdpi/icon.png", ParseUtils.getResourceById(id, table,
+                profile.withDensity(ResTableConfig.DENSITY_LOW)));
+    }
+
+    @Test
+    public void testSelectBySdkAndUiMode() {
+        ResourceTableBuilder builder = new ResourceTableBuilder(0x7f, "com.example");
+        int id = builder.addString("string", "theme", new Config(), "base");
+        builder.addString("string", "theme", new Config().sdkVersion(21), "material");
+        builder.addString("string", "theme", new Config().uiMode(ResTableConfig.UI_MODE_NIGHT_YES), "night");
+        ResourceTable table = parse(builder);
+
+        DeviceProfile profile = DeviceProfile.of(Locale.US);
+        // sdk not specified, the default config is preferred
+        assertEquals("base", ParseUtils.getResourceById(id, table, profile));
+        assertEquals("base", ParseUtils.getResourceById(id, table, profile.withSdkVersion(19)));
+        assertEquals("material", ParseUtils.getResourceById(id, table, profile.withSdkVersion(23)));
+        assertEquals("night", ParseUtils.getResourceById(id, table,
+                profile.withSdkVersion(23).withUiMode(0, ResTableConfig.UI_MODE_NIGHT_YES)));
+    }
+
+    @Test
+    public void testFallbackWhenNoConfigMatches() {
+        ResourceTableBuilder builder = new ResourceTableBuilder(0x7f, "com.example");
+        int id = builder.addString("string", "carrier", new Config().mcc(310), "us carrier");
+        ResourceTable table = parse(builder);
+        assertEquals("us carrier", ParseUtils.getResourceById(id, table, DeviceProfile.of(Locale.US)));
+    }
+
+    @Test
+    public void testMapViews() {
+        ResourceTableBuilder builder = new ResourceTableBuilder(0x7f, "com.example");
+        builder.addString("string", "a", new Config(), "a");
+        builder.addString("string", "a", new Config().language("fr"), "a");
+        builder.addString("drawable", "b", new Config(), "b");
+        ResourceTable table = parse(builder);
+
+        assertEquals(Collections.singleton((short) 0x7f), table.getPackageMap().keySet());
+        ResourcePackage resourcePackage = table.getPackage((short) 0x7f);
+        Map<Short, List<Type>> typesMap = resourcePackage.getTypesMap();
+        assertEquals(2, typesMap.size());
+        assertEquals(2, typesMap.get((short) 1).size());
+        assertEquals(1, typesMap.get((short) 2).size());
+        assertNull(typesMap.get((short) 3));
+        assertEquals("drawable", resourcePackage.getTypeSpecMap().get((short) 2).getName());
+    }
+}
@@ -0,0 +1,224 @@
+package net.dongliu.apk.parser.struct.resource;
+
+import net.dongliu.apk.parser.parser.ResourceTableBuilder;
+import net.dongliu.apk.parser.parser.ResourceTableBuilder.Config;
+import net.dongliu.apk.parser.parser.ResourceTableParser;
+import net.dongliu.apk.parser.bean.DeviceProfile;
+import net.dongliu.apk.parser.bean.Locales;
+import net.dongliu.apk.parser.struct.ResValue;
+import net.dongliu.apk.parser.utils.ParseUtils;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResourceTableTest {
+
+    @Test
+    public void testGetResourceId() {
+        ResourceTableBuilder builder = new ResourceTableBuilder(0x7f, "com.example").sparse(true);
+        int appName = builder.addString("string", "app_name", new Config(), "Hello");
+        int iconString = builder.addString("string", "icon", new Config(), "icon");
+        // only has value in a non-default config
+        int title = builder.addString("string", "title", new Config().language("fr"), "Titre");
+        int icon = builder.addString("drawable", "icon", new Config().density(ResTableConfig.DENSITY_HIGH),
+                "res/drawable-hdpi/icon.png");
+        for (int i = 0; i < 200; i++) {
+            builder.addString("drawable", "d" + i, new Config(), "res/drawable/d" + i + ".png");
+        }
+        ResourceTableParser parser = new ResourceTableParser(ByteBuffer.wrap(builder.build()));
+        parser.parse();
+        ResourceTable table = parser.getResourceTable();
+
+        assertEquals(appName, table.getResourceId("string", "app_name"));
+        assertEquals(iconString, table.getResourceId("string", "icon"));
+        assertEquals(icon, table.getResourceId("drawable", "icon"));
+        assertEquals(title, table.getResourceId("string", "title"));
+        assertEquals(0x7f020000 + 150, table.getResourceId("drawable", "d149"));
+        assertEquals(-1, table.getResourceId("drawable", "app_name"));
+        assertEquals(-1, table.getResourceId("color", "icon"));
+
+        assertEquals(appName, table.getResourceId("@string/app_name"));
+        assertEquals(icon, table.getResourceId("drawable/icon"));
+        assertEquals(icon, table.getResourceId("@com.example:drawable/icon"));
+        assertEquals(-1, table.getResourceId("@android:drawable/icon"));
+        assertEquals(-1, table.getResourceId("app_name"));
+    }
+
+    private static class CollectVisitor implements ResourceVisitor {
+        final Map<String, String> values = new ConcurrentHashMap<>();
+
+        @Override
+        public void visitValue(long resourceId, Type type, String key, short dataType, int data) {
+            String value = dataType == ResValue.ResType.STRING ? type.getStringPool().get(data)
+                    : dataType + ":" + data;
+            values.put(Long.toHexString(resourceId) + "/" + type.getConfig() + "/" + key, value);
+        }
+
+        @Override
+        public void visitComplex(long resourceId, Type type, String key, long parent, int count) {
+        }
+    }
+
+    @Test
+    public void testAccept() {
+        ResourceTableBuilder builder = new ResourceTableBuilder(0x7f, "com.example");
+        for (int t = 0; t < 5; t++) {
+            for (int i = 0; i < 50; i++) {
+                builder.addString("type" + t, "s" + i, new Config(), "v" + t + "_" + i);
+                if (i % 3 == 0) {
+                    builder.addString("type" + t, "s" + i, new Config().language("fr"), "fr" + t + "_" + i);
+                }
+            }
+        }
+        builder.add("type0", "ref", new Config(), ResValue.ResType.REFERENCE, 0x7f010001);
+        ResourceTableParser parser = new ResourceTableParser(ByteBuffer.wrap(builder.build()));
+        parser.parse();
+        ResourceTable table = parser.getResourceTable();
+
+        CollectVisitor visitor = new CollectVisitor();
+        table.accept(visitor);
+        assertEquals(5 * 50 + 5 * 17 + 1, visitor.values.size());
+        assertEquals("v2_7", visitor.values.get("7f030007/default/s7"));
+        assertEquals("fr4_9", visitor.values.get("7f050009/fr/s9"));
+        assertEquals(ResValue.ResType.REFERENCE + ":" + 0x7f010001, visitor.values.get("7f010032/default/ref"));
+
+        CollectVisitor parallelVisitor = new CollectVisitor();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            table.accept(parallelVisitor, pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(visitor.values, parallelVisitor.values);
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        ResourceTableBuilder builder = new ResourceTableBuilder(0x7f, "com.example").sparse(true);
+        final List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            ids.add((long) builder.addString("string", "s" + i, new Config(), "v" + i));
+            if (i % 2 == 0) {
+                builder.addString("string", "s" + i, new Config().language("fr"), "fr" + i);
+            }
+            if (i % 5 == 0) {
+                builder.addString("string", "s" + i, new Config().language("zh").country("CN"), "zh" + i);
+            }
+        }
+        for (int i = 0; i < 100; i++) {
+            ids.add((long) builder.addReference("drawable", "r" + i, new Config(), 0x7f010000 + i * 3));
+        }
+        final byte[] data = builder.build();
+        final Locale[] locales = {Locales.any, Locale.FRENCH, Locale.SIMPLIFIED_CHINESE, Locale.US};
+
+        // expected values, from a table read by one thread
+        ResourceTableParser parser = new ResourceTableParser(ByteBuffer.wrap(data));
+        parser.parse();
+        ResourceTable expectedTable = parser.getResourceTable();
+        final Map<String, String> expected = new ConcurrentHashMap<>();
+        for (Locale locale : locales) {
+            for (long id : ids) {
+                expected.put(id + "/" + locale, String.valueOf(ParseUtils.getResourceById(id, expectedTable,
+                        DeviceProfile.of(locale))));
+            }
+        }
+
+        parser = new ResourceTableParser(ByteBuffer.wrap(data));
+        parser.parse();
+        final ResourceTable table = parser.getResourceTable();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            futures.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    start.await();
+                    int mismatches = 0;
+                    for (int round = 0; round < 50; round++) {
+                        Locale locale = locales[(seed + round) % locales.length];
+                        DeviceProfile profile = DeviceProfile.of(locale);
+                        for (int i = 0; i < ids.size(); i++) {
+                            // threads walk the entries in different orders
+                            long id = ids.get((i * (seed * 2 + 1) + round) % ids.size());
+                            String value = String.valueOf(ParseUtils.getResourceById(id, table, profile));
+                            if (!value.equals(expected.get(id + "/" + locale))) {
+                                mismatches++;
+                            }
+                        }
+                    }
+                    return mismatches;
+                }
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<Integer> future : futures) {
+                assertEquals(0, (int) future.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFrozenAfterParse() {
+        ResourceTableBuilder builder = new ResourceTableBuilder(0x7f, "com.example");
+        int appName = builder.addString("string", "app_name", new Config(), "Hello");
+        ResourceTableParser parser = new ResourceTableParser(ByteBuffer.wrap(builder.build()));
+        parser.parse();
+        ResourceTable table = parser.getResourceTable();
+        assertTrue(table.isFrozen());
+        ResourcePackage resourcePackage = table.getPackage((short) 0x7f);
+        try {
+            resourcePackage.setName("other");
+            fail();
+        } catch (IllegalStateException e) {
+            // frozen
+        }
+        try {
+            resourcePackage.getTypes((short) 1).get(0).setEntryOffsets(new int[0]);
+            fail();
+        } catch (IllegalStateException e) {
+            // frozen
+        }
+        try {
+            resourcePackage.getTypes((short) 1).clear();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // read-only
+        }
+        try {
+            resourcePackage.getTypesMap().get((short) 1).clear();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // read-only
+        }
+
+        // merging copies the packages, the parsed table is not changed
+        ResourceTable merged = new ResourceTable();
+        merged.merge(table);
+        merged.merge(table);
+        assertEquals(1, resourcePackage.getTypes((short) 1).size());
+        assertEquals(2, merged.getPackage((short) 0x7f).getTypes((short) 1).size());
+        assertEquals("Hello", ParseUtils.getResourceById(appName, merged, DeviceProfile.of(Locale.US)));
+    }
+}
@@ -0,0 +1,59 @@
+package net.dongliu.apk.parser.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BlockPoolTest {
+
+    @Test
+    public void testPool() {
+        BlockPool pool = new BlockPool(100, 1);
+        byte[] block = pool.acquire();
+        assertEquals(100, block.length);
+        block[0] = 1;
+        pool.release(block);
+        byte[] reused = pool.acquire();
+        assertSame(block, reused);
+        // zeroed when released
+        assertEquals(0, reused[0]);
+        assertEquals(1, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+
+        pool.release(reused);
+        pool.release(new byte[100]);
+        assertEquals(1, pool.getDiscardedCount());
+        // other size is ignored
+        pool.release(new byte[10]);
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(1, pool.getCapacity());
+    }
+
+    @Test
+    public void testStreamBlocks() throws Exception {
+        BlockPool pool = new BlockPool(1024, 8);
+        byte[] data = new byte[5000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        BlockMemoryStream stream = new BlockMemoryStream(0, pool);
+        StreamUtils.writeStreamToStream(new ByteArrayInputStream(data), stream, 700);
+        assertArrayEquals(data, stream.toArray());
+        assertArrayEquals(Arrays.copyOfRange(data, 1000, 3100), stream.toArray(1000, 2100));
+        long allocated = pool.getMissCount();
+        assertTrue(allocated > 0);
+        stream.close();
+        assertEquals(allocated, pool.getIdleCount());
+
+        // the second stream reuses the blocks of the first one
+        BlockMemoryStream second = new BlockMemoryStream(0, pool);
+        StreamUtils.writeStreamToStream(new ByteArrayInputStream(data), second, 700);
+        assertArrayEquals(data, second.toArray());
+        assertEquals(allocated, pool.getMissCount());
+        assertEquals(allocated, pool.getHitCount());
+        second.close();
+    }
+}
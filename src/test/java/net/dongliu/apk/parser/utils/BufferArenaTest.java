@@ -0,0 +1,99 @@
+package net.dongliu.apk.parser.utils;
+
+import net.dongliu.apk.parser.exception.ArenaClosedException;
+import net.dongliu.apk.parser.parser.ResourceTableBuilder;
+import net.dongliu.apk.parser.parser.ResourceTableBuilder.Config;
+import net.dongliu.apk.parser.parser.ResourceTableParser;
+import net.dongliu.apk.parser.struct.resource.ResourceTable;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class BufferArenaTest {
+
+    @Test
+    public void testAllocate() {
+        BufferArena arena = new BufferArena();
+        ByteBuffer first = arena.allocate(1000);
+        ByteBuffer second = arena.allocate(2000);
+        assertTrue(first.isDirect());
+        assertEquals(1000, first.capacity());
+        assertEquals(3000, arena.getAllocatedBytes());
+
+        arena.release(first);
+        assertEquals(2000, arena.getAllocatedBytes());
+        // not from this arena
+        arena.release(ByteBuffer.allocateDirect(10));
+        assertEquals(2000, arena.getAllocatedBytes());
+
+        second.putInt(0, 1);
+        arena.close();
+        assertTrue(arena.isClosed());
+        assertEquals(0, arena.getAllocatedBytes());
+        assertEquals(3000, arena.getTotalAllocatedBytes());
+    }
+
+    @Test(expected = ArenaClosedException.class)
+    public void testAllocateAfterClose() {
+        BufferArena arena = new BufferArena();
+        arena.close();
+        arena.allocate(10);
+    }
+
+    @Test
+    public void testCloseWaitsForReads() throws Exception {
+        final BufferArena arena = new BufferArena();
+        arena.allocate(10);
+        arena.enter();
+        Thread closer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                arena.close();
+            }
+        });
+        closer.start();
+        closer.join(200);
+        // the buffers are not freed while read
+        assertTrue(closer.isAlive());
+        assertEquals(10, arena.getAllocatedBytes());
+        arena.exit();
+        closer.join(10000);
+        assertFalse(closer.isAlive());
+        assertTrue(arena.isClosed());
+        assertEquals(0, arena.getAllocatedBytes());
+        try {
+            arena.enter();
+            fail();
+        } catch (ArenaClosedException e) {
+            // closed
+        }
+    }
+
+    @Test
+    public void testResourceTable() {
+        ResourceTableBuilder builder = new ResourceTableBuilder(0x7f, "com.example");
+        int id = builder.addString("string", "app_name", new Config(), "Hello");
+        byte[] data = builder.build();
+
+        BufferArena arena = new BufferArena();
+        ByteBuffer buffer = arena.allocate(data.length);
+        buffer.put(data);
+        buffer.flip();
+        ResourceTableParser parser = new ResourceTableParser(buffer);
+        parser.setBufferArena(arena);
+        parser.parse();
+        ResourceTable table = parser.getResourceTable();
+        assertEquals("Hello", ParseUtils.getResourceById(id, table, Locale.ROOT));
+
+        arena.close();
+        try {
+            ParseUtils.getResourceById(id, table, Locale.ROOT);
+            fail();
+        } catch (ArenaClosedException e) {
+            // the freed buffer is not read
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package net.dongliu.apk.parser.utils;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CachedZipSourceTest {
+
+    private static byte[] data(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        byte[] data = data(1000);
+        CachedZipSource source = new CachedZipSource(ZipSource.of(data), 100, 4, 1);
+        assertEquals(1000, source.size());
+
+        byte[] buffer = new byte[150];
+        source.read(950 - 150, buffer, 0, 150);
+        assertArrayEquals(Arrays.copyOfRange(data, 800, 950), buffer);
+        // block 8 missed, block 9 read ahead with it
+        assertEquals(1, source.getMissCount());
+        assertEquals(1, source.getSourceReadCount());
+        assertEquals(200, source.getSourceReadBytes());
+
+        source.read(980, buffer, 0, 20);
+        assertEquals(1, source.getSourceReadCount());
+        assertEquals(2, source.getHitCount());
+
+        // blocks 8 and 9 are evicted by the least recently used order
+        source.read(0, buffer, 0, 10);
+        source.read(200, buffer, 0, 10);
+        assertEquals(3, source.getSourceReadCount());
+        source.read(990, buffer, 0, 10);
+        assertEquals(4, source.getSourceReadCount());
+        assertArrayEquals(Arrays.copyOfRange(data, 990, 1000), Arrays.copyOf(buffer, 10));
+    }
+
+    @Test
+    public void testReadAheadStopsAtCachedBlock() throws IOException {
+        CachedZipSource source = new CachedZipSource(ZipSource.of(data(1000)), 100, 8, 4);
+        byte[] buffer = new byte[10];
+        source.read(200, buffer, 0, 10);
+        assertEquals(500, source.getSourceReadBytes());
+        source.read(0, buffer, 0, 10);
+        // blocks 0 and 1, stop before the cached block 2
+        assertEquals(700, source.getSourceReadBytes());
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        final byte[] data = data(1000);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger block0Reads = new AtomicInteger();
+        ZipSource slow = new ZipSource() {
+            @Override
+            public long size() {
+                return data.length;
+            }
+
+            @Override
+            public void read(long position, byte[] buffer, int offset, int length) throws IOException {
+                if (position == 0) {
+                    block0Reads.incrementAndGet();
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                }
+                System.arraycopy(data, (int) position, buffer, offset, length);
+            }
+        };
+        final CachedZipSource source = new CachedZipSource(slow, 100, 8, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Callable<byte[]> readBlock0 = new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws IOException {
+                    byte[] buffer = new byte[10];
+                    source.read(0, buffer, 0, 10);
+                    return buffer;
+                }
+            };
+            Future<byte[]> first = executor.submit(readBlock0);
+            blocked.await();
+            Future<byte[]> second = executor.submit(readBlock0);
+            // other blocks are read while block 0 is being read
+            byte[] buffer = new byte[10];
+            source.read(500, buffer, 0, 10);
+            assertArrayEquals(Arrays.copyOfRange(data, 500, 510), buffer);
+
+            release.countDown();
+            assertArrayEquals(Arrays.copyOf(data, 10), first.get());
+            assertArrayEquals(Arrays.copyOf(data, 10), second.get());
+            // the second reader waited for the read of the first
+            assertEquals(1, block0Reads.get());
+            assertEquals(2, source.getSourceReadCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testReadOutOfRange() throws IOException {
+        new CachedZipSource(ZipSource.of(data(1000)), 100, 4, 1).read(990, new byte[20], 0, 20);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidReadAhead() {
+        new CachedZipSource(ZipSource.of(data(1000)), 100, 4, 4);
+    }
+}
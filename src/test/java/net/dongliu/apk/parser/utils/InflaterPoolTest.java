@@ -0,0 +1,58 @@
+package net.dongliu.apk.parser.utils;
+
+import org.junit.Test;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.*;
+
+public class InflaterPoolTest {
+
+    @Test
+    public void testReuse() throws Exception {
+        InflaterPool pool = new InflaterPool(1, 1024);
+        byte[] data = "pooled inflater".getBytes("UTF-8");
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] compressed = new byte[100];
+        int length = deflater.deflate(compressed);
+        deflater.end();
+
+        for (int i = 0; i < 3; i++) {
+            Inflater inflater = pool.acquireInflater();
+            inflater.setInput(compressed, 0, length);
+            byte[] out = new byte[data.length];
+            assertEquals(data.length, inflater.inflate(out));
+            assertArrayEquals(data, out);
+            pool.releaseInflater(inflater);
+        }
+        assertEquals(3, pool.getInflaterRequestCount());
+        assertEquals(1, pool.getInflaterCreatedCount());
+        assertEquals(1, pool.getIdleInflaterCount());
+
+        // the pool is full, the second inflater is dropped
+        Inflater first = pool.acquireInflater();
+        Inflater second = pool.acquireInflater();
+        pool.releaseInflater(first);
+        pool.releaseInflater(second);
+        assertEquals(1, pool.getIdleInflaterCount());
+        assertEquals(2, pool.getInflaterCreatedCount());
+    }
+
+    @Test
+    public void testBuffers() {
+        InflaterPool pool = new InflaterPool(2, 1024);
+        byte[] buffer = pool.acquireBuffer();
+        assertEquals(1024, buffer.length);
+        pool.releaseBuffer(buffer);
+        assertSame(buffer, pool.acquireBuffer());
+        // buffers of other size are not pooled
+        pool.releaseBuffer(new byte[10]);
+        assertEquals(0, pool.getIdleBufferCount());
+        assertEquals(0.5, pool.getReuseRatio(), 0.001);
+        pool.resetStatistics();
+        assertEquals(0, pool.getBufferRequestCount());
+    }
+}
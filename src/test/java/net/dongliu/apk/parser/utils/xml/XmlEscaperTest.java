@@ -0,0 +1,42 @@
+package net.dongliu.apk.parser.utils.xml;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class XmlEscaperTest {
+
+    private static final String[] inputs = {
+            "",
+            "plain text",
+            "a<b>c&d\"e'f",
+            "tab\tnew\nline\r",
+            "\u0000\u0001ctrl\u001f\u000b",
+            "\u007f\u0084\u0085\u0086\u009f ",
+            "emoji 😀 ok",
+            "unpaired \ud83d end",
+            "unpaired \ude00 low",
+            "\ud83d",
+            "non-char ￾￿",
+            "中文<标签>"
+    };
+
+    @Test
+    public void testSameAsTranslator() {
+        for (String input : inputs) {
+            String expected = XmlEscaper.ESCAPE_XML10.translate(input);
+            assertEquals(expected, XmlEscaper.escapeXml10(input));
+
+            StringBuilder sb = new StringBuilder("prefix:");
+            XmlEscaper.escapeXml10(input, sb);
+            assertEquals("prefix:" + expected, sb.toString());
+        }
+    }
+
+    @Test
+    public void testNoEscapeReturnsInput() {
+        String input = "com.example.app";
+        assertSame(input, XmlEscaper.escapeXml10(input));
+    }
+}